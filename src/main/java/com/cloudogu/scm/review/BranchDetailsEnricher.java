@@ -55,9 +55,8 @@ public class BranchDetailsEnricher implements HalEnricher {
   }
 
   private List<HalRepresentation> getPullRequestDtos(Repository repository, String branchName) {
-    return service.getAll(repository.getNamespace(), repository.getName())
+    return service.getInProgressBySource(repository, List.of(branchName))
       .stream()
-      .filter(pr -> pr.getSource().equals(branchName) && pr.isInProgress())
       .map(mapper::map)
       .collect(Collectors.toList());
   }
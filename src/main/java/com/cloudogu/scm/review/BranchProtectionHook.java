@@ -17,6 +17,7 @@
 package com.cloudogu.scm.review;
 
 import com.cloudogu.scm.review.config.service.ConfigService;
+import com.cloudogu.scm.review.config.service.ConfigService.BranchProtectionMatcher;
 import com.github.legman.Subscribe;
 import jakarta.inject.Inject;
 import lombok.extern.slf4j.Slf4j;
@@ -40,12 +41,14 @@ public class BranchProtectionHook {
   private final ConfigService service;
   private final InternalMergeSwitch internalMergeSwitch;
   private final RepositoryServiceFactory serviceFactory;
+  private final PushContextFactory pushContextFactory;
 
   @Inject
-  public BranchProtectionHook(ConfigService service, InternalMergeSwitch internalMergeSwitch, RepositoryServiceFactory serviceFactory) {
+  public BranchProtectionHook(ConfigService service, InternalMergeSwitch internalMergeSwitch, RepositoryServiceFactory serviceFactory, PushContextFactory pushContextFactory) {
     this.service = service;
     this.internalMergeSwitch = internalMergeSwitch;
     this.serviceFactory = serviceFactory;
+    this.pushContextFactory = pushContextFactory;
   }
 
   @Subscribe(async = false)
@@ -63,56 +66,58 @@ public class BranchProtectionHook {
     }
 
     log.trace("received hook for repository {}", repository.getName());
+    BranchProtectionMatcher matcher = pushContextFactory.get(event).getBranchProtectionMatcher();
     for (String branch : context.getBranchProvider().getCreatedOrModified()) {
-      if (service.isBranchProtected(repository, branch)) {
+      if (matcher.isBranchProtected(branch)) {
         if (context.isFeatureSupported(HookFeature.MODIFICATIONS_PROVIDER)) {
-          checkChangesUsingModifications(branch, context, repository);
+          checkChangesUsingModifications(branch, context, repository, matcher);
         } else {
           log.warn("falling back to check changesets for branch {} in repository {}", branch, repository);
-          checkChangesUsingChangesets(branch, context, repository);
+          checkChangesUsingChangesets(branch, context, repository, matcher);
         }
       }
     }
     for (
       String branch : context.getBranchProvider().getDeletedOrClosed()) {
-      if (service.isBranchProtected(repository, branch)) {
+      if (matcher.isBranchProtected(branch)) {
         throw new BranchOnlyWritableByMergeException(repository, branch);
       }
     }
   }
 
-  private void checkChangesUsingModifications(String branch, HookContext context, Repository repository) {
+  private void checkChangesUsingModifications(String branch, HookContext context, Repository repository, BranchProtectionMatcher matcher) {
     context.getModificationsProvider().getModifications(branch).effectedPathsStream().forEach(modifiedPath -> {
-      if (service.isBranchPathProtected(repository, branch, modifiedPath)) {
+      if (matcher.matches(branch, modifiedPath)) {
         throw new PathOnlyWritableByMergeException(repository, branch, modifiedPath);
       }
     });
   }
 
-  private void checkChangesUsingChangesets(String branch, HookContext context, Repository repository) {
-    context.getChangesetProvider().getChangesets().forEach(
-      changeset -> {
-        if (mayNotWriteBranchWithoutPr(repository, branch, changeset)) {
+  private void checkChangesUsingChangesets(String branch, HookContext context, Repository repository, BranchProtectionMatcher matcher) {
+    // only changesets of the branch with parents count, so the changesets have to be checked one by one
+    try (RepositoryService repositoryService = serviceFactory.create(repository)) {
+      for (Changeset changeset : context.getChangesetProvider().getChangesets()) {
+        if (mayNotWriteBranchWithoutPr(repositoryService, matcher, branch, changeset)) {
           throw new BranchOnlyWritableByMergeException(repository, branch);
         }
       }
-    );
+    }
   }
 
-  private boolean mayNotWriteBranchWithoutPr(Repository repository, String branch, Changeset changeset) {
+  private boolean mayNotWriteBranchWithoutPr(RepositoryService repositoryService, BranchProtectionMatcher matcher, String branch, Changeset changeset) {
     return changeset.getBranches().contains(branch)
       && !changeset.getParents().isEmpty()
-      && pathIsProtected(repository, branch, changeset);
+      && pathIsProtected(repositoryService, matcher, branch, changeset);
   }
 
-  private boolean pathIsProtected(Repository repository, String branch, Changeset changeset) {
-    try (RepositoryService repositoryService = serviceFactory.create(repository)) {
+  private boolean pathIsProtected(RepositoryService repositoryService, BranchProtectionMatcher matcher, String branch, Changeset changeset) {
+    try {
       return repositoryService.getModificationsCommand()
         .revision(changeset.getId())
         .getModifications()
         .getEffectedPaths()
         .stream()
-        .anyMatch(path -> service.isBranchPathProtected(repository, branch, path));
+        .anyMatch(path -> matcher.matches(branch, path));
     } catch (IOException e) {
       log.error("Could not detect whether the branch protection is ");
       return true;
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.review;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Counts hits and misses of a cache of this plugin. The counters are registered as {@code cache.gets} with the
+ * tags {@code cache} and {@code result}, like the cache metrics of micrometer itself.
+ */
+public class CacheMetrics {
+
+  private final Counter hits;
+  private final Counter misses;
+
+  public CacheMetrics(MeterRegistry registry, String cacheName) {
+    this.hits = counter(registry, cacheName, "hit");
+    this.misses = counter(registry, cacheName, "miss");
+  }
+
+  private static Counter counter(MeterRegistry registry, String cacheName, String result) {
+    return Counter.builder("cache.gets")
+      .description("The number of times cache lookup methods have returned a cached (hit) or uncached (miss) value")
+      .tag("cache", cacheName)
+      .tag("result", result)
+      .register(registry);
+  }
+
+  public void hit() {
+    hits.increment();
+  }
+
+  public void miss() {
+    misses.increment();
+  }
+
+  public double getHitCount() {
+    return hits.count();
+  }
+
+  public double getMissCount() {
+    return misses.count();
+  }
+}
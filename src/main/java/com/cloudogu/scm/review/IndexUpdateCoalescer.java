@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.review;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sonia.scm.repository.Repository;
+import sonia.scm.search.Id;
+import sonia.scm.search.Index;
+import sonia.scm.search.SearchEngine;
+import sonia.scm.search.SerializableIndexTask;
+
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Coalesces updates of the search index for documents of a single pull request (the pull request itself or its
+ * comments). All updates for the same pull request and index, that are received while an index task for this pull
+ * request is waiting in the queue of the search engine, are executed by this one task. If there are multiple updates
+ * for the same document, only the last one is executed. The number of updates waiting for their index task is
+ * exposed as gauge {@value #PENDING_GAUGE}, the number of updates as counter {@value #UPDATES_COUNTER} with the tags
+ * {@code index} and {@code result}, where the result is either {@code enqueued} (a new index task has been created)
+ * or {@code coalesced} (the update has been added to a waiting index task).
+ * <p>
+ * The updates themselves are kept in memory only. If the server is restarted while an index task is waiting, the
+ * search engine restores the task without its updates. In this case the task enqueues the recovery task, that has
+ * been passed with the first update, to reindex all documents of the pull request from the stores.
+ */
+@Singleton
+@SuppressWarnings("UnstableApiUsage")
+public class IndexUpdateCoalescer {
+
+  private static final Logger LOG = LoggerFactory.getLogger(IndexUpdateCoalescer.class);
+
+  static final String PENDING_GAUGE = "scm.review.index.pending";
+  static final String UPDATES_COUNTER = "scm.review.index.updates";
+
+  private final SearchEngine searchEngine;
+  private final MeterRegistry meterRegistry;
+
+  private final Map<Key, CoalescedIndexTask<?>> pending = new ConcurrentHashMap<>();
+  private final AtomicInteger pendingUpdates = new AtomicInteger();
+  private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+  @Inject
+  public IndexUpdateCoalescer(SearchEngine searchEngine, MeterRegistry meterRegistry) {
+    this.searchEngine = searchEngine;
+    this.meterRegistry = meterRegistry;
+    Gauge.builder(PENDING_GAUGE, pendingUpdates, AtomicInteger::get)
+      .description("Updates of the search index of the review plugin waiting for their index task")
+      .register(meterRegistry);
+  }
+
+  /**
+   * Schedules the update of the document with the given id, which belongs to the given pull request. The update
+   * replaces a waiting update for the same document. The recovery task has to reindex all documents of the pull
+   * request; it is only used, if the update has been lost due to a restart.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> void update(Class<T> type, Repository repository, String pullRequestId, Id<T> id, Consumer<Index<T>> update, SerializableIndexTask<T> recovery) {
+    Key key = new Key(type, repository.getId(), pullRequestId);
+    AtomicReference<CoalescedIndexTask<T>> enqueue = new AtomicReference<>();
+    pending.compute(key, (k, task) -> {
+      if (task == null) {
+        task = new CoalescedIndexTask<>(key, recovery, this);
+        enqueue.set((CoalescedIndexTask<T>) task);
+      }
+      if (task.updates.put(id, index -> update.accept((Index<T>) index)) == null) {
+        pendingUpdates.incrementAndGet();
+      }
+      return task;
+    });
+    if (enqueue.get() != null) {
+      counter(type, "enqueued").increment();
+      searchEngine.forType(type).update(enqueue.get());
+    } else {
+      counter(type, "coalesced").increment();
+    }
+  }
+
+  private void execute(CoalescedIndexTask<?> task, Index<?> index) {
+    // no updates can be added to the task after it has been removed
+    pending.remove(task.key, task);
+    pendingUpdates.addAndGet(-task.updates.size());
+    task.updates.values().forEach(update -> update.accept(index));
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> void recover(Key key, SerializableIndexTask<T> recovery) {
+    LOG.info("updates of pull request {} in repository {} for index {} have been lost, reindexing pull request", key.pullRequestId(), key.repositoryId(), key.type().getSimpleName());
+    searchEngine.forType((Class<T>) key.type()).update(recovery);
+  }
+
+  private Counter counter(Class<?> type, String result) {
+    return counters.computeIfAbsent(
+      type.getName() + "/" + result,
+      k -> Counter.builder(UPDATES_COUNTER)
+        .description("Updates of the search index of the review plugin")
+        .tag("index", type.getSimpleName())
+        .tag("result", result)
+        .register(meterRegistry)
+    );
+  }
+
+  static final class CoalescedIndexTask<T> implements SerializableIndexTask<T> {
+
+    private transient IndexUpdateCoalescer coalescer;
+    /**
+     * The updates are not serializable, so they are missing, if the task has been restored after a restart.
+     */
+    private final transient Map<Id<?>, Consumer<Index<?>>> updates;
+
+    private final Key key;
+    private final SerializableIndexTask<T> recovery;
+
+    CoalescedIndexTask(Key key, SerializableIndexTask<T> recovery, IndexUpdateCoalescer coalescer) {
+      this.key = key;
+      this.recovery = recovery;
+      this.coalescer = coalescer;
+      this.updates = new LinkedHashMap<>();
+    }
+
+    @Override
+    public void update(Index<T> index) {
+      if (updates == null) {
+        coalescer.recover(key, recovery);
+      } else {
+        coalescer.execute(this, index);
+      }
+    }
+
+    @Inject
+    public void setCoalescer(IndexUpdateCoalescer coalescer) {
+      this.coalescer = coalescer;
+    }
+  }
+
+  private record Key(Class<?> type, String repositoryId, String pullRequestId) implements Serializable {}
+}
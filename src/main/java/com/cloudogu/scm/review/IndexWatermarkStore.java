@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.review;
+
+import jakarta.inject.Inject;
+import jakarta.xml.bind.annotation.XmlAccessType;
+import jakarta.xml.bind.annotation.XmlAccessorType;
+import jakarta.xml.bind.annotation.XmlRootElement;
+import jakarta.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import sonia.scm.repository.Repository;
+import sonia.scm.store.ConfigurationStore;
+import sonia.scm.store.ConfigurationStoreFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Optional;
+
+/**
+ * Stores for each repository and search index the time, up to which all changes of the repository have been written
+ * to the index by a reindex task. Later reindex tasks only have to write documents that have been changed after
+ * this time. Each index has its own store, so that the indices can be updated in parallel.
+ * <p>
+ * Additionally, it is stored for each index, whether the server has been shut down cleanly. In this case all changes
+ * have been written to the index or are queued as index tasks, so that no repository has to be checked for changes
+ * on the next start.
+ *
+ * @since 3.17.0
+ */
+public class IndexWatermarkStore {
+
+  private static final String STORE_NAME_PREFIX = "review-index-watermark-";
+  private static final String SHUTDOWN_STORE_NAME_PREFIX = "review-index-shutdown-";
+
+  /**
+   * Changes that are written while a reindex task reads the store may carry a date before the start of the task, but
+   * are not visible to the task yet. Such changes are covered by setting the watermark this long before the start.
+   */
+  static final Duration SAFETY_MARGIN = Duration.ofSeconds(1);
+
+  private final ConfigurationStoreFactory storeFactory;
+
+  @Inject
+  public IndexWatermarkStore(ConfigurationStoreFactory storeFactory) {
+    this.storeFactory = storeFactory;
+  }
+
+  /**
+   * Returns the watermark for a reindex task that starts now. The time is truncated to milliseconds like the
+   * modification dates in the stores and moved back by a safety margin, so that no change between the watermark
+   * and the reading of the store is missed. Documents of changes within the margin are simply written again.
+   */
+  public static Instant watermarkForStart() {
+    return Instant.now().truncatedTo(ChronoUnit.MILLIS).minus(SAFETY_MARGIN);
+  }
+
+  public Optional<Instant> get(Repository repository, Class<?> type) {
+    return createStore(repository, type).getOptional().map(IndexWatermark::getIndexedUntil);
+  }
+
+  public void set(Repository repository, Class<?> type, Instant indexedUntil) {
+    createStore(repository, type).set(new IndexWatermark(indexedUntil));
+  }
+
+  /**
+   * Marks that the server has been shut down cleanly, so that all changes for the given index have been handled.
+   */
+  public void markCleanShutdown(Class<?> type) {
+    createShutdownStore(type).set(new ShutdownMark(true));
+  }
+
+  /**
+   * Removes the mark of a clean shutdown for the given index and returns, whether the mark had been set. The mark has
+   * to be removed on startup, so that it is missing after a crash.
+   */
+  public boolean removeCleanShutdownMark(Class<?> type) {
+    ConfigurationStore<ShutdownMark> store = createShutdownStore(type);
+    boolean clean = store.getOptional().map(ShutdownMark::isClean).orElse(false);
+    if (clean) {
+      store.set(new ShutdownMark(false));
+    }
+    return clean;
+  }
+
+  private ConfigurationStore<ShutdownMark> createShutdownStore(Class<?> type) {
+    return storeFactory
+      .withType(ShutdownMark.class)
+      .withName(SHUTDOWN_STORE_NAME_PREFIX + type.getSimpleName())
+      .build();
+  }
+
+  private ConfigurationStore<IndexWatermark> createStore(Repository repository, Class<?> type) {
+    return storeFactory
+      .withType(IndexWatermark.class)
+      .withName(STORE_NAME_PREFIX + type.getSimpleName())
+      .forRepository(repository)
+      .build();
+  }
+
+  @Data
+  @NoArgsConstructor
+  @AllArgsConstructor
+  @XmlRootElement(name = "indexWatermark")
+  @XmlAccessorType(XmlAccessType.FIELD)
+  public static class IndexWatermark {
+    @XmlJavaTypeAdapter(XmlInstantAdapter.class)
+    private Instant indexedUntil;
+  }
+
+  @Data
+  @NoArgsConstructor
+  @AllArgsConstructor
+  @XmlRootElement(name = "indexShutdown")
+  @XmlAccessorType(XmlAccessType.FIELD)
+  public static class ShutdownMark {
+    private boolean clean;
+  }
+}
@@ -16,7 +16,6 @@
 
 package com.cloudogu.scm.review;
 
-import com.cloudogu.scm.review.pullrequest.service.DefaultPullRequestService;
 import com.cloudogu.scm.review.pullrequest.service.MergeNotAllowedException;
 import com.cloudogu.scm.review.pullrequest.service.MergeObstacle;
 import com.cloudogu.scm.review.pullrequest.service.MergeService;
@@ -46,36 +45,33 @@ public class MergeObstacleCheckHook {
 
   private static final Logger LOG = LoggerFactory.getLogger(MergeObstacleCheckHook.class);
 
-  private final DefaultPullRequestService pullRequestService;
   private final MergeService mergeService;
   private final MessageSenderFactory messageSenderFactory;
   private final InternalMergeSwitch internalMergeSwitch;
+  private final PushContextFactory pushContextFactory;
 
   @Inject
-  public MergeObstacleCheckHook(DefaultPullRequestService pullRequestService, MergeService mergeService, MessageSenderFactory messageSenderFactory, InternalMergeSwitch internalMergeSwitch) {
-    this.pullRequestService = pullRequestService;
+  public MergeObstacleCheckHook(MergeService mergeService, MessageSenderFactory messageSenderFactory, InternalMergeSwitch internalMergeSwitch, PushContextFactory pushContextFactory) {
     this.mergeService = mergeService;
     this.messageSenderFactory = messageSenderFactory;
     this.internalMergeSwitch = internalMergeSwitch;
+    this.pushContextFactory = pushContextFactory;
   }
 
   @Subscribe(async = false)
   public void checkForObstacles(PreReceiveRepositoryHookEvent event) {
     HookContext context = event.getContext();
-    Repository repository = event.getRepository();
-    if (ignoreHook(context, repository)) {
+    if (internalMergeSwitch.internalMergeRunning() || !context.isFeatureSupported(HookFeature.MERGE_DETECTION_PROVIDER)) {
       return;
     }
-    List<PullRequest> pullRequests = pullRequestService.getAll(repository.getNamespace(), repository.getName());
+    PushContext pushContext = pushContextFactory.get(event);
+    if (!pushContext.supportsPullRequests()) {
+      return;
+    }
+    List<PullRequest> pullRequests = pushContext.getInProgressByBranches(context.getBranchProvider().getCreatedOrModified());
     new Worker(event).process(pullRequests);
   }
 
-  private boolean ignoreHook(HookContext context, Repository repository) {
-    return internalMergeSwitch.internalMergeRunning()
-      || !context.isFeatureSupported(HookFeature.MERGE_DETECTION_PROVIDER)
-      || !pullRequestService.supportsPullRequests(repository);
-  }
-
   private class Worker {
     private final Repository repository;
     private final HookBranchProvider branchProvider;
@@ -18,8 +18,9 @@ package com.cloudogu.scm.review;
 
 import jakarta.inject.Inject;
 import sonia.scm.repository.Changeset;
-import sonia.scm.repository.Modifications;
 import sonia.scm.repository.Repository;
+import sonia.scm.repository.api.HookContext;
+import sonia.scm.repository.api.HookFeature;
 import sonia.scm.repository.api.RepositoryService;
 import sonia.scm.repository.api.RepositoryServiceFactory;
 
@@ -27,6 +28,7 @@ import java.io.IOException;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.function.Predicate;
 
 class ModificationCollector {
 
@@ -37,19 +39,39 @@ class ModificationCollector {
     this.repositoryServiceFactory = repositoryServiceFactory;
   }
 
-  Set<String> collect(Repository repository, Iterable<Changeset> changesets) throws IOException {
+  /**
+   * Collects the paths changed by a push, that match the given filter. If the hook provides modifications, the
+   * effective changes between the old and the new head of each branch are computed only once per branch. Otherwise
+   * the modifications of every single changeset are read. Only the matching paths are kept, so that the result stays
+   * small even for pushes with thousands of changed files.
+   */
+  Set<String> collect(Repository repository, HookContext context, Predicate<String> filter) throws IOException {
     Set<String> paths = new HashSet<>();
-    try (RepositoryService repositoryService = repositoryServiceFactory.create(repository)) {
-      for (Changeset changeset : changesets) {
-        append(paths, repositoryService, changeset);
+    if (context.isFeatureSupported(HookFeature.MODIFICATIONS_PROVIDER)) {
+      for (String branch : context.getBranchProvider().getCreatedOrModified()) {
+        context.getModificationsProvider()
+          .getModifications(branch)
+          .effectedPathsStream()
+          .filter(filter)
+          .forEach(paths::add);
       }
-
-      return Collections.unmodifiableSet(paths);
+    } else {
+      collectFromChangesets(paths, repository, context.getChangesetProvider().getChangesets(), filter);
     }
+    return Collections.unmodifiableSet(paths);
   }
 
-  private void append(Set<String> paths, RepositoryService repositoryService, Changeset changeset) throws IOException {
-    Modifications modifications = repositoryService.getModificationsCommand().revision(changeset.getId()).getModifications();
-    paths.addAll(modifications.getEffectedPaths());
+  private void collectFromChangesets(Set<String> paths, Repository repository, Iterable<Changeset> changesets, Predicate<String> filter) throws IOException {
+    try (RepositoryService repositoryService = repositoryServiceFactory.create(repository)) {
+      for (Changeset changeset : changesets) {
+        repositoryService.getModificationsCommand()
+          .revision(changeset.getId())
+          .getModifications()
+          .getEffectedPaths()
+          .stream()
+          .filter(filter)
+          .forEach(paths::add);
+      }
+    }
   }
 }
@@ -20,7 +20,6 @@ import com.cloudogu.scm.review.comment.service.Comment;
 import com.cloudogu.scm.review.comment.service.CommentCollector;
 import com.cloudogu.scm.review.comment.service.CommentService;
 import com.cloudogu.scm.review.pullrequest.service.PullRequest;
-import com.cloudogu.scm.review.pullrequest.service.PullRequestCollector;
 import com.cloudogu.scm.review.pullrequest.service.PullRequestService;
 import com.cloudogu.scm.review.pullrequest.service.ReviewMark;
 import com.github.legman.Subscribe;
@@ -29,12 +28,13 @@ import com.google.inject.Inject;
 import sonia.scm.ContextEntry;
 import sonia.scm.EagerSingleton;
 import sonia.scm.plugin.Extension;
-import sonia.scm.repository.Changeset;
 import sonia.scm.repository.InternalRepositoryException;
 import sonia.scm.repository.PostReceiveRepositoryHookEvent;
 import sonia.scm.repository.Repository;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -42,120 +42,107 @@ import java.util.Set;
 @EagerSingleton
 public class ProcessChangedFilesHook {
 
-  private final PullRequestCollector pullRequestCollector;
   private final CommentCollector commentCollector;
   private final ModificationCollector modificationCollector;
   private final CommentService commentService;
   private final PullRequestService pullRequestService;
+  private final PushContextFactory pushContextFactory;
 
 
   @Inject
-  ProcessChangedFilesHook(PullRequestCollector pullRequestCollector, CommentCollector commentCollector, ModificationCollector modificationCollector, CommentService commentService, PullRequestService pullRequestService) {
-    this.pullRequestCollector = pullRequestCollector;
+  ProcessChangedFilesHook(CommentCollector commentCollector, ModificationCollector modificationCollector, CommentService commentService, PullRequestService pullRequestService, PushContextFactory pushContextFactory) {
     this.commentCollector = commentCollector;
     this.modificationCollector = modificationCollector;
     this.commentService = commentService;
     this.pullRequestService = pullRequestService;
+    this.pushContextFactory = pushContextFactory;
   }
 
   @Subscribe
   public void checkChangedFiles(PostReceiveRepositoryHookEvent event) {
-    if (!pullRequestService.supportsPullRequests(event.getRepository())) {
+    PushContext pushContext = pushContextFactory.get(event);
+    if (!pushContext.supportsPullRequests()) {
       return;
     }
-    CachingModificationCollector collector = new CachingModificationCollector(event);
-    FlagAffectedCommentsAsOutdated flagAffectedCommentsAsOutdated = new FlagAffectedCommentsAsOutdated(event.getRepository(), collector);
-    RemoveReviewMarksForChangedFiles removeReviewMarksForChangedFiles = new RemoveReviewMarksForChangedFiles(event.getRepository(), collector);
+    List<AffectedPullRequest> affectedPullRequests = getAffectedPullRequests(event, pushContext)
+      .stream()
+      .map(pullRequest -> new AffectedPullRequest(event.getRepository(), pullRequest))
+      .toList();
 
-    List<PullRequest> affectedPullRequests = getAffectedPullRequests(event);
+    Set<String> modifications = collectRelevantModifications(event, affectedPullRequests);
 
-    affectedPullRequests.forEach(flagAffectedCommentsAsOutdated::process);
-    affectedPullRequests.forEach(removeReviewMarksForChangedFiles::process);
+    affectedPullRequests.forEach(pullRequest -> pullRequest.flagAffectedCommentsAsOutdated(modifications));
+    affectedPullRequests.forEach(pullRequest -> pullRequest.removeReviewMarksForChangedFiles(modifications));
   }
 
-  private List<PullRequest> getAffectedPullRequests(PostReceiveRepositoryHookEvent event) {
+  private List<PullRequest> getAffectedPullRequests(PostReceiveRepositoryHookEvent event, PushContext pushContext) {
     List<String> affectedBranches = event.getContext().getBranchProvider().getCreatedOrModified();
-    return pullRequestCollector.collectAffectedPullRequests(event.getRepository(), affectedBranches);
+    return pushContext.getInProgressByBranches(affectedBranches);
   }
 
-  private class FlagAffectedCommentsAsOutdated {
-
-    private final Repository repository;
-    private final CachingModificationCollector collector;
-
-    FlagAffectedCommentsAsOutdated(Repository repository, CachingModificationCollector collector) {
-      this.repository = repository;
-      this.collector = collector;
-    }
-
-    void process(PullRequest pullRequest) {
-      commentCollector.collectNonOutdated(repository, pullRequest)
-        .filter(comment -> isGlobalComment(comment) || isAffectedFileComment(comment))
-        .forEach(comment -> flagAsOutdated(repository, pullRequest, comment));
+  /**
+   * Collects only the modifications of files with comments or review marks, because the hook cannot change anything
+   * for other files.
+   */
+  private Set<String> collectRelevantModifications(PostReceiveRepositoryHookEvent event, List<AffectedPullRequest> affectedPullRequests) {
+    Set<String> relevantFiles = new HashSet<>();
+    affectedPullRequests.forEach(pullRequest -> pullRequest.collectRelevantFiles(relevantFiles));
+    // check for relevant files first, so that we do not have to collect the modifications without need
+    if (relevantFiles.isEmpty()) {
+      return Collections.emptySet();
     }
-
-    private boolean isAffectedFileComment(Comment comment) {
-      return comment.getLocation() != null &&
-        !Strings.isNullOrEmpty(comment.getLocation().getFile()) &&
-        collector.collect().contains(comment.getLocation().getFile());
-    }
-
-    private boolean isGlobalComment(Comment comment) {
-      return comment.getLocation() == null || Strings.isNullOrEmpty(comment.getLocation().getFile());
-    }
-
-    private void flagAsOutdated(Repository repository, PullRequest pullRequest, Comment comment) {
-      commentService.markAsOutdated(repository.getNamespace(), repository.getName(), pullRequest.getId(), comment.getId());
+    Repository repository = event.getRepository();
+    try {
+      return modificationCollector.collect(repository, event.getContext(), relevantFiles::contains);
+    } catch (IOException ex) {
+      throw new InternalRepositoryException(
+        ContextEntry.ContextBuilder.entity(repository).build(),
+        "failed to collect modifications",
+        ex
+      );
     }
   }
 
-  private class RemoveReviewMarksForChangedFiles {
+  private class AffectedPullRequest {
 
     private final Repository repository;
-    private final CachingModificationCollector collector;
+    private final PullRequest pullRequest;
+    private final List<Comment> comments;
+    private final Set<ReviewMark> reviewMarks;
 
-    public RemoveReviewMarksForChangedFiles(Repository repository, CachingModificationCollector collector) {
+    AffectedPullRequest(Repository repository, PullRequest pullRequest) {
       this.repository = repository;
-      this.collector = collector;
+      this.pullRequest = pullRequest;
+      this.comments = commentCollector.collectNonOutdated(repository, pullRequest).toList();
+      this.reviewMarks = pullRequestService.getReviewMarks(repository, pullRequest.getId());
     }
 
-    void process(PullRequest pullRequest) {
-      List<ReviewMark> marksToBeRemoved =
-        pullRequest.getReviewMarks()
-          .stream()
-          .filter(reviewMark -> collector.collect().contains(reviewMark.getFile()))
-          .toList();
-      if (!marksToBeRemoved.isEmpty()) {
-        pullRequestService.removeReviewMarks(repository, pullRequest.getId(), marksToBeRemoved);
-      }
+    void collectRelevantFiles(Set<String> files) {
+      comments.stream()
+        .filter(comment -> !isGlobalComment(comment))
+        .map(comment -> comment.getLocation().getFile())
+        .forEach(files::add);
+      reviewMarks.stream()
+        .map(ReviewMark::getFile)
+        .forEach(files::add);
     }
-  }
-
-  private class CachingModificationCollector {
-
-    private final Repository repository;
-    private final Iterable<Changeset> changesets;
 
-    private Set<String> modifications;
-
-    private CachingModificationCollector(PostReceiveRepositoryHookEvent event) {
-      repository = event.getRepository();
-      changesets = event.getContext().getChangesetProvider().getChangesets();
+    void flagAffectedCommentsAsOutdated(Set<String> modifications) {
+      List<String> affectedCommentIds = comments.stream()
+        .filter(comment -> isGlobalComment(comment) || modifications.contains(comment.getLocation().getFile()))
+        .map(Comment::getId)
+        .toList();
+      commentService.markAsOutdated(repository, pullRequest.getId(), affectedCommentIds);
     }
 
-    Set<String> collect() {
-      if (modifications == null) {
-        try {
-          modifications = modificationCollector.collect(repository, changesets);
-        } catch (IOException ex) {
-          throw new InternalRepositoryException(
-            ContextEntry.ContextBuilder.entity(repository).build(),
-            "failed to collect modifications",
-            ex
-          );
-        }
+    void removeReviewMarksForChangedFiles(Set<String> modifications) {
+      if (!reviewMarks.isEmpty() && !modifications.isEmpty()) {
+        pullRequestService.removeReviewMarksForFiles(repository, pullRequest.getId(), modifications);
       }
-      return modifications;
+    }
+
+    private boolean isGlobalComment(Comment comment) {
+      return comment.getLocation() == null || Strings.isNullOrEmpty(comment.getLocation().getFile());
     }
   }
 }
@@ -17,20 +17,15 @@
 package com.cloudogu.scm.review;
 
 import com.cloudogu.scm.review.pullrequest.service.PullRequest;
-import com.cloudogu.scm.review.pullrequest.service.PullRequestService;
 import com.github.legman.Subscribe;
 import jakarta.inject.Inject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import sonia.scm.EagerSingleton;
 import sonia.scm.plugin.Extension;
-import sonia.scm.repository.Branches;
+import sonia.scm.repository.InternalRepositoryException;
 import sonia.scm.repository.PostReceiveRepositoryHookEvent;
-import sonia.scm.repository.api.Command;
-import sonia.scm.repository.api.RepositoryService;
-import sonia.scm.repository.api.RepositoryServiceFactory;
 
-import java.io.IOException;
 import java.util.List;
 
 import static java.lang.String.format;
@@ -41,51 +36,51 @@ public class PullRequestInformationHook {
 
   private static final Logger LOG = LoggerFactory.getLogger(PullRequestInformationHook.class);
 
-  private final PullRequestService service;
-  private final RepositoryServiceFactory serviceFactory;
   private final MessageSenderFactory messageSenderFactory;
+  private final PushContextFactory pushContextFactory;
 
   @Inject
-  public PullRequestInformationHook(PullRequestService service, RepositoryServiceFactory serviceFactory, MessageSenderFactory messageSenderFactory) {
-    this.service = service;
-    this.serviceFactory = serviceFactory;
+  public PullRequestInformationHook(MessageSenderFactory messageSenderFactory, PushContextFactory pushContextFactory) {
     this.messageSenderFactory = messageSenderFactory;
+    this.pushContextFactory = pushContextFactory;
   }
 
   @Subscribe(async = false)
   public void checkForInformation(PostReceiveRepositoryHookEvent event) {
     if (PermissionCheck.mayRead(event.getRepository())) {
-      try (RepositoryService repositoryService = serviceFactory.create(event.getRepository())) {
-        if (!repositoryService.isSupported(Command.MERGE) || !event.getContext().isFeatureSupported(MESSAGE_PROVIDER)) {
-          LOG.trace("ignoring post receive event for repository {}", event.getRepository().getNamespaceAndName());
-          return;
-        }
-        readEffectedBranches(event).forEach(branch -> processBranch(event, repositoryService, branch));
+      if (!event.getContext().isFeatureSupported(MESSAGE_PROVIDER)) {
+        LOG.trace("ignoring post receive event for repository {}", event.getRepository().getNamespaceAndName());
+        return;
       }
+      PushContext pushContext = pushContextFactory.get(event);
+      if (!pushContext.supportsPullRequests()) {
+        LOG.trace("ignoring post receive event for repository {}", event.getRepository().getNamespaceAndName());
+        return;
+      }
+      List<String> branches = readEffectedBranches(event);
+      List<PullRequest> pullRequests = pushContext.getInProgressBySource(branches);
+      branches.forEach(branch -> processBranch(event, pushContext, pullRequests, branch));
     }
   }
 
-  private void processBranch(PostReceiveRepositoryHookEvent event, RepositoryService repositoryService, String branch) {
-    List<PullRequest> pullRequests = service.getAll(event.getRepository().getNamespace(), event.getRepository().getName());
+  private void processBranch(PostReceiveRepositoryHookEvent event, PushContext pushContext, List<PullRequest> pullRequests, String branch) {
     boolean prFound = new Worker(event).process(pullRequests, branch);
     if (
       !prFound
         && PermissionCheck.mayCreate(event.getRepository())
-        && checkIfMultipleBranchesExist(repositoryService)
+        && checkIfMultipleBranchesExist(pushContext)
     ) {
       sendCreateMessages(event, branch);
     }
   }
 
-  private boolean checkIfMultipleBranchesExist(RepositoryService repositoryService) {
-	  try {
-		  Branches branches = repositoryService.getBranchesCommand().getBranches();
-		  int branchCount = branches.getBranches().size();
-		  return branchCount > 1;
-	  } catch (IOException ex) {
-		  LOG.warn("could not read branches for repository {}, assuming only one branch exists", repositoryService.getRepository());
-		  return false;
-	  }
+  private boolean checkIfMultipleBranchesExist(PushContext pushContext) {
+    try {
+      return pushContext.getBranches().size() > 1;
+    } catch (InternalRepositoryException ex) {
+      LOG.warn("could not read branches for repository {}, assuming only one branch exists", pushContext.getRepository());
+      return false;
+    }
   }
 
   private void sendCreateMessages(PostReceiveRepositoryHookEvent event, String branch) {
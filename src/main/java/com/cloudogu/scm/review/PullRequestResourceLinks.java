@@ -24,10 +24,13 @@ import com.cloudogu.scm.review.pullrequest.dto.BranchRevisionResolver;
 import com.cloudogu.scm.review.workflow.EngineResultResource;
 import com.cloudogu.scm.review.workflow.GlobalEngineConfigResource;
 import com.cloudogu.scm.review.workflow.RepositoryEngineConfigResource;
+import com.google.common.base.Strings;
 import sonia.scm.api.v2.resources.LinkBuilder;
 import sonia.scm.api.v2.resources.ScmPathInfo;
 import sonia.scm.repository.api.MergeStrategy;
 
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 
 /**
  * This class provide resource Links
@@ -235,6 +238,16 @@ public class PullRequestResourceLinks {
         .href();
     }
 
+    public String page(String namespace, String name, String pullRequestId, int limit, String after, String since) {
+      StringBuilder link = new StringBuilder(all(namespace, name, pullRequestId))
+        .append("?limit=").append(limit)
+        .append("&after=").append(after);
+      if (!Strings.isNullOrEmpty(since)) {
+        link.append("&since=").append(URLEncoder.encode(since, StandardCharsets.UTF_8));
+      }
+      return link.toString();
+    }
+
     public String create(String namespace, String name, String pullRequestId, BranchRevisionResolver.RevisionResult revisionResult) {
       String link = linkBuilder
         .method("getPullRequestResource").parameters()
@@ -254,6 +267,16 @@ public class PullRequestResourceLinks {
       return
         LinkRevisionAppender.append(link, revisionResult);
     }
+
+    public String createBatch(String namespace, String name, String pullRequestId, BranchRevisionResolver.RevisionResult revisionResult) {
+      String link = linkBuilder
+        .method("getPullRequestResource").parameters()
+        .method("comments").parameters()
+        .method("createAll").parameters(namespace, name, pullRequestId)
+        .href();
+      return
+        LinkRevisionAppender.append(link, revisionResult);
+    }
   }
 
   public MergeLinks mergeLinks() {
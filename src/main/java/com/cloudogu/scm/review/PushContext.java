@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.review;
+
+import com.cloudogu.scm.review.config.service.ConfigService;
+import com.cloudogu.scm.review.config.service.ConfigService.BranchProtectionMatcher;
+import com.cloudogu.scm.review.pullrequest.service.PullRequest;
+import com.cloudogu.scm.review.pullrequest.service.PullRequestService;
+import com.google.common.base.Suppliers;
+import sonia.scm.repository.Branch;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.api.HookContext;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Facts about a single push, that are needed by more than one hook. Every fact, that cannot be changed by the hooks
+ * themselves, is computed on first use and then shared by all hooks handling the same {@link HookContext}, so that a
+ * push with many branches does not load the branches of the repository again and again. Contexts are created by the
+ * {@link PushContextFactory}.
+ * <p>
+ * The pull requests in progress are not shared, because hooks like the {@link StatusCheckHook} merge or reject them.
+ * They are read anew on every call, so every hook should request the pull requests of all its branches at once.
+ *
+ * @since 3.17.0
+ */
+public class PushContext {
+
+  private final Repository repository;
+  private final PullRequestService pullRequestService;
+
+  private final Supplier<Boolean> supportsPullRequests;
+  private final Supplier<List<Branch>> branches;
+  private final Supplier<BranchProtectionMatcher> branchProtectionMatcher;
+
+  PushContext(Repository repository, PullRequestService pullRequestService, BranchResolver branchResolver, ConfigService configService) {
+    this.repository = repository;
+    this.pullRequestService = pullRequestService;
+    this.supportsPullRequests = Suppliers.memoize(() -> pullRequestService.supportsPullRequests(repository));
+    this.branches = Suppliers.memoize(() -> List.copyOf(branchResolver.getAll(repository)));
+    this.branchProtectionMatcher = Suppliers.memoize(() -> configService.getBranchProtectionMatcher(repository));
+  }
+
+  public Repository getRepository() {
+    return repository;
+  }
+
+  public boolean supportsPullRequests() {
+    return supportsPullRequests.get();
+  }
+
+  /**
+   * Returns all branches of the repository. This must not be called for repositories without support for branches.
+   */
+  public List<Branch> getBranches() {
+    return branches.get();
+  }
+
+  /**
+   * Reads the pull requests in progress with one of the given branches as source branch.
+   */
+  public List<PullRequest> getInProgressBySource(Collection<String> sourceBranches) {
+    return pullRequestService.getInProgressBySource(repository, sourceBranches);
+  }
+
+  /**
+   * Reads the pull requests in progress with one of the given branches as source or as target branch.
+   */
+  public List<PullRequest> getInProgressByBranches(Collection<String> branches) {
+    return pullRequestService.getInProgressByBranches(repository, branches);
+  }
+
+  /**
+   * Returns the branch protection for the user, who pushed the changes.
+   */
+  public BranchProtectionMatcher getBranchProtectionMatcher() {
+    return branchProtectionMatcher.get();
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.review;
+
+import com.cloudogu.scm.review.config.service.ConfigService;
+import com.cloudogu.scm.review.pullrequest.service.PullRequestService;
+import com.google.common.cache.CacheBuilder;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import sonia.scm.repository.RepositoryHookEvent;
+import sonia.scm.repository.api.HookContext;
+
+import java.util.Map;
+
+/**
+ * Creates the {@link PushContext} for hook events. All events with the same {@link HookContext} get the same
+ * context. The contexts are only weakly referenced, so they are garbage collected together with the hook context
+ * when all hooks of the push have been processed.
+ *
+ * @since 3.17.0
+ */
+@Singleton
+public class PushContextFactory {
+
+  private final Map<HookContext, PushContext> contexts = CacheBuilder.newBuilder()
+    .weakKeys()
+    .<HookContext, PushContext>build()
+    .asMap();
+
+  private final PullRequestService pullRequestService;
+  private final BranchResolver branchResolver;
+  private final ConfigService configService;
+
+  @Inject
+  public PushContextFactory(PullRequestService pullRequestService, BranchResolver branchResolver, ConfigService configService) {
+    this.pullRequestService = pullRequestService;
+    this.branchResolver = branchResolver;
+    this.configService = configService;
+  }
+
+  public PushContext get(RepositoryHookEvent event) {
+    return contexts.computeIfAbsent(
+      event.getContext(),
+      hookContext -> new PushContext(event.getRepository(), pullRequestService, branchResolver, configService)
+    );
+  }
+}
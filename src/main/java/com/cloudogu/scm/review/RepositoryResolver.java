@@ -17,6 +17,7 @@
 package com.cloudogu.scm.review;
 
 import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
 import sonia.scm.ContextEntry;
 import sonia.scm.repository.NamespaceAndName;
 import sonia.scm.repository.Repository;
@@ -25,13 +26,19 @@ import sonia.scm.repository.api.Command;
 import sonia.scm.repository.api.RepositoryService;
 import sonia.scm.repository.api.RepositoryServiceFactory;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import static sonia.scm.NotFoundException.notFound;
 
+@Singleton
 public class RepositoryResolver {
 
   private final RepositoryManager manager;
   private final RepositoryServiceFactory serviceFactory;
 
+  private final Map<String, Boolean> mergeSupportByType = new ConcurrentHashMap<>();
+
   @Inject
   public RepositoryResolver(RepositoryManager manager, RepositoryServiceFactory serviceFactory) {
     this.manager = manager;
@@ -44,13 +51,23 @@ public class RepositoryResolver {
       throw notFound(ContextEntry.ContextBuilder.entity(namespaceAndName));
     }
 
-    if (!repositorySupportsMerge(repository)) {
+    if (!supportsPullRequests(repository)) {
       throw new PullRequestNotSupportedException(repository);
     }
 
     return repository;
   }
 
+  /**
+   * Checks whether pull requests can be merged for the given repository. This depends on the type of the repository
+   * only, so a repository service is created only once for every type.
+   *
+   * @since 3.17.0
+   */
+  public boolean supportsPullRequests(Repository repository) {
+    return mergeSupportByType.computeIfAbsent(repository.getType(), type -> repositorySupportsMerge(repository));
+  }
+
   private boolean repositorySupportsMerge(Repository repository) {
     try (RepositoryService service = serviceFactory.create(repository)) {
       return service.isSupported(Command.MERGE);
@@ -37,6 +37,7 @@ import sonia.scm.repository.api.HookContext;
 import sonia.scm.repository.api.HookFeature;
 import sonia.scm.repository.spi.HookMergeDetectionProvider;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import static java.lang.String.format;
@@ -52,34 +53,43 @@ public class StatusCheckHook {
   private final MessageSenderFactory messageSenderFactory;
   private final MergeService mergeService;
   private final InternalMergeSwitch internalMergeSwitch;
+  private final PushContextFactory pushContextFactory;
 
   @Inject
-  public StatusCheckHook(DefaultPullRequestService pullRequestService, MessageSenderFactory messageSenderFactory, MergeService mergeService, InternalMergeSwitch internalMergeSwitch) {
+  public StatusCheckHook(DefaultPullRequestService pullRequestService, MessageSenderFactory messageSenderFactory, MergeService mergeService, InternalMergeSwitch internalMergeSwitch, PushContextFactory pushContextFactory) {
     this.pullRequestService = pullRequestService;
     this.messageSenderFactory = messageSenderFactory;
     this.mergeService = mergeService;
     this.internalMergeSwitch = internalMergeSwitch;
+    this.pushContextFactory = pushContextFactory;
   }
 
   @Subscribe(async = false)
   public void checkStatus(PostReceiveRepositoryHookEvent event) {
-    Repository repository = event.getRepository();
-    if (ignoreHook(event.getContext(), repository)) {
+    if (internalMergeSwitch.internalMergeRunning()) {
+      return;
+    }
+    PushContext pushContext = pushContextFactory.get(event);
+    if (ignoreHook(event.getContext(), pushContext)) {
       return;
     }
-    List<PullRequest> pullRequests = pullRequestService.getAll(repository.getNamespace(), repository.getName());
+    List<PullRequest> pullRequests = pushContext.getInProgressByBranches(collectAffectedBranches(event.getContext()));
     new Worker(event).process(pullRequests);
   }
 
-  private boolean ignoreHook(HookContext context, Repository repository) {
-    if (internalMergeSwitch.internalMergeRunning()) {
-      return true;
-    }
-    if (!pullRequestService.supportsPullRequests(repository)) {
+  private List<String> collectAffectedBranches(HookContext context) {
+    HookBranchProvider branchProvider = context.getBranchProvider();
+    List<String> affectedBranches = new ArrayList<>(branchProvider.getCreatedOrModified());
+    affectedBranches.addAll(branchProvider.getDeletedOrClosed());
+    return affectedBranches;
+  }
+
+  private boolean ignoreHook(HookContext context, PushContext pushContext) {
+    if (!pushContext.supportsPullRequests()) {
       return true;
     }
     if (!context.isFeatureSupported(HookFeature.BRANCH_PROVIDER)) {
-      LOG.debug("hook event for repository {} does not support branches - cannot check for merges", repository);
+      LOG.debug("hook event for repository {} does not support branches - cannot check for merges", pushContext.getRepository());
       return true;
     }
     return false;
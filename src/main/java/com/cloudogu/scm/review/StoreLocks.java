@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.review;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.Striped;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Read/write locks for the stores of this plugin. Locks are taken per store and key (for example a single pull
+ * request), so that unrelated repositories and pull requests do not block each other. The number of stripes can be
+ * configured with the system property {@value #STRIPES_PROPERTY}. The time spent waiting for a lock is recorded as
+ * timer {@value #WAIT_TIMER} with the tags {@code store} and {@code mode}.
+ */
+@Singleton
+public class StoreLocks {
+
+  static final String STRIPES_PROPERTY = "scm.review.lockStripes";
+  static final int DEFAULT_STRIPES = 1024;
+  static final String WAIT_TIMER = "scm.review.lock.wait";
+
+  private final Striped<ReadWriteLock> locks;
+  private final MeterRegistry meterRegistry;
+  private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+  @Inject
+  public StoreLocks(MeterRegistry meterRegistry) {
+    this(meterRegistry, Integer.getInteger(STRIPES_PROPERTY, DEFAULT_STRIPES));
+  }
+
+  @VisibleForTesting
+  public StoreLocks(MeterRegistry meterRegistry, int stripes) {
+    this.meterRegistry = meterRegistry;
+    this.locks = Striped.lazyWeakReadWriteLock(stripes);
+  }
+
+  /**
+   * Runs the worker with the shared lock for the given key. Any number of readers may hold this lock at the same
+   * time, as long as no writer holds the exclusive lock for the same key.
+   */
+  public <T> T withReadLock(String store, String key, Supplier<T> worker) {
+    return withLock(store, "read", locks.get(lockKey(store, key)).readLock(), worker);
+  }
+
+  /**
+   * Runs the worker with the exclusive lock for the given key.
+   */
+  public <T> T withWriteLock(String store, String key, Supplier<T> worker) {
+    return withLock(store, "write", locks.get(lockKey(store, key)).writeLock(), worker);
+  }
+
+  private <T> T withLock(String store, String mode, Lock lock, Supplier<T> worker) {
+    long start = System.nanoTime();
+    lock.lock();
+    try {
+      timer(store, mode).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+      return worker.get();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private Timer timer(String store, String mode) {
+    return timers.computeIfAbsent(
+      store + "/" + mode,
+      k -> Timer.builder(WAIT_TIMER)
+        .description("Time spent waiting for store locks of the review plugin")
+        .tag("store", store)
+        .tag("mode", mode)
+        .register(meterRegistry)
+    );
+  }
+
+  private static String lockKey(String store, String key) {
+    return store + ":" + key;
+  }
+}
@@ -23,6 +23,7 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.Map;
 
@@ -47,6 +48,8 @@ public class CommentDto extends BasicCommentDto {
 
   private InlineContextDto context;
 
+  private Instant lastModified;
+
   @Getter
   @Setter
   static class InlineContextDto {
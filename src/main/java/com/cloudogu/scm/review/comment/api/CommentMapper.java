@@ -67,6 +67,7 @@ public abstract class CommentMapper extends HalAppenderMapper {
   abstract CommentDto map(Comment pullRequestComment, @Context Repository repository, @Context String pullRequestId, @Context Collection<CommentTransition> possibleTransitions, @Context BranchRevisionResolver.RevisionResult revisions);
 
   @Mapping(target = "mentionUserIds", ignore = true)
+  @Mapping(target = "lastModified", ignore = true)
   abstract Comment map(CommentDto commentDto);
 
   abstract CommentDto.ContextLineDto map(ContextLine line);
@@ -20,11 +20,16 @@ import com.cloudogu.scm.review.PermissionCheck;
 import com.cloudogu.scm.review.PullRequestResourceLinks;
 import com.cloudogu.scm.review.RepositoryResolver;
 import com.cloudogu.scm.review.comment.service.Comment;
+import com.cloudogu.scm.review.comment.service.CommentCursor;
+import com.cloudogu.scm.review.comment.service.CommentPage;
 import com.cloudogu.scm.review.comment.service.CommentService;
+import com.cloudogu.scm.review.comment.service.CommentTransition;
+import com.cloudogu.scm.review.comment.service.InvalidCommentQueryException;
 import com.cloudogu.scm.review.comment.service.PullRequestImageService;
 import com.cloudogu.scm.review.pullrequest.dto.BranchRevisionResolver;
 import com.cloudogu.scm.review.pullrequest.service.PullRequest;
 import com.cloudogu.scm.review.pullrequest.service.PullRequestService;
+import com.google.common.base.Strings;
 import de.otto.edison.hal.Embedded;
 import de.otto.edison.hal.HalRepresentation;
 import de.otto.edison.hal.Links;
@@ -37,6 +42,7 @@ import jakarta.inject.Provider;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotNull;
 import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.DefaultValue;
 import jakarta.ws.rs.GET;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
@@ -57,10 +63,15 @@ import sonia.scm.web.api.DtoValidator;
 
 import java.io.IOException;
 import java.net.URI;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import static com.cloudogu.scm.review.comment.api.RevisionChecker.checkRevision;
 import static de.otto.edison.hal.Link.link;
+import static java.util.Collections.emptyList;
 
 public class CommentRootResource {
 
@@ -133,6 +144,43 @@ public class CommentRootResource {
     return service.add(namespace, name, pullRequestId, comment);
   }
 
+  @POST
+  @Path("batch")
+  @Consumes(MediaType.APPLICATION_JSON)
+  @Operation(
+    summary = "Create multiple pull request comments",
+    description = "Creates multiple pull request comments at once, e.g. when submitting a review. Either all or none of the comments are created.",
+    tags = "Pull Request Comment",
+    operationId = "review_create_comments"
+  )
+  @ApiResponse(responseCode = "204", description = "create success")
+  @ApiResponse(responseCode = "400", description = "Invalid body, e.g. illegal change of namespace or name")
+  @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(responseCode = "403", description = "not authorized, the current user does not have the \"commentPullRequest\" privilege")
+  @ApiResponse(
+    responseCode = "500",
+    description = "internal server error",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  public Response createAll(@PathParam("namespace") String namespace,
+                            @PathParam("name") String name,
+                            @PathParam("pullRequestId") String pullRequestId,
+                            @QueryParam("sourceRevision") String expectedSourceRevision,
+                            @QueryParam("targetRevision") String expectedTargetRevision,
+                            @Valid @NotNull List<@Valid CommentDto> commentDtos) {
+    if (commentDtos.stream().anyMatch(CommentDto::isSystemComment)) {
+      throw new AuthorizationException("Is is Forbidden to create a system comment.");
+    }
+
+    checkRevision(branchRevisionResolver, namespace, name, pullRequestId, expectedSourceRevision, expectedTargetRevision);
+    List<Comment> comments = commentDtos.stream().map(commentDto -> mapper.map(commentDto)).toList();
+    service.addAll(namespace, name, pullRequestId, comments);
+    return Response.noContent().build();
+  }
+
   @GET
   @Path("/images/{fileHash}")
   @Produces(MediaType.APPLICATION_OCTET_STREAM)
@@ -200,7 +248,9 @@ public class CommentRootResource {
   @Produces(MediaType.APPLICATION_JSON)
   @Operation(
     summary = "Get all pull request comments",
-    description = "Returns all pull request comments.",
+    description = "Returns all pull request comments. With 'limit' the comments are paged; the next page can be " +
+      "requested with the cursor of the 'next' link as 'after'. With 'since' (an ISO-8601 timestamp) only comments " +
+      "created or modified after this time are returned.",
     tags = "Pull Request Comment",
     operationId = "review_get_comments"
   )
@@ -225,23 +275,54 @@ public class CommentRootResource {
   public HalRepresentation getAll(@Context UriInfo uriInfo,
                                   @PathParam("namespace") String namespace,
                                   @PathParam("name") String name,
-                                  @PathParam("pullRequestId") String pullRequestId) {
+                                  @PathParam("pullRequestId") String pullRequestId,
+                                  @QueryParam("limit") @DefaultValue("0") int limit,
+                                  @QueryParam("after") String after,
+                                  @QueryParam("since") String since) {
     PullRequestResourceLinks resourceLinks = new PullRequestResourceLinks(uriInfo::getBaseUri);
     Repository repository = repositoryResolver.resolve(new NamespaceAndName(namespace, name));
     PullRequest pullRequest = pullRequestService.get(namespace, name, pullRequestId);
     BranchRevisionResolver.RevisionResult revisions = branchRevisionResolver.getRevisions(new NamespaceAndName(namespace, name), pullRequest);
-    List<Comment> list = service.getAll(namespace, name, pullRequestId);
+    List<Comment> list;
+    CommentCursor next = null;
+    if (limit < 1 && Strings.isNullOrEmpty(after) && Strings.isNullOrEmpty(since)) {
+      list = service.getAll(namespace, name, pullRequestId);
+    } else {
+      CommentPage page = service.getPage(namespace, name, pullRequestId, parseSince(since), parseCursor(after), limit);
+      list = page.comments();
+      next = page.next();
+    }
+    Map<String, Collection<CommentTransition>> possibleTransitions = service.possibleTransitions(namespace, name, list);
     List<CommentDto> dtoList = list
       .stream()
-      .map(comment -> mapper.map(comment, repository, pullRequestId, service.possibleTransitions(namespace, name, pullRequestId, comment.getId()), revisions))
+      .map(comment -> mapper.map(comment, repository, pullRequestId, possibleTransitions.getOrDefault(comment.getId(), emptyList()), revisions))
       .toList();
 
     Links.Builder linkBuilder = Links.linkingTo().self(resourceLinks.pullRequestComments().all(namespace, name, pullRequestId));
+    if (next != null) {
+      linkBuilder.single(link("next", resourceLinks.pullRequestComments().page(namespace, name, pullRequestId, limit, next.format(), since)));
+    }
     if (PermissionCheck.mayComment(repository)) {
       linkBuilder.single(link("create", resourceLinks.pullRequestComments().create(namespace, name, pullRequestId, revisions)));
       linkBuilder.single(link("createWithImages", resourceLinks.pullRequestComments().createWithImages(namespace, name, pullRequestId, revisions)));
+      linkBuilder.single(link("createBatch", resourceLinks.pullRequestComments().createBatch(namespace, name, pullRequestId, revisions)));
     }
 
     return new HalRepresentation(linkBuilder.build(), Embedded.embedded("pullRequestComments", dtoList));
   }
+
+  private static CommentCursor parseCursor(String after) {
+    return Strings.isNullOrEmpty(after) ? null : CommentCursor.parse(after);
+  }
+
+  private static Instant parseSince(String since) {
+    if (Strings.isNullOrEmpty(since)) {
+      return null;
+    }
+    try {
+      return Instant.parse(since);
+    } catch (DateTimeParseException e) {
+      throw new InvalidCommentQueryException("since", since);
+    }
+  }
 }
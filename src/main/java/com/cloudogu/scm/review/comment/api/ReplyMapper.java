@@ -56,6 +56,7 @@ public abstract class ReplyMapper extends HalAppenderMapper {
   abstract ReplyDto map(Reply reply, @Context Repository repository, @Context String pullRequestId, @Context Comment comment, @Context BranchRevisionResolver.RevisionResult revisions);
 
   @Mapping(target = "mentionUserIds", ignore = true)
+  @Mapping(target = "parentId", ignore = true)
   abstract Reply map(ReplyDto replyDto);
 
   DisplayedUserDto mapAuthor(String authorId) {
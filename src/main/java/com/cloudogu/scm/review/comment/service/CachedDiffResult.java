@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.review.comment.service;
+
+import sonia.scm.repository.api.DiffFile;
+import sonia.scm.repository.api.DiffLine;
+import sonia.scm.repository.api.DiffResult;
+import sonia.scm.repository.api.Hunk;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.OptionalInt;
+
+/**
+ * Immutable in-memory copy of a {@link DiffResult}, that can be kept in the {@link DiffResultCache} after the
+ * repository service has been closed. The copy contains only the parts used to verify locations and to compute the
+ * context of comments.
+ */
+final class CachedDiffResult implements DiffResult {
+
+  private static final int OBJECT_OVERHEAD = 64;
+
+  private final String oldRevision;
+  private final String newRevision;
+  private final List<DiffFile> files;
+  private final int weight;
+
+  private CachedDiffResult(String oldRevision, String newRevision, List<DiffFile> files, long weight) {
+    this.oldRevision = oldRevision;
+    this.newRevision = newRevision;
+    this.files = files;
+    this.weight = (int) Math.min(Integer.MAX_VALUE, weight);
+  }
+
+  static CachedDiffResult copy(DiffResult diffResult) {
+    List<DiffFile> files = new ArrayList<>();
+    long weight = OBJECT_OVERHEAD;
+    for (DiffFile file : diffResult) {
+      CachedDiffFile copy = CachedDiffFile.copy(file);
+      files.add(copy);
+      weight += copy.weight();
+    }
+    return new CachedDiffResult(diffResult.getOldRevision(), diffResult.getNewRevision(), List.copyOf(files), weight);
+  }
+
+  /**
+   * Estimated size of this diff in memory in bytes.
+   */
+  int getWeight() {
+    return weight;
+  }
+
+  @Override
+  public String getOldRevision() {
+    return oldRevision;
+  }
+
+  @Override
+  public String getNewRevision() {
+    return newRevision;
+  }
+
+  @Override
+  public Iterator<DiffFile> iterator() {
+    return files.iterator();
+  }
+
+  private record CachedDiffFile(String oldRevision,
+                                String newRevision,
+                                String oldPath,
+                                String newPath,
+                                ChangeType changeType,
+                                List<Hunk> hunks,
+                                long weight) implements DiffFile {
+
+    static CachedDiffFile copy(DiffFile file) {
+      List<Hunk> hunks = new ArrayList<>();
+      long weight = OBJECT_OVERHEAD + length(file.getOldPath()) + length(file.getNewPath());
+      for (Hunk hunk : file) {
+        CachedHunk copy = CachedHunk.copy(hunk);
+        hunks.add(copy);
+        weight += copy.weight();
+      }
+      return new CachedDiffFile(
+        file.getOldRevision(),
+        file.getNewRevision(),
+        file.getOldPath(),
+        file.getNewPath(),
+        file.getChangeType(),
+        List.copyOf(hunks),
+        weight
+      );
+    }
+
+    @Override
+    public String getOldRevision() {
+      return oldRevision;
+    }
+
+    @Override
+    public String getNewRevision() {
+      return newRevision;
+    }
+
+    @Override
+    public String getOldPath() {
+      return oldPath;
+    }
+
+    @Override
+    public String getNewPath() {
+      return newPath;
+    }
+
+    @Override
+    public ChangeType getChangeType() {
+      return changeType;
+    }
+
+    @Override
+    public Iterator<Hunk> iterator() {
+      return hunks.iterator();
+    }
+  }
+
+  private record CachedHunk(String rawHeader,
+                            int oldStart,
+                            int oldLineCount,
+                            int newStart,
+                            int newLineCount,
+                            List<DiffLine> lines,
+                            long weight) implements Hunk {
+
+    static CachedHunk copy(Hunk hunk) {
+      List<DiffLine> lines = new ArrayList<>();
+      long weight = OBJECT_OVERHEAD + length(hunk.getRawHeader());
+      for (DiffLine line : hunk) {
+        lines.add(new CachedDiffLine(line.getOldLineNumber(), line.getNewLineNumber(), line.getContent()));
+        weight += OBJECT_OVERHEAD + length(line.getContent());
+      }
+      return new CachedHunk(
+        hunk.getRawHeader(),
+        hunk.getOldStart(),
+        hunk.getOldLineCount(),
+        hunk.getNewStart(),
+        hunk.getNewLineCount(),
+        List.copyOf(lines),
+        weight
+      );
+    }
+
+    @Override
+    public String getRawHeader() {
+      return rawHeader;
+    }
+
+    @Override
+    public int getOldStart() {
+      return oldStart;
+    }
+
+    @Override
+    public int getOldLineCount() {
+      return oldLineCount;
+    }
+
+    @Override
+    public int getNewStart() {
+      return newStart;
+    }
+
+    @Override
+    public int getNewLineCount() {
+      return newLineCount;
+    }
+
+    @Override
+    public Iterator<DiffLine> iterator() {
+      return lines.iterator();
+    }
+  }
+
+  private record CachedDiffLine(OptionalInt oldLineNumber, OptionalInt newLineNumber, String content) implements DiffLine {
+
+    @Override
+    public OptionalInt getOldLineNumber() {
+      return oldLineNumber;
+    }
+
+    @Override
+    public OptionalInt getNewLineNumber() {
+      return newLineNumber;
+    }
+
+    @Override
+    public String getContent() {
+      return content;
+    }
+  }
+
+  private static long length(String value) {
+    return value == null ? 0 : 2L * value.length();
+  }
+}
@@ -77,8 +77,20 @@ public class Comment extends BasicComment {
   @XmlJavaTypeAdapter(XmlMapStringAdapter.class)
   private Map<String, String> systemCommentParameters = Collections.emptyMap();
 
+  /**
+   * The replies are stored on their own (see {@link Reply#getParentId()}) and are only set, when the comment is read
+   * by the {@link CommentStore}. Replies stored here by older versions are moved by an update step.
+   */
   private List<Reply> replies = new ArrayList<>();
 
+  /**
+   * Time of the last change of this comment or one of its replies. This is <code>null</code> for comments, that have
+   * not been changed since this field has been introduced.
+   *
+   * @since 3.17.0
+   */
+  private Instant lastModified;
+
   @Override
   public Comment clone() {
     return (Comment) super.clone();
@@ -140,6 +152,14 @@ public class Comment extends BasicComment {
     this.replies.remove(reply);
   }
 
+  public Instant getLastModified() {
+    return lastModified;
+  }
+
+  public void setLastModified(Instant lastModified) {
+    this.lastModified = lastModified;
+  }
+
   public InlineContext getContext() {
     return this.context;
   }
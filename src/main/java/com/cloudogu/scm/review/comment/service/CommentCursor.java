@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.review.comment.service;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Position in the comments of a pull request ordered by their creation date, after which the next page of comments
+ * starts. Several comments can have the same date (e.g. when they are created in a batch), so the cursor holds the
+ * date of the last read comment and the number of read comments with exactly this date.
+ *
+ * @since 3.17.0
+ */
+public record CommentCursor(Instant date, int skip) {
+
+  private static final Pattern PATTERN = Pattern.compile("(\\d{1,18})\\.(\\d{9})_(\\d{1,9})");
+
+  public static CommentCursor parse(String value) {
+    Matcher matcher = PATTERN.matcher(value);
+    if (!matcher.matches()) {
+      throw new InvalidCommentQueryException("after", value);
+    }
+    return new CommentCursor(
+      Instant.ofEpochSecond(Long.parseLong(matcher.group(1)), Integer.parseInt(matcher.group(2))),
+      Integer.parseInt(matcher.group(3))
+    );
+  }
+
+  /**
+   * Creates the cursor behind the given page, that has been read starting at the given cursor.
+   *
+   * @param previous the cursor the page has been read with or <code>null</code>, if this is the first page
+   * @param page     the read comments; must not be empty
+   */
+  static CommentCursor behind(CommentCursor previous, List<Comment> page) {
+    Instant lastDate = page.get(page.size() - 1).getDate();
+    int skip = (int) page.stream().filter(comment -> lastDate.equals(comment.getDate())).count();
+    if (previous != null && lastDate.equals(previous.date())) {
+      skip += previous.skip();
+    }
+    return new CommentCursor(lastDate, skip);
+  }
+
+  public String format() {
+    return String.format("%d.%09d_%d", date.getEpochSecond(), date.getNano(), skip);
+  }
+}
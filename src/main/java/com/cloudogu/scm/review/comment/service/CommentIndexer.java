@@ -16,6 +16,8 @@
 
 package com.cloudogu.scm.review.comment.service;
 
+import com.cloudogu.scm.review.IndexUpdateCoalescer;
+import com.cloudogu.scm.review.IndexWatermarkStore;
 import com.cloudogu.scm.review.PermissionCheck;
 import com.cloudogu.scm.review.pullrequest.service.PullRequest;
 import com.cloudogu.scm.review.pullrequest.service.PullRequestService;
@@ -23,7 +25,10 @@ import com.github.legman.Subscribe;
 import jakarta.inject.Inject;
 import jakarta.servlet.ServletContextEvent;
 import jakarta.servlet.ServletContextListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import sonia.scm.HandlerEventType;
+import sonia.scm.NotFoundException;
 import sonia.scm.plugin.Extension;
 import sonia.scm.repository.Repository;
 import sonia.scm.repository.RepositoryImportEvent;
@@ -38,17 +43,25 @@ import sonia.scm.search.ReindexRepositoryEvent;
 import sonia.scm.search.SearchEngine;
 import sonia.scm.search.SerializableIndexTask;
 
+import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
 
 @Extension
 @SuppressWarnings("UnstableApiUsage")
 public class CommentIndexer implements ServletContextListener {
 
+  private static final Logger LOG = LoggerFactory.getLogger(CommentIndexer.class);
+
   private final SearchEngine searchEngine;
+  private final IndexUpdateCoalescer coalescer;
+  private final IndexWatermarkStore watermarkStore;
 
   @Inject
-  public CommentIndexer(SearchEngine searchEngine) {
+  public CommentIndexer(SearchEngine searchEngine, IndexUpdateCoalescer coalescer, IndexWatermarkStore watermarkStore) {
     this.searchEngine = searchEngine;
+    this.coalescer = coalescer;
+    this.watermarkStore = watermarkStore;
   }
 
   @Subscribe
@@ -59,13 +72,19 @@ public class CommentIndexer implements ServletContextListener {
     if (event.getEventType() == HandlerEventType.CREATE || event.getEventType() == HandlerEventType.MODIFY) {
       updateIndexedComment(repository, pullRequest, IndexedComment.transform(pullRequest.getId(), comment));
     } else if (event.getEventType() == HandlerEventType.DELETE) {
-      Comment deletedComment = event.getOldItem();
-      searchEngine
-        .forType(IndexedComment.class)
-        .update(index -> index.delete().byId(createCommentId(deletedComment.getId(), pullRequest.getId(), repository.getId())));
+      deleteIndexedComment(repository, pullRequest, event.getOldItem().getId());
     }
   }
 
+  @Subscribe
+  public void handleEvent(CommentsAddedEvent event) {
+    PullRequest pullRequest = event.getPullRequest();
+    Repository repository = event.getRepository();
+    event.getComments().forEach(
+      comment -> updateIndexedComment(repository, pullRequest, IndexedComment.transform(pullRequest.getId(), comment))
+    );
+  }
+
   @Subscribe
   public void handleEvent(ReplyEvent event) {
     Reply comment = event.getItem();
@@ -74,10 +93,7 @@ public class CommentIndexer implements ServletContextListener {
     if (event.getEventType() == HandlerEventType.CREATE || event.getEventType() == HandlerEventType.MODIFY) {
       updateIndexedComment(repository, pullRequest, IndexedComment.transform(pullRequest.getId(), comment));
     } else if (event.getEventType() == HandlerEventType.DELETE) {
-      Reply deletedReply = event.getOldItem();
-      searchEngine
-        .forType(IndexedComment.class)
-        .update(index -> index.delete().byId(createCommentId(deletedReply.getId(), pullRequest.getId(), repository.getId())));
+      deleteIndexedComment(repository, pullRequest, event.getOldItem().getId());
     }
   }
 
@@ -94,7 +110,26 @@ public class CommentIndexer implements ServletContextListener {
   }
 
   private void updateIndexedComment(Repository repository, PullRequest pullRequest, IndexedComment comment) {
-    searchEngine.forType(IndexedComment.class).update(index -> storeComment(index, repository, pullRequest, comment));
+    coalescer.update(
+      IndexedComment.class,
+      repository,
+      pullRequest.getId(),
+      createCommentId(comment.getId(), pullRequest.getId(), repository.getId()),
+      index -> storeComment(index, repository, pullRequest, comment),
+      new ReindexPullRequestTask(repository, pullRequest.getId())
+    );
+  }
+
+  private void deleteIndexedComment(Repository repository, PullRequest pullRequest, String commentId) {
+    Id<IndexedComment> id = createCommentId(commentId, pullRequest.getId(), repository.getId());
+    coalescer.update(
+      IndexedComment.class,
+      repository,
+      pullRequest.getId(),
+      id,
+      index -> index.delete().byId(id),
+      new ReindexPullRequestTask(repository, pullRequest.getId())
+    );
   }
 
   private static Id<IndexedComment> createCommentId(String commentId, String pullRequestId, String repositoryId) {
@@ -108,7 +143,7 @@ public class CommentIndexer implements ServletContextListener {
 
   @Override
   public void contextDestroyed(ServletContextEvent servletContextEvent) {
-    // Nothing to do
+    watermarkStore.markCleanShutdown(IndexedComment.class);
   }
 
   private static void storeComment(Index<IndexedComment> index, Repository repository, PullRequest pullRequest, IndexedComment comment) {
@@ -119,36 +154,111 @@ public class CommentIndexer implements ServletContextListener {
     );
   }
 
-  private static void indexRepository(PullRequestService pullRequestService, CommentService commentService, Index<IndexedComment> index, Repository repository) {
+  private static void storeCommentWithReplies(Index<IndexedComment> index, Repository repository, PullRequest pullRequest, Comment comment) {
+    storeComment(index, repository, pullRequest, IndexedComment.transform(pullRequest.getId(), comment));
+    for (Reply reply : comment.getReplies()) {
+      storeComment(index, repository, pullRequest, IndexedComment.transform(pullRequest.getId(), reply));
+    }
+  }
+
+  /**
+   * Replaces all comments and replies of a single pull request in the index with the ones from the store. This is
+   * used to recover updates, that have been lost by the {@link IndexUpdateCoalescer} due to a restart.
+   */
+  static final class ReindexPullRequestTask implements SerializableIndexTask<IndexedComment> {
+
+    private transient PullRequestService pullRequestService;
+    private transient CommentService commentService;
+
+    private final Repository repository;
+    private final String pullRequestId;
+
+    ReindexPullRequestTask(Repository repository, String pullRequestId) {
+      this.repository = repository;
+      this.pullRequestId = pullRequestId;
+    }
+
+    @Override
+    public void update(Index<IndexedComment> index) {
+      index.delete().by(PullRequest.class, pullRequestId).and(Repository.class, repository).execute();
+      PullRequest pullRequest;
+      try {
+        pullRequest = pullRequestService.get(repository, pullRequestId);
+      } catch (NotFoundException e) {
+        return;
+      }
+      for (Comment comment : commentService.getAll(repository.getNamespace(), repository.getName(), pullRequestId)) {
+        storeCommentWithReplies(index, repository, pullRequest, comment);
+      }
+    }
+
+    @Inject
+    public void setPullRequestService(PullRequestService pullRequestService) {
+      this.pullRequestService = pullRequestService;
+    }
+
+    @Inject
+    public void setCommentService(CommentService commentService) {
+      this.commentService = commentService;
+    }
+  }
+
+  private static void indexRepository(PullRequestService pullRequestService, CommentService commentService, IndexWatermarkStore watermarkStore, Index<IndexedComment> index, Repository repository) {
     if (pullRequestService.supportsPullRequests(repository)) {
+      Instant start = IndexWatermarkStore.watermarkForStart();
       for (PullRequest pr : pullRequestService.getAll(repository.getNamespace(), repository.getName())) {
         for (Comment comment : commentService.getAll(repository.getNamespace(), repository.getName(), pr.getId())) {
-          storeComment(index, repository, pr, IndexedComment.transform(pr.getId(), comment));
+          storeCommentWithReplies(index, repository, pr, comment);
         }
       }
+      watermarkStore.set(repository, IndexedComment.class, start);
     }
   }
 
+  /**
+   * Enqueues an {@link UpdateRepositoryTask} for each repository. If the version of the index has changed, these
+   * tasks rebuild the documents of their repository, otherwise they only write the comments that have been changed
+   * since the last reindex (e.g. if events have been lost due to a crash). If the version has not changed and the
+   * server has been shut down cleanly, nothing has to be done. The repository tasks are queued and persisted by the
+   * search engine, so that a reindex is resumed after a restart and other indices are not blocked while the comments
+   * of all repositories are indexed. The index is not cleared as a whole, so that search results stay available during
+   * a reindex.
+   */
   static final class ReindexAll implements IndexTask<IndexedComment> {
 
     private final RepositoryManager repositoryManager;
     private final IndexLogStore logStore;
     private final PullRequestService pullRequestService;
-    private final CommentService commentService;
+    private final SearchEngine searchEngine;
+    private final IndexWatermarkStore watermarkStore;
 
     @Inject
-    ReindexAll(RepositoryManager repositoryManager, IndexLogStore logStore, PullRequestService pullRequestService, CommentService commentService) {
+    ReindexAll(RepositoryManager repositoryManager, IndexLogStore logStore, PullRequestService pullRequestService, SearchEngine searchEngine, IndexWatermarkStore watermarkStore) {
       this.repositoryManager = repositoryManager;
       this.logStore = logStore;
       this.pullRequestService = pullRequestService;
-      this.commentService = commentService;
+      this.searchEngine = searchEngine;
+      this.watermarkStore = watermarkStore;
     }
 
     @Override
     public void update(Index<IndexedComment> index) {
+      boolean cleanShutdown = watermarkStore.removeCleanShutdownMark(IndexedComment.class);
       Optional<IndexLog> indexLog = logStore.defaultIndex().get(IndexedComment.class);
-      if (!indexLog.isPresent() || indexLog.get().getVersion() != IndexedComment.VERSION) {
-        reindexAll(index);
+      boolean rebuild = !indexLog.isPresent() || indexLog.get().getVersion() != IndexedComment.VERSION;
+      if (cleanShutdown && !rebuild) {
+        LOG.debug("comment index is up to date after clean shutdown");
+        return;
+      }
+      List<Repository> repositories = repositoryManager.getAll()
+        .stream()
+        .filter(pullRequestService::supportsPullRequests)
+        .toList();
+      if (rebuild) {
+        LOG.info("reindexing comments of {} repositories", repositories.size());
+      }
+      for (int i = 0; i < repositories.size(); ++i) {
+        searchEngine.forType(IndexedComment.class).update(new UpdateRepositoryTask(repositories.get(i), rebuild, i + 1, repositories.size()));
       }
     }
 
@@ -156,19 +266,75 @@ public class CommentIndexer implements ServletContextListener {
     public void afterUpdate() {
       logStore.defaultIndex().log(IndexedComment.class, IndexedComment.VERSION);
     }
+  }
+
+  /**
+   * Writes the comments of a single repository, that have been created or changed since the last reindex of this
+   * repository. The documents of the repository are rebuilt, if this is requested or if the repository has not been
+   * indexed with a watermark before. The position and the total number of repositories are used to log the progress.
+   */
+  static final class UpdateRepositoryTask implements SerializableIndexTask<IndexedComment> {
 
-    private void reindexAll(Index<IndexedComment> index) {
-      index.delete().all();
-      for (Repository repo : repositoryManager.getAll()) {
-        indexRepository(pullRequestService, commentService, index, repo);
+    private transient PullRequestService pullRequestService;
+    private transient CommentService commentService;
+    private transient IndexWatermarkStore watermarkStore;
+
+    private final Repository repository;
+    private final boolean rebuild;
+    private final int position;
+    private final int total;
+
+    UpdateRepositoryTask(Repository repository, boolean rebuild, int position, int total) {
+      this.repository = repository;
+      this.rebuild = rebuild;
+      this.position = position;
+      this.total = total;
+    }
+
+    @Override
+    public void update(Index<IndexedComment> index) {
+      Optional<Instant> watermark = rebuild ? Optional.empty() : watermarkStore.get(repository, IndexedComment.class);
+      if (watermark.isPresent()) {
+        Instant start = IndexWatermarkStore.watermarkForStart();
+        int count = 0;
+        for (PullRequest pr : pullRequestService.getAll(repository.getNamespace(), repository.getName())) {
+          CommentPage changedComments = commentService.getPage(repository.getNamespace(), repository.getName(), pr.getId(), watermark.get(), null, 0);
+          // the modification date of a root comment is updated with its replies, so changed replies are found, too
+          for (Comment comment : changedComments.comments()) {
+            storeCommentWithReplies(index, repository, pr, comment);
+            ++count;
+          }
+        }
+        watermarkStore.set(repository, IndexedComment.class, start);
+        LOG.debug("updated {} comments of repository {} ({} of {})", count, repository.getNamespaceAndName(), position, total);
+      } else {
+        index.delete().by(Repository.class, repository).execute();
+        indexRepository(pullRequestService, commentService, watermarkStore, index, repository);
+        LOG.info("reindexed comments of repository {} ({} of {})", repository.getNamespaceAndName(), position, total);
       }
     }
+
+    @Inject
+    public void setPullRequestService(PullRequestService pullRequestService) {
+      this.pullRequestService = pullRequestService;
+    }
+
+    @Inject
+    public void setCommentService(CommentService commentService) {
+      this.commentService = commentService;
+    }
+
+    @Inject
+    public void setWatermarkStore(IndexWatermarkStore watermarkStore) {
+      this.watermarkStore = watermarkStore;
+    }
   }
 
   static final class IndexRepositoryTask implements SerializableIndexTask<IndexedComment> {
 
     private transient PullRequestService pullRequestService;
     private transient CommentService commentService;
+    private transient IndexWatermarkStore watermarkStore;
 
     private final Repository repository;
 
@@ -178,7 +344,7 @@ public class CommentIndexer implements ServletContextListener {
 
     @Override
     public void update(Index<IndexedComment> index) {
-      indexRepository(pullRequestService, commentService, index, repository);
+      indexRepository(pullRequestService, commentService, watermarkStore, index, repository);
     }
 
     @Inject
@@ -190,12 +356,18 @@ public class CommentIndexer implements ServletContextListener {
     public void setCommentService(CommentService commentService) {
       this.commentService = commentService;
     }
+
+    @Inject
+    public void setWatermarkStore(IndexWatermarkStore watermarkStore) {
+      this.watermarkStore = watermarkStore;
+    }
   }
 
   static final class ReindexRepositoryTask implements SerializableIndexTask<IndexedComment> {
 
     private transient PullRequestService pullRequestService;
     private transient CommentService commentService;
+    private transient IndexWatermarkStore watermarkStore;
 
     private final Repository repository;
 
@@ -206,7 +378,7 @@ public class CommentIndexer implements ServletContextListener {
     @Override
     public void update(Index<IndexedComment> index) {
       index.delete().by(Repository.class, repository).execute();
-      indexRepository(pullRequestService, commentService, index, repository);
+      indexRepository(pullRequestService, commentService, watermarkStore, index, repository);
     }
 
     @Inject
@@ -218,5 +390,10 @@ public class CommentIndexer implements ServletContextListener {
     public void setCommentService(CommentService commentService) {
       this.commentService = commentService;
     }
+
+    @Inject
+    public void setWatermarkStore(IndexWatermarkStore watermarkStore) {
+      this.watermarkStore = watermarkStore;
+    }
   }
 }
@@ -22,14 +22,10 @@ import org.apache.shiro.SecurityUtils;
 import sonia.scm.ContextEntry;
 import sonia.scm.NotFoundException;
 import sonia.scm.repository.InternalRepositoryException;
-import sonia.scm.repository.Repository;
-import sonia.scm.repository.api.Command;
 import sonia.scm.repository.api.DiffFile;
 import sonia.scm.repository.api.DiffLine;
 import sonia.scm.repository.api.DiffResult;
-import sonia.scm.repository.api.DiffResultCommandBuilder;
 import sonia.scm.repository.api.Hunk;
-import sonia.scm.repository.api.RepositoryService;
 import sonia.scm.repository.api.RepositoryServiceFactory;
 
 import java.io.IOException;
@@ -42,54 +38,52 @@ public class CommentInitializer {
 
   private final Clock clock;
   private final RepositoryServiceFactory repositoryServiceFactory;
+  private final DiffResultCache diffResultCache;
 
   @Inject
-  public CommentInitializer(RepositoryServiceFactory repositoryServiceFactory) {
-    this(repositoryServiceFactory, Clock.systemDefaultZone());
+  public CommentInitializer(RepositoryServiceFactory repositoryServiceFactory, DiffResultCache diffResultCache) {
+    this(repositoryServiceFactory, diffResultCache, Clock.systemDefaultZone());
   }
 
-  private CommentInitializer(RepositoryServiceFactory repositoryServiceFactory, Clock clock) {
+  private CommentInitializer(RepositoryServiceFactory repositoryServiceFactory, DiffResultCache diffResultCache, Clock clock) {
     this.repositoryServiceFactory = repositoryServiceFactory;
+    this.diffResultCache = diffResultCache;
     this.clock = clock;
   }
 
   void initialize(BasicComment comment, PullRequest pullRequest, String repositoryId) {
+    try (PullRequestDiff diff = new PullRequestDiff(() -> repositoryServiceFactory.create(repositoryId), pullRequest, diffResultCache)) {
+      initialize(comment, diff);
+    }
+  }
+
+  void initialize(BasicComment comment, PullRequestDiff diff) {
     comment.setDate(clock.instant());
     comment.setAuthor(getCurrentUserId());
 
     if (comment instanceof Comment) {
-      initializeContextFromDiff((Comment) comment, pullRequest, repositoryId);
+      initializeContextFromDiff((Comment) comment, diff);
     }
   }
 
-  private void initializeContextFromDiff(Comment comment, PullRequest pullRequest, String repositoryId) {
-    if (comment.getLocation() != null && comment.getLocation().getHunk() != null) {
-      try (RepositoryService repositoryService = repositoryServiceFactory.create(repositoryId)) {
-        if (repositoryService.isSupported(Command.DIFF_RESULT)) {
-          initializeContextFromDiff(comment, pullRequest, repositoryService);
-        }
-      }
-    }
-  }
+  private void initializeContextFromDiff(Comment comment, PullRequestDiff diff) {
+    if (comment.getLocation() != null && comment.getLocation().getHunk() != null && diff.isSupported()) {
+      DiffResult diffResult = getDiffResult(diff, comment.getLocation());
 
-  private void initializeContextFromDiff(Comment comment, PullRequest pullRequest, RepositoryService repositoryService) {
-    DiffResultCommandBuilder diffResultCommand = repositoryService.getDiffResultCommand();
-    diffResultCommand.setRevision(pullRequest.getSource()).setAncestorChangeset(pullRequest.getTarget());
-    DiffResult diffResult = getDiffResult(repositoryService.getRepository(), diffResultCommand);
-
-    List<ContextLine> contextLines =
-      computeContext(comment, diffResult)
-        .stream()
-        .map(ContextLine::copy)
-        .collect(Collectors.toList());
-    comment.setContext(new InlineContext(contextLines));
+      List<ContextLine> contextLines =
+        computeContext(comment, diffResult)
+          .stream()
+          .map(ContextLine::copy)
+          .collect(Collectors.toList());
+      comment.setContext(new InlineContext(contextLines));
+    }
   }
 
-  private DiffResult getDiffResult(Repository repository, DiffResultCommandBuilder diffResultCommand) {
+  private DiffResult getDiffResult(PullRequestDiff diff, Location location) {
     try {
-      return diffResultCommand.getDiffResult();
+      return diff.getDiffResult(location);
     } catch (IOException e) {
-      throw new InternalRepositoryException(repository, "could not load diff result", e);
+      throw new InternalRepositoryException(diff.getRepositoryService().getRepository(), "could not load diff result", e);
     }
   }
 
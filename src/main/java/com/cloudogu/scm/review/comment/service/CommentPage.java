@@ -0,0 +1,29 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.review.comment.service;
+
+import java.util.List;
+
+/**
+ * A page of comments of a pull request.
+ *
+ * @param comments the comments of this page ordered by their creation date
+ * @param next     the cursor to read the next page with or <code>null</code>, if there are no more comments
+ * @since 3.17.0
+ */
+public record CommentPage(List<Comment> comments, CommentCursor next) {
+}
@@ -19,6 +19,7 @@ package com.cloudogu.scm.review.comment.service;
 import com.cloudogu.scm.review.PermissionCheck;
 import com.cloudogu.scm.review.RepositoryResolver;
 import com.cloudogu.scm.review.comment.api.MentionMapper;
+import com.cloudogu.scm.review.comment.service.CommentStore.ModifiedComment;
 import com.cloudogu.scm.review.pullrequest.service.PullRequest;
 import com.cloudogu.scm.review.pullrequest.service.PullRequestEmergencyMergedEvent;
 import com.cloudogu.scm.review.pullrequest.service.PullRequestEvent;
@@ -42,12 +43,13 @@ import sonia.scm.repository.Repository;
 import sonia.scm.security.KeyGenerator;
 import sonia.scm.store.QueryableStore;
 
+import java.time.Instant;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.function.BiConsumer;
-import java.util.stream.Stream;
 
 import static com.cloudogu.scm.review.comment.service.CommentTransition.MAKE_COMMENT;
 import static com.cloudogu.scm.review.comment.service.CommentTransition.MAKE_TASK;
@@ -74,6 +76,7 @@ public class CommentService {
   private final ScmEventBus eventBus;
   private final CommentInitializer commentInitializer;
   private final MentionMapper mentionMapper;
+  private final CommentSummaryStore summaryStore;
 
   @Inject
   public CommentService(RepositoryResolver repositoryResolver,
@@ -83,7 +86,8 @@ public class CommentService {
                         KeyGenerator keyGenerator,
                         ScmEventBus eventBus,
                         CommentInitializer commentInitializer,
-                        MentionMapper mentionMapper) {
+                        MentionMapper mentionMapper,
+                        CommentSummaryStore summaryStore) {
     this.repositoryResolver = repositoryResolver;
     this.locationVerifier = locationVerifier;
     this.pullRequestService = pullRequestService;
@@ -92,6 +96,7 @@ public class CommentService {
     this.eventBus = eventBus;
     this.commentInitializer = commentInitializer;
     this.mentionMapper = mentionMapper;
+    this.summaryStore = summaryStore;
   }
 
   public String add(String namespace, String name, String pullRequestId, Comment pullRequestComment) {
@@ -110,17 +115,43 @@ public class CommentService {
     return newId;
   }
 
+  /**
+   * Adds all given comments at once, e.g. when a review with many inline comments is submitted. The diff of the pull
+   * request is computed only once for all comments, the comments are stored in a single transaction and only one
+   * {@link CommentsAddedEvent} is posted for all of them.
+   *
+   * @return the ids of the new comments in the order of the given comments
+   * @since 3.17.0
+   */
+  public List<String> addAll(String namespace, String name, String pullRequestId, List<Comment> comments) {
+    Repository repository = repositoryResolver.resolve(new NamespaceAndName(namespace, name));
+    PermissionCheck.checkComment(repository);
+    if (comments.isEmpty()) {
+      return emptyList();
+    }
+    PullRequest pullRequest = pullRequestService.get(repository, pullRequestId);
+    try (PullRequestDiff diff = locationVerifier.openDiff(pullRequest, repository)) {
+      for (Comment comment : comments) {
+        locationVerifier.verifyLocation(comment, pullRequest, repository, diff);
+        comment.setMentionUserIds(mentionMapper.extractMentionsFromComment(comment.getComment()));
+        commentInitializer.initialize(comment, diff);
+      }
+    }
+    List<String> newIds = getCommentStore(repository).addAll(pullRequestId, comments);
+    comments.forEach(comment -> fireMentionEventIfMentionsExist(repository, pullRequest, comment));
+    eventBus.post(new CommentsAddedEvent(repository, pullRequest, comments));
+    return newIds;
+  }
+
   public String reply(String namespace, String name, String pullRequestId, String rootCommentId, Reply reply) {
     Repository repository = repositoryResolver.resolve(new NamespaceAndName(namespace, name));
     PermissionCheck.checkComment(repository);
     PullRequest pullRequest = pullRequestService.get(repository, pullRequestId);
     Comment originalRootComment = get(repository, pullRequestId, rootCommentId);
-    reply.setId(keyGenerator.createKey());
     initializeNewComment(reply, pullRequest, repository.getId());
+    getCommentStore(repository).addReply(pullRequestId, rootCommentId, reply);
     originalRootComment.addReply(reply);
 
-    getCommentStore(repository).update(pullRequestId, originalRootComment);
-
     fireMentionEventIfMentionsExist(repository, pullRequest, reply);
     eventBus.post(new ReplyEvent(repository, pullRequest, reply, null, originalRootComment, HandlerEventType.CREATE));
     return reply.getId();
@@ -151,10 +182,30 @@ public class CommentService {
             .in(repository.getNamespaceAndName()));
         }
       );
+    if (flagAsOutdated(rootComment)) {
+      getCommentStore(repository).update(pullRequestId, rootComment);
+    }
+  }
+
+  /**
+   * Marks all given comments of the pull request as outdated in one transaction. Like with
+   * {@link #markAsOutdated(String, String, String, String)} tasks and comments, that are already outdated, are not
+   * changed. Ids of comments, that do not exist (anymore), are ignored.
+   *
+   * @since 3.17.0
+   */
+  public void markAsOutdated(Repository repository, String pullRequestId, Collection<String> commentIds) {
+    if (!commentIds.isEmpty()) {
+      getCommentStore(repository).updateAll(pullRequestId, commentIds, this::flagAsOutdated);
+    }
+  }
+
+  private boolean flagAsOutdated(Comment rootComment) {
     if (rootComment.getType() == CommentType.COMMENT && !rootComment.isOutdated()) {
       rootComment.setOutdated(true);
-      getCommentStore(repository).update(pullRequestId, rootComment);
+      return true;
     }
+    return false;
   }
 
   public void modifyComment(String namespace, String name, String pullRequestId, String commentId, Comment changedComment) {
@@ -187,7 +238,28 @@ public class CommentService {
     if (!PermissionCheck.mayComment(repository)) {
       return emptyList();
     }
-    Comment comment = get(namespace, name, pullRequestId, commentId);
+    return possibleTransitions(get(repository, pullRequestId, commentId));
+  }
+
+  /**
+   * Computes the possible transitions for all given comments, that have already been loaded, e.g. by
+   * {@link #getAll(String, String, String)}. In contrast to
+   * {@link #possibleTransitions(String, String, String, String)} this does not read the comments from the store again.
+   *
+   * @return the possible transitions mapped by the ids of the comments
+   * @since 3.17.0
+   */
+  public Map<String, Collection<CommentTransition>> possibleTransitions(String namespace, String name, Collection<Comment> comments) {
+    Repository repository = repositoryResolver.resolve(new NamespaceAndName(namespace, name));
+    boolean mayComment = PermissionCheck.mayComment(repository);
+    Map<String, Collection<CommentTransition>> transitions = new HashMap<>();
+    for (Comment comment : comments) {
+      transitions.put(comment.getId(), mayComment ? possibleTransitions(comment) : emptyList());
+    }
+    return transitions;
+  }
+
+  private static Collection<CommentTransition> possibleTransitions(Comment comment) {
     switch (comment.getType()) {
       case COMMENT:
         return singleton(MAKE_TASK);
@@ -201,15 +273,18 @@ public class CommentService {
   }
 
   public ExecutedTransition<CommentTransition> transform(String namespace, String name, String pullRequestId, String commentId, CommentTransition transition) {
-    Comment comment = get(namespace, name, pullRequestId, commentId);
     Repository repository = repositoryResolver.resolve(new NamespaceAndName(namespace, name));
     PullRequest pullRequest = pullRequestService.get(repository, pullRequestId);
-    Comment clone = comment.clone();
-    transition.accept(clone);
     ExecutedTransition<CommentTransition> executedTransition = new ExecutedTransition<>(keyGenerator.createKey(), transition, System.currentTimeMillis(), getCurrentUserId());
-    clone.addExecutedTransition(executedTransition);
-    getCommentStore(repository).update(pullRequestId, clone);
-    eventBus.post(new CommentEvent(repository, pullRequest, clone, comment, HandlerEventType.MODIFY));
+    ModifiedComment modifiedComment = getCommentStore(repository)
+      .modify(pullRequestId, commentId, comment -> {
+        transition.accept(comment);
+        comment.addExecutedTransition(executedTransition);
+      })
+      .orElseThrow(() -> notFound(entity(BasicComment.class, String.valueOf(commentId))
+        .in(PullRequest.class, pullRequestId)
+        .in(repository.getNamespaceAndName())));
+    eventBus.post(new CommentEvent(repository, pullRequest, modifiedComment.newComment(), modifiedComment.oldComment(), HandlerEventType.MODIFY));
     return executedTransition;
   }
 
@@ -231,7 +306,7 @@ public class CommentService {
         reply.setComment(changedReply.getComment());
         reply.addExecutedTransition(new ExecutedTransition<>(keyGenerator.createKey(), CHANGE_TEXT, System.currentTimeMillis(), getCurrentUserId()));
         handleMentions(repository, pullRequest, reply, clone);
-        getCommentStore(repository).update(pullRequestId, parent);
+        getCommentStore(repository).updateReply(pullRequestId, reply);
         eventBus.post(new ReplyEvent(repository, pullRequest, reply, clone, parent, HandlerEventType.MODIFY));
       }
     );
@@ -243,6 +318,23 @@ public class CommentService {
     return getCommentStore(repository).getAll(pullRequestId);
   }
 
+  /**
+   * Reads a page of the root comments of a pull request ordered by their creation date. In contrast to
+   * {@link #getAll(String, String, String)} only the requested comments are read from the store.
+   *
+   * @param modifiedSince if not <code>null</code>, only comments created or modified after this time are read; this
+   *                      way clients can fetch only the changes since their last request (deleted comments are not
+   *                      part of the result)
+   * @param after         if not <code>null</code>, the page starts behind this cursor
+   * @param limit         the maximum number of comments for this page; values less than 1 mean no limit
+   * @since 3.17.0
+   */
+  public CommentPage getPage(String namespace, String name, String pullRequestId, Instant modifiedSince, CommentCursor after, int limit) {
+    Repository repository = repositoryResolver.resolve(new NamespaceAndName(namespace, name));
+    PermissionCheck.checkRead(repository);
+    return getCommentStore(repository).getPage(pullRequestId, modifiedSince, after, limit < 1 ? Integer.MAX_VALUE : limit);
+  }
+
   public int getCount(String namespace, String name, String pullRequestId, CommentType type) {
     Repository repository = repositoryResolver.resolve(new NamespaceAndName(namespace, name));
     try (QueryableStore<Comment> store = storeBuilder.get(repository, pullRequestId)) {
@@ -252,6 +344,25 @@ public class CommentService {
     }
   }
 
+  /**
+   * Returns the numbers of tasks and comments of the pull request. These are updated with every change of a comment,
+   * so in contrast to {@link #getCount(String, String, String, CommentType)} no comments have to be read.
+   *
+   * @since 3.17.0
+   */
+  public CommentSummary getSummary(String namespace, String name, String pullRequestId) {
+    Repository repository = repositoryResolver.resolve(new NamespaceAndName(namespace, name));
+    return getSummary(repository, pullRequestId);
+  }
+
+  /**
+   * @see #getSummary(String, String, String)
+   * @since 3.17.0
+   */
+  public CommentSummary getSummary(Repository repository, String pullRequestId) {
+    return summaryStore.get(repository.getId(), pullRequestId);
+  }
+
   public void delete(String namespace, String name, String pullRequestId, String commentId) {
     Repository repository = repositoryResolver.resolve(new NamespaceAndName(namespace, name));
     PullRequest pullRequest = pullRequestService.get(repository, pullRequestId);
@@ -273,7 +384,7 @@ public class CommentService {
             PermissionCheck.checkModifyComment(repository, reply);
             doThrow().violation("Must not delete system reply").when(reply.isSystemReply());
             parent.removeReply(reply);
-            getCommentStore(repository).update(pullRequestId, parent);
+            getCommentStore(repository).deleteReply(pullRequestId, reply);
             eventBus.post(new ReplyEvent(repository, pullRequest, null, reply, parent, HandlerEventType.DELETE));
           }
         )
@@ -293,12 +404,10 @@ public class CommentService {
   }
 
   public Reply getReply(String namespace, String name, String pullRequestId, String commentId, String replyId) {
-    Comment comment = get(namespace, name, pullRequestId, commentId);
-    return comment
-      .getReplies()
-      .stream()
-      .filter(r -> r.getId().equals(replyId))
-      .findFirst()
+    Repository repository = repositoryResolver.resolve(new NamespaceAndName(namespace, name));
+    return getCommentStore(repository)
+      .getReply(pullRequestId, replyId)
+      .filter(reply -> commentId.equals(reply.getParentId()))
       .orElseThrow(() -> notFound(entity(Reply.class, String.valueOf(replyId))
         .in(Comment.class, commentId)
         .in(PullRequest.class, pullRequestId)
@@ -330,26 +439,14 @@ public class CommentService {
   }
 
   private Optional<Comment> findRootComment(Repository repository, String pullRequestId, String commentId) {
-    return getCommentStore(repository)
-      .getAll(pullRequestId)
-      .stream()
-      .filter(rootComment -> rootComment.getId().equals(commentId))
-      .findFirst();
+    return getCommentStore(repository).getPullRequestCommentById(pullRequestId, commentId);
   }
 
   private Optional<ReplyWithParent> findReplyWithParent(Repository repository, String pullRequestId, String commentId) {
-    return streamAllRepliesWithParents(repository, pullRequestId)
-      .filter(replyWithParent -> replyWithParent.reply.getId().equals(commentId))
-      .findFirst();
-  }
-
-  private Stream<ReplyWithParent> streamAllRepliesWithParents(Repository repository, String pullRequestId) {
-    return getCommentStore(repository)
-      .getAll(pullRequestId)
-      .stream()
-      .flatMap(
-        rootComment -> rootComment.getReplies().stream().map(reply -> new ReplyWithParent(rootComment, reply))
-      );
+    CommentStore store = getCommentStore(repository);
+    return store
+      .getReply(pullRequestId, commentId)
+      .flatMap(reply -> store.getPullRequestCommentById(pullRequestId, reply.getParentId()).map(parent -> new ReplyWithParent(parent, reply)));
   }
 
   private static class ReplyWithParent {
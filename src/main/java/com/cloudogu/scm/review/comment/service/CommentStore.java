@@ -16,27 +16,48 @@
 
 package com.cloudogu.scm.review.comment.service;
 
-import com.google.common.util.concurrent.Striped;
+import com.cloudogu.scm.review.StoreLocks;
 import sonia.scm.security.KeyGenerator;
+import sonia.scm.store.Condition;
+import sonia.scm.store.Conditions;
 import sonia.scm.store.QueryableMutableStore;
 import sonia.scm.store.QueryableStore;
 
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.locks.Lock;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
 
+import static java.util.stream.Collectors.groupingBy;
+
 public class CommentStore {
 
-  private static final Striped<Lock> LOCKS = Striped.lock(10);
+  private static final String LOCK_NAME = "comment";
 
   private final Function<String, QueryableMutableStore<Comment>> storeSupplier;
-  private KeyGenerator keyGenerator;
+  private final Function<String, QueryableMutableStore<Reply>> replyStoreSupplier;
+  private final KeyGenerator keyGenerator;
+  private final StoreLocks locks;
+  private final String repositoryId;
 
-  CommentStore(Function<String, QueryableMutableStore<Comment>> storeSupplier, KeyGenerator keyGenerator) {
+  CommentStore(Function<String, QueryableMutableStore<Comment>> storeSupplier,
+               Function<String, QueryableMutableStore<Reply>> replyStoreSupplier,
+               KeyGenerator keyGenerator,
+               StoreLocks locks,
+               String repositoryId) {
     this.storeSupplier = storeSupplier;
+    this.replyStoreSupplier = replyStoreSupplier;
     this.keyGenerator = keyGenerator;
+    this.locks = locks;
+    this.repositoryId = repositoryId;
   }
 
   public String add(String pullRequestId, Comment pullRequestComment) {
@@ -44,32 +65,196 @@ public class CommentStore {
       try (QueryableMutableStore<Comment> store = storeSupplier.apply(pullRequestId)) {
         String commentId = keyGenerator.createKey();
         pullRequestComment.setId(commentId);
-        store.put(commentId, pullRequestComment);
+        pullRequestComment.setLastModified(now());
+        store.put(commentId, withoutReplies(pullRequestComment));
         return commentId;
       }
     });
   }
 
+  /**
+   * Adds all given comments in one transaction, so that either all or none of them are stored.
+   *
+   * @return the ids of the new comments in the order of the given comments
+   */
+  public List<String> addAll(String pullRequestId, Collection<Comment> comments) {
+    return withLockDo(pullRequestId, () -> {
+      try (QueryableMutableStore<Comment> store = storeSupplier.apply(pullRequestId)) {
+        List<String> commentIds = new ArrayList<>(comments.size());
+        Instant now = now();
+        store.transactional(() -> {
+          for (Comment comment : comments) {
+            String commentId = keyGenerator.createKey();
+            comment.setId(commentId);
+            comment.setLastModified(now);
+            store.put(commentId, withoutReplies(comment));
+            commentIds.add(commentId);
+          }
+          return true;
+        });
+        return commentIds;
+      }
+    });
+  }
+
   public void update(String pullRequestId, Comment rootComment) {
     withLockDo(pullRequestId, () -> {
       try (QueryableMutableStore<Comment> store = storeSupplier.apply(pullRequestId)) {
-        store.put(rootComment.getId(), rootComment);
+        rootComment.setLastModified(now());
+        store.put(rootComment.getId(), withoutReplies(rootComment));
       }
       return null;
     });
   }
 
+  /**
+   * Reads the root comment, applies the modification to a copy of it and stores this copy while holding the lock of
+   * the pull request. Concurrent modifications of the same comment are therefore always based on each other, so that
+   * for example two users finishing the same task do not both see the comment as an open task.
+   *
+   * @return the comment before and after the modification or an empty optional, if the comment does not exist
+   */
+  public Optional<ModifiedComment> modify(String pullRequestId, String commentId, Consumer<Comment> modification) {
+    return withLockDo(pullRequestId, () -> getPullRequestCommentById(pullRequestId, commentId)
+      .map(comment -> {
+        Comment modifiedComment = comment.clone();
+        modification.accept(modifiedComment);
+        update(pullRequestId, modifiedComment);
+        return new ModifiedComment(comment, modifiedComment);
+      }));
+  }
+
+  /**
+   * Applies the modification to all given root comments in one transaction. The modification has to return
+   * {@code true} if the comment has been changed and has to be stored. Unknown ids are ignored.
+   *
+   * @return the number of changed comments
+   */
+  public int updateAll(String pullRequestId, Collection<String> commentIds, Predicate<Comment> modification) {
+    return withLockDo(pullRequestId, () -> {
+      try (QueryableMutableStore<Comment> store = storeSupplier.apply(pullRequestId)) {
+        AtomicInteger changed = new AtomicInteger();
+        Instant now = now();
+        store.transactional(() -> {
+          for (String commentId : commentIds) {
+            Comment comment = store.get(commentId);
+            if (comment != null && modification.test(comment)) {
+              comment.setLastModified(now);
+              store.put(commentId, withoutReplies(comment));
+              changed.incrementAndGet();
+            }
+          }
+          return true;
+        });
+        return changed.get();
+      }
+    });
+  }
+
   public List<Comment> getAll(String pullRequestId) {
+    List<Comment> comments;
     try (QueryableMutableStore<Comment> store = storeSupplier.apply(pullRequestId)) {
-      return store
+      comments = store
         .query()
         .orderBy(CommentQueryFields.DATE, QueryableStore.Order.ASC)
         .findAll();
     }
+    attachReplies(comments, readReplies(pullRequestId));
+    return comments;
+  }
+
+  /**
+   * Reads a page of the comments ordered by their creation date. Filtering and paging are done by the store query,
+   * so only the requested comments are loaded.
+   *
+   * @param modifiedSince if not <code>null</code>, only comments created or modified after this time are read
+   * @param after         if not <code>null</code>, the page starts behind this cursor
+   * @param limit         the maximum number of comments for this page
+   */
+  public CommentPage getPage(String pullRequestId, Instant modifiedSince, CommentCursor after, int limit) {
+    List<Condition<Comment>> conditions = new ArrayList<>();
+    if (modifiedSince != null) {
+      conditions.add(CommentQueryFields.LASTMODIFIED.after(modifiedSince));
+    }
+    if (after != null) {
+      conditions.add(Conditions.or(
+        CommentQueryFields.DATE.after(after.date()),
+        CommentQueryFields.DATE.eq(after.date())
+      ));
+    }
+    try (QueryableMutableStore<Comment> store = storeSupplier.apply(pullRequestId)) {
+      List<Comment> comments = store
+        .query(conditions.toArray(new Condition[0]))
+        .orderBy(CommentQueryFields.DATE, QueryableStore.Order.ASC)
+        .orderBy(CommentQueryFields.ID, QueryableStore.Order.ASC)
+        .findAll(after == null ? 0 : after.skip(), limit);
+      CommentCursor next = comments.size() < limit ? null : CommentCursor.behind(after, comments);
+      if (!comments.isEmpty()) {
+        String[] commentIds = comments.stream().map(Comment::getId).toArray(String[]::new);
+        attachReplies(comments, readReplies(pullRequestId, ReplyQueryFields.PARENTID.in(commentIds)));
+      }
+      return new CommentPage(comments, next);
+    }
   }
 
   Optional<Comment> getPullRequestCommentById(String pullRequestId, String commentId) {
-    return getAll(pullRequestId).stream().filter(comment -> comment.getId().equals(commentId)).findFirst();
+    Comment comment;
+    try (QueryableMutableStore<Comment> store = storeSupplier.apply(pullRequestId)) {
+      comment = store.get(commentId);
+    }
+    if (comment == null) {
+      return Optional.empty();
+    }
+    attachReplies(List.of(comment), readReplies(pullRequestId, ReplyQueryFields.PARENTID.eq(commentId)));
+    return Optional.of(comment);
+  }
+
+  /**
+   * Reads a single reply by its id, without reading its root comment or other replies.
+   */
+  public Optional<Reply> getReply(String pullRequestId, String replyId) {
+    try (QueryableMutableStore<Reply> store = replyStoreSupplier.apply(pullRequestId)) {
+      return Optional.ofNullable(store.get(replyId));
+    }
+  }
+
+  /**
+   * Stores a new reply for the given root comment. Only the reply itself is written; the root comment just gets a
+   * new modification date.
+   *
+   * @return the id of the new reply
+   */
+  public String addReply(String pullRequestId, String parentId, Reply reply) {
+    return withLockDo(pullRequestId, () -> {
+      try (QueryableMutableStore<Reply> store = replyStoreSupplier.apply(pullRequestId)) {
+        String replyId = keyGenerator.createKey();
+        reply.setId(replyId);
+        reply.setParentId(parentId);
+        store.put(replyId, reply);
+      }
+      touch(pullRequestId, parentId);
+      return reply.getId();
+    });
+  }
+
+  public void updateReply(String pullRequestId, Reply reply) {
+    withLockDo(pullRequestId, () -> {
+      try (QueryableMutableStore<Reply> store = replyStoreSupplier.apply(pullRequestId)) {
+        store.put(reply.getId(), reply);
+      }
+      touch(pullRequestId, reply.getParentId());
+      return null;
+    });
+  }
+
+  public void deleteReply(String pullRequestId, Reply reply) {
+    withLockDo(pullRequestId, () -> {
+      try (QueryableMutableStore<Reply> store = replyStoreSupplier.apply(pullRequestId)) {
+        store.remove(reply.getId());
+      }
+      touch(pullRequestId, reply.getParentId());
+      return null;
+    });
   }
 
   public void delete(String pullRequestId, String commentId) {
@@ -81,13 +266,53 @@ public class CommentStore {
     });
   }
 
-  private <T> T withLockDo(String pullRequestId, Supplier<T> worker) {
-    Lock lock = LOCKS.get(pullRequestId);
-    lock.lock();
-    try {
-      return worker.get();
-    } finally {
-      lock.unlock();
+  /**
+   * Updates the modification date of a root comment, so that changed replies are found by
+   * {@link #getPage(String, Instant, CommentCursor, int)}, too.
+   */
+  private void touch(String pullRequestId, String commentId) {
+    try (QueryableMutableStore<Comment> store = storeSupplier.apply(pullRequestId)) {
+      Comment comment = store.get(commentId);
+      if (comment != null) {
+        comment.setLastModified(now());
+        store.put(commentId, withoutReplies(comment));
+      }
     }
   }
+
+  @SafeVarargs
+  private List<Reply> readReplies(String pullRequestId, Condition<Reply>... conditions) {
+    try (QueryableMutableStore<Reply> store = replyStoreSupplier.apply(pullRequestId)) {
+      return store
+        .query(conditions)
+        .orderBy(ReplyQueryFields.DATE, QueryableStore.Order.ASC)
+        .findAll();
+    }
+  }
+
+  private static void attachReplies(List<Comment> comments, List<Reply> replies) {
+    Map<String, List<Reply>> repliesByParent = replies.stream().collect(groupingBy(Reply::getParentId));
+    comments.forEach(comment -> comment.setReplies(new ArrayList<>(repliesByParent.getOrDefault(comment.getId(), List.of()))));
+  }
+
+  /**
+   * Replies are stored on their own, so they must not be written as part of the root comment.
+   */
+  private static Comment withoutReplies(Comment comment) {
+    Comment storedComment = comment.clone();
+    storedComment.setReplies(new ArrayList<>());
+    return storedComment;
+  }
+
+  private static Instant now() {
+    // the store does not keep nanoseconds, so the value read back equals the one written
+    return Instant.now().truncatedTo(ChronoUnit.MILLIS);
+  }
+
+  private <T> T withLockDo(String pullRequestId, Supplier<T> worker) {
+    return locks.withWriteLock(LOCK_NAME, repositoryId + "/" + pullRequestId, worker);
+  }
+
+  public record ModifiedComment(Comment oldComment, Comment newComment) {
+  }
 }
@@ -16,6 +16,7 @@
 
 package com.cloudogu.scm.review.comment.service;
 
+import com.cloudogu.scm.review.StoreLocks;
 import jakarta.inject.Inject;
 import sonia.scm.repository.Repository;
 import sonia.scm.security.KeyGenerator;
@@ -24,16 +25,26 @@ import sonia.scm.store.QueryableStore;
 public class CommentStoreBuilder {
 
   private final CommentStoreFactory dataStoreFactory;
+  private final ReplyStoreFactory replyStoreFactory;
   private final KeyGenerator keyGenerator;
+  private final StoreLocks locks;
 
   @Inject
-  public CommentStoreBuilder(CommentStoreFactory commentStoreFactory, KeyGenerator keyGenerator) {
+  public CommentStoreBuilder(CommentStoreFactory commentStoreFactory, ReplyStoreFactory replyStoreFactory, KeyGenerator keyGenerator, StoreLocks locks) {
     this.dataStoreFactory = commentStoreFactory;
+    this.replyStoreFactory = replyStoreFactory;
     this.keyGenerator = keyGenerator;
+    this.locks = locks;
   }
 
   public CommentStore create(Repository repository) {
-    return new CommentStore(pullRequestId -> dataStoreFactory.getMutable(repository.getId(), pullRequestId), keyGenerator);
+    return new CommentStore(
+      pullRequestId -> dataStoreFactory.getMutable(repository.getId(), pullRequestId),
+      pullRequestId -> replyStoreFactory.getMutable(repository.getId(), pullRequestId),
+      keyGenerator,
+      locks,
+      repository.getId()
+    );
   }
 
   public QueryableStore<Comment> get(Repository repository, String pullRequestId) {
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.review.comment.service;
+
+import jakarta.xml.bind.annotation.XmlAccessType;
+import jakarta.xml.bind.annotation.XmlAccessorType;
+import jakarta.xml.bind.annotation.XmlRootElement;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import sonia.scm.repository.Repository;
+import sonia.scm.store.QueryableType;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Collection;
+
+/**
+ * Counters for the comments and tasks of a single pull request. The summary is stored with the id of the pull
+ * request and is kept up to date by the {@link CommentSummaryHook}, so that the numbers do not have to be computed
+ * from all comments whenever a pull request is shown.
+ *
+ * @since 3.17.0
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@XmlRootElement(name = "commentSummary")
+@XmlAccessorType(XmlAccessType.FIELD)
+@QueryableType(Repository.class)
+public class CommentSummary implements Serializable {
+
+  private int openTasks;
+  private int doneTasks;
+  /**
+   * Number of all root comments and replies, that are not system comments.
+   */
+  private int comments;
+  /**
+   * Creation date of the last root comment or reply, that is not a system comment.
+   */
+  private Instant lastCommentDate;
+
+  /**
+   * Computes the summary for the given comments from scratch. The replies have to be attached to the comments.
+   */
+  public static CommentSummary of(Collection<Comment> comments) {
+    CommentSummary summary = new CommentSummary();
+    for (Comment comment : comments) {
+      summary.commentAdded(comment);
+      comment.getReplies().forEach(summary::replyAdded);
+    }
+    return summary;
+  }
+
+  void commentAdded(Comment comment) {
+    count(comment.getType(), 1);
+    if (!comment.isSystemComment()) {
+      comments++;
+      commentCreatedAt(comment.getDate());
+    }
+  }
+
+  void commentRemoved(Comment comment) {
+    count(comment.getType(), -1);
+    if (!comment.isSystemComment()) {
+      comments = Math.max(0, comments - 1);
+    }
+  }
+
+  void typeChanged(CommentType oldType, CommentType newType) {
+    if (oldType != newType) {
+      count(oldType, -1);
+      count(newType, 1);
+    }
+  }
+
+  void replyAdded(Reply reply) {
+    if (!reply.isSystemReply()) {
+      comments++;
+      commentCreatedAt(reply.getDate());
+    }
+  }
+
+  void replyRemoved(Reply reply) {
+    if (!reply.isSystemReply()) {
+      comments = Math.max(0, comments - 1);
+    }
+  }
+
+  private void count(CommentType type, int delta) {
+    if (type == CommentType.TASK_TODO) {
+      openTasks = Math.max(0, openTasks + delta);
+    } else if (type == CommentType.TASK_DONE) {
+      doneTasks = Math.max(0, doneTasks + delta);
+    }
+  }
+
+  private void commentCreatedAt(Instant date) {
+    if (date != null && (lastCommentDate == null || date.isAfter(lastCommentDate))) {
+      lastCommentDate = date;
+    }
+  }
+}
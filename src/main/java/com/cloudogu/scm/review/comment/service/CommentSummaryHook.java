@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.review.comment.service;
+
+import com.cloudogu.scm.review.pullrequest.service.BasicPullRequestEvent;
+import com.github.legman.Subscribe;
+import jakarta.inject.Inject;
+import sonia.scm.EagerSingleton;
+import sonia.scm.plugin.Extension;
+
+import java.util.function.Consumer;
+
+/**
+ * Keeps the {@link CommentSummary} of pull requests up to date. The events are handled synchronously, so that the
+ * counters are updated, when the request that changed a comment has been finished.
+ *
+ * @since 3.17.0
+ */
+@EagerSingleton
+@Extension
+public class CommentSummaryHook {
+
+  private final CommentSummaryStore summaryStore;
+
+  @Inject
+  public CommentSummaryHook(CommentSummaryStore summaryStore) {
+    this.summaryStore = summaryStore;
+  }
+
+  @Subscribe(async = false)
+  public void handleCommentEvent(CommentEvent event) {
+    Comment item = event.getItem();
+    Comment oldItem = event.getOldItem();
+    switch (event.getEventType()) {
+      case CREATE:
+        update(event, summary -> summary.commentAdded(item));
+        break;
+      case MODIFY:
+        if (item.getType() != oldItem.getType()) {
+          update(event, summary -> summary.typeChanged(oldItem.getType(), item.getType()));
+        }
+        break;
+      case DELETE:
+        update(event, summary -> summary.commentRemoved(oldItem));
+        break;
+      default:
+        // nothing to count
+    }
+  }
+
+  @Subscribe(async = false)
+  public void handleCommentsAddedEvent(CommentsAddedEvent event) {
+    update(event, summary -> event.getComments().forEach(summary::commentAdded));
+  }
+
+  @Subscribe(async = false)
+  public void handleReplyEvent(ReplyEvent event) {
+    switch (event.getEventType()) {
+      case CREATE:
+        update(event, summary -> summary.replyAdded(event.getItem()));
+        break;
+      case DELETE:
+        update(event, summary -> summary.replyRemoved(event.getOldItem()));
+        break;
+      default:
+        // nothing to count
+    }
+  }
+
+  private void update(BasicPullRequestEvent event, Consumer<CommentSummary> modification) {
+    summaryStore.update(event.getRepository().getId(), event.getPullRequest().getId(), modification);
+  }
+}
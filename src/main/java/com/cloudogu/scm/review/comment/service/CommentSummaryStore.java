@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.review.comment.service;
+
+import com.cloudogu.scm.review.StoreLocks;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import sonia.scm.repository.Repository;
+import sonia.scm.store.QueryableMutableStore;
+import sonia.scm.store.QueryableStore;
+
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Stores the {@link CommentSummary} of each pull request with the id of the pull request. Pull requests without a
+ * stored summary have no comments.
+ *
+ * @since 3.17.0
+ */
+@Singleton
+public class CommentSummaryStore {
+
+  private static final String LOCK_NAME = "commentSummary";
+
+  private final CommentSummaryStoreFactory storeFactory;
+  private final StoreLocks locks;
+
+  @Inject
+  public CommentSummaryStore(CommentSummaryStoreFactory storeFactory, StoreLocks locks) {
+    this.storeFactory = storeFactory;
+    this.locks = locks;
+  }
+
+  public CommentSummary get(String repositoryId, String pullRequestId) {
+    try (QueryableMutableStore<CommentSummary> store = storeFactory.getMutable(repositoryId)) {
+      return Optional.ofNullable(store.get(pullRequestId)).orElseGet(CommentSummary::new);
+    }
+  }
+
+  /**
+   * Reads the summary of the pull request, applies the given modification and stores the result. Concurrent
+   * modifications of the same summary are serialized, so that no update gets lost.
+   */
+  public void update(String repositoryId, String pullRequestId, Consumer<CommentSummary> modification) {
+    locks.withWriteLock(LOCK_NAME, repositoryId + "/" + pullRequestId, () -> {
+      try (QueryableMutableStore<CommentSummary> store = storeFactory.getMutable(repositoryId)) {
+        CommentSummary summary = Optional.ofNullable(store.get(pullRequestId)).orElseGet(CommentSummary::new);
+        modification.accept(summary);
+        store.put(pullRequestId, summary);
+      }
+      return null;
+    });
+  }
+
+  /**
+   * Finds the pull requests with open tasks in all repositories with a single query.
+   */
+  public Set<PullRequestReference> getPullRequestsWithOpenTasks() {
+    try (QueryableStore<CommentSummary> store = storeFactory.getOverall()) {
+      return store.query(CommentSummaryQueryFields.OPENTASKS.greater(0))
+        .withIds()
+        .findAll()
+        .stream()
+        .map(result -> new PullRequestReference(result.getParentId(Repository.class).orElseThrow(), result.getId()))
+        .collect(Collectors.toSet());
+    }
+  }
+
+  public record PullRequestReference(String repositoryId, String pullRequestId) {
+  }
+}
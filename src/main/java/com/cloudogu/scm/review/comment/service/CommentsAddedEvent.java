@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.review.comment.service;
+
+import com.cloudogu.scm.review.pullrequest.service.BasicPullRequestEvent;
+import com.cloudogu.scm.review.pullrequest.service.PullRequest;
+import lombok.Getter;
+import sonia.scm.event.Event;
+import sonia.scm.repository.Repository;
+
+import java.util.List;
+
+/**
+ * Event for a batch of comments created together, e.g. by submitting a review. This is posted once for the whole
+ * batch instead of a {@link CommentEvent} for every single comment.
+ *
+ * @since 3.17.0
+ */
+@Event
+@Getter
+public class CommentsAddedEvent extends BasicPullRequestEvent {
+  private final List<Comment> comments;
+
+  public CommentsAddedEvent(Repository repository, PullRequest pullRequest, List<Comment> comments) {
+    super(repository, pullRequest);
+    this.comments = comments;
+  }
+}
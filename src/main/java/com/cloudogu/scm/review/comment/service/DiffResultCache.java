@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.review.comment.service;
+
+import com.cloudogu.scm.review.CacheMetrics;
+import com.cloudogu.scm.review.pullrequest.service.PullRequest;
+import com.github.legman.Subscribe;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import sonia.scm.EagerSingleton;
+import sonia.scm.HandlerEventType;
+import sonia.scm.plugin.Extension;
+import sonia.scm.repository.Branch;
+import sonia.scm.repository.RepositoryEvent;
+import sonia.scm.repository.api.Command;
+import sonia.scm.repository.api.DiffResult;
+import sonia.scm.repository.api.DiffResultCommandBuilder;
+import sonia.scm.repository.api.RepositoryService;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Cache for the diffs of pull requests, either complete or limited to a single path. The entries are keyed by the
+ * revisions the source and the target branch point to, so that a new commit on one of the branches leads to a new
+ * entry and never to an outdated diff. The cached diffs are copied into memory, because the results of the repository
+ * services may depend on the service being open.
+ * <p>
+ * The cache is bounded by the estimated memory size of the diffs, which can be configured in bytes with the system
+ * property {@value #MAXIMUM_SIZE_PROPERTY}. A size of {@code 0} disables the cache.
+ *
+ * @since 3.17.0
+ */
+@Singleton
+@Extension
+@EagerSingleton
+public class DiffResultCache {
+
+  static final String CACHE_NAME = "sonia.cache.review.diffResults";
+  static final String MAXIMUM_SIZE_PROPERTY = "scm.review.diffResultCache.maximumSize";
+  private static final long DEFAULT_MAXIMUM_SIZE = 64L * 1024 * 1024;
+
+  private final Cache<Key, CachedDiffResult> cache;
+  private final CacheMetrics metrics;
+  private final boolean enabled;
+
+  @Inject
+  public DiffResultCache(MeterRegistry meterRegistry) {
+    this(meterRegistry, Long.getLong(MAXIMUM_SIZE_PROPERTY, DEFAULT_MAXIMUM_SIZE));
+  }
+
+  @VisibleForTesting
+  DiffResultCache(MeterRegistry meterRegistry, long maximumSize) {
+    this.enabled = maximumSize > 0;
+    this.cache = CacheBuilder.newBuilder()
+      .maximumWeight(Math.max(maximumSize, 0))
+      .weigher((Key key, CachedDiffResult diffResult) -> diffResult.getWeight())
+      .build();
+    this.metrics = new CacheMetrics(meterRegistry, CACHE_NAME);
+    Gauge.builder("cache.size", cache, Cache::size)
+      .description("The number of entries in this cache")
+      .tag("cache", CACHE_NAME)
+      .register(meterRegistry);
+  }
+
+  /**
+   * Returns the diff between the target and the source branch of the pull request. If the branches cannot be
+   * resolved to revisions, the diff is computed without the cache.
+   */
+  DiffResult get(RepositoryService repositoryService, PullRequest pullRequest) throws IOException {
+    return get(repositoryService, pullRequest, null);
+  }
+
+  /**
+   * Returns the diff between the target and the source branch of the pull request limited to the given path. A path
+   * of {@code null} returns the complete diff.
+   */
+  DiffResult get(RepositoryService repositoryService, PullRequest pullRequest, String path) throws IOException {
+    Optional<Key> key = enabled ? createKey(repositoryService, pullRequest, path) : Optional.empty();
+    if (key.isEmpty()) {
+      return computeDiff(repositoryService, pullRequest.getSource(), pullRequest.getTarget(), path);
+    }
+    CachedDiffResult cached = cache.getIfPresent(key.get());
+    if (cached != null) {
+      metrics.hit();
+      return cached;
+    }
+    metrics.miss();
+    CachedDiffResult diffResult = CachedDiffResult.copy(
+      computeDiff(repositoryService, key.get().sourceRevision(), key.get().targetRevision(), path)
+    );
+    cache.put(key.get(), diffResult);
+    return diffResult;
+  }
+
+  @Subscribe(async = false)
+  public void onRepositoryDeleted(RepositoryEvent event) {
+    if (event.getEventType() == HandlerEventType.DELETE) {
+      String repositoryId = event.getItem().getId();
+      cache.asMap().keySet().removeIf(key -> key.repositoryId().equals(repositoryId));
+    }
+  }
+
+  public CacheMetrics getMetrics() {
+    return metrics;
+  }
+
+  private Optional<Key> createKey(RepositoryService repositoryService, PullRequest pullRequest, String path) throws IOException {
+    if (!repositoryService.isSupported(Command.BRANCHES)) {
+      return Optional.empty();
+    }
+    List<Branch> branches = repositoryService.getBranchesCommand().getBranches().getBranches();
+    Optional<String> sourceRevision = findRevision(branches, pullRequest.getSource());
+    Optional<String> targetRevision = findRevision(branches, pullRequest.getTarget());
+    if (sourceRevision.isEmpty() || targetRevision.isEmpty()) {
+      return Optional.empty();
+    }
+    return Optional.of(new Key(repositoryService.getRepository().getId(), sourceRevision.get(), targetRevision.get(), path));
+  }
+
+  private static Optional<String> findRevision(List<Branch> branches, String branchName) {
+    return branches.stream()
+      .filter(branch -> branch.getName().equals(branchName))
+      .map(Branch::getRevision)
+      .findFirst();
+  }
+
+  private static DiffResult computeDiff(RepositoryService repositoryService, String source, String target, String path) throws IOException {
+    DiffResultCommandBuilder diffResultCommand = repositoryService.getDiffResultCommand()
+      .setRevision(source)
+      .setAncestorChangeset(target);
+    if (path != null) {
+      diffResultCommand.setPath(path);
+    }
+    return diffResultCommand.getDiffResult();
+  }
+
+  private record Key(String repositoryId, String sourceRevision, String targetRevision, String path) {}
+}
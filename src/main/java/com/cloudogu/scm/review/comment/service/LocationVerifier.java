@@ -26,7 +26,6 @@ import sonia.scm.repository.api.DiffFile;
 import sonia.scm.repository.api.DiffLine;
 import sonia.scm.repository.api.DiffResult;
 import sonia.scm.repository.api.Hunk;
-import sonia.scm.repository.api.RepositoryService;
 import sonia.scm.repository.api.RepositoryServiceFactory;
 
 import java.io.IOException;
@@ -35,17 +34,31 @@ import java.io.IOException;
 class LocationVerifier {
 
   private final RepositoryServiceFactory repositoryServiceFactory;
+  private final DiffResultCache diffResultCache;
 
   @Inject
-  LocationVerifier(RepositoryServiceFactory repositoryServiceFactory) {
+  LocationVerifier(RepositoryServiceFactory repositoryServiceFactory, DiffResultCache diffResultCache) {
     this.repositoryServiceFactory = repositoryServiceFactory;
+    this.diffResultCache = diffResultCache;
   }
 
   void verifyLocation(Comment pullRequestComment, PullRequest pullRequest, Repository repository) {
+    if (pullRequestComment.getLocation() != null) {
+      try (PullRequestDiff diff = openDiff(pullRequest, repository)) {
+        verifyLocation(pullRequestComment, pullRequest, repository, diff);
+      }
+    }
+  }
+
+  PullRequestDiff openDiff(PullRequest pullRequest, Repository repository) {
+    return new PullRequestDiff(() -> repositoryServiceFactory.create(repository), pullRequest, diffResultCache);
+  }
+
+  void verifyLocation(Comment pullRequestComment, PullRequest pullRequest, Repository repository, PullRequestDiff diff) {
     if (pullRequestComment.getLocation() != null) {
       Location location = pullRequestComment.getLocation();
-      try (RepositoryService repositoryService = repositoryServiceFactory.create(repository)) {
-        verifyLocation(pullRequestComment, pullRequest, repository, repositoryService, location);
+      try {
+        verifyLocation(pullRequestComment, pullRequest, repository, diff.getDiffResult(location), location);
       } catch (IOException e) {
         log.warn(
           "exception while checking diff for hunk for comment on pull request {} in repository {} for location in " +
@@ -66,10 +79,10 @@ class LocationVerifier {
     Comment pullRequestComment,
     PullRequest pullRequest,
     Repository repository,
-    RepositoryService repositoryService,
+    DiffResult diffResult,
     Location location
-  ) throws IOException {
-    DiffFile diffFile = findDiffFile(repositoryService, pullRequest, repository, location);
+  ) {
+    DiffFile diffFile = findDiffFile(diffResult, pullRequest, repository, location);
     if (locationHasToBeChecked(location)) {
       String hunk = findHunk(pullRequest, repository, location, diffFile);
       if (location.getHunk() != null && !hunk.equals(location.getHunk())) {
@@ -83,14 +96,7 @@ class LocationVerifier {
     }
   }
 
-  private DiffFile findDiffFile(
-    RepositoryService repositoryService, PullRequest pullRequest, Repository repository, Location location
-  ) throws IOException {
-    DiffResult diffResult =
-      repositoryService.getDiffResultCommand()
-        .setRevision(pullRequest.getSource())
-        .setAncestorChangeset(pullRequest.getTarget())
-        .getDiffResult();
+  private DiffFile findDiffFile(DiffResult diffResult, PullRequest pullRequest, Repository repository, Location location) {
     for (DiffFile diffFile : diffResult) {
       if (isCorrectDiffFile(location, diffFile)) {
         return diffFile;
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.review.comment.service;
+
+import com.cloudogu.scm.review.pullrequest.service.PullRequest;
+import sonia.scm.repository.api.Command;
+import sonia.scm.repository.api.DiffFile;
+import sonia.scm.repository.api.DiffResult;
+import sonia.scm.repository.api.Hunk;
+import sonia.scm.repository.api.RepositoryService;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Diff between the target and the source of a pull request, that is loaded at most once. This way several comments
+ * can be verified and initialized against the same diff without recomputing it for every comment. Across requests
+ * the diff is shared by the {@link DiffResultCache}. Comments on a single file only need the diff of this file, so
+ * the complete diff is computed only if it is requested explicitly or if the commented line cannot be found in the
+ * diff of the file, because it may have been renamed. The repository service is opened on first access and closed
+ * with this object.
+ */
+class PullRequestDiff implements AutoCloseable {
+
+  private final Supplier<RepositoryService> repositoryServiceSupplier;
+  private final PullRequest pullRequest;
+  private final DiffResultCache diffResultCache;
+  private final Map<String, DiffResult> fileDiffResults = new HashMap<>();
+
+  private RepositoryService repositoryService;
+  private DiffResult diffResult;
+
+  PullRequestDiff(Supplier<RepositoryService> repositoryServiceSupplier, PullRequest pullRequest, DiffResultCache diffResultCache) {
+    this.repositoryServiceSupplier = repositoryServiceSupplier;
+    this.pullRequest = pullRequest;
+    this.diffResultCache = diffResultCache;
+  }
+
+  boolean isSupported() {
+    return getRepositoryService().isSupported(Command.DIFF_RESULT);
+  }
+
+  DiffResult getDiffResult() throws IOException {
+    if (diffResult == null) {
+      diffResult = diffResultCache.get(getRepositoryService(), pullRequest);
+    }
+    return diffResult;
+  }
+
+  /**
+   * Returns a diff that contains at least the changes of the file of the given location. Usually the diff of this
+   * single path is sufficient, even if the file has been added or deleted. Only if the line or the hunk of the
+   * location cannot be found in this diff, the file may be part of a rename, which is only detected in the complete
+   * diff. In this case the complete diff is returned.
+   */
+  DiffResult getDiffResult(Location location) throws IOException {
+    if (diffResult != null) {
+      return diffResult;
+    }
+    String file = location.getFile();
+    DiffResult fileDiffResult = fileDiffResults.get(file);
+    if (fileDiffResult == null) {
+      fileDiffResult = diffResultCache.get(getRepositoryService(), pullRequest, file);
+      fileDiffResults.put(file, fileDiffResult);
+    }
+    if (containsLocation(fileDiffResult, location)) {
+      return fileDiffResult;
+    }
+    return getDiffResult();
+  }
+
+  private static boolean containsLocation(DiffResult diffResult, Location location) {
+    for (DiffFile diffFile : diffResult) {
+      if (location.getFile().equals(diffFile.getNewPath()) || location.getFile().equals(diffFile.getOldPath())) {
+        return location.getOldLineNumber() == null && location.getNewLineNumber() == null || containsLine(diffFile, location);
+      }
+    }
+    return false;
+  }
+
+  private static boolean containsLine(DiffFile diffFile, Location location) {
+    for (Hunk hunk : diffFile) {
+      if (isContainedInHunk(hunk, location)) {
+        return location.getHunk() == null || location.getHunk().equals(hunk.getRawHeader());
+      }
+    }
+    return false;
+  }
+
+  private static boolean isContainedInHunk(Hunk hunk, Location location) {
+    if (location.getNewLineNumber() != null) {
+      return hunk.getNewStart() <= location.getNewLineNumber()
+        && hunk.getNewStart() + hunk.getNewLineCount() > location.getNewLineNumber();
+    }
+    return hunk.getOldStart() <= location.getOldLineNumber()
+      && hunk.getOldStart() + hunk.getOldLineCount() > location.getOldLineNumber();
+  }
+
+  RepositoryService getRepositoryService() {
+    if (repositoryService == null) {
+      repositoryService = repositoryServiceSupplier.get();
+    }
+    return repositoryService;
+  }
+
+  @Override
+  public void close() {
+    if (repositoryService != null) {
+      repositoryService.close();
+    }
+  }
+}
@@ -75,14 +75,13 @@ public class PullRequestImageService {
     Repository repository = repositoryResolver.resolve(namespaceAndName);
     PermissionCheck.checkComment(repository);
     CommentStore commentStore = commentStoreBuilder.create(repository);
-    Comment comment = commentStore.getPullRequestCommentById(pullRequestId, commentId)
-      .orElseThrow(() -> new NotFoundException(Comment.class, commentId));
-    Reply reply = comment.getReplies().stream().filter(r -> r.getId().equals(replyId)).findFirst()
+    Reply reply = commentStore.getReply(pullRequestId, replyId)
+      .filter(r -> commentId.equals(r.getParentId()))
       .orElseThrow(() -> new NotFoundException(Reply.class, replyId));
 
     String imageId = createPullRequestImage(repository, pullRequestId, fileHash, filetype, imageStream);
     reply.getAssignedImages().add(imageId);
-    commentStore.update(pullRequestId, comment);
+    commentStore.updateReply(pullRequestId, reply);
   }
 
   public void createCommentImage(NamespaceAndName namespaceAndName, String pullRequestId, String commentId, String fileHash, String filetype, InputStream imageStream) {
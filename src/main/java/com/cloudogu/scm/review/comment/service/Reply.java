@@ -16,17 +16,29 @@
 
 package com.cloudogu.scm.review.comment.service;
 
+import com.cloudogu.scm.review.pullrequest.service.PullRequest;
 import lombok.EqualsAndHashCode;
 import lombok.ToString;
+import sonia.scm.repository.Repository;
+import sonia.scm.store.QueryableType;
 
 import java.time.Instant;
 
+@QueryableType({Repository.class, PullRequest.class})
 @EqualsAndHashCode(callSuper = true)
 @ToString(callSuper = true)
 public class Reply extends BasicComment {
 
   private boolean systemReply = false;
 
+  /**
+   * Id of the root comment this is a reply to. Replies are stored on their own and not as part of their root
+   * comment, so this is used to find all replies of a comment.
+   *
+   * @since 3.17.0
+   */
+  private String parentId;
+
   public boolean isSystemReply() {
     return systemReply;
   }
@@ -35,6 +47,14 @@ public class Reply extends BasicComment {
     this.systemReply = systemReply;
   }
 
+  public String getParentId() {
+    return parentId;
+  }
+
+  public void setParentId(String parentId) {
+    this.parentId = parentId;
+  }
+
   public static Reply createReply(String id, String text, String author) {
     Reply comment = new Reply();
     comment.setId(id);
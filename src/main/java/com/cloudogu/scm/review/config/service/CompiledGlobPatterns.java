@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.review.config.service;
+
+import sonia.scm.util.GlobUtil;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * A set of glob patterns compiled for fast matching of many values, like the paths changed by a push. Patterns
+ * without wildcards are looked up in a hash set and patterns with a single trailing {@code *} are stored in a prefix
+ * trie, so that these common cases are matched in the length of the value. Only the remaining patterns are combined
+ * into a single regular expression. The result is the same as matching every pattern with
+ * {@link GlobUtil#matches(String, String)}.
+ */
+final class CompiledGlobPatterns {
+
+  private static final Pattern LITERAL = Pattern.compile("[\\w./\\-]*");
+
+  private final Set<String> exactPatterns = new HashSet<>();
+  private final PrefixTrie prefixPatterns = new PrefixTrie();
+  private final Pattern otherPatterns;
+
+  CompiledGlobPatterns(Collection<String> patterns) {
+    List<String> others = new ArrayList<>();
+    for (String pattern : patterns) {
+      if (LITERAL.matcher(pattern).matches()) {
+        exactPatterns.add(pattern);
+      } else if (pattern.endsWith("*") && LITERAL.matcher(pattern.substring(0, pattern.length() - 1)).matches()) {
+        prefixPatterns.add(pattern.substring(0, pattern.length() - 1));
+      } else {
+        others.add(pattern);
+      }
+    }
+    if (others.isEmpty()) {
+      otherPatterns = null;
+    } else {
+      otherPatterns = Pattern.compile(
+        others.stream()
+          .map(pattern -> "(?:" + GlobUtil.convertGlobToRegEx(pattern) + ")")
+          .collect(Collectors.joining("|"))
+      );
+    }
+  }
+
+  boolean matches(String value) {
+    return exactPatterns.contains(value)
+      || prefixPatterns.containsPrefixOf(value)
+      || (otherPatterns != null && otherPatterns.matcher(value).matches());
+  }
+
+  private static class PrefixTrie {
+
+    private final Map<Character, PrefixTrie> children = new HashMap<>();
+    private boolean terminal;
+
+    void add(String prefix) {
+      PrefixTrie node = this;
+      for (int i = 0; i < prefix.length(); ++i) {
+        node = node.children.computeIfAbsent(prefix.charAt(i), c -> new PrefixTrie());
+      }
+      node.terminal = true;
+    }
+
+    boolean containsPrefixOf(String value) {
+      PrefixTrie node = this;
+      for (int i = 0; node != null; ++i) {
+        if (node.terminal) {
+          return true;
+        }
+        if (i == value.length()) {
+          return false;
+        }
+        node = node.children.get(value.charAt(i));
+      }
+      return false;
+    }
+  }
+}
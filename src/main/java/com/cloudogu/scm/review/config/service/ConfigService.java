@@ -29,7 +29,9 @@ import sonia.scm.store.ConfigurationStoreFactory;
 import sonia.scm.util.GlobUtil;
 
 import java.util.Collection;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static java.util.Collections.emptyList;
 
@@ -42,20 +44,30 @@ public class ConfigService {
   private final ConfigurationStore<GlobalPullRequestConfig> globalStore;
   private final GroupCollector groupCollector;
   private final RepositoryResolver repositoryResolver;
+  private final PullRequestConfigCache configCache;
 
   @Inject
-  public ConfigService(ConfigurationStoreFactory storeFactory, GroupCollector groupCollector, RepositoryResolver repositoryResolver) {
+  public ConfigService(ConfigurationStoreFactory storeFactory, GroupCollector groupCollector, RepositoryResolver repositoryResolver, PullRequestConfigCache configCache) {
     this.storeFactory = storeFactory;
     globalStore = storeFactory.withType(GlobalPullRequestConfig.class).withName(STORE_NAME).build();
     this.groupCollector = groupCollector;
     this.repositoryResolver = repositoryResolver;
+    this.configCache = configCache;
   }
 
   public BasePullRequestConfig evaluateConfig(NamespaceAndName namespaceAndName) {
     return evaluateConfig(repositoryResolver.resolve(namespaceAndName));
   }
 
+  /**
+   * Returns the effective configuration for the repository. The result is cached and shared, so it must not be
+   * modified.
+   */
   public BasePullRequestConfig evaluateConfig(Repository repository) {
+    return configCache.get(repository, () -> loadConfig(repository));
+  }
+
+  private BasePullRequestConfig loadConfig(Repository repository) {
     GlobalPullRequestConfig globalConfig = globalStore.getOptional().orElse(new GlobalPullRequestConfig());
     NamespacePullRequestConfig namespaceConfig = getNamespacePullRequestConfig(repository.getNamespace());
     RepositoryPullRequestConfig repositoryConfig = getStore(repository).getOptional().orElse(new RepositoryPullRequestConfig());
@@ -69,6 +81,7 @@ public class ConfigService {
 
   public void setRepositoryPullRequestConfig(Repository repository, RepositoryPullRequestConfig repositoryPullRequestConfig) {
     getStore(repository).set(repositoryPullRequestConfig);
+    configCache.invalidate(repository);
   }
 
   public NamespacePullRequestConfig getNamespacePullRequestConfig(String namespace) {
@@ -77,6 +90,7 @@ public class ConfigService {
 
   public void setNamespacePullRequestConfig(String namespace, NamespacePullRequestConfig pullRequestConfig) {
     getStore(namespace).set(pullRequestConfig);
+    configCache.invalidateNamespace(namespace);
   }
 
   public GlobalPullRequestConfig getGlobalPullRequestConfig() {
@@ -85,6 +99,7 @@ public class ConfigService {
 
   public void setGlobalPullRequestConfig(GlobalPullRequestConfig pullRequestConfig) {
     globalStore.set(pullRequestConfig);
+    configCache.invalidateAll();
   }
 
   public boolean isEnabled(Repository repository) {
@@ -98,8 +113,21 @@ public class ConfigService {
       .anyMatch(branchPattern -> patternMatches(branchPattern, branch));
   }
 
+  /**
+   * Use {@link #getBranchProtectionMatcher(Repository)} to check more than one path.
+   */
   public boolean isBranchPathProtected(Repository repository, String branch, String path) {
-    return new BranchProtectionMatcher(getProtectedBranches(repository)).matches(branch, path);
+    return getBranchProtectionMatcher(repository).matches(branch, path);
+  }
+
+  /**
+   * Creates a matcher for the protected branches and paths of the repository for the current user. The configuration
+   * is read only once, so the matcher should be used to check many paths, for example for a single push.
+   *
+   * @since 3.17.0
+   */
+  public BranchProtectionMatcher getBranchProtectionMatcher(Repository repository) {
+    return new BranchProtectionMatcher(getProtectedBranches(repository));
   }
 
   public boolean isPreventMergeFromAuthor(Repository repository) {
@@ -150,18 +178,39 @@ public class ConfigService {
     return storeFactory.withType(NamespacePullRequestConfig.class).withName(STORE_NAME).forNamespace(namespace).build();
   }
 
-  static class BranchProtectionMatcher {
+  /**
+   * Matcher for the protected branches and paths of a repository for the current user. The configuration and the
+   * bypasses are evaluated only once when the matcher is created and the path patterns of a branch are compiled on
+   * first use, so that a single matcher can check all paths changed by a push.
+   *
+   * @see #getBranchProtectionMatcher(Repository)
+   * @since 3.17.0
+   */
+  public static class BranchProtectionMatcher {
 
     private final Collection<BasePullRequestConfig.BranchProtection> branchProtections;
+    private final Map<String, CompiledGlobPatterns> pathPatternsByBranch = new ConcurrentHashMap<>();
 
     BranchProtectionMatcher(Collection<BasePullRequestConfig.BranchProtection> branchProtections) {
       this.branchProtections = branchProtections;
     }
 
-    boolean matches(String branch, String path) {
+    public boolean isBranchProtected(String branch) {
       return branchProtections.stream()
-        .filter(branchProtection -> patternMatches(branchProtection.getBranch(), branch))
-        .anyMatch(branchProtection -> patternMatches(branchProtection.getPath(), path));
+        .anyMatch(branchProtection -> patternMatches(branchProtection.getBranch(), branch));
+    }
+
+    public boolean matches(String branch, String path) {
+      return getPathPatterns(branch).matches(path);
+    }
+
+    private CompiledGlobPatterns getPathPatterns(String branch) {
+      return pathPatternsByBranch.computeIfAbsent(branch, b -> new CompiledGlobPatterns(
+        branchProtections.stream()
+          .filter(branchProtection -> patternMatches(branchProtection.getBranch(), b))
+          .map(BasePullRequestConfig.BranchProtection::getPath)
+          .toList()
+      ));
     }
   }
 }
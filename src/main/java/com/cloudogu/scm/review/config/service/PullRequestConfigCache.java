@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.review.config.service;
+
+import com.cloudogu.scm.review.CacheMetrics;
+import com.github.legman.Subscribe;
+import com.google.common.annotations.VisibleForTesting;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import sonia.scm.EagerSingleton;
+import sonia.scm.HandlerEventType;
+import sonia.scm.cache.Cache;
+import sonia.scm.cache.CacheManager;
+import sonia.scm.plugin.Extension;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryEvent;
+
+import java.util.function.Supplier;
+
+/**
+ * Cache for the effective pull request configuration of repositories, as evaluated from the global, the namespace
+ * and the repository configuration. The entries are invalidated by {@link ConfigService} whenever one of these
+ * configurations is written and when a repository is modified (e.g. renamed) or deleted. Cached configurations are
+ * shared between callers and must not be modified. The size of the cache can be configured like every other cache
+ * with the name {@value #CACHE_NAME}. The cache can be disabled with the system property {@value #ENABLED_PROPERTY}
+ * set to {@code false}. Configurations, that are loaded while an invalidation takes place, are not cached.
+ */
+@Singleton
+@Extension
+@EagerSingleton
+public class PullRequestConfigCache {
+
+  static final String CACHE_NAME = "sonia.cache.review.pullRequestConfig";
+  static final String ENABLED_PROPERTY = "scm.review.pullRequestConfigCache.enabled";
+
+  private final Cache<Key, BasePullRequestConfig> cache;
+  private final CacheMetrics metrics;
+  private final boolean enabled;
+  private final Object lock = new Object();
+
+  /**
+   * Incremented by every invalidation. A loaded configuration is only cached, if no invalidation happened while it
+   * was loaded, because it may have been read from the stores before they were changed.
+   */
+  private long generation;
+
+  @Inject
+  public PullRequestConfigCache(CacheManager cacheManager, MeterRegistry meterRegistry) {
+    this(cacheManager, meterRegistry, Boolean.parseBoolean(System.getProperty(ENABLED_PROPERTY, "true")));
+  }
+
+  @VisibleForTesting
+  PullRequestConfigCache(CacheManager cacheManager, MeterRegistry meterRegistry, boolean enabled) {
+    this.cache = cacheManager.getCache(CACHE_NAME);
+    this.metrics = new CacheMetrics(meterRegistry, CACHE_NAME);
+    this.enabled = enabled;
+  }
+
+  BasePullRequestConfig get(Repository repository, Supplier<BasePullRequestConfig> loader) {
+    if (!enabled) {
+      return loader.get();
+    }
+    Key key = new Key(repository.getId(), repository.getNamespace());
+    BasePullRequestConfig cached = cache.get(key);
+    if (cached != null) {
+      metrics.hit();
+      return cached;
+    }
+    metrics.miss();
+    long loadGeneration = currentGeneration();
+    BasePullRequestConfig loaded = loader.get();
+    synchronized (lock) {
+      if (generation == loadGeneration) {
+        cache.put(key, loaded);
+      }
+    }
+    return loaded;
+  }
+
+  void invalidate(Repository repository) {
+    String repositoryId = repository.getId();
+    synchronized (lock) {
+      generation++;
+      cache.removeAll(key -> key.repositoryId().equals(repositoryId));
+    }
+  }
+
+  void invalidateNamespace(String namespace) {
+    synchronized (lock) {
+      generation++;
+      cache.removeAll(key -> key.namespace().equals(namespace));
+    }
+  }
+
+  void invalidateAll() {
+    synchronized (lock) {
+      generation++;
+      cache.clear();
+    }
+  }
+
+  private long currentGeneration() {
+    synchronized (lock) {
+      return generation;
+    }
+  }
+
+  @Subscribe(async = false)
+  public void onRepositoryEvent(RepositoryEvent event) {
+    if (event.getEventType() == HandlerEventType.MODIFY || event.getEventType() == HandlerEventType.DELETE) {
+      invalidate(event.getItem());
+    }
+  }
+
+  public CacheMetrics getMetrics() {
+    return metrics;
+  }
+
+  private record Key(String repositoryId, String namespace) {}
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.review.emailnotification;
+
+import com.cloudogu.scm.review.comment.service.Comment;
+import com.cloudogu.scm.review.comment.service.CommentsAddedEvent;
+import sonia.scm.mail.api.Topic;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Renders a single mail for a batch of comments, that have been added together (e.g. by submitting a review).
+ */
+public class CommentsAddedMailTextResolver extends BasicPRMailTextResolver<CommentsAddedEvent> implements MailTextResolver {
+
+  public static final String EVENT_DISPLAY_NAME = "commentsAdded";
+  protected static final String TEMPLATE_PATH = "com/cloudogu/scm/email/template/created_comments.mustache";
+
+  private final CommentsAddedEvent commentsAddedEvent;
+  private final List<Comment> comments;
+
+  public CommentsAddedMailTextResolver(CommentsAddedEvent commentsAddedEvent, List<Comment> comments) {
+    this.commentsAddedEvent = commentsAddedEvent;
+    this.comments = comments;
+  }
+
+  @Override
+  public String getMailSubject(Locale locale) {
+    return getMailSubject(commentsAddedEvent, EVENT_DISPLAY_NAME, locale);
+  }
+
+  @Override
+  public String getContentTemplatePath() {
+    return TEMPLATE_PATH;
+  }
+
+  @Override
+  public Map<String, Object> getContentTemplateModel(String basePath) {
+    Map<String, Object> model = getTemplateModel(basePath, commentsAddedEvent);
+    model.put("comments", comments);
+    model.put("count", comments.size());
+    return model;
+  }
+
+  @Override
+  public Topic getTopic() {
+    return TOPIC_COMMENTS;
+  }
+
+  @Override
+  public String getPullRequestId() {
+    return commentsAddedEvent.getPullRequest().getId();
+  }
+}
@@ -16,7 +16,9 @@
 
 package com.cloudogu.scm.review.emailnotification;
 
+import com.cloudogu.scm.review.comment.service.Comment;
 import com.cloudogu.scm.review.comment.service.CommentEvent;
+import com.cloudogu.scm.review.comment.service.CommentsAddedEvent;
 import com.cloudogu.scm.review.comment.service.MentionEvent;
 import com.cloudogu.scm.review.comment.service.Reply;
 import com.cloudogu.scm.review.comment.service.ReplyEvent;
@@ -42,6 +44,7 @@ import sonia.scm.repository.Repository;
 
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import static java.util.stream.Collectors.toSet;
@@ -104,6 +107,22 @@ public class EmailNotificationHook {
     }
   }
 
+  @Subscribe
+  public void handleCommentsAddedEvents(CommentsAddedEvent event) {
+    PullRequest pullRequest = event.getPullRequest();
+    List<Comment> comments = event.getComments()
+      .stream()
+      .filter(comment -> !comment.isSystemComment())
+      .toList();
+    if (comments.size() == 1) {
+      CommentEvent commentEvent = new CommentEvent(event.getRepository(), pullRequest, comments.get(0), null, HandlerEventType.CREATE);
+      handleEventIfNotDraft(commentEvent, new CommentEventMailTextResolver(commentEvent), pullRequest, getSubscribersWithoutCurrentUser(pullRequest));
+    } else if (!comments.isEmpty()) {
+      // send a single mail for the whole batch instead of one mail for each comment
+      handleEventIfNotDraft(event, new CommentsAddedMailTextResolver(event, comments), pullRequest, getSubscribersWithoutCurrentUser(pullRequest));
+    }
+  }
+
   @Subscribe
   public void handleReplyEvents(ReplyEvent event) {
     PullRequest pullRequest = event.getPullRequest();
@@ -19,6 +19,7 @@ package com.cloudogu.scm.review.guard;
 import com.cloudogu.scm.editor.ChangeGuard;
 import com.cloudogu.scm.editor.ChangeObstacle;
 import com.cloudogu.scm.review.config.service.ConfigService;
+import com.cloudogu.scm.review.config.service.ConfigService.BranchProtectionMatcher;
 import jakarta.inject.Inject;
 import sonia.scm.plugin.Extension;
 import sonia.scm.plugin.Requires;
@@ -64,9 +65,10 @@ public class MergeOnlyChangeGuard implements ChangeGuard {
   }
 
   private boolean preventModification(Repository repository, String branch, Changes changes) {
+    BranchProtectionMatcher matcher = configService.getBranchProtectionMatcher(repository);
     return Stream.of(changes.getFilesToCreate(), changes.getFilesToModify(), changes.getFilesToDelete())
       .flatMap(Collection::stream)
-      .anyMatch(path -> configService.isBranchPathProtected(repository, branch, path))
-      || (changes.getPathForCreate().isPresent() && configService.isBranchPathProtected(repository, branch, changes.getPathForCreate().get()));
+      .anyMatch(path -> matcher.matches(branch, path))
+      || (changes.getPathForCreate().isPresent() && matcher.matches(branch, changes.getPathForCreate().get()));
   }
 }
@@ -20,10 +20,8 @@ import com.cloudogu.mcp.OkResultRenderer;
 import com.cloudogu.mcp.ToolResult;
 import com.cloudogu.mcp.TypedTool;
 import com.cloudogu.scm.review.PermissionCheck;
-import com.cloudogu.scm.review.comment.service.Comment;
-import com.cloudogu.scm.review.comment.service.CommentQueryFields;
-import com.cloudogu.scm.review.comment.service.CommentStoreFactory;
-import com.cloudogu.scm.review.comment.service.CommentType;
+import com.cloudogu.scm.review.comment.service.CommentSummaryStore;
+import com.cloudogu.scm.review.comment.service.CommentSummaryStore.PullRequestReference;
 import com.cloudogu.scm.review.pullrequest.service.MergeService;
 import com.cloudogu.scm.review.pullrequest.service.PullRequest;
 import com.cloudogu.scm.review.pullrequest.service.PullRequestQueryFields;
@@ -52,6 +50,7 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import static com.cloudogu.mcp.OkResultRenderer.success;
@@ -62,19 +61,19 @@ import static com.cloudogu.scm.review.PermissionCheck.mayRead;
 @Requires("scm-mcp-plugin")
 class ListPullRequestTool implements TypedTool<PullRequestListInput> {
   private final PullRequestStoreFactory pullRequestStoreFactory;
-  private final CommentStoreFactory commentStoreFactory;
+  private final CommentSummaryStore commentSummaryStore;
   private final RepositoryManager repositoryManager;
   private final PullRequestMcpMapper pullRequestMapper;
   private final MergeService mergeService;
 
   @Inject
   ListPullRequestTool(PullRequestStoreFactory pullRequestStoreFactory,
-                      CommentStoreFactory commentStoreFactory,
+                      CommentSummaryStore commentSummaryStore,
                       RepositoryManager repositoryManager,
                       PullRequestMcpMapper pullRequestMapper,
                       MergeService mergeService) {
     this.pullRequestStoreFactory = pullRequestStoreFactory;
-    this.commentStoreFactory = commentStoreFactory;
+    this.commentSummaryStore = commentSummaryStore;
     this.repositoryManager = repositoryManager;
     this.pullRequestMapper = pullRequestMapper;
     this.mergeService = mergeService;
@@ -175,9 +174,10 @@ class ListPullRequestTool implements TypedTool<PullRequestListInput> {
 
       List<QueryableStore.Result<PullRequest>> all = query.findAll(0, input.getLimit() == 0 ? Integer.MAX_VALUE : input.getLimit());
 
+      Set<PullRequestReference> pullRequestsWithOpenTasks = input.isWithOpenTasksOnly() ? commentSummaryStore.getPullRequestsWithOpenTasks() : Set.of();
       all = all.stream()
         .filter(result -> mayRead(result.getParentId(Repository.class).get()))
-        .filter(result -> !input.isWithOpenTasksOnly() || hasOpenTasks(result))
+        .filter(result -> !input.isWithOpenTasksOnly() || hasOpenTasks(result, pullRequestsWithOpenTasks))
         .filter(result -> !input.isWithObstaclesOnly() || filterForObstacles(result))
         .toList();
 
@@ -231,12 +231,8 @@ class ListPullRequestTool implements TypedTool<PullRequestListInput> {
     return !mergeService.getObstacles(repository, result.getEntity()).isEmpty();
   }
 
-  private boolean hasOpenTasks(QueryableStore.Result<PullRequest> result) {
-    String repositoryId = result.getParentId(Repository.class).get();
-    String pullRequestId = result.getId();
-    try (QueryableStore<Comment> commentStore = commentStoreFactory.get(repositoryId, pullRequestId)) {
-      return commentStore.query(CommentQueryFields.TYPE.eq(CommentType.TASK_TODO)).count() > 0;
-    }
+  private boolean hasOpenTasks(QueryableStore.Result<PullRequest> result, Set<PullRequestReference> pullRequestsWithOpenTasks) {
+    return pullRequestsWithOpenTasks.contains(new PullRequestReference(result.getParentId(Repository.class).get(), result.getId()));
   }
 
   private PullRequestOverviewMcp convertWithDetails(QueryableStore.Result<PullRequest> result) {
@@ -17,7 +17,7 @@
 package com.cloudogu.scm.review.mcp;
 
 import com.cloudogu.scm.review.comment.service.CommentService;
-import com.cloudogu.scm.review.comment.service.CommentType;
+import com.cloudogu.scm.review.comment.service.CommentSummary;
 import com.cloudogu.scm.review.pullrequest.dto.DisplayedUserDto;
 import com.cloudogu.scm.review.pullrequest.dto.ReviewerDto;
 import com.cloudogu.scm.review.pullrequest.dto.TasksDto;
@@ -72,13 +72,8 @@ public abstract class PullRequestMcpMapper {
 
   @AfterMapping
   void mapTasks(@MappingTarget PullRequestDetailMcp target, PullRequest pullRequest, @Context Repository repository) {
-    commentService.getAll(repository.getNamespace(), repository.getName(), pullRequest.getId());
-    target.setTasks(
-      new TasksDto(
-        commentService.getCount(repository.getNamespace(), repository.getName(), pullRequest.getId(), CommentType.TASK_TODO),
-        commentService.getCount(repository.getNamespace(), repository.getName(), pullRequest.getId(), CommentType.TASK_DONE)
-      )
-    );
+    CommentSummary summary = commentService.getSummary(repository, pullRequest.getId());
+    target.setTasks(new TasksDto(summary.getOpenTasks(), summary.getDoneTasks()));
   }
 
   @AfterMapping
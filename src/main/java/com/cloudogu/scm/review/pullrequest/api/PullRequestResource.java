@@ -47,6 +47,7 @@ import jakarta.ws.rs.BeanParam;
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.DELETE;
 import jakarta.ws.rs.GET;
+import jakarta.ws.rs.HeaderParam;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.PUT;
 import jakarta.ws.rs.Path;
@@ -54,11 +55,14 @@ import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.QueryParam;
 import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.UriInfo;
 import jakarta.ws.rs.sse.Sse;
 import jakarta.ws.rs.sse.SseEventSink;
+import sonia.scm.ConcurrentModificationException;
 import sonia.scm.api.v2.resources.ErrorDto;
 import sonia.scm.repository.NamespaceAndName;
 import sonia.scm.repository.Repository;
@@ -129,10 +133,16 @@ public class PullRequestResource {
       schema = @Schema(implementation = ErrorDto.class)
     )
   )
-  public PullRequestDto get(@Context UriInfo uriInfo, @PathParam("namespace") String namespace, @PathParam("name") String name, @PathParam("pullRequestId") String pullRequestId) {
+  public Response get(@Context UriInfo uriInfo, @PathParam("namespace") String namespace, @PathParam("name") String name, @PathParam("pullRequestId") String pullRequestId) {
     Repository repository = service.getRepository(namespace, name);
     PermissionCheck.checkRead(repository);
-    return mapper.using(uriInfo).map(service.get(namespace, name, pullRequestId), repository);
+    PullRequest pullRequest = service.get(namespace, name, pullRequestId);
+    PullRequestDto pullRequestDto = mapper.using(uriInfo).map(pullRequest, repository);
+    // the review marks are read for single pull requests only, so that lists do not need a query for each entry
+    pullRequestDto.setMarkedAsReviewed(service.getFilesMarkedAsReviewed(repository, pullRequestId, CurrentUserResolver.getCurrentUser()));
+    return Response.ok(pullRequestDto)
+      .tag(createEntityTag(pullRequest))
+      .build();
   }
 
   @GET
@@ -364,6 +374,7 @@ public class PullRequestResource {
   @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
   @ApiResponse(responseCode = "403", description = "not authorized, the current user does not have the \"modifyPullRequest\" privilege")
   @ApiResponse(responseCode = "404", description = "not found, no pull request with the specified id is available")
+  @ApiResponse(responseCode = "409", description = "conflict, the pull request has been modified since the version given with the \"If-Match\" header")
   @ApiResponse(
     responseCode = "500",
     description = "internal server error",
@@ -376,6 +387,7 @@ public class PullRequestResource {
                          @PathParam("namespace") String namespace,
                          @PathParam("name") String name,
                          @PathParam("pullRequestId") String pullRequestId,
+                         @HeaderParam(HttpHeaders.IF_MATCH) String ifMatch,
                          PullRequestDto pullRequestDto) {
     Repository repository = service.getRepository(namespace, name);
     if (!PermissionCheck.mayModifyPullRequest(repository, service.get(namespace, name, pullRequestId))) {
@@ -387,10 +399,34 @@ public class PullRequestResource {
 
     PullRequest pullRequest = mapper.map(pullRequestDto);
 
-    service.update(repository, pullRequestId, pullRequest);
+    if (Strings.isNullOrEmpty(ifMatch) || "*".equals(ifMatch.trim())) {
+      service.update(repository, pullRequestId, pullRequest);
+    } else {
+      service.update(repository, pullRequestId, pullRequest, parseVersion(pullRequestId, ifMatch));
+    }
     return Response.noContent().build();
   }
 
+  private static EntityTag createEntityTag(PullRequest pullRequest) {
+    return new EntityTag(Long.toString(pullRequest.getVersion()));
+  }
+
+  private static long parseVersion(String pullRequestId, String ifMatch) {
+    String version = ifMatch.trim();
+    if (version.startsWith("W/")) {
+      version = version.substring(2);
+    }
+    if (version.length() > 1 && version.startsWith("\"") && version.endsWith("\"")) {
+      version = version.substring(1, version.length() - 1);
+    }
+    try {
+      return Long.parseLong(version);
+    } catch (NumberFormatException e) {
+      // a tag we have never issued cannot match the current version
+      throw new ConcurrentModificationException(PullRequest.class, pullRequestId);
+    }
+  }
+
   @POST
   @Path("reject")
   @Operation(summary = "Reject pull request", description = "Rejects a pull request.", tags = "Pull Request")
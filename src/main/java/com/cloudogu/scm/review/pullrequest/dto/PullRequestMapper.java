@@ -21,13 +21,12 @@ import com.cloudogu.scm.review.CurrentUserResolver;
 import com.cloudogu.scm.review.PermissionCheck;
 import com.cloudogu.scm.review.PullRequestResourceLinks;
 import com.cloudogu.scm.review.comment.service.CommentService;
-import com.cloudogu.scm.review.comment.service.CommentType;
+import com.cloudogu.scm.review.comment.service.CommentSummary;
 import com.cloudogu.scm.review.config.service.BasePullRequestConfig;
 import com.cloudogu.scm.review.config.service.ConfigService;
 import com.cloudogu.scm.review.pullrequest.service.PullRequest;
 import com.cloudogu.scm.review.pullrequest.service.PullRequestService;
 import com.cloudogu.scm.review.pullrequest.service.PullRequestStatus;
-import com.cloudogu.scm.review.pullrequest.service.ReviewMark;
 import com.google.common.base.Strings;
 import de.otto.edison.hal.Embedded;
 import de.otto.edison.hal.HalRepresentation;
@@ -68,7 +67,6 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 
-import static com.cloudogu.scm.review.CurrentUserResolver.getCurrentUser;
 import static com.cloudogu.scm.review.pullrequest.dto.PullRequestCheckResultDto.PullRequestCheckStatus.PR_VALID;
 import static de.otto.edison.hal.Embedded.embeddedBuilder;
 import static de.otto.edison.hal.Link.link;
@@ -155,23 +153,8 @@ public abstract class PullRequestMapper extends BaseMapper<PullRequest, PullRequ
 
   @AfterMapping
   void mapTasks(@MappingTarget PullRequestDto target, PullRequest pullRequest, @Context Repository repository) {
-    commentService.getAll(repository.getNamespace(), repository.getName(), pullRequest.getId());
-    target.setTasks(
-      new TasksDto(
-        commentService.getCount(repository.getNamespace(), repository.getName(), pullRequest.getId(), CommentType.TASK_TODO),
-        commentService.getCount(repository.getNamespace(), repository.getName(), pullRequest.getId(), CommentType.TASK_DONE)
-      )
-    );
-  }
-
-  @AfterMapping
-  void mapReviewMarks(@MappingTarget PullRequestDto target, PullRequest pullRequest) {
-    List<String> filesMarkedAsReviewed = pullRequest.getReviewMarks()
-      .stream()
-      .filter(mark -> mark.getUser().equals(getCurrentUser().getId()))
-      .map(ReviewMark::getFile)
-      .toList();
-    target.setMarkedAsReviewed(filesMarkedAsReviewed);
+    CommentSummary summary = commentService.getSummary(repository, pullRequest.getId());
+    target.setTasks(new TasksDto(summary.getOpenTasks(), summary.getDoneTasks()));
   }
 
   @ObjectFactory
@@ -220,14 +203,7 @@ public abstract class PullRequestMapper extends BaseMapper<PullRequest, PullRequ
         .rejectWithMessage(namespace, name, pullRequestId)));
     }
 
-    Optional<Branch> sourceBranch = branchResolver.find(repository, pullRequest.getSource());
-    Optional<Branch> targetBranch = branchResolver.find(repository, pullRequest.getTarget());
-    boolean isPrCreationValid = false;
-    if (sourceBranch.isPresent() && targetBranch.isPresent()) {
-      isPrCreationValid = PR_VALID.equals(pullRequestService.checkIfPullRequestIsValid(repository, pullRequest.getSource(), pullRequest.getTarget()));
-    }
-
-    if (PermissionCheck.mayCreate(repository) && pullRequest.isRejected() && sourceBranch.isPresent() && targetBranch.isPresent() && isPrCreationValid) {
+    if (PermissionCheck.mayCreate(repository) && pullRequest.isRejected() && canBeReopened(repository, pullRequest)) {
       linksBuilder.single(link("reopen", pullRequestResourceLinks.pullRequest()
         .reopen(namespace, name, pullRequestId)));
     }
@@ -251,6 +227,14 @@ public abstract class PullRequestMapper extends BaseMapper<PullRequest, PullRequ
     return new PullRequestDto(linksBuilder.build(), embeddedBuilder.build());
   }
 
+  private boolean canBeReopened(Repository repository, PullRequest pullRequest) {
+    Optional<Branch> sourceBranch = branchResolver.find(repository, pullRequest.getSource());
+    Optional<Branch> targetBranch = branchResolver.find(repository, pullRequest.getTarget());
+    return sourceBranch.isPresent()
+      && targetBranch.isPresent()
+      && PR_VALID.equals(pullRequestService.checkIfPullRequestIsValid(repository, pullRequest.getSource(), pullRequest.getTarget()));
+  }
+
   private void embedDefaultConfig(Repository repository, Embedded.Builder embeddedBuilder) {
     BasePullRequestConfig basePullRequestConfig = configService.evaluateConfig(repository);
     embeddedBuilder.with("defaultConfig", new DefaultConfigDto(basePullRequestConfig.getDefaultMergeStrategy().name(), basePullRequestConfig.isDeleteBranchOnMerge()));
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.review.pullrequest.landingpage;
+
+import com.cloudogu.scm.review.CacheMetrics;
+import com.cloudogu.scm.review.comment.service.Comment;
+import com.cloudogu.scm.review.comment.service.CommentEvent;
+import com.cloudogu.scm.review.comment.service.CommentType;
+import com.cloudogu.scm.review.comment.service.CommentsAddedEvent;
+import com.cloudogu.scm.review.pullrequest.service.BasicPullRequestEvent;
+import com.cloudogu.scm.review.pullrequest.service.PullRequest;
+import com.cloudogu.scm.review.pullrequest.service.PullRequestApprovalEvent;
+import com.cloudogu.scm.review.pullrequest.service.PullRequestEmergencyMergedEvent;
+import com.cloudogu.scm.review.pullrequest.service.PullRequestEvent;
+import com.cloudogu.scm.review.pullrequest.service.PullRequestMergedEvent;
+import com.cloudogu.scm.review.pullrequest.service.PullRequestRejectedEvent;
+import com.cloudogu.scm.review.pullrequest.service.PullRequestReopenedEvent;
+import com.cloudogu.scm.review.pullrequest.service.PullRequestReviewMarkEvent;
+import com.cloudogu.scm.review.pullrequest.service.PullRequestUpdatedEvent;
+import com.github.legman.Subscribe;
+import com.google.common.annotations.VisibleForTesting;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import sonia.scm.EagerSingleton;
+import sonia.scm.HandlerEventType;
+import sonia.scm.cache.Cache;
+import sonia.scm.cache.CacheManager;
+import sonia.scm.plugin.Extension;
+import sonia.scm.plugin.Requires;
+import sonia.scm.repository.RepositoryEvent;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Cache for the pull requests shown on the landing page of a user ({@link MyPullRequests}, {@link MyOpenReviews}
+ * and {@link MyOpenTasks}). The entries of a user are invalidated whenever a pull request is changed, where the user
+ * is the author or a reviewer of. Task transitions in comments invalidate the entries of the author and the
+ * reviewers of the pull request, too, because the number of open tasks is part of the shown pull requests.
+ * Modified or deleted repositories invalidate all entries, because names and permissions may have changed. Other
+ * changes (e.g. of global permissions) are only reflected once the entries expire. The size and the expiry of the
+ * cache can be configured like every other cache with the name {@value #CACHE_NAME}. The cache can be disabled with
+ * the system property {@value #ENABLED_PROPERTY} set to {@code false}.
+ */
+@Singleton
+@Extension
+@EagerSingleton
+@Requires("scm-landingpage-plugin")
+public class LandingPageCache {
+
+  static final String CACHE_NAME = "sonia.cache.review.landingPage";
+  static final String ENABLED_PROPERTY = "scm.review.landingPageCache.enabled";
+
+  private final Cache<Key, List<?>> cache;
+  private final CacheMetrics metrics;
+  private final boolean enabled;
+
+  @Inject
+  public LandingPageCache(CacheManager cacheManager, MeterRegistry meterRegistry) {
+    this(cacheManager, meterRegistry, Boolean.parseBoolean(System.getProperty(ENABLED_PROPERTY, "true")));
+  }
+
+  @VisibleForTesting
+  LandingPageCache(CacheManager cacheManager, MeterRegistry meterRegistry, boolean enabled) {
+    this.cache = cacheManager.getCache(CACHE_NAME);
+    this.metrics = new CacheMetrics(meterRegistry, CACHE_NAME);
+    this.enabled = enabled;
+  }
+
+  @SuppressWarnings("unchecked") // the provider is part of the key, so the type of the list is always the same
+  <T> List<T> get(String user, Class<?> provider, Supplier<List<T>> loader) {
+    if (!enabled) {
+      return loader.get();
+    }
+    Key key = new Key(user, provider.getName());
+    List<?> cached = cache.get(key);
+    if (cached != null) {
+      metrics.hit();
+      return (List<T>) cached;
+    }
+    metrics.miss();
+    List<T> loaded = List.copyOf(loader.get());
+    cache.put(key, loaded);
+    return loaded;
+  }
+
+  void invalidate(String user) {
+    cache.removeAll(key -> key.user().equals(user));
+  }
+
+  @Subscribe(async = false)
+  public void onPullRequestEvent(PullRequestEvent event) {
+    Set<String> users = getParticipants(event.getItem());
+    if (event.getOldItem() != null) {
+      users.addAll(getParticipants(event.getOldItem()));
+    }
+    users.forEach(this::invalidate);
+  }
+
+  @Subscribe(async = false)
+  public void onApproval(PullRequestApprovalEvent event) {
+    invalidateParticipants(event);
+  }
+
+  @Subscribe(async = false)
+  public void onMerged(PullRequestMergedEvent event) {
+    invalidateParticipants(event);
+  }
+
+  @Subscribe(async = false)
+  public void onEmergencyMerged(PullRequestEmergencyMergedEvent event) {
+    invalidateParticipants(event);
+  }
+
+  @Subscribe(async = false)
+  public void onRejected(PullRequestRejectedEvent event) {
+    invalidateParticipants(event);
+  }
+
+  @Subscribe(async = false)
+  public void onReopened(PullRequestReopenedEvent event) {
+    invalidateParticipants(event);
+  }
+
+  @Subscribe(async = false)
+  public void onUpdated(PullRequestUpdatedEvent event) {
+    // approvals may have been removed due to new commits
+    invalidateParticipants(event);
+  }
+
+  @Subscribe(async = false)
+  public void onReviewMark(PullRequestReviewMarkEvent event) {
+    invalidate(event.getReviewMark().getUser());
+  }
+
+  @Subscribe(async = false)
+  public void onComment(CommentEvent event) {
+    if (getTaskType(event.getItem()) != getTaskType(event.getOldItem())) {
+      invalidateParticipants(event);
+    }
+  }
+
+  @Subscribe(async = false)
+  public void onCommentsAdded(CommentsAddedEvent event) {
+    if (event.getComments().stream().anyMatch(comment -> getTaskType(comment) != null)) {
+      invalidateParticipants(event);
+    }
+  }
+
+  @Subscribe(async = false)
+  public void onRepositoryEvent(RepositoryEvent event) {
+    if (event.getEventType() == HandlerEventType.MODIFY || event.getEventType() == HandlerEventType.DELETE) {
+      cache.clear();
+    }
+  }
+
+  public CacheMetrics getMetrics() {
+    return metrics;
+  }
+
+  private void invalidateParticipants(BasicPullRequestEvent event) {
+    getParticipants(event.getPullRequest()).forEach(this::invalidate);
+  }
+
+  private static Set<String> getParticipants(PullRequest pullRequest) {
+    Set<String> participants = new HashSet<>(pullRequest.getReviewer().keySet());
+    participants.add(pullRequest.getAuthor());
+    return participants;
+  }
+
+  private static CommentType getTaskType(Comment comment) {
+    if (comment == null || comment.getType() == CommentType.COMMENT) {
+      return null;
+    }
+    return comment.getType();
+  }
+
+  private record Key(String user, String provider) {}
+}
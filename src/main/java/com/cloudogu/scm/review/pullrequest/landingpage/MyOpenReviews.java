@@ -18,35 +18,77 @@ package com.cloudogu.scm.review.pullrequest.landingpage;
 
 import com.cloudogu.scm.landingpage.mytasks.MyTask;
 import com.cloudogu.scm.landingpage.mytasks.MyTaskProvider;
+import com.cloudogu.scm.review.PermissionCheck;
 import com.cloudogu.scm.review.pullrequest.dto.PullRequestMapper;
+import com.cloudogu.scm.review.pullrequest.service.PullRequest;
+import com.cloudogu.scm.review.pullrequest.service.PullRequestQueryFields;
+import com.cloudogu.scm.review.pullrequest.service.PullRequestStatus;
+import com.cloudogu.scm.review.pullrequest.service.PullRequestStoreFactory;
 import jakarta.inject.Inject;
 import org.apache.shiro.SecurityUtils;
 import sonia.scm.plugin.Extension;
 import sonia.scm.plugin.Requires;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryManager;
+import sonia.scm.store.QueryableStore;
 
-import java.util.ArrayList;
-import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Collectors;
 
 @Extension
 @Requires("scm-landingpage-plugin")
 public class MyOpenReviews implements MyTaskProvider {
-  private final OpenPullRequestProvider pullRequestProvider;
+
   private final PullRequestMapper mapper;
 
+  private final PullRequestStoreFactory storeFactory;
+  private final RepositoryManager repositoryManager;
+  private final LandingPageCache cache;
+
   @Inject
-  public MyOpenReviews(OpenPullRequestProvider pullRequestProvider, PullRequestMapper mapper) {
-    this.pullRequestProvider = pullRequestProvider;
+  public MyOpenReviews(PullRequestMapper mapper, PullRequestStoreFactory storeFactory, RepositoryManager repositoryManager, LandingPageCache cache) {
     this.mapper = mapper;
+    this.storeFactory = storeFactory;
+    this.repositoryManager = repositoryManager;
+    this.cache = cache;
   }
 
   @Override
   public Iterable<MyTask> getTasks() {
     String subject = SecurityUtils.getSubject().getPrincipal().toString();
-    Collection<MyTask> result = new ArrayList<>();
-    pullRequestProvider.findOpenPullRequests((repository, stream) -> stream
-        .filter(pr -> pr.getReviewer().entrySet().stream().anyMatch(entry -> entry.getKey().equals(subject) && !entry.getValue()))
-        .forEach(pr -> result.add(new MyPullRequestReview(repository, pr, mapper)))
-    );
-    return result;
+    return cache.get(subject, MyOpenReviews.class, () -> findOpenReviews(subject));
+  }
+
+  private List<MyTask> findOpenReviews(String subject) {
+    // repositories are resolved and checked for permissions only once, even if there are multiple reviews
+    Map<String, Optional<Repository>> readableRepositories = new HashMap<>();
+    try (QueryableStore<PullRequest> store = storeFactory.getOverall()) {
+      return store
+        .query(
+          PullRequestQueryFields.REVIEWER.containsKey(subject),
+          PullRequestQueryFields.STATUS.eq(PullRequestStatus.OPEN)
+        ).withIds()
+        .findAll()
+        .stream()
+        .filter(result -> Boolean.FALSE.equals(result.getEntity().getReviewer().get(subject)))
+        .map(
+          result -> readableRepositories
+            .computeIfAbsent(result.getParentId(Repository.class).get(), this::getReadableRepository)
+            .map(repository -> new MyPullRequestReview(repository, result.getEntity(), mapper))
+            .orElse(null)
+        ).filter(Objects::nonNull)
+        .collect(Collectors.toList());
+    }
+  }
+
+  private Optional<Repository> getReadableRepository(String repositoryId) {
+    if (!PermissionCheck.mayRead(repositoryId)) {
+      return Optional.empty();
+    }
+    return Optional.ofNullable(repositoryManager.get(repositoryId));
   }
 }
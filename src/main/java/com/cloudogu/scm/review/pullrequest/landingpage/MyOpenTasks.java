@@ -18,10 +18,7 @@ package com.cloudogu.scm.review.pullrequest.landingpage;
 
 import com.cloudogu.scm.landingpage.mytasks.MyTask;
 import com.cloudogu.scm.landingpage.mytasks.MyTaskProvider;
-import com.cloudogu.scm.review.comment.service.Comment;
-import com.cloudogu.scm.review.comment.service.CommentQueryFields;
-import com.cloudogu.scm.review.comment.service.CommentStoreFactory;
-import com.cloudogu.scm.review.comment.service.CommentType;
+import com.cloudogu.scm.review.comment.service.CommentSummaryStore;
 import com.cloudogu.scm.review.pullrequest.dto.PullRequestMapper;
 import com.cloudogu.scm.review.pullrequest.service.PullRequest;
 import com.cloudogu.scm.review.pullrequest.service.PullRequestQueryFields;
@@ -35,6 +32,7 @@ import sonia.scm.repository.Repository;
 import sonia.scm.repository.RepositoryManager;
 import sonia.scm.store.QueryableStore;
 
+import java.util.List;
 import java.util.Objects;
 import java.util.stream.Collectors;
 
@@ -45,20 +43,26 @@ public class MyOpenTasks implements MyTaskProvider {
   private final PullRequestMapper mapper;
 
   private final PullRequestStoreFactory pullRequestStoreFactory;
-  private final CommentStoreFactory commentStoreFactory;
+  private final CommentSummaryStore commentSummaryStore;
   private final RepositoryManager repositoryManager;
+  private final LandingPageCache cache;
 
   @Inject
-  public MyOpenTasks(PullRequestMapper mapper, PullRequestStoreFactory pullRequestStoreFactory, CommentStoreFactory commentStoreFactory, RepositoryManager repositoryManager) {
+  public MyOpenTasks(PullRequestMapper mapper, PullRequestStoreFactory pullRequestStoreFactory, CommentSummaryStore commentSummaryStore, RepositoryManager repositoryManager, LandingPageCache cache) {
     this.mapper = mapper;
     this.pullRequestStoreFactory = pullRequestStoreFactory;
-    this.commentStoreFactory = commentStoreFactory;
+    this.commentSummaryStore = commentSummaryStore;
     this.repositoryManager = repositoryManager;
+    this.cache = cache;
   }
 
   @Override
   public Iterable<MyTask> getTasks() {
     String subject = SecurityUtils.getSubject().getPrincipal().toString();
+    return cache.get(subject, MyOpenTasks.class, () -> findPullRequestsWithOpenTasks(subject));
+  }
+
+  private List<MyTask> findPullRequestsWithOpenTasks(String subject) {
     try (QueryableStore<PullRequest> store = pullRequestStoreFactory.getOverall()) {
       return store
         .query(
@@ -67,19 +71,8 @@ public class MyOpenTasks implements MyTaskProvider {
         ).withIds()
         .findAll()
         .stream()
-        .filter(
-          result ->
-          {
-            try (QueryableStore<Comment> commentQueryableStore = commentStoreFactory.get(
-              result.getParentId(Repository.class).get(),
-              result.getId()
-            )) {
-              return commentQueryableStore
-                .query(CommentQueryFields.TYPE.eq(CommentType.TASK_TODO))
-                .count() > 0;
-            }
-          }
-        )
+        // only the summaries of the user's own pull requests are read, not those of the whole instance
+        .filter(this::hasOpenTasks)
         .map(
           result -> {
             Repository repository = repositoryManager.get(result.getParentId(Repository.class).get());
@@ -95,4 +88,9 @@ public class MyOpenTasks implements MyTaskProvider {
       throw new RuntimeException(e);
     }
   }
+
+  private boolean hasOpenTasks(QueryableStore.Result<PullRequest> result) {
+    String repositoryId = result.getParentId(Repository.class).get();
+    return commentSummaryStore.get(repositoryId, result.getId()).getOpenTasks() > 0;
+  }
 }
@@ -31,6 +31,7 @@ import sonia.scm.repository.Repository;
 import sonia.scm.repository.RepositoryManager;
 import sonia.scm.store.QueryableStore;
 
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -43,17 +44,23 @@ public class MyPullRequests implements MyDataProvider {
 
   private final PullRequestStoreFactory storeFactory;
   private final RepositoryManager repositoryManager;
+  private final LandingPageCache cache;
 
   @Inject
-  public MyPullRequests(PullRequestMapper mapper, PullRequestStoreFactory storeFactory, RepositoryManager repositoryManager) {
+  public MyPullRequests(PullRequestMapper mapper, PullRequestStoreFactory storeFactory, RepositoryManager repositoryManager, LandingPageCache cache) {
     this.mapper = mapper;
     this.storeFactory = storeFactory;
     this.repositoryManager = repositoryManager;
+    this.cache = cache;
   }
 
   @Override
   public Iterable<MyData> getData() {
     String subject = SecurityUtils.getSubject().getPrincipal().toString();
+    return cache.get(subject, MyPullRequests.class, () -> findPullRequests(subject));
+  }
+
+  private List<MyData> findPullRequests(String subject) {
     try (QueryableStore<PullRequest> store = storeFactory.getOverall()) {
       return store
         .query(
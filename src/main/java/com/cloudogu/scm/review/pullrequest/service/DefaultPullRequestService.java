@@ -31,6 +31,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang.StringUtils;
 import org.apache.shiro.SecurityUtils;
 import org.apache.shiro.authz.UnauthorizedException;
+import sonia.scm.ConcurrentModificationException;
 import sonia.scm.ContextEntry;
 import sonia.scm.HandlerEventType;
 import sonia.scm.NotFoundException;
@@ -38,7 +39,6 @@ import sonia.scm.event.ScmEventBus;
 import sonia.scm.repository.ChangesetPagingResult;
 import sonia.scm.repository.NamespaceAndName;
 import sonia.scm.repository.Repository;
-import sonia.scm.repository.api.Command;
 import sonia.scm.repository.api.RepositoryService;
 import sonia.scm.repository.api.RepositoryServiceFactory;
 import sonia.scm.store.Condition;
@@ -55,7 +55,10 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import static com.cloudogu.scm.review.pullrequest.dto.PullRequestCheckResultDto.PullRequestCheckStatus.BRANCHES_NOT_DIFFER;
@@ -69,26 +72,29 @@ import static com.cloudogu.scm.review.pullrequest.service.PullRequestStatus.MERG
 import static com.cloudogu.scm.review.pullrequest.service.PullRequestStatus.OPEN;
 import static com.cloudogu.scm.review.pullrequest.service.PullRequestStatus.REJECTED;
 import static java.util.Arrays.asList;
-import static java.util.Arrays.stream;
 import static java.util.Collections.emptyList;
 import static sonia.scm.AlreadyExistsException.alreadyExists;
 
 @Slf4j
 public class DefaultPullRequestService implements PullRequestService {
 
+  private static final int UPDATE_ATTEMPTS = 3;
+
   private final BranchResolver branchResolver;
   private final RepositoryResolver repositoryResolver;
   private final PullRequestStoreBuilder storeFactory;
   private final ScmEventBus eventBus;
   private final RepositoryServiceFactory repositoryServiceFactory;
+  private final ReviewMarkStore reviewMarkStore;
 
   @Inject
-  public DefaultPullRequestService(RepositoryResolver repositoryResolver, BranchResolver branchResolver, PullRequestStoreBuilder storeFactory, ScmEventBus eventBus, RepositoryServiceFactory repositoryServiceFactory) {
+  public DefaultPullRequestService(RepositoryResolver repositoryResolver, BranchResolver branchResolver, PullRequestStoreBuilder storeFactory, ScmEventBus eventBus, RepositoryServiceFactory repositoryServiceFactory, ReviewMarkStore reviewMarkStore) {
     this.repositoryResolver = repositoryResolver;
     this.branchResolver = branchResolver;
     this.storeFactory = storeFactory;
     this.eventBus = eventBus;
     this.repositoryServiceFactory = repositoryServiceFactory;
+    this.reviewMarkStore = reviewMarkStore;
   }
 
   @Override
@@ -115,8 +121,34 @@ public class DefaultPullRequestService implements PullRequestService {
 
   @Override
   public void update(Repository repository, String pullRequestId, PullRequest pullRequest) {
+    update(repository, pullRequestId, pullRequest, OptionalLong.empty());
+  }
+
+  @Override
+  public void update(Repository repository, String pullRequestId, PullRequest pullRequest, long expectedVersion) {
+    update(repository, pullRequestId, pullRequest, OptionalLong.of(expectedVersion));
+  }
+
+  private void update(Repository repository, String pullRequestId, PullRequest pullRequest, OptionalLong expectedVersion) {
+    for (int attempt = 1; ; ++attempt) {
+      try {
+        tryUpdate(repository, pullRequestId, pullRequest, expectedVersion);
+        return;
+      } catch (ConcurrentModificationException e) {
+        if (expectedVersion.isPresent() || attempt >= UPDATE_ATTEMPTS) {
+          throw e;
+        }
+        log.debug("pull request {} in repository {} was modified concurrently, retrying update", pullRequestId, repository);
+      }
+    }
+  }
+
+  private void tryUpdate(Repository repository, String pullRequestId, PullRequest pullRequest, OptionalLong expectedVersion) {
     try (PullRequestStore store = getStore(repository)) {
       PullRequest oldPullRequest = store.get(pullRequestId);
+      if (expectedVersion.isPresent() && expectedVersion.getAsLong() != oldPullRequest.getVersion()) {
+        throw new ConcurrentModificationException(PullRequest.class, pullRequestId);
+      }
       Set<String> addedReviewers = computeAddedReviewersForChangedPullRequest(oldPullRequest, pullRequest);
       Set<String> removedReviewers = computeRemovedReviewersForChangedPullRequest(oldPullRequest, pullRequest);
 
@@ -125,13 +157,12 @@ public class DefaultPullRequestService implements PullRequestService {
 
       Map<String, Boolean> newReviewers = new HashMap<>(oldPullRequest.getReviewer());
 
-      if (oldPullRequest.isOpen() && pullRequest.isDraft()) {
-        eventBus.post(new PullRequestStatusChangedEvent(repository, pullRequest, DRAFT));
+      boolean convertedToDraft = oldPullRequest.isOpen() && pullRequest.isDraft();
+      boolean convertedToOpen = oldPullRequest.isDraft() && pullRequest.isOpen();
+      if (convertedToDraft) {
         newReviewers
           .keySet()
           .forEach(reviewer -> newReviewers.put(reviewer, false));
-      } else if (oldPullRequest.isDraft() && pullRequest.isOpen()) {
-        eventBus.post(new PullRequestStatusChangedEvent(repository, pullRequest, OPEN));
       }
 
       addedReviewers.forEach(reviewer -> newReviewers.putIfAbsent(reviewer, false));
@@ -159,6 +190,11 @@ public class DefaultPullRequestService implements PullRequestService {
         removeAllApprover(newPullRequest);
       }
       store.update(newPullRequest);
+      if (convertedToDraft) {
+        eventBus.post(new PullRequestStatusChangedEvent(repository, pullRequest, DRAFT));
+      } else if (convertedToOpen) {
+        eventBus.post(new PullRequestStatusChangedEvent(repository, pullRequest, OPEN));
+      }
       eventBus.post(new PullRequestEvent(repository, newPullRequest, oldPullRequest, HandlerEventType.MODIFY));
       if (targetBranchHasChanged) {
         eventBus.post(new PullRequestUpdatedEvent(repository, newPullRequest));
@@ -226,6 +262,15 @@ public class DefaultPullRequestService implements PullRequestService {
     }
   }
 
+  @Override
+  public List<PullRequest> getModifiedSince(Repository repository, Instant since) {
+    try (QueryableStore<PullRequest> store = storeFactory.createQueryable(repository)) {
+      return store
+        .query(PullRequestQueryFields.LASTMODIFIED.after(since))
+        .findAll();
+    }
+  }
+
   public int count(String namespace, String name, PullRequestSelector selector) {
     Collection<Condition<PullRequest>> conditions =
       computeConditions(selector);
@@ -257,20 +302,62 @@ public class DefaultPullRequestService implements PullRequestService {
 
   @Override
   public Optional<PullRequest> getInProgress(Repository repository, String source, String target) {
-    List<PullRequestStatus> inProgressStatus = stream(PullRequestStatus.values())
-      .filter(PullRequestStatus::isInProgress)
-      .toList();
-    try (PullRequestStore store = getStore(repository)) {
-      return store.getAll()
+    try (QueryableStore<PullRequest> store = storeFactory.createQueryable(repository)) {
+      return store
+        .query(
+          PullRequestQueryFields.SOURCE.eq(source),
+          PullRequestQueryFields.TARGET.eq(target),
+          PullRequestQueryFields.STATUS.in(OPEN, DRAFT)
+        )
+        .findAll(0, 1)
         .stream()
-        .filter(pullRequest ->
-          inProgressStatus.contains(pullRequest.getStatus()) &&
-            pullRequest.getSource().equals(source) &&
-            pullRequest.getTarget().equals(target))
         .findFirst();
     }
   }
 
+  @Override
+  public Map<BranchPair, PullRequest> getInProgress(Repository repository, Collection<BranchPair> branchPairs) {
+    Set<String> sources = branchPairs.stream().map(BranchPair::source).collect(Collectors.toSet());
+    Map<BranchPair, PullRequest> result = new HashMap<>();
+    for (PullRequest pullRequest : getInProgressBySource(repository, sources)) {
+      BranchPair branchPair = new BranchPair(pullRequest.getSource(), pullRequest.getTarget());
+      if (branchPairs.contains(branchPair)) {
+        result.putIfAbsent(branchPair, pullRequest);
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public List<PullRequest> getInProgressBySource(Repository repository, Collection<String> sourceBranches) {
+    if (sourceBranches.isEmpty()) {
+      return emptyList();
+    }
+    try (QueryableStore<PullRequest> store = storeFactory.createQueryable(repository)) {
+      return store
+        .query(
+          PullRequestQueryFields.SOURCE.in(sourceBranches.toArray(new String[0])),
+          PullRequestQueryFields.STATUS.in(OPEN, DRAFT)
+        )
+        .findAll();
+    }
+  }
+
+  @Override
+  public List<PullRequest> getInProgressByTarget(Repository repository, Collection<String> targetBranches) {
+    if (targetBranches.isEmpty()) {
+      return emptyList();
+    }
+    try (QueryableStore<PullRequest> store = storeFactory.createQueryable(repository)) {
+      return store
+        .query(
+          PullRequestQueryFields.TARGET.in(targetBranches.toArray(new String[0])),
+          PullRequestQueryFields.STATUS.in(OPEN, DRAFT)
+        )
+        .findAll();
+    }
+  }
+
   @Override
   public void checkBranch(Repository repository, String branch) {
     branchResolver.resolve(repository, branch);
@@ -286,12 +373,16 @@ public class DefaultPullRequestService implements PullRequestService {
     PullRequest pullRequest = get(repository, pullRequestId);
     if (pullRequest.isInProgress()) {
       PullRequestStatus previousStatus = pullRequest.getStatus();
-      pullRequest.setSourceRevision(getBranchRevision(repository, pullRequest.getSource()));
-      pullRequest.setTargetRevision(getBranchRevision(repository, pullRequest.getTarget()));
-      setPullRequestClosed(pullRequest);
-      pullRequest.setStatus(REJECTED);
-      updatePullRequest(repository, pullRequest);
-      eventBus.post(new PullRequestRejectedEvent(repository, pullRequest, cause, message, previousStatus));
+      String sourceRevision = getBranchRevision(repository, pullRequest.getSource());
+      String targetRevision = getBranchRevision(repository, pullRequest.getTarget());
+      PullRequest rejectedPullRequest = modifyPullRequest(repository, pullRequestId, pr -> {
+        checkInProgress(repository, pr);
+        pr.setSourceRevision(sourceRevision);
+        pr.setTargetRevision(targetRevision);
+        setPullRequestClosed(pr);
+        pr.setStatus(REJECTED);
+      });
+      eventBus.post(new PullRequestRejectedEvent(repository, rejectedPullRequest, cause, message, previousStatus));
     } else if (pullRequest.isMerged()) {
       throw new StatusChangeNotAllowedException(repository, pullRequest);
     }
@@ -299,24 +390,27 @@ public class DefaultPullRequestService implements PullRequestService {
 
   @Override
   public void reopen(Repository repository, String pullRequestId) {
-    try (PullRequestStore store = getStore(repository)) {
-      PullRequest pullRequest = store.get(pullRequestId);
-      PermissionCheck.checkCreate(repository);
-      checkBranch(repository, pullRequest.getSource());
-      checkBranch(repository, pullRequest.getTarget());
-
-      boolean isPrCreationValid = PR_VALID.equals(checkIfPullRequestIsValid(repository, pullRequest.getSource(), pullRequest.getTarget()));
-      if (pullRequest.isRejected() && isPrCreationValid) {
-        pullRequest.setStatus(OPEN);
-        pullRequest.setSourceRevision(null);
-        pullRequest.setTargetRevision(null);
-        pullRequest.setReviser(null);
-        pullRequest.setCloseDate(null);
-        store.update(pullRequest);
-        eventBus.post(new PullRequestReopenedEvent(repository, pullRequest));
-      } else {
-        throw new StatusChangeNotAllowedException(repository, pullRequest);
-      }
+    PullRequest pullRequest = getPullRequestFromStore(repository, pullRequestId);
+    PermissionCheck.checkCreate(repository);
+    checkBranch(repository, pullRequest.getSource());
+    checkBranch(repository, pullRequest.getTarget());
+
+    boolean isPrCreationValid = PR_VALID.equals(checkIfPullRequestIsValid(repository, pullRequest.getSource(), pullRequest.getTarget()));
+    if (pullRequest.isRejected() && isPrCreationValid) {
+      PullRequest reopenedPullRequest = modifyPullRequest(repository, pullRequestId, pr -> {
+        // the status may have been changed concurrently after it has been checked first
+        if (!pr.isRejected()) {
+          throw new StatusChangeNotAllowedException(repository, pr);
+        }
+        pr.setStatus(OPEN);
+        pr.setSourceRevision(null);
+        pr.setTargetRevision(null);
+        pr.setReviser(null);
+        pr.setCloseDate(null);
+      });
+      eventBus.post(new PullRequestReopenedEvent(repository, reopenedPullRequest));
+    } else {
+      throw new StatusChangeNotAllowedException(repository, pullRequest);
     }
   }
 
@@ -368,20 +462,22 @@ public class DefaultPullRequestService implements PullRequestService {
 
   @Override
   public void setRevisions(Repository repository, String pullRequestId, String targetRevision, String revisionToMerge) {
-    PullRequest pullRequest = get(repository, pullRequestId);
-    pullRequest.setTargetRevision(targetRevision);
-    pullRequest.setSourceRevision(revisionToMerge);
-    updatePullRequest(repository, pullRequest);
+    modifyPullRequest(repository, pullRequestId, pr -> {
+      pr.setTargetRevision(targetRevision);
+      pr.setSourceRevision(revisionToMerge);
+    });
   }
 
   @Override
   public void setMerged(Repository repository, String pullRequestId) {
     PullRequest pullRequest = get(repository, pullRequestId);
     if (pullRequest.isInProgress()) {
-      pullRequest.setStatus(MERGED);
-      setPullRequestClosed(pullRequest);
-      updatePullRequest(repository, pullRequest);
-      eventBus.post(new PullRequestMergedEvent(repository, pullRequest));
+      PullRequest mergedPullRequest = modifyPullRequest(repository, pullRequestId, pr -> {
+        checkInProgress(repository, pr);
+        pr.setStatus(MERGED);
+        setPullRequestClosed(pr);
+      });
+      eventBus.post(new PullRequestMergedEvent(repository, mergedPullRequest));
     } else if (pullRequest.isRejected()) {
       throw new StatusChangeNotAllowedException(repository, pullRequest);
     }
@@ -389,13 +485,13 @@ public class DefaultPullRequestService implements PullRequestService {
 
   @Override
   public void setEmergencyMerged(Repository repository, String pullRequestId, String overrideMessage, List<String> ignoredMergeObstacles) {
-    PullRequest pullRequest = get(repository, pullRequestId);
-    pullRequest.setOverrideMessage(overrideMessage);
-    pullRequest.setEmergencyMerged(true);
-    pullRequest.setStatus(MERGED);
-    setPullRequestClosed(pullRequest);
-    pullRequest.setIgnoredMergeObstacles(ignoredMergeObstacles);
-    updatePullRequest(repository, pullRequest);
+    PullRequest pullRequest = modifyPullRequest(repository, pullRequestId, pr -> {
+      pr.setOverrideMessage(overrideMessage);
+      pr.setEmergencyMerged(true);
+      pr.setStatus(MERGED);
+      setPullRequestClosed(pr);
+      pr.setIgnoredMergeObstacles(ignoredMergeObstacles);
+    });
     eventBus.post(new PullRequestEmergencyMergedEvent(repository, pullRequest));
   }
 
@@ -404,13 +500,19 @@ public class DefaultPullRequestService implements PullRequestService {
     pullRequest.setCloseDate(Instant.now());
   }
 
+  private void checkInProgress(Repository repository, PullRequest pullRequest) {
+    // the status may have been changed concurrently after it has been checked first
+    if (!pullRequest.isInProgress()) {
+      throw new StatusChangeNotAllowedException(repository, pullRequest);
+    }
+  }
+
   @Override
   public void sourceRevisionChanged(Repository repository, String pullRequestId) {
     PullRequest pullRequest = get(repository, pullRequestId);
     if (pullRequest.isInProgress()) {
-      removeAllApprover(pullRequest);
-      updatePullRequest(repository, pullRequest);
-      eventBus.post(new PullRequestUpdatedEvent(repository, pullRequest));
+      PullRequest updatedPullRequest = modifyPullRequest(repository, pullRequestId, this::removeAllApprover);
+      eventBus.post(new PullRequestUpdatedEvent(repository, updatedPullRequest));
     }
   }
 
@@ -436,11 +538,12 @@ public class DefaultPullRequestService implements PullRequestService {
   public void approve(NamespaceAndName namespaceAndName, String pullRequestId, User user) {
     Repository repository = getRepository(namespaceAndName.getNamespace(), namespaceAndName.getName());
     PermissionCheck.checkComment(repository);
-    PullRequest pullRequest = getPullRequestFromStore(repository, pullRequestId);
-    boolean isNewApprover = !pullRequest.getReviewer().containsKey(user.getId());
-    pullRequest.addApprover(user.getId());
-    updatePullRequest(repository, pullRequest);
-    eventBus.post(new PullRequestApprovalEvent(repository, pullRequest, user, isNewApprover, APPROVED));
+    AtomicBoolean isNewApprover = new AtomicBoolean();
+    PullRequest pullRequest = modifyPullRequest(repository, pullRequestId, pr -> {
+      isNewApprover.set(!pr.getReviewer().containsKey(user.getId()));
+      pr.addApprover(user.getId());
+    });
+    eventBus.post(new PullRequestApprovalEvent(repository, pullRequest, user, isNewApprover.get(), APPROVED));
   }
 
   @Override
@@ -448,17 +551,10 @@ public class DefaultPullRequestService implements PullRequestService {
     Repository repository = getRepository(namespaceAndName.getNamespace(), namespaceAndName.getName());
     PermissionCheck.checkComment(repository);
     PullRequest pullRequest = getPullRequestFromStore(repository, pullRequestId);
-    boolean isNewApprover = !pullRequest.getReviewer().containsKey(user.getId());
-    Set<String> approver = pullRequest.getReviewer().keySet();
-    approver.stream()
-      .filter(recipient -> user.getId().equals(recipient))
-      .findFirst()
-      .ifPresent(
-        approval -> {
-          pullRequest.removeApprover(approval);
-          updatePullRequest(repository, pullRequest);
-          eventBus.post(new PullRequestApprovalEvent(repository, pullRequest, user, isNewApprover, APPROVAL_REMOVED));
-        });
+    if (pullRequest.getReviewer().containsKey(user.getId())) {
+      PullRequest modifiedPullRequest = modifyPullRequest(repository, pullRequestId, pr -> pr.removeApprover(user.getId()));
+      eventBus.post(new PullRequestApprovalEvent(repository, modifiedPullRequest, user, false, APPROVAL_REMOVED));
+    }
   }
 
   @Override
@@ -472,9 +568,7 @@ public class DefaultPullRequestService implements PullRequestService {
 
   @Override
   public void subscribe(Repository repository, String pullRequestId, User user) {
-    PullRequest pullRequest = getPullRequestFromStore(repository, pullRequestId);
-    pullRequest.addSubscriber(user.getId());
-    updatePullRequest(repository, pullRequest);
+    PullRequest pullRequest = modifyPullRequest(repository, pullRequestId, pr -> pr.addSubscriber(user.getId()));
     eventBus.post(new PullRequestSubscribedEvent(
       repository, pullRequest, user, PullRequestSubscribedEvent.EventType.SUBSCRIBED
     ));
@@ -482,13 +576,7 @@ public class DefaultPullRequestService implements PullRequestService {
 
   @Override
   public void unsubscribe(Repository repository, String pullRequestId, User user) {
-    PullRequest pullRequest = getPullRequestFromStore(repository, pullRequestId);
-    Set<String> subscriber = pullRequest.getSubscriber();
-    subscriber.stream()
-      .filter(recipient -> user.getId().equals(recipient))
-      .findFirst()
-      .ifPresent(pullRequest::removeSubscriber);
-    updatePullRequest(repository, pullRequest);
+    PullRequest pullRequest = modifyPullRequest(repository, pullRequestId, pr -> pr.removeSubscriber(user.getId()));
     eventBus.post(new PullRequestSubscribedEvent(
       repository, pullRequest, user, PullRequestSubscribedEvent.EventType.UNSUBSCRIBED
     ));
@@ -496,32 +584,32 @@ public class DefaultPullRequestService implements PullRequestService {
 
   @Override
   public void markAsReviewed(Repository repository, String pullRequestId, String path, User user) {
-    try (PullRequestStore store = getStore(repository)) {
-      PullRequest pullRequest = store.get(pullRequestId);
-      Set<ReviewMark> reviewMarks = new HashSet<>(pullRequest.getReviewMarks());
-      ReviewMark reviewMark = new ReviewMark(path, user.getId());
-      reviewMarks.add(reviewMark);
-      pullRequest.setReviewMarks(reviewMarks);
-      store.update(pullRequest);
-      eventBus.post(new PullRequestReviewMarkEvent(
-        repository, pullRequest, reviewMark, PullRequestReviewMarkEvent.EventType.ADDED
-      ));
-    }
+    PullRequest pullRequest = get(repository, pullRequestId);
+    ReviewMark reviewMark = new ReviewMark(path, user.getId());
+    reviewMarkStore.add(repository, pullRequestId, reviewMark);
+    eventBus.post(new PullRequestReviewMarkEvent(
+      repository, pullRequest, reviewMark, PullRequestReviewMarkEvent.EventType.ADDED
+    ));
   }
 
   @Override
   public void markAsNotReviewed(Repository repository, String pullRequestId, String path, User user) {
-    try (PullRequestStore store = getStore(repository)) {
-      PullRequest pullRequest = store.get(pullRequestId);
-      Set<ReviewMark> reviewMarks = new HashSet<>(pullRequest.getReviewMarks());
-      ReviewMark reviewMark = new ReviewMark(path, user.getId());
-      reviewMarks.remove(reviewMark);
-      pullRequest.setReviewMarks(reviewMarks);
-      store.update(pullRequest);
-      eventBus.post(new PullRequestReviewMarkEvent(
-        repository, pullRequest, reviewMark, PullRequestReviewMarkEvent.EventType.REMOVED
-      ));
-    }
+    PullRequest pullRequest = get(repository, pullRequestId);
+    ReviewMark reviewMark = new ReviewMark(path, user.getId());
+    reviewMarkStore.remove(repository, pullRequestId, List.of(reviewMark));
+    eventBus.post(new PullRequestReviewMarkEvent(
+      repository, pullRequest, reviewMark, PullRequestReviewMarkEvent.EventType.REMOVED
+    ));
+  }
+
+  @Override
+  public Set<ReviewMark> getReviewMarks(Repository repository, String pullRequestId) {
+    return reviewMarkStore.getAll(repository, pullRequestId);
+  }
+
+  @Override
+  public List<String> getFilesMarkedAsReviewed(Repository repository, String pullRequestId, User user) {
+    return reviewMarkStore.getFiles(repository, pullRequestId, user.getId());
   }
 
   @Override
@@ -529,13 +617,21 @@ public class DefaultPullRequestService implements PullRequestService {
     if (marksToBeRemoved.isEmpty()) {
       return;
     }
-    PullRequest pullRequest = getPullRequestFromStore(repository, pullRequestId);
-    Set<ReviewMark> newReviewMarks = new HashSet<>(pullRequest.getReviewMarks());
-    newReviewMarks.removeAll(marksToBeRemoved);
-    pullRequest.setReviewMarks(newReviewMarks);
-    updatePullRequest(repository, pullRequest);
+    PullRequest pullRequest = get(repository, pullRequestId);
+    reviewMarkStore.remove(repository, pullRequestId, marksToBeRemoved);
+    postReviewMarksRemoved(repository, pullRequest, marksToBeRemoved);
+  }
+
+  @Override
+  public void removeReviewMarksForFiles(Repository repository, String pullRequestId, Collection<String> files) {
+    List<ReviewMark> removedMarks = reviewMarkStore.removeForFiles(repository, pullRequestId, files);
+    if (!removedMarks.isEmpty()) {
+      postReviewMarksRemoved(repository, get(repository, pullRequestId), removedMarks);
+    }
+  }
 
-    for (ReviewMark reviewMark : marksToBeRemoved) {
+  private void postReviewMarksRemoved(Repository repository, PullRequest pullRequest, Collection<ReviewMark> removedMarks) {
+    for (ReviewMark reviewMark : removedMarks) {
       eventBus.post(new PullRequestReviewMarkEvent(
         repository, pullRequest, reviewMark, PullRequestReviewMarkEvent.EventType.REMOVED
       ));
@@ -544,9 +640,7 @@ public class DefaultPullRequestService implements PullRequestService {
 
   @Override
   public boolean supportsPullRequests(Repository repository) {
-    try (RepositoryService repositoryService = repositoryServiceFactory.create(repository)) {
-      return repositoryService.isSupported(Command.MERGE);
-    }
+    return repositoryResolver.supportsPullRequests(repository);
   }
 
   @Override
@@ -559,19 +653,22 @@ public class DefaultPullRequestService implements PullRequestService {
     }
 
     if (pullRequest.isDraft()) {
-      PullRequest oldPullRequest = pullRequest.toBuilder().build();
-      pullRequest.setStatus(OPEN);
-      updatePullRequest(repository, pullRequest);
-      eventBus.post(new PullRequestStatusChangedEvent(repository, pullRequest, OPEN));
-      eventBus.post(new PullRequestEvent(repository, pullRequest, oldPullRequest, HandlerEventType.MODIFY));
+      PullRequest convertedPullRequest = modifyPullRequest(repository, pullRequestId, pr -> {
+        if (!pr.isDraft()) {
+          throw new StatusChangeNotAllowedException(repository, pr);
+        }
+        pr.setStatus(OPEN);
+      });
+      eventBus.post(new PullRequestStatusChangedEvent(repository, convertedPullRequest, OPEN));
+      eventBus.post(new PullRequestEvent(repository, convertedPullRequest, pullRequest, HandlerEventType.MODIFY));
     } else {
       throw new StatusChangeNotAllowedException(repository, pullRequest);
     }
   }
 
-  private void updatePullRequest(Repository repository, PullRequest pullRequest) {
+  private PullRequest modifyPullRequest(Repository repository, String pullRequestId, Consumer<PullRequest> modification) {
     try (PullRequestStore store = getStore(repository)) {
-      store.update(pullRequest);
+      return store.modify(pullRequestId, modification);
     }
   }
 
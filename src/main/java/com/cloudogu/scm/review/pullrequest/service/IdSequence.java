@@ -16,26 +16,24 @@
 
 package com.cloudogu.scm.review.pullrequest.service;
 
-import jakarta.inject.Inject;
+import jakarta.xml.bind.annotation.XmlAccessType;
+import jakarta.xml.bind.annotation.XmlAccessorType;
+import jakarta.xml.bind.annotation.XmlRootElement;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
 import sonia.scm.repository.Repository;
+import sonia.scm.store.QueryableType;
 
-import java.util.List;
-import java.util.stream.Collectors;
-
-public class PullRequestCollector {
-
-  private final PullRequestService pullRequestService;
-
-  @Inject
-  public PullRequestCollector(PullRequestService pullRequestService) {
-    this.pullRequestService = pullRequestService;
-  }
-
-  public List<PullRequest> collectAffectedPullRequests(Repository repository, List<String> affectedBranches) {
-    return pullRequestService.getAll(repository.getNamespace(), repository.getName())
-      .stream()
-      .filter(PullRequest::isInProgress)
-      .filter(pr -> affectedBranches.contains(pr.getSource()) || affectedBranches.contains(pr.getTarget()))
-      .collect(Collectors.toList());
-  }
+/**
+ * The last id handed out by a named sequence of a repository (see {@link IdSequenceService}).
+ */
+@Getter
+@XmlRootElement(name = "id-sequence")
+@XmlAccessorType(XmlAccessType.FIELD)
+@NoArgsConstructor
+@AllArgsConstructor
+@QueryableType(Repository.class)
+public class IdSequence {
+  private long lastId;
 }
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.review.pullrequest.service;
+
+import com.cloudogu.scm.review.StoreLocks;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import sonia.scm.store.QueryableMutableStore;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Hands out monotonically increasing ids for pull requests and pull request changes. The last id of each sequence
+ * is persisted per repository, so creating a new id does not depend on the number of existing entities.
+ * If a sequence does not exist yet, it is seeded once from the existing data.
+ */
+@Singleton
+public class IdSequenceService {
+
+  static final String PULL_REQUEST_SEQUENCE = "pull-requests";
+  private static final String PULL_REQUEST_CHANGE_SEQUENCE_PREFIX = "pull-request-changes-";
+
+  private static final String LOCK_NAME = "idSequence";
+
+  private final IdSequenceStoreFactory storeFactory;
+  private final StoreLocks locks;
+
+  @Inject
+  public IdSequenceService(IdSequenceStoreFactory storeFactory, StoreLocks locks) {
+    this.storeFactory = storeFactory;
+    this.locks = locks;
+  }
+
+  /**
+   * Returns the next id for new pull requests in the given repository.
+   *
+   * @param highestExistingId used to seed the sequence, if it does not exist yet
+   */
+  public String nextPullRequestId(String repositoryId, LongSupplier highestExistingId) {
+    return next(repositoryId, PULL_REQUEST_SEQUENCE, highestExistingId);
+  }
+
+  /**
+   * Returns the next id for new changes of the given pull request.
+   *
+   * @param highestExistingId used to seed the sequence, if it does not exist yet
+   */
+  public String nextPullRequestChangeId(String repositoryId, String pullRequestId, LongSupplier highestExistingId) {
+    return next(repositoryId, PULL_REQUEST_CHANGE_SEQUENCE_PREFIX + pullRequestId, highestExistingId);
+  }
+
+  private String next(String repositoryId, String sequenceName, LongSupplier highestExistingId) {
+    return locks.withWriteLock(LOCK_NAME, repositoryId + "/" + sequenceName, () -> {
+      try (QueryableMutableStore<IdSequence> store = storeFactory.getMutable(repositoryId)) {
+        IdSequence sequence = store.get(sequenceName);
+        long lastId = sequence == null ? highestExistingId.getAsLong() : sequence.getLastId();
+        long nextId = lastId + 1;
+        store.put(sequenceName, new IdSequence(nextId));
+        return String.valueOf(nextId);
+      }
+    });
+  }
+}
@@ -114,7 +114,7 @@ public class MergeService {
   }
 
   private void rejectPullRequestsForDeletedBranch(Repository repository, PullRequest pullRequest, String deletedSourceBranch) {
-    List<PullRequest> pullRequests = pullRequestService.getAll(repository.getNamespace(), repository.getName());
+    List<PullRequest> pullRequests = pullRequestService.getInProgressByBranches(repository, List.of(deletedSourceBranch));
     pullRequests.forEach(pr -> {
       if (shouldRejectPullRequestForDeletedBranch(pullRequest, deletedSourceBranch, pr)) {
         pullRequestService.setRejected(repository, pr.getId(), PullRequestRejectedEvent.RejectionCause.SOURCE_BRANCH_DELETED);
@@ -92,6 +92,12 @@ public class PullRequest implements Serializable {
   private Map<String, Boolean> reviewer = new HashMap<>();
   private String sourceRevision;
   private String targetRevision;
+  /**
+   * Review marks are stored separately now; this is only kept to migrate existing marks.
+   *
+   * @deprecated use {@link PullRequestService#getReviewMarks(Repository, String)}
+   */
+  @Deprecated(since = "3.17.0")
   private Set<ReviewMark> reviewMarks = new HashSet<>();
   @Indexed
   private String overrideMessage;
@@ -99,6 +105,12 @@ public class PullRequest implements Serializable {
   private boolean emergencyMerged;
   private List<String> ignoredMergeObstacles;
   private boolean shouldDeleteSourceBranch;
+  /**
+   * Incremented with every update of the pull request. Used to detect concurrent modifications.
+   *
+   * @since 3.17.0
+   */
+  private long version;
 
   public PullRequest(String id, String source, String target) {
     this.id = id;
@@ -145,6 +157,10 @@ public class PullRequest implements Serializable {
     this.subscriber.remove(recipient);
   }
 
+  /**
+   * @deprecated use {@link PullRequestService#getReviewMarks(Repository, String)}
+   */
+  @Deprecated(since = "3.17.0")
   public Set<ReviewMark> getReviewMarks() {
     return reviewMarks == null ? emptySet() : reviewMarks;
   }
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.review.pullrequest.service;
+
+import com.cloudogu.scm.review.CacheMetrics;
+import com.github.legman.Subscribe;
+import com.google.common.annotations.VisibleForTesting;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import sonia.scm.EagerSingleton;
+import sonia.scm.HandlerEventType;
+import sonia.scm.cache.Cache;
+import sonia.scm.cache.CacheManager;
+import sonia.scm.plugin.Extension;
+import sonia.scm.repository.RepositoryEvent;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Read-through cache for single pull requests. Callers always get their own copy of the cached pull request, so
+ * modifications have to be stored with {@link PullRequestStore#update(PullRequest)}, which invalidates the entry.
+ * The size of the cache can be configured like every other cache with the name {@value #CACHE_NAME}. The cache
+ * can be disabled with the system property {@value #ENABLED_PROPERTY} set to {@code false}.
+ */
+@Singleton
+@Extension
+@EagerSingleton
+public class PullRequestCache {
+
+  static final String CACHE_NAME = "sonia.cache.review.pullRequests";
+  static final String ENABLED_PROPERTY = "scm.review.pullRequestCache.enabled";
+
+  private final Cache<Key, PullRequest> cache;
+  private final CacheMetrics metrics;
+  private final boolean enabled;
+
+  @Inject
+  public PullRequestCache(CacheManager cacheManager, MeterRegistry meterRegistry) {
+    this(cacheManager, meterRegistry, Boolean.parseBoolean(System.getProperty(ENABLED_PROPERTY, "true")));
+  }
+
+  @VisibleForTesting
+  PullRequestCache(CacheManager cacheManager, MeterRegistry meterRegistry, boolean enabled) {
+    this.cache = cacheManager.getCache(CACHE_NAME);
+    this.metrics = new CacheMetrics(meterRegistry, CACHE_NAME);
+    this.enabled = enabled;
+  }
+
+  PullRequest get(String repositoryId, String pullRequestId, Supplier<Optional<PullRequest>> loader) {
+    if (!enabled) {
+      return loader.get().orElse(null);
+    }
+    Key key = new Key(repositoryId, pullRequestId);
+    PullRequest cached = cache.get(key);
+    if (cached != null) {
+      metrics.hit();
+      return copy(cached);
+    }
+    metrics.miss();
+    Optional<PullRequest> loaded = loader.get();
+    loaded.ifPresent(pullRequest -> cache.put(key, copy(pullRequest)));
+    return loaded.orElse(null);
+  }
+
+  void invalidate(String repositoryId, String pullRequestId) {
+    cache.remove(new Key(repositoryId, pullRequestId));
+  }
+
+  @Subscribe(async = false)
+  public void onRepositoryDeleted(RepositoryEvent event) {
+    if (event.getEventType() == HandlerEventType.DELETE) {
+      String repositoryId = event.getItem().getId();
+      cache.removeAll(key -> key.repositoryId().equals(repositoryId));
+    }
+  }
+
+  public CacheMetrics getMetrics() {
+    return metrics;
+  }
+
+  private static PullRequest copy(PullRequest pullRequest) {
+    return pullRequest.toBuilder()
+      .subscriber(new HashSet<>(pullRequest.getSubscriber()))
+      .labels(new HashSet<>(pullRequest.getLabels()))
+      .reviewer(new HashMap<>(pullRequest.getReviewer()))
+      .reviewMarks(new HashSet<>(pullRequest.getReviewMarks()))
+      .ignoredMergeObstacles(pullRequest.getIgnoredMergeObstacles() == null ? null : new ArrayList<>(pullRequest.getIgnoredMergeObstacles()))
+      .build();
+  }
+
+  private record Key(String repositoryId, String pullRequestId) {}
+}
@@ -20,6 +20,7 @@ import com.cloudogu.scm.review.RepositoryResolver;
 import com.cloudogu.scm.review.comment.service.Comment;
 import com.cloudogu.scm.review.comment.service.CommentEvent;
 import com.cloudogu.scm.review.comment.service.CommentType;
+import com.cloudogu.scm.review.comment.service.CommentsAddedEvent;
 import com.cloudogu.scm.review.comment.service.Reply;
 import com.cloudogu.scm.review.comment.service.ReplyEvent;
 import com.github.legman.Subscribe;
@@ -87,17 +88,19 @@ public class PullRequestChangeService {
   private final PullRequestChangeStoreFactory prChangeStoreFactory;
   private final Clock clock;
   private final PullRequestService pullRequestService;
+  private final IdSequenceService idSequenceService;
 
   @Inject
-  public PullRequestChangeService(RepositoryResolver repositoryResolver, PullRequestService pullRequestService, PullRequestChangeStoreFactory prChangeStoreFactory) {
-    this(repositoryResolver, prChangeStoreFactory, Clock.systemDefaultZone(), pullRequestService);
+  public PullRequestChangeService(RepositoryResolver repositoryResolver, PullRequestService pullRequestService, PullRequestChangeStoreFactory prChangeStoreFactory, IdSequenceService idSequenceService) {
+    this(repositoryResolver, prChangeStoreFactory, Clock.systemDefaultZone(), pullRequestService, idSequenceService);
   }
 
-  public PullRequestChangeService(RepositoryResolver repositoryResolver, PullRequestChangeStoreFactory prChangeStoreFactory, Clock clock, PullRequestService pullRequestService) {
+  public PullRequestChangeService(RepositoryResolver repositoryResolver, PullRequestChangeStoreFactory prChangeStoreFactory, Clock clock, PullRequestService pullRequestService, IdSequenceService idSequenceService) {
     this.repositoryResolver = repositoryResolver;
     this.prChangeStoreFactory = prChangeStoreFactory;
     this.clock = clock;
     this.pullRequestService = pullRequestService;
+    this.idSequenceService = idSequenceService;
   }
 
   public List<PullRequestChange> getAllChangesOfPullRequest(NamespaceAndName namespaceAndName, String pullRequestId) {
@@ -175,6 +178,12 @@ public class PullRequestChangeService {
   }
 
   private String createChangeId(String repositoryId, String pullRequestId) {
+    return idSequenceService.nextPullRequestChangeId(
+      repositoryId, pullRequestId, () -> findHighestExistingChangeId(repositoryId, pullRequestId)
+    );
+  }
+
+  private long findHighestExistingChangeId(String repositoryId, String pullRequestId) {
     try (QueryableStore<PullRequestChange> store = prChangeStoreFactory.get(repositoryId, pullRequestId)) {
       List<QueryableStore.Result<PullRequestChange>> latest =
         store.query()
@@ -182,9 +191,7 @@ public class PullRequestChangeService {
           .orderBy(PullRequestChangeQueryFields.INTERNAL_ID, new OrderOptions(QueryableStore.Order.DESC, true))
           .findAll(0, 1);
 
-      int nextId = latest.isEmpty() ? 1 : Integer.parseInt(latest.get(0).getId()) + 1;
-
-      return String.valueOf(nextId);
+      return latest.isEmpty() ? 0 : Long.parseLong(latest.get(0).getId());
     }
   }
 
@@ -305,6 +312,33 @@ public class PullRequestChangeService {
       .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
   }
 
+  @Subscribe(async = false)
+  public void onCommentsAdded(CommentsAddedEvent event) {
+    User user = getUser();
+    String pullRequestId = event.getPullRequest().getId();
+    Instant now = Instant.now(clock);
+
+    List<PullRequestChange> changes = event.getComments()
+      .stream()
+      .filter(comment -> !comment.isSystemComment())
+      .map(comment -> new PullRequestChange(
+        pullRequestId,
+        user.getId(),
+        user.getDisplayName(),
+        user.getMail(),
+        now,
+        null,
+        comment.getComment(),
+        comment.getType() == CommentType.COMMENT ? COMMENT : TASK,
+        null
+      ))
+      .toList();
+
+    if (!changes.isEmpty()) {
+      addAllPullRequestChanges(event.getRepository().getNamespaceAndName(), pullRequestId, changes);
+    }
+  }
+
   @Subscribe(async = false)
   public void onCommentEvent(CommentEvent event) {
     if ((event.getItem() != null && event.getItem().isSystemComment()) ||
@@ -77,15 +77,18 @@ public class PullRequestCreator {
   }
 
   private void createInitialTasks(String namespace, String name, String id, List<String> initialTasks) {
-    if (initialTasks == null) {
+    if (initialTasks == null || initialTasks.isEmpty()) {
       return;
     }
-    for (String task : initialTasks) {
-      Comment comment = new Comment();
-      comment.setComment(task);
-      comment.setType(CommentType.TASK_TODO);
-      commentService.add(namespace, name, id, comment);
-    }
+    List<Comment> tasks = initialTasks.stream()
+      .map(task -> {
+        Comment comment = new Comment();
+        comment.setComment(task);
+        comment.setType(CommentType.TASK_TODO);
+        return comment;
+      })
+      .toList();
+    commentService.addAll(namespace, name, id, tasks);
   }
 
   private void verifyBranchesDiffer(String source, String target) {
@@ -16,12 +16,17 @@
 
 package com.cloudogu.scm.review.pullrequest.service;
 
+import com.cloudogu.scm.review.IndexUpdateCoalescer;
+import com.cloudogu.scm.review.IndexWatermarkStore;
 import com.cloudogu.scm.review.PermissionCheck;
 import com.github.legman.Subscribe;
 import jakarta.inject.Inject;
 import jakarta.servlet.ServletContextEvent;
 import jakarta.servlet.ServletContextListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import sonia.scm.HandlerEventType;
+import sonia.scm.NotFoundException;
 import sonia.scm.plugin.Extension;
 import sonia.scm.repository.Repository;
 import sonia.scm.repository.RepositoryImportEvent;
@@ -36,17 +41,25 @@ import sonia.scm.search.ReindexRepositoryEvent;
 import sonia.scm.search.SearchEngine;
 import sonia.scm.search.SerializableIndexTask;
 
+import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
 
 @Extension
 @SuppressWarnings("UnstableApiUsage")
 public class PullRequestIndexer implements ServletContextListener {
 
+  private static final Logger LOG = LoggerFactory.getLogger(PullRequestIndexer.class);
+
   private final SearchEngine searchEngine;
+  private final IndexUpdateCoalescer coalescer;
+  private final IndexWatermarkStore watermarkStore;
 
   @Inject
-  public PullRequestIndexer(SearchEngine searchEngine) {
+  public PullRequestIndexer(SearchEngine searchEngine, IndexUpdateCoalescer coalescer, IndexWatermarkStore watermarkStore) {
     this.searchEngine = searchEngine;
+    this.coalescer = coalescer;
+    this.watermarkStore = watermarkStore;
   }
 
   @Subscribe
@@ -89,7 +102,14 @@ public class PullRequestIndexer implements ServletContextListener {
   }
 
   private void handleEvent(Repository repository, PullRequest pullRequest) {
-    searchEngine.forType(PullRequest.class).update(index -> storePullRequest(index, repository, pullRequest));
+    coalescer.update(
+      PullRequest.class,
+      repository,
+      pullRequest.getId(),
+      createId(repository, pullRequest),
+      index -> storePullRequest(index, repository, pullRequest),
+      new ReindexPullRequestTask(repository, pullRequest.getId())
+    );
   }
 
   @Override
@@ -99,35 +119,65 @@ public class PullRequestIndexer implements ServletContextListener {
 
   @Override
   public void contextDestroyed(ServletContextEvent servletContextEvent) {
-   // Nothing to do
+    watermarkStore.markCleanShutdown(PullRequest.class);
+  }
+
+  private static Id<PullRequest> createId(Repository repository, PullRequest pullRequest) {
+    return Id.of(PullRequest.class, pullRequest.getId()).and(Repository.class, repository.getId());
   }
 
   private static void storePullRequest(Index<PullRequest> index, Repository repository, PullRequest pullRequest) {
     index.store(
-      Id.of(PullRequest.class, pullRequest.getId()).and(Repository.class, repository.getId()),
+      createId(repository, pullRequest),
       RepositoryPermissions.custom(PermissionCheck.READ_PULL_REQUEST, repository).asShiroString(),
       pullRequest
     );
   }
 
+  /**
+   * Enqueues an {@link UpdateRepositoryTask} for each repository. If the version of the index has changed, these
+   * tasks rebuild the documents of their repository, otherwise they only write the pull requests that have been
+   * changed since the last reindex (e.g. if events have been lost due to a crash). If the version has not changed and
+   * the server has been shut down cleanly, nothing has to be done. The repository tasks are queued and persisted by
+   * the search engine, so that a reindex is resumed after a restart and other indices are not blocked while the pull
+   * requests of all repositories are indexed. The index is not cleared as a whole, so that search results stay
+   * available during a reindex.
+   */
   static final class ReindexAll implements IndexTask<PullRequest> {
 
     private final RepositoryManager repositoryManager;
     private final IndexLogStore logStore;
     private final PullRequestService pullRequestService;
+    private final SearchEngine searchEngine;
+    private final IndexWatermarkStore watermarkStore;
 
     @Inject
-    ReindexAll(RepositoryManager repositoryManager, IndexLogStore logStore, PullRequestService pullRequestService) {
+    ReindexAll(RepositoryManager repositoryManager, IndexLogStore logStore, PullRequestService pullRequestService, SearchEngine searchEngine, IndexWatermarkStore watermarkStore) {
       this.repositoryManager = repositoryManager;
       this.logStore = logStore;
       this.pullRequestService = pullRequestService;
+      this.searchEngine = searchEngine;
+      this.watermarkStore = watermarkStore;
     }
 
     @Override
     public void update(Index<PullRequest> index) {
+      boolean cleanShutdown = watermarkStore.removeCleanShutdownMark(PullRequest.class);
       Optional<IndexLog> indexLog = logStore.defaultIndex().get(PullRequest.class);
-      if (!indexLog.isPresent() || indexLog.get().getVersion() != PullRequest.VERSION) {
-        reindexAll(index);
+      boolean rebuild = !indexLog.isPresent() || indexLog.get().getVersion() != PullRequest.VERSION;
+      if (cleanShutdown && !rebuild) {
+        LOG.debug("pull request index is up to date after clean shutdown");
+        return;
+      }
+      List<Repository> repositories = repositoryManager.getAll()
+        .stream()
+        .filter(pullRequestService::supportsPullRequests)
+        .toList();
+      if (rebuild) {
+        LOG.info("reindexing pull requests of {} repositories", repositories.size());
+      }
+      for (int i = 0; i < repositories.size(); ++i) {
+        searchEngine.forType(PullRequest.class).update(new UpdateRepositoryTask(repositories.get(i), rebuild, i + 1, repositories.size()));
       }
     }
 
@@ -135,18 +185,61 @@ public class PullRequestIndexer implements ServletContextListener {
     public void afterUpdate() {
       logStore.defaultIndex().log(PullRequest.class, PullRequest.VERSION);
     }
+  }
 
-    private void reindexAll(Index<PullRequest> index) {
-      index.delete().all();
-      for (Repository repo : repositoryManager.getAll()) {
-        indexRepository(pullRequestService, index, repo);
+  /**
+   * Writes the pull requests of a single repository, that have been changed since the last reindex of this
+   * repository. The documents of the repository are rebuilt, if this is requested or if the repository has not been
+   * indexed with a watermark before. The position and the total number of repositories are used to log the progress.
+   */
+  static final class UpdateRepositoryTask implements SerializableIndexTask<PullRequest> {
+
+    private transient PullRequestService pullRequestService;
+    private transient IndexWatermarkStore watermarkStore;
+
+    private final Repository repository;
+    private final boolean rebuild;
+    private final int position;
+    private final int total;
+
+    UpdateRepositoryTask(Repository repository, boolean rebuild, int position, int total) {
+      this.repository = repository;
+      this.rebuild = rebuild;
+      this.position = position;
+      this.total = total;
+    }
+
+    @Override
+    public void update(Index<PullRequest> index) {
+      Optional<Instant> watermark = rebuild ? Optional.empty() : watermarkStore.get(repository, PullRequest.class);
+      if (watermark.isPresent()) {
+        Instant start = IndexWatermarkStore.watermarkForStart();
+        List<PullRequest> pullRequests = pullRequestService.getModifiedSince(repository, watermark.get());
+        pullRequests.forEach(pullRequest -> storePullRequest(index, repository, pullRequest));
+        watermarkStore.set(repository, PullRequest.class, start);
+        LOG.debug("updated {} pull requests of repository {} ({} of {})", pullRequests.size(), repository.getNamespaceAndName(), position, total);
+      } else {
+        index.delete().by(Repository.class, repository).execute();
+        indexRepository(pullRequestService, watermarkStore, index, repository);
+        LOG.info("reindexed pull requests of repository {} ({} of {})", repository.getNamespaceAndName(), position, total);
       }
     }
+
+    @Inject
+    public void setPullRequestService(PullRequestService pullRequestService) {
+      this.pullRequestService = pullRequestService;
+    }
+
+    @Inject
+    public void setWatermarkStore(IndexWatermarkStore watermarkStore) {
+      this.watermarkStore = watermarkStore;
+    }
   }
 
   static final class IndexRepositoryTask implements SerializableIndexTask<PullRequest> {
 
     private transient PullRequestService pullRequestService;
+    private transient IndexWatermarkStore watermarkStore;
 
     private final Repository repository;
 
@@ -156,18 +249,24 @@ public class PullRequestIndexer implements ServletContextListener {
 
     @Override
     public void update(Index<PullRequest> index) {
-      indexRepository(pullRequestService, index, repository);
+      indexRepository(pullRequestService, watermarkStore, index, repository);
     }
 
     @Inject
     public void setPullRequestService(PullRequestService pullRequestService) {
       this.pullRequestService = pullRequestService;
     }
+
+    @Inject
+    public void setWatermarkStore(IndexWatermarkStore watermarkStore) {
+      this.watermarkStore = watermarkStore;
+    }
   }
 
   static final class ReindexRepositoryTask implements SerializableIndexTask<PullRequest> {
 
     private transient PullRequestService pullRequestService;
+    private transient IndexWatermarkStore watermarkStore;
 
     private final Repository repository;
 
@@ -178,7 +277,43 @@ public class PullRequestIndexer implements ServletContextListener {
     @Override
     public void update(Index<PullRequest> index) {
       index.delete().by(Repository.class, repository).execute();
-      indexRepository(pullRequestService, index, repository);
+      indexRepository(pullRequestService, watermarkStore, index, repository);
+    }
+
+    @Inject
+    public void setPullRequestService(PullRequestService pullRequestService) {
+      this.pullRequestService = pullRequestService;
+    }
+
+    @Inject
+    public void setWatermarkStore(IndexWatermarkStore watermarkStore) {
+      this.watermarkStore = watermarkStore;
+    }
+  }
+
+  /**
+   * Reads a single pull request from the store and writes it to the index. This is used to recover updates, that
+   * have been lost by the {@link IndexUpdateCoalescer} due to a restart.
+   */
+  static final class ReindexPullRequestTask implements SerializableIndexTask<PullRequest> {
+
+    private transient PullRequestService pullRequestService;
+
+    private final Repository repository;
+    private final String pullRequestId;
+
+    ReindexPullRequestTask(Repository repository, String pullRequestId) {
+      this.repository = repository;
+      this.pullRequestId = pullRequestId;
+    }
+
+    @Override
+    public void update(Index<PullRequest> index) {
+      try {
+        storePullRequest(index, repository, pullRequestService.get(repository, pullRequestId));
+      } catch (NotFoundException e) {
+        index.delete().byId(Id.of(PullRequest.class, pullRequestId).and(Repository.class, repository.getId()));
+      }
     }
 
     @Inject
@@ -187,11 +322,13 @@ public class PullRequestIndexer implements ServletContextListener {
     }
   }
 
-  private static void indexRepository(PullRequestService pullRequestService, Index<PullRequest> index, Repository repository) {
+  private static void indexRepository(PullRequestService pullRequestService, IndexWatermarkStore watermarkStore, Index<PullRequest> index, Repository repository) {
     if (pullRequestService.supportsPullRequests(repository)) {
+      Instant start = IndexWatermarkStore.watermarkForStart();
       for (PullRequest pr : pullRequestService.getAll(repository.getNamespace(), repository.getName())) {
         storePullRequest(index, repository, pr);
       }
+      watermarkStore.set(repository, PullRequest.class, start);
     }
   }
 }
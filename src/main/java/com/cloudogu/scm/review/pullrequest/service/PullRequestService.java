@@ -25,9 +25,14 @@ import sonia.scm.repository.NamespaceAndName;
 import sonia.scm.repository.Repository;
 import sonia.scm.user.User;
 
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 
 /**
@@ -65,6 +70,41 @@ public interface PullRequestService {
    */
   Optional<PullRequest> getInProgress(Repository repository, String source, String target);
 
+  /**
+   * Return the pull requests in progress for the given combinations of source and target branch
+   *
+   * @return the pull requests in progress mapped by their source and target branch; combinations without a pull
+   * request in progress are not contained
+   * @since 3.17.0
+   */
+  Map<BranchPair, PullRequest> getInProgress(Repository repository, Collection<BranchPair> branchPairs);
+
+  /**
+   * Return all pull requests in progress with one of the given branches as source branch
+   *
+   * @since 3.17.0
+   */
+  List<PullRequest> getInProgressBySource(Repository repository, Collection<String> sourceBranches);
+
+  /**
+   * Return all pull requests in progress with one of the given branches as target branch
+   *
+   * @since 3.17.0
+   */
+  List<PullRequest> getInProgressByTarget(Repository repository, Collection<String> targetBranches);
+
+  /**
+   * Return all pull requests in progress with one of the given branches as source or as target branch
+   *
+   * @since 3.17.0
+   */
+  default List<PullRequest> getInProgressByBranches(Repository repository, Collection<String> branches) {
+    Map<String, PullRequest> pullRequests = new LinkedHashMap<>();
+    getInProgressBySource(repository, branches).forEach(pr -> pullRequests.put(pr.getId(), pr));
+    getInProgressByTarget(repository, branches).forEach(pr -> pullRequests.putIfAbsent(pr.getId(), pr));
+    return new ArrayList<>(pullRequests.values());
+  }
+
   /**
    * Return all pull requests related to the given repository
    *
@@ -74,6 +114,13 @@ public interface PullRequestService {
 
   List<PullRequest> getAll(String namespace, String name, RequestParameters parameters);
 
+  /**
+   * Returns all pull requests of the given repository, that have been created or modified after the given time.
+   *
+   * @since 3.17.0
+   */
+  List<PullRequest> getModifiedSince(Repository repository, Instant since);
+
   int count(String namespace, String name, PullRequestSelector selector);
 
   /**
@@ -98,6 +145,15 @@ public interface PullRequestService {
 
   void update(Repository repository, String pullRequestId, PullRequest pullRequest);
 
+  /**
+   * Update the pull request like {@link #update(Repository, String, PullRequest)}, but only if the stored
+   * pull request still has the expected version (see {@link PullRequest#getVersion()}).
+   *
+   * @throws sonia.scm.ConcurrentModificationException if the pull request has been modified in the meantime
+   * @since 3.17.0
+   */
+  void update(Repository repository, String pullRequestId, PullRequest pullRequest, long expectedVersion);
+
   default void reject(Repository repository, String pullRequestId, String message) {
     PermissionCheck.checkReject(repository, get(repository, pullRequestId));
     setRejected(repository, pullRequestId, PullRequestRejectedEvent.RejectionCause.REJECTED_BY_USER, message);
@@ -195,8 +251,29 @@ public interface PullRequestService {
     markAsNotReviewed(repository, pullRequestId, path, getCurrentUser());
   }
 
+  /**
+   * Returns the review marks of all users for the pull request.
+   *
+   * @since 3.17.0
+   */
+  Set<ReviewMark> getReviewMarks(Repository repository, String pullRequestId);
+
+  /**
+   * Returns the files the given user has marked as reviewed in the pull request.
+   *
+   * @since 3.17.0
+   */
+  List<String> getFilesMarkedAsReviewed(Repository repository, String pullRequestId, User user);
+
   void removeReviewMarks(Repository repository, String pullRequestId, Collection<ReviewMark> marksToBeRemoved);
 
+  /**
+   * Removes the review marks of all users for the given files.
+   *
+   * @since 3.17.0
+   */
+  void removeReviewMarksForFiles(Repository repository, String pullRequestId, Collection<String> files);
+
   boolean supportsPullRequests(Repository repository);
 
   void convertToPR(Repository repository, String pullRequestId);
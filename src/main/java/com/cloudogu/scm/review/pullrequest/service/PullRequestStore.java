@@ -16,8 +16,9 @@
 
 package com.cloudogu.scm.review.pullrequest.service;
 
+import com.cloudogu.scm.review.StoreLocks;
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.util.concurrent.Striped;
+import sonia.scm.ConcurrentModificationException;
 import sonia.scm.NotFoundException;
 import sonia.scm.repository.Repository;
 import sonia.scm.store.QueryableMutableStore;
@@ -26,79 +27,136 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.locks.Lock;
+import java.util.Optional;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 public class PullRequestStore implements AutoCloseable {
 
-  private static final Striped<Lock> LOCKS = Striped.lock(10);
+  private static final String LOCK_NAME = "pullRequest";
+  private static final int OPTIMISTIC_ATTEMPTS = 3;
 
   private final QueryableMutableStore<PullRequest> store;
+  private final IdSequenceService idSequenceService;
+  private final PullRequestCache cache;
+  private final StoreLocks locks;
   private Repository repository;
 
-  PullRequestStore(QueryableMutableStore<PullRequest> store, Repository repository) {
+  PullRequestStore(QueryableMutableStore<PullRequest> store, IdSequenceService idSequenceService, PullRequestCache cache, StoreLocks locks, Repository repository) {
     this.store = store;
+    this.idSequenceService = idSequenceService;
+    this.cache = cache;
+    this.locks = locks;
     this.repository = repository;
   }
 
   public String add(PullRequest pullRequest) {
-    return withLockDo(() -> {
-      String id = createId();
+    String id = createId();
+    return withWriteLock(id, () -> {
       pullRequest.setId(id);
       store.put(id, pullRequest);
+      cache.invalidate(repository.getId(), id);
       return id;
     });
   }
 
   public List<PullRequest> getAll() {
-    return withLockDo(() -> {
-      Map<String, PullRequest> result = store.getAll();
-      return new ArrayList<>(result.values());
-    });
+    Map<String, PullRequest> result = store.getAll();
+    return new ArrayList<>(result.values());
   }
 
   public PullRequest get(String id) {
-    return withLockDo(() -> {
-      PullRequest result = store.get(id);
-      if (result == null) {
-        throw new NotFoundException(PullRequest.class, id);
-      }
-      return result;
-    });
+    // the lock prevents a concurrent update from being overwritten in the cache by the value loaded here
+    PullRequest result = withReadLock(id, () -> cache.get(repository.getId(), id, () -> Optional.ofNullable(store.get(id))));
+    if (result == null) {
+      throw new NotFoundException(PullRequest.class, id);
+    }
+    return result;
   }
 
+  /**
+   * Stores the pull request, if the stored pull request still has the version of the given one (compare and set).
+   * The version of the given pull request is incremented afterwards.
+   *
+   * @throws ConcurrentModificationException if the pull request has been modified since it has been read
+   */
   public void update(PullRequest pullRequest) {
-    withLockDo(() -> {
-      String id = pullRequest.getId();
-      pullRequest.setLastModified(Instant.now());
-      store.put(id, pullRequest);
+    String id = pullRequest.getId();
+    withWriteLock(id, () -> {
+      PullRequest storedPullRequest = store.get(id);
+      if (storedPullRequest != null && storedPullRequest.getVersion() != pullRequest.getVersion()) {
+        throw new ConcurrentModificationException(PullRequest.class, id);
+      }
+      put(pullRequest);
       return null;
     });
   }
 
-  private <T> T withLockDo(Supplier<T> worker) {
-    Lock lock = LOCKS.get(repository.getNamespaceAndName());
-    lock.lock();
-    try {
-      return worker.get();
-    } finally {
-      lock.unlock();
+  /**
+   * Reads the pull request with the given id, applies the modification and stores the result without any
+   * concurrent update of the same pull request in between. The modification is applied optimistically and
+   * is repeated with the current state of the pull request on conflicts, so it must not have other side effects.
+   * The last attempt is made while holding the exclusive lock, so that the modification cannot get lost.
+   *
+   * @return the modified pull request
+   */
+  public PullRequest modify(String id, Consumer<PullRequest> modification) {
+    for (int attempt = 1; attempt < OPTIMISTIC_ATTEMPTS; ++attempt) {
+      PullRequest pullRequest = get(id);
+      modification.accept(pullRequest);
+      try {
+        update(pullRequest);
+        return pullRequest;
+      } catch (ConcurrentModificationException e) {
+        // someone else was faster, try again with the new state
+      }
     }
+    return withWriteLock(id, () -> {
+      PullRequest pullRequest = store.get(id);
+      if (pullRequest == null) {
+        throw new NotFoundException(PullRequest.class, id);
+      }
+      modification.accept(pullRequest);
+      put(pullRequest);
+      return pullRequest;
+    });
+  }
+
+  private void put(PullRequest pullRequest) {
+    String id = pullRequest.getId();
+    pullRequest.setVersion(pullRequest.getVersion() + 1);
+    pullRequest.setLastModified(Instant.now());
+    store.put(id, pullRequest);
+    cache.invalidate(repository.getId(), id);
+  }
+
+  private <T> T withReadLock(String id, Supplier<T> worker) {
+    return locks.withReadLock(LOCK_NAME, lockKey(id), worker);
+  }
+
+  private <T> T withWriteLock(String id, Supplier<T> worker) {
+    return locks.withWriteLock(LOCK_NAME, lockKey(id), worker);
+  }
+
+  private String lockKey(String id) {
+    return repository.getId() + "/" + id;
   }
 
   @VisibleForTesting
   String createId() {
-    return String.valueOf(
-      store
-        .query()
-        .project(PullRequestQueryFields.INTERNAL_ID)
-        .findAll()
-        .stream()
-        .map(a -> a[0].toString())
-        .mapToInt(Integer::parseInt)
-        .max()
-        .orElse(0) + 1
-    );
+    return idSequenceService.nextPullRequestId(repository.getId(), this::findHighestExistingId);
+  }
+
+  private long findHighestExistingId() {
+    return store
+      .query()
+      .project(PullRequestQueryFields.INTERNAL_ID)
+      .findAll()
+      .stream()
+      .map(a -> a[0].toString())
+      .mapToLong(Long::parseLong)
+      .max()
+      .orElse(0);
   }
 
   @Override
@@ -16,6 +16,7 @@
 
 package com.cloudogu.scm.review.pullrequest.service;
 
+import com.cloudogu.scm.review.StoreLocks;
 import jakarta.inject.Inject;
 import sonia.scm.repository.Repository;
 import sonia.scm.store.QueryableMutableStore;
@@ -24,15 +25,21 @@ import sonia.scm.store.QueryableStore;
 public class PullRequestStoreBuilder {
 
   private final PullRequestStoreFactory storeFactory;
+  private final IdSequenceService idSequenceService;
+  private final PullRequestCache cache;
+  private final StoreLocks locks;
 
   @Inject
-  public PullRequestStoreBuilder(PullRequestStoreFactory storeFactory) {
+  public PullRequestStoreBuilder(PullRequestStoreFactory storeFactory, IdSequenceService idSequenceService, PullRequestCache cache, StoreLocks locks) {
     this.storeFactory = storeFactory;
+    this.idSequenceService = idSequenceService;
+    this.cache = cache;
+    this.locks = locks;
   }
 
   public PullRequestStore create(Repository repository) {
     QueryableMutableStore<PullRequest> store = storeFactory.getMutable(repository.getId());
-    return new PullRequestStore(store, repository);
+    return new PullRequestStore(store, idSequenceService, cache, locks, repository);
   }
 
   public QueryableStore<PullRequest> createQueryable(Repository repository) {
@@ -16,7 +16,8 @@
 
 package com.cloudogu.scm.review.pullrequest.service;
 
-import com.cloudogu.scm.review.BranchResolver;
+import com.cloudogu.scm.review.PushContext;
+import com.cloudogu.scm.review.PushContextFactory;
 import com.github.legman.Subscribe;
 import com.google.common.annotations.VisibleForTesting;
 import jakarta.inject.Inject;
@@ -44,19 +45,17 @@ public class PullRequestSuggestionService {
   private static final long PUSH_ENTRY_LIFETIME_IN_HOURS = 2;
 
   private final List<PushEntry> pushEntries = new ArrayList<>();
-  private final PullRequestService pullRequestService;
-  private final BranchResolver branchResolver;
+  private final PushContextFactory pushContextFactory;
   private final Clock clock;
 
   @Inject
-  public PullRequestSuggestionService(PullRequestService pullRequestService, BranchResolver branchResolver) {
-    this(pullRequestService, branchResolver, Clock.systemUTC());
+  public PullRequestSuggestionService(PushContextFactory pushContextFactory) {
+    this(pushContextFactory, Clock.systemUTC());
   }
 
   @VisibleForTesting
-  PullRequestSuggestionService(PullRequestService pullRequestService, BranchResolver branchResolver, Clock clock) {
-    this.pullRequestService = pullRequestService;
-    this.branchResolver = branchResolver;
+  PullRequestSuggestionService(PushContextFactory pushContextFactory, Clock clock) {
+    this.pushContextFactory = pushContextFactory;
     this.clock = clock;
   }
 
@@ -68,15 +67,16 @@ public class PullRequestSuggestionService {
   @Subscribe(async = false)
   public void onBranchUpdated(PostReceiveRepositoryHookEvent event) {
     Repository repository = event.getRepository();
+    PushContext pushContext = pushContextFactory.get(event);
 
-    boolean isNotSupported = !pullRequestService.supportsPullRequests(repository);
+    boolean isNotSupported = !pushContext.supportsPullRequests();
     if (isNotSupported) {
       return;
     }
 
     // check the branches only if PullRequests support (abort before branch check)
     // because BranchResolver throws an error to the client if the repository type does not support branches
-    boolean isSingleOrNoBranch = branchResolver.getAll(repository).size() < 2;
+    boolean isSingleOrNoBranch = pushContext.getBranches().size() < 2;
     if (isSingleOrNoBranch) {
       return;
     }
@@ -85,7 +85,7 @@ public class PullRequestSuggestionService {
     String pushedBy = SecurityUtils.getSubject().getPrincipal().toString();
     List<String> createdOrModifiedBranches = event.getContext().getBranchProvider().getCreatedOrModified();
     List<String> deletedBranches = event.getContext().getBranchProvider().getDeletedOrClosed();
-    List<PullRequest> pullRequests = pullRequestService.getAll(repository.getNamespace(), repository.getName());
+    List<PullRequest> pullRequests = pushContext.getInProgressBySource(createdOrModifiedBranches);
 
     synchronized (this) {
       createdOrModifiedBranches
@@ -21,6 +21,7 @@ import com.cloudogu.scm.review.comment.service.BasicCommentEvent;
 import com.cloudogu.scm.review.comment.service.Comment;
 import com.cloudogu.scm.review.comment.service.CommentEvent;
 import com.cloudogu.scm.review.comment.service.CommentService;
+import com.cloudogu.scm.review.comment.service.CommentsAddedEvent;
 import com.cloudogu.scm.review.comment.service.Location;
 import com.cloudogu.scm.review.comment.service.Reply;
 import com.cloudogu.scm.review.comment.service.ReplyEvent;
@@ -31,10 +32,9 @@ import sonia.scm.HandlerEventType;
 import sonia.scm.plugin.Extension;
 import sonia.scm.repository.Repository;
 
-import java.util.Collection;
+import java.util.List;
 import java.util.Objects;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 
 @EagerSingleton
 @Extension
@@ -54,19 +54,28 @@ public class RemoveReviewMarksOnChangedCommentsHook {
     checkForLocation(event, Comment::getLocation);
   }
 
+  @Subscribe
+  public void handleCommentsAddedEvents(CommentsAddedEvent event) {
+    List<String> files = event.getComments()
+      .stream()
+      .map(Comment::getLocation)
+      .filter(Objects::nonNull)
+      .map(Location::getFile)
+      .filter(Objects::nonNull)
+      .distinct()
+      .toList();
+    if (!files.isEmpty()) {
+      pullRequestService.removeReviewMarksForFiles(event.getRepository(), event.getPullRequest().getId(), files);
+    }
+  }
+
   @Subscribe
   public void handleReplyEvents(ReplyEvent event) {
     checkForLocation(event, reply -> getLocationForReply(reply, event.getPullRequest(), event.getRepository()));
   }
 
   private Location getLocationForReply(Reply reply, PullRequest pullRequest, Repository repository) {
-    return commentService.getAll(repository.getNamespace(), repository.getName(), pullRequest.getId())
-      .stream()
-      .filter(comment -> comment.getReplies().stream().map(Reply::getId).anyMatch(id -> id.equals(reply.getId())))
-      .map(Comment::getLocation)
-      .filter(Objects::nonNull)
-      .findAny()
-      .orElse(null);
+    return commentService.get(repository, pullRequest.getId(), reply.getParentId()).getLocation();
   }
 
   private <C extends BasicComment, T extends BasicCommentEvent<C>> void checkForLocation(T event, Function<C, Location> locationExtractor) {
@@ -74,16 +83,10 @@ public class RemoveReviewMarksOnChangedCommentsHook {
       return;
     }
     Location location = locationExtractor.apply(event.getItem());
-    if (location == null) {
+    if (location == null || location.getFile() == null) {
       return;
     }
 
-    Collection<ReviewMark> reviewMarksToBeRemoved = event.getPullRequest()
-      .getReviewMarks()
-      .stream()
-      .filter(mark -> mark.getFile().equals(location.getFile()))
-      .collect(Collectors.toList());
-
-    pullRequestService.removeReviewMarks(event.getRepository(), event.getPullRequest().getId(), reviewMarksToBeRemoved);
+    pullRequestService.removeReviewMarksForFiles(event.getRepository(), event.getPullRequest().getId(), List.of(location.getFile()));
   }
 }
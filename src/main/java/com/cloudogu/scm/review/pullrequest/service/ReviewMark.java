@@ -24,6 +24,8 @@ import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 import lombok.ToString;
+import sonia.scm.repository.Repository;
+import sonia.scm.store.QueryableType;
 
 import java.io.Serializable;
 
@@ -34,6 +36,7 @@ import java.io.Serializable;
 @XmlAccessorType(XmlAccessType.FIELD)
 @EqualsAndHashCode
 @ToString
+@QueryableType({Repository.class, PullRequest.class})
 public class ReviewMark implements Serializable {
 
   private String file;
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.review.pullrequest.service;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import sonia.scm.repository.Repository;
+import sonia.scm.store.QueryableMutableStore;
+import sonia.scm.store.QueryableStore;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Stores the review marks of pull requests as single entities, one for each user and file. This way adding or
+ * removing a mark does not have to rewrite the pull request, and the marks of a single user can be queried.
+ */
+@Singleton
+public class ReviewMarkStore {
+
+  private final ReviewMarkStoreFactory storeFactory;
+
+  @Inject
+  public ReviewMarkStore(ReviewMarkStoreFactory storeFactory) {
+    this.storeFactory = storeFactory;
+  }
+
+  public Set<ReviewMark> getAll(Repository repository, String pullRequestId) {
+    try (QueryableStore<ReviewMark> store = storeFactory.get(repository.getId(), pullRequestId)) {
+      return new HashSet<>(store.query().findAll());
+    }
+  }
+
+  public List<String> getFiles(Repository repository, String pullRequestId, String userId) {
+    try (QueryableStore<ReviewMark> store = storeFactory.get(repository.getId(), pullRequestId)) {
+      return store.query(ReviewMarkQueryFields.USER.eq(userId))
+        .findAll()
+        .stream()
+        .map(ReviewMark::getFile)
+        .toList();
+    }
+  }
+
+  public void add(Repository repository, String pullRequestId, ReviewMark reviewMark) {
+    try (QueryableMutableStore<ReviewMark> store = storeFactory.getMutable(repository.getId(), pullRequestId)) {
+      store.put(createKey(reviewMark), reviewMark);
+    }
+  }
+
+  public void remove(Repository repository, String pullRequestId, Collection<ReviewMark> reviewMarks) {
+    if (reviewMarks.isEmpty()) {
+      return;
+    }
+    try (QueryableMutableStore<ReviewMark> store = storeFactory.getMutable(repository.getId(), pullRequestId)) {
+      store.transactional(() -> {
+        reviewMarks.forEach(reviewMark -> store.remove(createKey(reviewMark)));
+        return true;
+      });
+    }
+  }
+
+  /**
+   * Removes the marks of all users for the given files.
+   *
+   * @return the removed marks
+   */
+  public List<ReviewMark> removeForFiles(Repository repository, String pullRequestId, Collection<String> files) {
+    if (files.isEmpty()) {
+      return List.of();
+    }
+    try (QueryableMutableStore<ReviewMark> store = storeFactory.getMutable(repository.getId(), pullRequestId)) {
+      List<ReviewMark> removedMarks = new ArrayList<>();
+      store.transactional(() -> {
+        removedMarks.addAll(store.query(ReviewMarkQueryFields.FILE.in(files.toArray(new String[0]))).findAll());
+        removedMarks.forEach(reviewMark -> store.remove(createKey(reviewMark)));
+        return true;
+      });
+      return removedMarks;
+    }
+  }
+
+  /**
+   * Creates the key of the mark in the store. User ids cannot contain slashes, so the key is unique for each
+   * combination of user and file.
+   */
+  public static String createKey(ReviewMark reviewMark) {
+    return reviewMark.getUser() + "/" + reviewMark.getFile();
+  }
+}
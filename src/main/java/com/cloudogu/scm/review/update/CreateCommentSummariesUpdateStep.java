@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.review.update;
+
+import com.cloudogu.scm.review.comment.service.Comment;
+import com.cloudogu.scm.review.comment.service.CommentSummary;
+import com.cloudogu.scm.review.comment.service.Reply;
+import com.cloudogu.scm.review.pullrequest.service.PullRequest;
+import jakarta.inject.Inject;
+import lombok.extern.slf4j.Slf4j;
+import sonia.scm.migration.RepositoryUpdateContext;
+import sonia.scm.migration.RepositoryUpdateStep;
+import sonia.scm.plugin.Extension;
+import sonia.scm.store.QueryableMutableStore;
+import sonia.scm.store.QueryableStoreFactory;
+import sonia.scm.version.Version;
+
+import java.util.Map;
+
+/**
+ * Computes the {@link CommentSummary} for all existing pull requests, so that the counters are correct before they
+ * are maintained by the events of new comments.
+ */
+@Slf4j
+@Extension
+public class CreateCommentSummariesUpdateStep implements RepositoryUpdateStep {
+
+  private final QueryableStoreFactory queryableStoreFactory;
+
+  @Inject
+  public CreateCommentSummariesUpdateStep(QueryableStoreFactory queryableStoreFactory) {
+    this.queryableStoreFactory = queryableStoreFactory;
+  }
+
+  @Override
+  public void doUpdate(RepositoryUpdateContext repositoryUpdateContext) {
+    String repositoryId = repositoryUpdateContext.getRepositoryId();
+
+    try (QueryableMutableStore<PullRequest> pullRequestStore = queryableStoreFactory.getMutable(PullRequest.class, repositoryId);
+         QueryableMutableStore<CommentSummary> summaryStore = queryableStoreFactory.getMutable(CommentSummary.class, repositoryId)) {
+      for (String pullRequestId : pullRequestStore.getAll().keySet()) {
+        try {
+          summaryStore.put(pullRequestId, computeSummary(repositoryId, pullRequestId));
+        } catch (Exception ex) {
+          log.error("Could not compute comment summary of pull request {} in repository {}", pullRequestId, repositoryId, ex);
+        }
+      }
+    }
+  }
+
+  private CommentSummary computeSummary(String repositoryId, String pullRequestId) {
+    try (QueryableMutableStore<Comment> commentStore = queryableStoreFactory.getMutable(Comment.class, repositoryId, pullRequestId);
+         QueryableMutableStore<Reply> replyStore = queryableStoreFactory.getMutable(Reply.class, repositoryId, pullRequestId)) {
+      Map<String, Comment> comments = commentStore.getAll();
+      // replies may still be embedded in their root comments, if they have not been moved yet
+      for (Reply reply : replyStore.getAll().values()) {
+        Comment parent = comments.get(reply.getParentId());
+        if (parent != null) {
+          parent.addReply(reply);
+        }
+      }
+      return CommentSummary.of(comments.values());
+    }
+  }
+
+  @Override
+  public Version getTargetVersion() {
+    return Version.parse("3.0.1");
+  }
+
+  @Override
+  public String getAffectedDataType() {
+    return "commentSummaryStore";
+  }
+}
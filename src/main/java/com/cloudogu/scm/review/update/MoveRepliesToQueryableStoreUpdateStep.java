@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.review.update;
+
+import com.cloudogu.scm.review.comment.service.Comment;
+import com.cloudogu.scm.review.comment.service.Reply;
+import com.cloudogu.scm.review.pullrequest.service.PullRequest;
+import jakarta.inject.Inject;
+import lombok.extern.slf4j.Slf4j;
+import sonia.scm.migration.RepositoryUpdateContext;
+import sonia.scm.migration.RepositoryUpdateStep;
+import sonia.scm.plugin.Extension;
+import sonia.scm.store.QueryableMutableStore;
+import sonia.scm.store.QueryableStoreFactory;
+import sonia.scm.version.Version;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Moves the replies from the documents of their root comments into their own store.
+ */
+@Slf4j
+@Extension
+public class MoveRepliesToQueryableStoreUpdateStep implements RepositoryUpdateStep {
+
+  private final QueryableStoreFactory queryableStoreFactory;
+
+  @Inject
+  public MoveRepliesToQueryableStoreUpdateStep(QueryableStoreFactory queryableStoreFactory) {
+    this.queryableStoreFactory = queryableStoreFactory;
+  }
+
+  @Override
+  public void doUpdate(RepositoryUpdateContext repositoryUpdateContext) {
+    String repositoryId = repositoryUpdateContext.getRepositoryId();
+
+    try (QueryableMutableStore<PullRequest> pullRequestStore = queryableStoreFactory.getMutable(PullRequest.class, repositoryId)) {
+      for (String pullRequestId : pullRequestStore.getAll().keySet()) {
+        try {
+          moveReplies(repositoryId, pullRequestId);
+        } catch (Exception ex) {
+          log.error("Could not migrate replies of pull request {} in repository {}", pullRequestId, repositoryId, ex);
+        }
+      }
+    }
+  }
+
+  private void moveReplies(String repositoryId, String pullRequestId) {
+    try (QueryableMutableStore<Comment> commentStore = queryableStoreFactory.getMutable(Comment.class, repositoryId, pullRequestId);
+         QueryableMutableStore<Reply> replyStore = queryableStoreFactory.getMutable(Reply.class, repositoryId, pullRequestId)) {
+      List<Comment> commentsWithReplies = commentStore.getAll()
+        .values()
+        .stream()
+        .filter(comment -> !comment.getReplies().isEmpty())
+        .toList();
+      if (commentsWithReplies.isEmpty()) {
+        return;
+      }
+      replyStore.transactional(() -> {
+        for (Comment comment : commentsWithReplies) {
+          for (Reply reply : comment.getReplies()) {
+            reply.setParentId(comment.getId());
+            replyStore.put(reply.getId(), reply);
+          }
+        }
+        return true;
+      });
+      commentStore.transactional(() -> {
+        for (Comment comment : commentsWithReplies) {
+          comment.setReplies(new ArrayList<>());
+          commentStore.put(comment.getId(), comment);
+        }
+        return true;
+      });
+    }
+  }
+
+  @Override
+  public Version getTargetVersion() {
+    return Version.parse("3.0.0");
+  }
+
+  @Override
+  public String getAffectedDataType() {
+    return "commentStore";
+  }
+}
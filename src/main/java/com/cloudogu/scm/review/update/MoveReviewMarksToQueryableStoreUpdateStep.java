@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.review.update;
+
+import com.cloudogu.scm.review.pullrequest.service.PullRequest;
+import com.cloudogu.scm.review.pullrequest.service.ReviewMark;
+import com.cloudogu.scm.review.pullrequest.service.ReviewMarkStore;
+import jakarta.inject.Inject;
+import lombok.extern.slf4j.Slf4j;
+import sonia.scm.migration.RepositoryUpdateContext;
+import sonia.scm.migration.RepositoryUpdateStep;
+import sonia.scm.plugin.Extension;
+import sonia.scm.store.QueryableMutableStore;
+import sonia.scm.store.QueryableStoreFactory;
+import sonia.scm.version.Version;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Moves the review marks from the pull request documents into their own store.
+ */
+@Slf4j
+@Extension
+@SuppressWarnings("java:S1874") // we have to read the deprecated marks to migrate them
+public class MoveReviewMarksToQueryableStoreUpdateStep implements RepositoryUpdateStep {
+
+  private final QueryableStoreFactory queryableStoreFactory;
+
+  @Inject
+  public MoveReviewMarksToQueryableStoreUpdateStep(QueryableStoreFactory queryableStoreFactory) {
+    this.queryableStoreFactory = queryableStoreFactory;
+  }
+
+  @Override
+  public void doUpdate(RepositoryUpdateContext repositoryUpdateContext) {
+    String repositoryId = repositoryUpdateContext.getRepositoryId();
+
+    try (QueryableMutableStore<PullRequest> pullRequestStore = queryableStoreFactory.getMutable(PullRequest.class, repositoryId)) {
+      for (Map.Entry<String, PullRequest> entry : pullRequestStore.getAll().entrySet()) {
+        PullRequest pullRequest = entry.getValue();
+        Set<ReviewMark> reviewMarks = pullRequest.getReviewMarks();
+        if (reviewMarks.isEmpty()) {
+          continue;
+        }
+        try (QueryableMutableStore<ReviewMark> reviewMarkStore = queryableStoreFactory.getMutable(ReviewMark.class, repositoryId, entry.getKey())) {
+          reviewMarkStore.transactional(() -> {
+            reviewMarks.forEach(reviewMark -> reviewMarkStore.put(ReviewMarkStore.createKey(reviewMark), reviewMark));
+            return true;
+          });
+          pullRequest.setReviewMarks(new HashSet<>());
+          pullRequestStore.put(entry.getKey(), pullRequest);
+        } catch (Exception ex) {
+          log.error("Could not migrate review marks of pull request {} in repository {}", entry.getKey(), repositoryId, ex);
+        }
+      }
+    }
+  }
+
+  @Override
+  public Version getTargetVersion() {
+    return Version.parse("3.0.0");
+  }
+
+  @Override
+  public String getAffectedDataType() {
+    return "pullRequestStore";
+  }
+}
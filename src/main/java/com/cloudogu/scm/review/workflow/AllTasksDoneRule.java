@@ -16,16 +16,12 @@
 
 package com.cloudogu.scm.review.workflow;
 
-import com.cloudogu.scm.review.comment.service.Comment;
 import com.cloudogu.scm.review.comment.service.CommentService;
-import com.cloudogu.scm.review.comment.service.CommentType;
 import com.cloudogu.scm.review.pullrequest.service.PullRequest;
 import jakarta.inject.Inject;
 import sonia.scm.plugin.Extension;
 import sonia.scm.repository.Repository;
 
-import java.util.List;
-
 @Extension
 public class AllTasksDoneRule implements Rule {
 
@@ -46,13 +42,9 @@ public class AllTasksDoneRule implements Rule {
   }
 
   private int countOpenTasks(Context context) {
-    return (int) getComments(context).stream().filter(c -> c.getType() == CommentType.TASK_TODO).count();
-  }
-
-  private List<Comment> getComments(Context context) {
     Repository repository = context.getRepository();
     PullRequest pullRequest = context.getPullRequest();
-    return commentService.getAll(repository.getNamespace(), repository.getName(), pullRequest.getId());
+    return commentService.getSummary(repository, pullRequest.getId()).getOpenTasks();
   }
 
   static class ResultContext {
@@ -81,7 +81,7 @@ class BranchDetailsEnricherTest {
       PullRequestDto dto = new PullRequestDto();
       dto.setId("1");
       dto.setSource("main");
-      when(service.getAll(repository.getNamespace(), repository.getName())).thenReturn(ImmutableList.of(pr));
+      when(service.getInProgressBySource(repository, List.of("main"))).thenReturn(ImmutableList.of(pr));
       when(mapper.map(pr)).thenReturn(dto);
 
       enricher.enrich(HalEnricherContext.of(repository, new BranchDetails("main")), appender);
@@ -96,26 +96,8 @@ class BranchDetailsEnricherTest {
     }
 
     @Test
-    void shouldNotEnrichIfNotSourceBranch() {
-      PullRequest pr = new PullRequest("1", "develop", "main");
-      when(service.getAll(repository.getNamespace(), repository.getName())).thenReturn(ImmutableList.of(pr));
-
-      enricher.enrich(HalEnricherContext.of(repository, new BranchDetails("main")), appender);
-
-      verify(appender).appendEmbedded(eq("pullRequests"), (List<HalRepresentation>) argThat(hrs -> {
-        assertThat(((List<HalRepresentation>) hrs)).isEmpty();
-        return true;
-      }));
-    }
-
-    @Test
-    void shouldNotEnrichIfPrNotOpen() {
-      PullRequest pr = new PullRequest("1", "main", "develop");
-      pr.setStatus(PullRequestStatus.MERGED);
-      PullRequestDto dto = new PullRequestDto();
-      dto.setId("1");
-      dto.setSource("main");
-      when(service.getAll(repository.getNamespace(), repository.getName())).thenReturn(ImmutableList.of(pr));
+    void shouldEmbedEmptyListWithoutPullRequestsInProgress() {
+      when(service.getInProgressBySource(repository, List.of("main"))).thenReturn(ImmutableList.of());
 
       enricher.enrich(HalEnricherContext.of(repository, new BranchDetails("main")), appender);
 
@@ -129,7 +111,7 @@ class BranchDetailsEnricherTest {
   @Test
   void shouldNotEnrichIfPullRequestsAreNotSupported() {
     when(service.supportsPullRequests(repository)).thenReturn(false);
-    lenient().doThrow(RuntimeException.class).when(service).getAll(repository.getNamespace(), repository.getName());
+    lenient().doThrow(RuntimeException.class).when(service).getInProgressBySource(any(), any());
 
     enricher.enrich(HalEnricherContext.of(repository, new BranchDetails("main")), appender);
 
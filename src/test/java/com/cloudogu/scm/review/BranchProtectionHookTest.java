@@ -17,6 +17,7 @@
 package com.cloudogu.scm.review;
 
 import com.cloudogu.scm.review.config.service.ConfigService;
+import com.cloudogu.scm.review.config.service.ConfigService.BranchProtectionMatcher;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
@@ -61,6 +62,12 @@ class BranchProtectionHookTest {
   @Mock
   ConfigService configService;
   @Mock
+  BranchProtectionMatcher matcher;
+  @Mock
+  PushContextFactory pushContextFactory;
+  @Mock
+  PushContext pushContext;
+  @Mock
   PreReceiveRepositoryHookEvent event;
   @Mock
   InternalMergeSwitch internalMergeSwitch;
@@ -94,6 +101,8 @@ class BranchProtectionHookTest {
       lenient().when(hookContext.isFeatureSupported(HookFeature.BRANCH_PROVIDER)).thenReturn(true);
       lenient().when(hookContext.getBranchProvider()).thenReturn(branchProvider);
       lenient().when(hookContext.getChangesetProvider()).thenReturn(changesetBuilder);
+      lenient().when(pushContextFactory.get(event)).thenReturn(pushContext);
+      lenient().when(pushContext.getBranchProtectionMatcher()).thenReturn(matcher);
     }
 
     @Test
@@ -106,7 +115,7 @@ class BranchProtectionHookTest {
     @Test
     void shouldIgnoreNotProtectedBranch() {
       when(configService.isEnabled(REPOSITORY)).thenReturn(true);
-      when(configService.isBranchProtected(REPOSITORY, "feature")).thenReturn(false);
+      when(matcher.isBranchProtected("feature")).thenReturn(false);
 
       when(branchProvider.getCreatedOrModified()).thenReturn(singletonList("feature"));
 
@@ -116,7 +125,7 @@ class BranchProtectionHookTest {
     @Test
     void shouldIgnoreBranchesWithoutChangesets() {
       when(configService.isEnabled(REPOSITORY)).thenReturn(true);
-      when(configService.isBranchProtected(REPOSITORY, "master")).thenReturn(true);
+      when(matcher.isBranchProtected("master")).thenReturn(true);
 
       when(branchProvider.getCreatedOrModified()).thenReturn(singletonList("master"));
       when(changesetBuilder.getChangesets()).thenReturn(emptyList());
@@ -130,8 +139,8 @@ class BranchProtectionHookTest {
       when(repositoryService.getModificationsCommand()).thenReturn(modificationsCommandBuilder);
       when(modificationsCommandBuilder.getModifications()).thenReturn(new Modifications("123", List.of(new Added("forbidden"))));
       when(configService.isEnabled(REPOSITORY)).thenReturn(true);
-      when(configService.isBranchProtected(REPOSITORY, "master")).thenReturn(true);
-      when(configService.isBranchPathProtected(REPOSITORY, "master", "forbidden")).thenReturn(true);
+      when(matcher.isBranchProtected("master")).thenReturn(true);
+      when(matcher.matches("master", "forbidden")).thenReturn(true);
 
       when(branchProvider.getCreatedOrModified()).thenReturn(singletonList("master"));
       Changeset changeset = mock(Changeset.class);
@@ -144,14 +153,34 @@ class BranchProtectionHookTest {
       );
     }
 
+    @Test
+    void shouldOpenRepositoryServiceOnlyOnceForAllChangesets() throws IOException {
+      when(serviceFactory.create(REPOSITORY)).thenReturn(repositoryService);
+      when(repositoryService.getModificationsCommand()).thenReturn(modificationsCommandBuilder);
+      when(modificationsCommandBuilder.getModifications()).thenReturn(new Modifications("123", List.of(new Added("allowed"))));
+      when(configService.isEnabled(REPOSITORY)).thenReturn(true);
+      when(matcher.isBranchProtected("master")).thenReturn(true);
+
+      when(branchProvider.getCreatedOrModified()).thenReturn(singletonList("master"));
+      Changeset changeset = mock(Changeset.class);
+      when(changesetBuilder.getChangesets()).thenReturn(List.of(changeset, changeset, changeset));
+      when(changeset.getBranches()).thenReturn(singletonList("master"));
+      when(changeset.getParents()).thenReturn(singletonList("parent"));
+
+      hook.onEvent(event);
+
+      verify(serviceFactory).create(REPOSITORY);
+      verify(repositoryService).close();
+    }
+
     @Test
     void shouldNotFailForProtectedBranchWithChangesetAndNotProtectedPath() throws IOException {
       when(serviceFactory.create(REPOSITORY)).thenReturn(repositoryService);
       when(repositoryService.getModificationsCommand()).thenReturn(modificationsCommandBuilder);
       when(modificationsCommandBuilder.getModifications()).thenReturn(new Modifications("123", List.of(new Added("allowed"))));
       when(configService.isEnabled(REPOSITORY)).thenReturn(true);
-      when(configService.isBranchProtected(REPOSITORY, "master")).thenReturn(true);
-      when(configService.isBranchPathProtected(REPOSITORY, "master", "allowed")).thenReturn(false);
+      when(matcher.isBranchProtected("master")).thenReturn(true);
+      when(matcher.matches("master", "allowed")).thenReturn(false);
 
       when(branchProvider.getCreatedOrModified()).thenReturn(singletonList("master"));
       Changeset changeset = mock(Changeset.class);
@@ -165,7 +194,7 @@ class BranchProtectionHookTest {
     @Test
     void shouldNotFailForNotProtectedBranchButProtectedPath() {
       when(configService.isEnabled(REPOSITORY)).thenReturn(true);
-      when(configService.isBranchProtected(REPOSITORY, "master")).thenReturn(false);
+      when(matcher.isBranchProtected("master")).thenReturn(false);
 
       when(branchProvider.getCreatedOrModified()).thenReturn(singletonList("master"));
 
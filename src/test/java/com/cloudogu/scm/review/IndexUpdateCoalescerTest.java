@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.review;
+
+import com.cloudogu.scm.review.pullrequest.service.PullRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.repository.Repository;
+import sonia.scm.search.Id;
+import sonia.scm.search.Index;
+import sonia.scm.search.SearchEngine;
+import sonia.scm.search.SerializableIndexTask;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@SuppressWarnings({"UnstableApiUsage", "rawtypes", "unchecked"})
+class IndexUpdateCoalescerTest {
+
+  private static final RecoveryTask RECOVERY = new RecoveryTask();
+
+  private final Repository repository = new Repository("1", "git", "hitchhiker", "42");
+
+  @Mock
+  private SearchEngine searchEngine;
+  @Mock
+  private SearchEngine.ForType<PullRequest> forType;
+  @Mock
+  private Index<PullRequest> index;
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final List<String> executed = new ArrayList<>();
+
+  private IndexUpdateCoalescer coalescer;
+
+  @BeforeEach
+  void setUpCoalescer() {
+    when(searchEngine.forType(PullRequest.class)).thenReturn(forType);
+    coalescer = new IndexUpdateCoalescer(searchEngine, meterRegistry);
+  }
+
+  @Test
+  void shouldExecuteUpdatesOfSamePullRequestWithOneTask() {
+    coalescer.update(PullRequest.class, repository, "1", id("1"), i -> executed.add("first"), RECOVERY);
+    coalescer.update(PullRequest.class, repository, "1", id("2"), i -> executed.add("second"), RECOVERY);
+
+    assertThat(pendingUpdates()).isEqualTo(2);
+    executeTasks(1);
+
+    assertThat(executed).containsExactly("first", "second");
+    assertThat(pendingUpdates()).isZero();
+    assertThat(updates("enqueued")).isEqualTo(1);
+    assertThat(updates("coalesced")).isEqualTo(1);
+  }
+
+  @Test
+  void shouldExecuteOnlyLastUpdateOfSameDocument() {
+    coalescer.update(PullRequest.class, repository, "1", id("1"), i -> executed.add("first"), RECOVERY);
+    coalescer.update(PullRequest.class, repository, "1", id("1"), i -> executed.add("second"), RECOVERY);
+
+    assertThat(pendingUpdates()).isEqualTo(1);
+    executeTasks(1);
+
+    assertThat(executed).containsExactly("second");
+  }
+
+  @Test
+  void shouldUseSeparateTasksForDifferentPullRequests() {
+    coalescer.update(PullRequest.class, repository, "1", id("1"), i -> executed.add("first"), RECOVERY);
+    coalescer.update(PullRequest.class, repository, "2", id("2"), i -> executed.add("second"), RECOVERY);
+
+    executeTasks(2);
+
+    assertThat(executed).containsExactlyInAnyOrder("first", "second");
+    assertThat(updates("enqueued")).isEqualTo(2);
+  }
+
+  @Test
+  void shouldEnqueueNewTaskAfterExecution() {
+    coalescer.update(PullRequest.class, repository, "1", id("1"), i -> executed.add("first"), RECOVERY);
+    executeTasks(1);
+
+    coalescer.update(PullRequest.class, repository, "1", id("1"), i -> executed.add("second"), RECOVERY);
+
+    verify(forType, times(2)).update(any(SerializableIndexTask.class));
+    assertThat(executed).containsExactly("first");
+  }
+
+  @Test
+  void shouldEnqueueRecoveryForTaskRestoredAfterRestart() throws IOException, ClassNotFoundException {
+    coalescer.update(PullRequest.class, repository, "1", id("1"), i -> executed.add("first"), RECOVERY);
+
+    ArgumentCaptor<IndexUpdateCoalescer.CoalescedIndexTask> captor = ArgumentCaptor.forClass(IndexUpdateCoalescer.CoalescedIndexTask.class);
+    verify(forType).update(captor.capture());
+    IndexUpdateCoalescer.CoalescedIndexTask<PullRequest> restored = serializeAndDeserialize(captor.getValue());
+
+    IndexUpdateCoalescer restartedCoalescer = new IndexUpdateCoalescer(searchEngine, new SimpleMeterRegistry());
+    restored.setCoalescer(restartedCoalescer);
+    restored.update(index);
+
+    verify(forType).update(any(RecoveryTask.class));
+    assertThat(executed).isEmpty();
+  }
+
+  private static <T extends Serializable> T serializeAndDeserialize(T object) throws IOException, ClassNotFoundException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(object);
+    }
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      return (T) in.readObject();
+    }
+  }
+
+  private void executeTasks(int expectedTasks) {
+    ArgumentCaptor<SerializableIndexTask> captor = ArgumentCaptor.forClass(SerializableIndexTask.class);
+    verify(forType, times(expectedTasks)).update(captor.capture());
+    captor.getAllValues().forEach(task -> task.update(index));
+  }
+
+  private double pendingUpdates() {
+    return meterRegistry.get(IndexUpdateCoalescer.PENDING_GAUGE).gauge().value();
+  }
+
+  private double updates(String result) {
+    return meterRegistry.get(IndexUpdateCoalescer.UPDATES_COUNTER).tag("result", result).counter().count();
+  }
+
+  private static Id<PullRequest> id(String pullRequestId) {
+    return Id.of(PullRequest.class, pullRequestId);
+  }
+
+  private static class RecoveryTask implements SerializableIndexTask<PullRequest> {
+    @Override
+    public void update(Index<PullRequest> index) {
+      // nothing to do
+    }
+  }
+}
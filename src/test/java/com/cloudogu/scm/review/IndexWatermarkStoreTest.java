@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.review;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sonia.scm.repository.Repository;
+import sonia.scm.store.InMemoryByteConfigurationStoreFactory;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IndexWatermarkStoreTest {
+
+  private final Repository repository = new Repository("1", "git", "hitchhiker", "42");
+
+  private IndexWatermarkStore store;
+
+  @BeforeEach
+  void createStore() {
+    store = new IndexWatermarkStore(new InMemoryByteConfigurationStoreFactory());
+  }
+
+  @Test
+  void shouldStoreWatermarkPerIndex() {
+    Instant watermark = Instant.ofEpochMilli(42);
+
+    store.set(repository, String.class, watermark);
+
+    assertThat(store.get(repository, String.class)).contains(watermark);
+    assertThat(store.get(repository, Integer.class)).isEmpty();
+  }
+
+  @Test
+  void shouldCreateWatermarkInMillisecondsBeforeStart() {
+    Instant before = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+
+    Instant watermark = IndexWatermarkStore.watermarkForStart();
+
+    assertThat(watermark.getNano() % 1_000_000).isZero();
+    assertThat(watermark)
+      .isAfterOrEqualTo(before.minus(IndexWatermarkStore.SAFETY_MARGIN))
+      .isBeforeOrEqualTo(Instant.now().minus(IndexWatermarkStore.SAFETY_MARGIN));
+  }
+
+  @Test
+  void shouldNotReportCleanShutdownWithoutMark() {
+    assertThat(store.removeCleanShutdownMark(String.class)).isFalse();
+  }
+
+  @Test
+  void shouldReportCleanShutdownOnlyOnce() {
+    store.markCleanShutdown(String.class);
+
+    assertThat(store.removeCleanShutdownMark(Integer.class)).isFalse();
+    assertThat(store.removeCleanShutdownMark(String.class)).isTrue();
+    assertThat(store.removeCleanShutdownMark(String.class)).isFalse();
+  }
+}
@@ -16,6 +16,7 @@
 
 package com.cloudogu.scm.review;
 
+import com.cloudogu.scm.review.config.service.ConfigService;
 import com.cloudogu.scm.review.pullrequest.service.DefaultPullRequestService;
 import com.cloudogu.scm.review.pullrequest.service.MergeNotAllowedException;
 import com.cloudogu.scm.review.pullrequest.service.MergeObstacle;
@@ -45,6 +46,7 @@ import sonia.scm.repository.spi.HookMergeDetectionProvider;
 
 import static java.util.Collections.singletonList;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
@@ -87,13 +89,17 @@ class MergeObstacleCheckHookTest {
   private HookBranchProvider branchProvider;
   @Mock
   private InternalMergeSwitch internalMergeSwitch;
+  @Mock
+  private BranchResolver branchResolver;
+  @Mock
+  private ConfigService configService;
 
   @Mock
   private Subject subject;
 
   @BeforeEach
   void initBasics() {
-    hook = new MergeObstacleCheckHook(pullRequestService, mergeService, messageSenderFactory, internalMergeSwitch);
+    hook = new MergeObstacleCheckHook(mergeService, messageSenderFactory, internalMergeSwitch, new PushContextFactory(pullRequestService, branchResolver, configService));
     when(pullRequestService.supportsPullRequests(REPOSITORY)).thenReturn(true);
     when(configuration.getBaseUrl()).thenReturn("http://example.com/");
     when(hookContext.isFeatureSupported(MERGE_DETECTION_PROVIDER)).thenReturn(true);
@@ -138,7 +144,7 @@ class MergeObstacleCheckHookTest {
     void mockPullRequest() {
       pullRequest = new PullRequest("pr", "source", "target");
       pullRequest.setStatus(PullRequestStatus.OPEN);
-      when(pullRequestService.getAll(NAMESPACE, NAME)).thenReturn(singletonList(pullRequest));
+      when(pullRequestService.getInProgressByBranches(eq(REPOSITORY), any())).thenReturn(singletonList(pullRequest));
 
       doReturn(singletonList(new TestObstacle()))
         .when(mergeService).verifyNoObstacles(true, REPOSITORY, pullRequest);
@@ -227,13 +233,12 @@ class MergeObstacleCheckHookTest {
   void shouldIgnoreClosedPullRequest() {
     PullRequest pullRequest = new PullRequest("pr", "source", "target");
     pullRequest.setStatus(PullRequestStatus.REJECTED);
-    when(pullRequestService.getAll(NAMESPACE, NAME)).thenReturn(singletonList(pullRequest));
+    when(pullRequestService.getInProgressByBranches(eq(REPOSITORY), any())).thenReturn(singletonList(pullRequest));
 
     when(branchProvider.getCreatedOrModified()).thenReturn(singletonList("source"));
 
     hook.checkForObstacles(event);
 
-    verify(branchProvider, never()).getCreatedOrModified();
     verify(mergeDetectionProvider, never()).branchesMerged(any(), any());
   }
 
@@ -20,6 +20,7 @@ import com.google.common.collect.ImmutableList;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -31,6 +32,8 @@ import sonia.scm.repository.Modified;
 import sonia.scm.repository.Removed;
 import sonia.scm.repository.Repository;
 import sonia.scm.repository.RepositoryTestData;
+import sonia.scm.repository.api.HookContext;
+import sonia.scm.repository.api.HookFeature;
 import sonia.scm.repository.api.ModificationsCommandBuilder;
 import sonia.scm.repository.api.RepositoryService;
 import sonia.scm.repository.api.RepositoryServiceFactory;
@@ -46,6 +49,7 @@ import java.util.Set;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -61,6 +65,9 @@ class ModificationCollectorTest {
   @Mock
   private ModificationsCommandBuilder modificationsCommandBuilder;
 
+  @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+  private HookContext context;
+
   @InjectMocks
   private ModificationCollector collector;
 
@@ -75,8 +82,8 @@ class ModificationCollectorTest {
   void setUpRepositoryService() throws IOException {
     modificationMap = new HashMap<>();
 
-    when(repositoryServiceFactory.create(repository)).thenReturn(repositoryService);
-    when(repositoryService.getModificationsCommand()).thenReturn(modificationsCommandBuilder);
+    lenient().when(repositoryServiceFactory.create(repository)).thenReturn(repositoryService);
+    lenient().when(repositoryService.getModificationsCommand()).thenReturn(modificationsCommandBuilder);
 
     lenient().doAnswer(ic -> {
       currentRevision = ic.getArgument(0);
@@ -97,10 +104,36 @@ class ModificationCollectorTest {
       .modified("c.txt", "d.txt")
       .build();
 
-    Set<String> modifications = collector.collect(repository, ImmutableList.of(one, two));
+    Set<String> modifications = collect(one, two);
     assertThat(modifications).containsExactlyInAnyOrder("a.txt", "b.txt", "c.txt", "d.txt");
   }
 
+  @Test
+  void shouldCollectOnlyMatchingPaths() throws IOException {
+    Changeset one = changeset("21")
+      .added("a.txt")
+      .modified("c.txt")
+      .build();
+
+    when(context.getChangesetProvider().getChangesets()).thenReturn(ImmutableList.of(one));
+
+    Set<String> modifications = collector.collect(repository, context, "c.txt"::equals);
+    assertThat(modifications).containsExactly("c.txt");
+  }
+
+  @Test
+  void shouldUseModificationsOfBranchesIfProvided() throws IOException {
+    when(context.isFeatureSupported(HookFeature.MODIFICATIONS_PROVIDER)).thenReturn(true);
+    when(context.getBranchProvider().getCreatedOrModified()).thenReturn(List.of("feature"));
+    when(context.getModificationsProvider().getModifications("feature"))
+      .thenReturn(new Modifications("42", List.of(new Added("a.txt"), new Modified("b.txt"))));
+
+    Set<String> modifications = collector.collect(repository, context, path -> true);
+
+    assertThat(modifications).containsExactlyInAnyOrder("a.txt", "b.txt");
+    verify(repositoryServiceFactory, never()).create(repository);
+  }
+
   @Test
   void shouldCloseRepositorySerice() throws IOException {
     Changeset one = changeset("21")
@@ -108,7 +141,7 @@ class ModificationCollectorTest {
       .removed("b.txt")
       .build();
 
-    collector.collect(repository, ImmutableList.of(one));
+    collect(one);
 
     verify(repositoryService).close();
   }
@@ -123,7 +156,7 @@ class ModificationCollectorTest {
       .build();
 
     try {
-      collector.collect(repository, ImmutableList.of(one));
+      collect(one);
     } catch (IllegalStateException ex) {
       // we only want to verify, if the repository service was closed
     }
@@ -131,6 +164,11 @@ class ModificationCollectorTest {
     verify(repositoryService).close();
   }
 
+  private Set<String> collect(Changeset... changesets) throws IOException {
+    lenient().when(context.getChangesetProvider().getChangesets()).thenReturn(ImmutableList.copyOf(changesets));
+    return collector.collect(repository, context, path -> true);
+  }
+
   private Builder changeset(String id) {
     return new Builder(id);
   }
@@ -21,7 +21,6 @@ import com.cloudogu.scm.review.comment.service.CommentCollector;
 import com.cloudogu.scm.review.comment.service.CommentService;
 import com.cloudogu.scm.review.comment.service.Location;
 import com.cloudogu.scm.review.pullrequest.service.PullRequest;
-import com.cloudogu.scm.review.pullrequest.service.PullRequestCollector;
 import com.cloudogu.scm.review.pullrequest.service.PullRequestService;
 import com.cloudogu.scm.review.pullrequest.service.ReviewMark;
 import com.google.common.collect.ImmutableList;
@@ -31,6 +30,7 @@ import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Answers;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -42,9 +42,9 @@ import sonia.scm.repository.RepositoryTestData;
 import java.io.IOException;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Predicate;
 import java.util.stream.Stream;
 
-import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
@@ -58,7 +58,9 @@ import static org.mockito.Mockito.when;
 class ProcessChangedFilesHookTest {
 
   @Mock
-  private PullRequestCollector pullRequestCollector;
+  private PushContextFactory pushContextFactory;
+  @Mock
+  private PushContext pushContext;
 
   @Mock
   private CommentCollector commentCollector;
@@ -82,7 +84,7 @@ class ProcessChangedFilesHookTest {
   class WithPullRequestSupport {
     @BeforeEach
     void setUpHookContext() {
-      when(pullRequestService.supportsPullRequests(repository)).thenReturn(true);
+      when(pushContext.supportsPullRequests()).thenReturn(true);
     }
 
     @Test
@@ -93,8 +95,7 @@ class ProcessChangedFilesHookTest {
 
       flagAffectedComments(one, two);
 
-      verify(commentService).markAsOutdated(repository.getNamespace(), repository.getName(), pullRequest.getId(), one.getId());
-      verify(commentService, never()).markAsOutdated(repository.getNamespace(), repository.getName(), pullRequest.getId(), two.getId());
+      verify(commentService).markAsOutdated(repository, pullRequest.getId(), List.of(one.getId()));
     }
 
     @Test
@@ -104,12 +105,24 @@ class ProcessChangedFilesHookTest {
 
       Set<String> modifications = ImmutableSet.of("pom.xml");
 
-      when(modificationCollector.collect(eq(repository), any())).thenReturn(modifications);
+      when(modificationCollector.collect(eq(repository), any(), any())).thenReturn(modifications);
 
       flagAffectedComments(one, two);
 
-      verify(commentService, never()).markAsOutdated(repository.getNamespace(), repository.getName(), pullRequest.getId(), one.getId());
-      verify(commentService).markAsOutdated(repository.getNamespace(), repository.getName(), pullRequest.getId(), two.getId());
+      verify(commentService).markAsOutdated(repository, pullRequest.getId(), List.of(two.getId()));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldCollectOnlyModificationsOfFilesWithCommentsOrReviewMarks() throws IOException {
+      Comment comment = Comment.createComment("1", "awesome", null, new Location("pom.xml"));
+      when(pullRequestService.getReviewMarks(repository, "id")).thenReturn(Set.of(new ReviewMark("README.md", "dent")));
+
+      flagAffectedComments(comment);
+
+      ArgumentCaptor<Predicate<String>> filter = ArgumentCaptor.forClass(Predicate.class);
+      verify(modificationCollector).collect(eq(repository), any(), filter.capture());
+      assertThat(filter.getValue()).accepts("pom.xml", "README.md").rejects("src/main/java/Other.java");
     }
 
     @Test
@@ -118,33 +131,29 @@ class ProcessChangedFilesHookTest {
 
       flagAffectedComments(one);
 
-      verify(modificationCollector, never()).collect(any(), any());
+      verify(modificationCollector, never()).collect(any(), any(), any());
     }
 
     @Test
     void shouldRemoveReviewMarksForAffectedFiles() throws IOException {
       Set<String> modifications = ImmutableSet.of("pom.xml");
-      when(modificationCollector.collect(eq(repository), any())).thenReturn(modifications);
+      when(modificationCollector.collect(eq(repository), any(), any())).thenReturn(modifications);
 
-      ReviewMark reviewMark = new ReviewMark("pom.xml", "dent");
-      pullRequest.getReviewMarks().add(reviewMark);
+      when(pullRequestService.getReviewMarks(repository, "id")).thenReturn(Set.of(new ReviewMark("pom.xml", "dent")));
 
       flagAffectedComments();
 
-      verify(pullRequestService).removeReviewMarks(repository, "id", asList(reviewMark));
+      verify(pullRequestService).removeReviewMarksForFiles(repository, "id", modifications);
     }
 
     @Test
-    void shouldNotTouchReviewMarksForUnaffectedFiles() throws IOException {
-      Set<String> modifications = ImmutableSet.of("pom.xml");
-      when(modificationCollector.collect(eq(repository), any())).thenReturn(modifications);
-
-      ReviewMark reviewMark = new ReviewMark("other.txt", "dent");
-      pullRequest.getReviewMarks().add(reviewMark);
+    void shouldNotCollectModificationsWithoutReviewMarks() throws IOException {
+      when(pullRequestService.getReviewMarks(repository, "id")).thenReturn(Set.of());
 
       flagAffectedComments();
 
-      assertThat(pullRequest.getReviewMarks()).contains(reviewMark);
+      verify(modificationCollector, never()).collect(any(), any(), any());
+      verify(pullRequestService, never()).removeReviewMarksForFiles(any(), any(), any());
     }
   }
 
@@ -153,13 +162,13 @@ class ProcessChangedFilesHookTest {
     @BeforeEach
     void setUpHookContext() {
       repository = RepositoryTestData.createHeartOfGold();
-      when(pullRequestService.supportsPullRequests(repository)).thenReturn(false);
+      when(pushContext.supportsPullRequests()).thenReturn(false);
     }
 
     @Test
     void shouldDoNothing() throws IOException {
       flagAffectedComments(Comment.createComment("2", "with-location", null, new Location("pom.xml")));
-      verify(modificationCollector, never()).collect(any(), any());
+      verify(modificationCollector, never()).collect(any(), any(), any());
     }
   }
 
@@ -173,7 +182,8 @@ class ProcessChangedFilesHookTest {
     lenient().when(commentCollector.collectNonOutdated(repository, pullRequest)).thenReturn(Stream.of(comments));
     List<String> branches = ImmutableList.of(pullRequest.getSource(), pullRequest.getTarget());
     PostReceiveRepositoryHookEvent event = createRepositoryHookEvent(branches);
-    lenient().when(pullRequestCollector.collectAffectedPullRequests(repository, branches)).thenReturn(ImmutableList.of(pullRequest));
+    when(pushContextFactory.get(event)).thenReturn(pushContext);
+    lenient().when(pushContext.getInProgressByBranches(branches)).thenReturn(ImmutableList.of(pullRequest));
     List<Changeset> changesets = ImmutableList.of(
       new Changeset(),
       new Changeset()
@@ -16,6 +16,7 @@
 
 package com.cloudogu.scm.review;
 
+import com.cloudogu.scm.review.config.service.ConfigService;
 import com.cloudogu.scm.review.pullrequest.service.PullRequest;
 import com.cloudogu.scm.review.pullrequest.service.PullRequestService;
 import com.cloudogu.scm.review.pullrequest.service.PullRequestStatus;
@@ -36,7 +37,6 @@ import sonia.scm.repository.Branches;
 import sonia.scm.repository.PostReceiveRepositoryHookEvent;
 import sonia.scm.repository.Repository;
 import sonia.scm.repository.api.BranchesCommandBuilder;
-import sonia.scm.repository.api.Command;
 import sonia.scm.repository.api.HookBranchProvider;
 import sonia.scm.repository.api.HookContext;
 import sonia.scm.repository.api.HookMessageProvider;
@@ -52,6 +52,7 @@ import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
@@ -91,6 +92,8 @@ public class PullRequestInformationHookTest {
   private HookBranchProvider branchProvider;
   @Mock
   private HookMessageProvider messageProvider;
+  @Mock
+  private ConfigService configService;
 
   @Captor
   private ArgumentCaptor<String> messageCaptor;
@@ -102,7 +105,8 @@ public class PullRequestInformationHookTest {
 
   @Before
   public void init() throws IOException {
-    hook = new PullRequestInformationHook(pullRequestService, serviceFactory, messageSenderFactory);
+    PushContextFactory pushContextFactory = new PushContextFactory(pullRequestService, new BranchResolver(serviceFactory), configService);
+    hook = new PullRequestInformationHook(messageSenderFactory, pushContextFactory);
     when(event.getContext()).thenReturn(context);
     when(event.getRepository()).thenReturn(REPOSITORY);
     when(context.getBranchProvider()).thenReturn(branchProvider);
@@ -110,9 +114,9 @@ public class PullRequestInformationHookTest {
     when(context.isFeatureSupported(MESSAGE_PROVIDER)).thenReturn(true);
     when(branchProvider.getCreatedOrModified()).thenReturn(Collections.emptyList());
     when(serviceFactory.create(REPOSITORY)).thenReturn(service);
-    when(service.isSupported(Command.MERGE)).thenReturn(true);
+    when(pullRequestService.supportsPullRequests(REPOSITORY)).thenReturn(true);
     when(configuration.getBaseUrl()).thenReturn("http://example.com");
-    when(pullRequestService.getAll("space", "X")).thenReturn(asList(OPEN_PULL_REQUEST, MERGED_PULL_REQUEST, DRAFT_PULL_REQUEST));
+    when(pullRequestService.getInProgressBySource(eq(REPOSITORY), any())).thenReturn(asList(OPEN_PULL_REQUEST, MERGED_PULL_REQUEST, DRAFT_PULL_REQUEST));
     doNothing().when(messageProvider).sendMessage(messageCaptor.capture());
     when(service.getBranchesCommand()).thenReturn(branchesCommand);
     Branches branches = new Branches(Branch.defaultBranch("main", "", 0L), Branch.normalBranch("x", "", 0L));
@@ -122,7 +126,7 @@ public class PullRequestInformationHookTest {
   @Test
   @SubjectAware(username = "rr")
   public void shouldDoNothingWhenMergeIsNotSupported() {
-    when(service.isSupported(Command.MERGE)).thenReturn(false);
+    when(pullRequestService.supportsPullRequests(REPOSITORY)).thenReturn(false);
 
     hook.checkForInformation(event);
 
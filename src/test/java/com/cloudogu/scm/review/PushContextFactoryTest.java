@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.review;
+
+import com.cloudogu.scm.review.config.service.ConfigService;
+import com.cloudogu.scm.review.config.service.ConfigService.BranchProtectionMatcher;
+import com.cloudogu.scm.review.pullrequest.service.PullRequest;
+import com.cloudogu.scm.review.pullrequest.service.PullRequestService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.repository.Branch;
+import sonia.scm.repository.PostReceiveRepositoryHookEvent;
+import sonia.scm.repository.PreReceiveRepositoryHookEvent;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryHookEvent;
+import sonia.scm.repository.RepositoryHookType;
+import sonia.scm.repository.RepositoryTestData;
+import sonia.scm.repository.api.HookContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class PushContextFactoryTest {
+
+  private final Repository repository = RepositoryTestData.createHeartOfGold();
+
+  @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+  private HookContext hookContext;
+  @Mock
+  private PullRequestService pullRequestService;
+  @Mock
+  private BranchResolver branchResolver;
+  @Mock
+  private ConfigService configService;
+
+  private PushContextFactory factory;
+
+  @BeforeEach
+  void createFactory() {
+    factory = new PushContextFactory(pullRequestService, branchResolver, configService);
+  }
+
+  @Test
+  void shouldShareContextForAllEventsOfTheSameHookContext() {
+    PushContext context = factory.get(createEvent(hookContext));
+
+    assertThat(factory.get(createEvent(hookContext))).isSameAs(context);
+    assertThat(factory.get(createEvent(mock(HookContext.class)))).isNotSameAs(context);
+  }
+
+  @Test
+  void shouldCheckSupportForPullRequestsOnlyOnce() {
+    when(pullRequestService.supportsPullRequests(repository)).thenReturn(true);
+
+    PushContext context = factory.get(createEvent(hookContext));
+
+    assertThat(context.supportsPullRequests()).isTrue();
+    assertThat(context.supportsPullRequests()).isTrue();
+    verify(pullRequestService, times(1)).supportsPullRequests(repository);
+  }
+
+  @Test
+  void shouldReadBranchesOnlyOnce() {
+    when(branchResolver.getAll(repository)).thenReturn(List.of(Branch.normalBranch("main", "1", 0L)));
+
+    PushContext context = factory.get(createEvent(hookContext));
+
+    assertThat(context.getBranches()).hasSize(1);
+    assertThat(context.getBranches()).hasSize(1);
+    verify(branchResolver, times(1)).getAll(repository);
+  }
+
+  @Test
+  void shouldCreateBranchProtectionMatcherOnlyOnce() {
+    BranchProtectionMatcher matcher = mock(BranchProtectionMatcher.class);
+    when(configService.getBranchProtectionMatcher(repository)).thenReturn(matcher);
+
+    PushContext context = factory.get(createPreReceiveEvent(hookContext));
+
+    assertThat(context.getBranchProtectionMatcher()).isSameAs(matcher);
+    assertThat(context.getBranchProtectionMatcher()).isSameAs(matcher);
+    verify(configService, times(1)).getBranchProtectionMatcher(repository);
+  }
+
+  /**
+   * The status check hook merges pull requests of the push. Hooks running later must not see these pull requests
+   * as in progress anymore.
+   */
+  @Test
+  void shouldNotShareInProgressPullRequestsBetweenHooks() {
+    PullRequest pullRequest = new PullRequest("1", "feature", "develop");
+    when(pullRequestService.getInProgressByBranches(repository, List.of("feature", "develop")))
+      .thenReturn(List.of(pullRequest))
+      .thenReturn(List.of());
+
+    // status check hook, that sets the pull request to merged
+    PushContext statusCheck = factory.get(createEvent(hookContext));
+    assertThat(statusCheck.getInProgressByBranches(List.of("feature", "develop"))).containsExactly(pullRequest);
+    // changed files hook
+    PushContext changedFiles = factory.get(createEvent(hookContext));
+    assertThat(changedFiles.getInProgressByBranches(List.of("feature", "develop"))).isEmpty();
+  }
+
+  /**
+   * A push of 50 branches, handled like by the status check, the information and the suggestion hook and the
+   * processing of changed files: the branches and the support for pull requests must be read only once for the whole
+   * push, the pull requests only once for every hook.
+   */
+  @Test
+  void shouldReadAllFactsOnlyOnceForPushWithManyBranches() {
+    List<String> branches = IntStream.range(0, 50).mapToObj(i -> "feature/" + i).toList();
+    List<PullRequest> pullRequests = new ArrayList<>();
+    branches.forEach(branch -> pullRequests.add(new PullRequest(branch, branch, "develop")));
+    when(pullRequestService.getInProgressByBranches(any(), anyList())).thenReturn(pullRequests);
+    when(pullRequestService.getInProgressBySource(any(), anyList())).thenReturn(pullRequests);
+    when(pullRequestService.supportsPullRequests(repository)).thenReturn(true);
+    when(branchResolver.getAll(repository)).thenReturn(List.of(Branch.normalBranch("develop", "1", 0L), Branch.normalBranch("main", "2", 0L)));
+
+    // status check hook
+    PushContext statusCheck = factory.get(createEvent(hookContext));
+    assertThat(statusCheck.supportsPullRequests()).isTrue();
+    assertThat(statusCheck.getInProgressByBranches(branches)).hasSize(50);
+    // information hook
+    PushContext information = factory.get(createEvent(hookContext));
+    assertThat(information.supportsPullRequests()).isTrue();
+    assertThat(information.getInProgressBySource(branches)).hasSize(50);
+    assertThat(information.getBranches()).hasSize(2);
+    // suggestion service
+    PushContext suggestion = factory.get(createEvent(hookContext));
+    assertThat(suggestion.supportsPullRequests()).isTrue();
+    assertThat(suggestion.getBranches()).hasSize(2);
+    assertThat(suggestion.getInProgressBySource(branches)).hasSize(50);
+    // changed files hook
+    PushContext changedFiles = factory.get(createEvent(hookContext));
+    assertThat(changedFiles.supportsPullRequests()).isTrue();
+    assertThat(changedFiles.getInProgressByBranches(branches)).hasSize(50);
+
+    verify(pullRequestService, times(1)).supportsPullRequests(repository);
+    verify(pullRequestService, times(2)).getInProgressByBranches(any(), anyList());
+    verify(pullRequestService, times(2)).getInProgressBySource(any(), anyList());
+    verify(branchResolver, times(1)).getAll(repository);
+  }
+
+  private PostReceiveRepositoryHookEvent createEvent(HookContext context) {
+    return new PostReceiveRepositoryHookEvent(new RepositoryHookEvent(context, repository, RepositoryHookType.POST_RECEIVE));
+  }
+
+  private PreReceiveRepositoryHookEvent createPreReceiveEvent(HookContext context) {
+    return new PreReceiveRepositoryHookEvent(new RepositoryHookEvent(context, repository, RepositoryHookType.PRE_RECEIVE));
+  }
+}
@@ -33,6 +33,10 @@ import sonia.scm.repository.api.RepositoryServiceFactory;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -88,4 +92,26 @@ class RepositoryResolverTest {
     assertThat(contextEntry.getId()).isEqualTo("hitchhiker/HeartOfGold");
   }
 
+  @Test
+  void shouldCheckMergeSupportOnlyOncePerRepositoryType() {
+    Repository heartOfGold = RepositoryTestData.createHeartOfGold("git");
+    Repository restaurant = RepositoryTestData.createRestaurantAtTheEndOfTheUniverse("git");
+    Repository puzzle = RepositoryTestData.create42Puzzle("svn");
+    RepositoryService svnRepositoryService = mock(RepositoryService.class);
+
+    when(repositoryServiceFactory.create(heartOfGold)).thenReturn(repositoryService);
+    when(repositoryServiceFactory.create(puzzle)).thenReturn(svnRepositoryService);
+    when(repositoryService.isSupported(Command.MERGE)).thenReturn(Boolean.TRUE);
+    when(svnRepositoryService.isSupported(Command.MERGE)).thenReturn(Boolean.FALSE);
+
+    assertThat(resolver.supportsPullRequests(heartOfGold)).isTrue();
+    assertThat(resolver.supportsPullRequests(restaurant)).isTrue();
+    assertThat(resolver.supportsPullRequests(puzzle)).isFalse();
+    assertThat(resolver.supportsPullRequests(puzzle)).isFalse();
+
+    verify(repositoryServiceFactory, times(1)).create(heartOfGold);
+    verify(repositoryServiceFactory, never()).create(restaurant);
+    verify(repositoryServiceFactory, times(1)).create(puzzle);
+  }
+
 }
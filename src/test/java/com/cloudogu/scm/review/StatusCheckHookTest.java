@@ -16,6 +16,7 @@
 
 package com.cloudogu.scm.review;
 
+import com.cloudogu.scm.review.config.service.ConfigService;
 import com.cloudogu.scm.review.pullrequest.service.DefaultPullRequestService;
 import com.cloudogu.scm.review.pullrequest.service.MergeObstacle;
 import com.cloudogu.scm.review.pullrequest.service.MergeService;
@@ -95,13 +96,17 @@ class StatusCheckHookTest {
   private HookBranchProvider branchProvider;
   @Mock
   private InternalMergeSwitch internalMergeSwitch;
+  @Mock
+  private BranchResolver branchResolver;
+  @Mock
+  private ConfigService configService;
 
   @Mock
   private Subject subject;
 
   @BeforeEach
   void initBasics() {
-    hook = new StatusCheckHook(pullRequestService, messageSenderFactory, mergeService, internalMergeSwitch);
+    hook = new StatusCheckHook(pullRequestService, messageSenderFactory, mergeService, internalMergeSwitch, new PushContextFactory(pullRequestService, branchResolver, configService));
     when(pullRequestService.supportsPullRequests(REPOSITORY)).thenReturn(true);
     when(configuration.getBaseUrl()).thenReturn("http://example.com/");
     when(hookContext.isFeatureSupported(BRANCH_PROVIDER)).thenReturn(true);
@@ -286,7 +291,7 @@ class StatusCheckHookTest {
       hook.checkStatus(event);
 
       verify(mergeDetectionProvider, never()).branchesMerged(any(), any());
-      verify(pullRequestService, never()).getAll(anyString(), anyString());
+      verify(pullRequestService, never()).getInProgressByBranches(any(), any());
       verify(pullRequestService, never()).setMerged(any(), anyString());
     }
 
@@ -340,14 +345,14 @@ class StatusCheckHookTest {
     pullRequest.setStatus(PullRequestStatus.OPEN);
     pullRequest.setSource("source");
     pullRequest.setTarget("target");
-    when(pullRequestService.getAll(NAMESPACE, NAME)).thenReturn(singletonList(pullRequest));
+    when(pullRequestService.getInProgressByBranches(eq(REPOSITORY), any())).thenReturn(singletonList(pullRequest));
     return pullRequest;
   }
 
   private PullRequest mockRejectedPullRequest() {
     PullRequest pullRequest = new PullRequest();
     pullRequest.setStatus(PullRequestStatus.REJECTED);
-    when(pullRequestService.getAll(NAMESPACE, NAME)).thenReturn(singletonList(pullRequest));
+    when(pullRequestService.getInProgressByBranches(eq(REPOSITORY), any())).thenReturn(singletonList(pullRequest));
     return pullRequest;
   }
 
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.review;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StoreLocksTest {
+
+  private SimpleMeterRegistry meterRegistry;
+  private StoreLocks locks;
+
+  @BeforeEach
+  void initLocks() {
+    meterRegistry = new SimpleMeterRegistry();
+    locks = new StoreLocks(meterRegistry, 16);
+  }
+
+  @Test
+  void shouldReturnResultOfWorker() {
+    String result = locks.withWriteLock("test", "1", () -> "hog");
+
+    assertThat(result).isEqualTo("hog");
+  }
+
+  @Test
+  void shouldAllowParallelReaders() throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Boolean readInParallel = locks.withReadLock("test", "1", () -> {
+        Future<Boolean> otherReader = executor.submit(() -> locks.withReadLock("test", "1", () -> true));
+        try {
+          return otherReader.get(5, TimeUnit.SECONDS);
+        } catch (Exception e) {
+          return false;
+        }
+      });
+
+      assertThat(readInParallel).isTrue();
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void shouldBlockWritersWhileReading() throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    CountDownLatch writerStarted = new CountDownLatch(1);
+    try {
+      Future<String> writer = locks.withReadLock("test", "1", () -> {
+        Future<String> future = executor.submit(() -> {
+          writerStarted.countDown();
+          return locks.withWriteLock("test", "1", () -> "written");
+        });
+        await(writerStarted);
+        assertThat(future).isNotDone();
+        return future;
+      });
+
+      assertThat(writer.get(5, TimeUnit.SECONDS)).isEqualTo("written");
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void shouldRecordWaitTimePerStoreAndMode() {
+    locks.withReadLock("pullRequest", "1", () -> null);
+    locks.withWriteLock("pullRequest", "1", () -> null);
+    locks.withWriteLock("pullRequest", "2", () -> null);
+
+    Timer read = meterRegistry.get(StoreLocks.WAIT_TIMER).tag("store", "pullRequest").tag("mode", "read").timer();
+    Timer write = meterRegistry.get(StoreLocks.WAIT_TIMER).tag("store", "pullRequest").tag("mode", "write").timer();
+    assertThat(read.count()).isEqualTo(1);
+    assertThat(write.count()).isEqualTo(2);
+  }
+
+  private void await(CountDownLatch latch) {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -19,6 +19,8 @@ package com.cloudogu.scm.review.comment.api;
 import com.cloudogu.scm.review.RepositoryResolver;
 import com.cloudogu.scm.review.TestData;
 import com.cloudogu.scm.review.comment.service.Comment;
+import com.cloudogu.scm.review.comment.service.CommentCursor;
+import com.cloudogu.scm.review.comment.service.CommentPage;
 import com.cloudogu.scm.review.comment.service.CommentService;
 import com.cloudogu.scm.review.comment.service.CommentTransition;
 import com.cloudogu.scm.review.comment.service.ExecutedTransition;
@@ -68,8 +70,10 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URISyntaxException;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 
 import static com.cloudogu.scm.review.comment.service.Comment.createComment;
 import static com.cloudogu.scm.review.comment.service.ContextLine.copy;
@@ -81,6 +85,8 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @SubjectAware(configuration = "classpath:com/cloudogu/scm/review/shiro.ini")
@@ -182,6 +188,39 @@ public class CommentRootResourceTest {
     assertThat(response.getOutputHeaders().getFirst("Location")).hasToString("/v2/pull-requests/space/name/1/comments/1");
   }
 
+  @Test
+  public void shouldCreateCommentsInBatch() throws URISyntaxException {
+    when(pullRequestService.get(any(), any(), any())).thenReturn(PULL_REQUEST);
+    byte[] commentJson = "[{\"comment\" : \"first\"}, {\"comment\" : \"second\"}]".getBytes();
+    MockHttpRequest request =
+      MockHttpRequest
+        .post("/" + PullRequestRootResource.PULL_REQUESTS_PATH_V2 + "/space/name/1/comments/batch?sourceRevision=source&targetRevision=target")
+        .content(commentJson)
+        .contentType(MediaType.APPLICATION_JSON);
+
+    dispatcher.invoke(request, response);
+
+    assertEquals(HttpServletResponse.SC_NO_CONTENT, response.getStatus());
+    verify(service).addAll(eq(REPOSITORY_NAMESPACE), eq(REPOSITORY_NAME), eq("1"), argThat(comments ->
+      comments.size() == 2 && comments.get(0).getComment().equals("first") && comments.get(1).getComment().equals("second")
+    ));
+  }
+
+  @Test
+  public void shouldNotCreateSystemCommentsInBatch() throws URISyntaxException {
+    byte[] commentJson = "[{\"comment\" : \"first\"}, {\"comment\" : \"second\", \"systemComment\" : true}]".getBytes();
+    MockHttpRequest request =
+      MockHttpRequest
+        .post("/" + PullRequestRootResource.PULL_REQUESTS_PATH_V2 + "/space/name/1/comments/batch")
+        .content(commentJson)
+        .contentType(MediaType.APPLICATION_JSON);
+
+    dispatcher.invoke(request, response);
+
+    assertEquals(HttpServletResponse.SC_FORBIDDEN, response.getStatus());
+    verify(service, never()).addAll(any(), any(), any(), any());
+  }
+
   @Test
   public void shouldCreateCommentWithImage() throws URISyntaxException, IOException {
     when(pullRequestService.get(any(), any(), any())).thenReturn(PULL_REQUEST);
@@ -333,6 +372,82 @@ public class CommentRootResourceTest {
     assertThat(reply_2.get("comment").asText()).isEqualTo("2. reply");
   }
 
+  @Test
+  @SubjectAware(username = "slarti", password = "secret")
+  public void shouldGetPageOfComments() throws URISyntaxException, IOException {
+    mockExistingComments();
+    Comment comment = createComment("1", "1. comment", "author", null);
+    Instant since = Instant.parse("2024-01-01T10:00:00Z");
+    CommentCursor next = new CommentCursor(Instant.ofEpochSecond(1700000000), 1);
+    when(service.getPage("space", "name", "1", since, null, 1))
+      .thenReturn(new CommentPage(List.of(comment), next));
+
+    MockHttpRequest request =
+      MockHttpRequest
+        .get("/" + PullRequestRootResource.PULL_REQUESTS_PATH_V2 + "/space/name/1/comments?limit=1&since=2024-01-01T10:00:00Z")
+        .contentType(MediaType.APPLICATION_JSON);
+
+    dispatcher.invoke(request, response);
+
+    assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+    JsonNode jsonNode = new ObjectMapper().readValue(response.getContentAsString(), JsonNode.class);
+    assertThat(jsonNode.get("_embedded").get("pullRequestComments")).hasSize(1);
+    assertThat(jsonNode.get("_links").get("next").get("href").asText())
+      .isEqualTo("/v2/pull-requests/space/name/1/comments/?limit=1&after=1700000000.000000000_1&since=2024-01-01T10%3A00%3A00Z");
+  }
+
+  @Test
+  @SubjectAware(username = "slarti", password = "secret")
+  public void shouldContinueAtCursor() throws URISyntaxException, IOException {
+    mockExistingComments();
+    CommentCursor after = new CommentCursor(Instant.ofEpochSecond(1700000000), 1);
+    when(service.getPage("space", "name", "1", null, after, 1))
+      .thenReturn(new CommentPage(List.of(), null));
+
+    MockHttpRequest request =
+      MockHttpRequest
+        .get("/" + PullRequestRootResource.PULL_REQUESTS_PATH_V2 + "/space/name/1/comments?limit=1&after=1700000000.000000000_1")
+        .contentType(MediaType.APPLICATION_JSON);
+
+    dispatcher.invoke(request, response);
+
+    assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+    JsonNode jsonNode = new ObjectMapper().readValue(response.getContentAsString(), JsonNode.class);
+    assertThat(jsonNode.get("_links").has("next")).isFalse();
+  }
+
+  @Test
+  @SubjectAware(username = "slarti", password = "secret")
+  public void shouldFailForInvalidSince() throws URISyntaxException {
+    mockExistingComments();
+
+    MockHttpRequest request =
+      MockHttpRequest
+        .get("/" + PullRequestRootResource.PULL_REQUESTS_PATH_V2 + "/space/name/1/comments?since=yesterday")
+        .contentType(MediaType.APPLICATION_JSON);
+
+    dispatcher.invoke(request, response);
+
+    assertEquals(HttpServletResponse.SC_BAD_REQUEST, response.getStatus());
+  }
+
+  @Test
+  @SubjectAware(username = "slarti", password = "secret")
+  public void shouldComputePossibleTransitionsForAllCommentsAtOnce() throws URISyntaxException {
+    mockExistingComments();
+
+    MockHttpRequest request =
+      MockHttpRequest
+        .get("/" + PullRequestRootResource.PULL_REQUESTS_PATH_V2 + "/space/name/1/comments")
+        .contentType(MediaType.APPLICATION_JSON);
+
+    dispatcher.invoke(request, response);
+
+    assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+    verify(service).possibleTransitions(eq("space"), eq("name"), argThat(comments -> comments.size() == 2));
+    verify(service, never()).possibleTransitions(any(), any(), any(), any());
+  }
+
   @Test
   @SubjectAware(username = "slarti", password = "secret")
   public void shouldGetAllLinks() throws URISyntaxException, IOException {
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.review.comment.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CommentCursorTest {
+
+  private static final Instant DATE = Instant.ofEpochSecond(1700000000, 123456789);
+
+  @Test
+  void shouldParseFormattedCursor() {
+    CommentCursor cursor = new CommentCursor(DATE, 3);
+
+    assertThat(cursor.format()).isEqualTo("1700000000.123456789_3");
+    assertThat(CommentCursor.parse(cursor.format())).isEqualTo(cursor);
+  }
+
+  @Test
+  void shouldFailForInvalidCursor() {
+    assertThrows(InvalidCommentQueryException.class, () -> CommentCursor.parse("2023-11-14T22:13:20Z"));
+  }
+
+  @Test
+  void shouldCountCommentsWithDateOfLastComment() {
+    List<Comment> page = List.of(comment(DATE.minusSeconds(1)), comment(DATE), comment(DATE));
+
+    assertThat(CommentCursor.behind(null, page)).isEqualTo(new CommentCursor(DATE, 2));
+  }
+
+  @Test
+  void shouldAddSkippedCommentsOfPreviousCursorWithSameDate() {
+    List<Comment> page = List.of(comment(DATE), comment(DATE));
+
+    assertThat(CommentCursor.behind(new CommentCursor(DATE, 2), page)).isEqualTo(new CommentCursor(DATE, 4));
+  }
+
+  @Test
+  void shouldNotAddSkippedCommentsOfPreviousCursorWithOtherDate() {
+    List<Comment> page = List.of(comment(DATE.minusSeconds(1)), comment(DATE));
+
+    assertThat(CommentCursor.behind(new CommentCursor(DATE.minusSeconds(1), 2), page)).isEqualTo(new CommentCursor(DATE, 1));
+  }
+
+  private Comment comment(Instant date) {
+    Comment comment = new Comment();
+    comment.setDate(date);
+    return comment;
+  }
+}
@@ -16,21 +16,28 @@
 
 package com.cloudogu.scm.review.comment.service;
 
+import com.cloudogu.scm.review.IndexUpdateCoalescer;
+import com.cloudogu.scm.review.IndexWatermarkStore;
 import com.cloudogu.scm.review.comment.service.CommentIndexer.IndexRepositoryTask;
+import com.cloudogu.scm.review.comment.service.CommentIndexer.ReindexPullRequestTask;
 import com.cloudogu.scm.review.comment.service.CommentIndexer.ReindexRepositoryTask;
+import com.cloudogu.scm.review.comment.service.CommentIndexer.UpdateRepositoryTask;
 import com.cloudogu.scm.review.pullrequest.service.PullRequest;
 import com.cloudogu.scm.review.pullrequest.service.PullRequestService;
 import com.google.common.collect.ImmutableList;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import jakarta.servlet.ServletContextEvent;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Answers;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import sonia.scm.HandlerEventType;
+import sonia.scm.NotFoundException;
 import sonia.scm.repository.Repository;
 import sonia.scm.repository.RepositoryImportEvent;
 import sonia.scm.repository.RepositoryManager;
@@ -41,6 +48,7 @@ import sonia.scm.search.IndexLogStore;
 import sonia.scm.search.SearchEngine;
 import sonia.scm.search.SerializableIndexTask;
 
+import java.time.Instant;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -51,11 +59,12 @@ import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
-@SuppressWarnings({"UnstableApiUsage", "unchecked"})
+@SuppressWarnings({"UnstableApiUsage", "rawtypes", "unchecked"})
 class CommentIndexerTest {
 
   private final Repository repository = new Repository("1", "git", "hitchhiker", "42");
@@ -64,13 +73,15 @@ class CommentIndexerTest {
   private SearchEngine searchEngine;
   @Mock
   private SearchEngine.ForType<IndexedComment> forType;
+  @Mock
+  private IndexWatermarkStore watermarkStore;
 
-  @InjectMocks
   private CommentIndexer indexer;
 
   @BeforeEach
   void mockSearchEngine() {
     lenient().when(searchEngine.forType(IndexedComment.class)).thenReturn(forType);
+    indexer = new CommentIndexer(searchEngine, new IndexUpdateCoalescer(searchEngine, new SimpleMeterRegistry()), watermarkStore);
   }
 
   @Test
@@ -82,6 +93,16 @@ class CommentIndexerTest {
     verify(forType).update(any(SerializableIndexTask.class));
   }
 
+  @Test
+  void shouldIndexAddedCommentsWithOneTask() {
+    PullRequest pr = createPullRequest();
+    Comment first = Comment.createComment("1", "first one", "trillian", new Location());
+    Comment second = Comment.createComment("2", "second one", "trillian", new Location());
+    indexer.handleEvent(new CommentsAddedEvent(repository, pr, ImmutableList.of(first, second)));
+
+    verify(forType).update(any(SerializableIndexTask.class));
+  }
+
   @Test
   void shouldDeleteCommentFromIndex() {
     PullRequest pr = createPullRequest();
@@ -119,6 +140,13 @@ class CommentIndexerTest {
     verify(forType).update(CommentIndexer.ReindexAll.class);
   }
 
+  @Test
+  void shouldMarkCleanShutdown() {
+    indexer.contextDestroyed(mock(ServletContextEvent.class));
+
+    verify(watermarkStore).markCleanShutdown(IndexedComment.class);
+  }
+
   @Test
   void shouldCreateIndexAfterSuccessfulImport() {
     indexer.handleEvent(new RepositoryImportEvent(repository, false));
@@ -145,6 +173,10 @@ class CommentIndexerTest {
     private IndexLogStore indexLogStore;
     @Mock
     private IndexLogStore.ForIndex forIndex;
+    @Mock
+    private SearchEngine reindexSearchEngine;
+    @Mock
+    private IndexWatermarkStore watermarkStore;
 
     @Mock(answer = Answers.RETURNS_DEEP_STUBS)
     private Index<IndexedComment> index;
@@ -158,12 +190,52 @@ class CommentIndexerTest {
     }
 
     @Test
-    void shouldNotReindexAllIfVersionHasNotChanged() {
+    void shouldOnlyUpdateChangedCommentsIfVersionHasNotChanged() {
+      when(reindexSearchEngine.forType(IndexedComment.class)).thenReturn(forType);
+      when(pullRequestService.supportsPullRequests(repository)).thenReturn(true);
       when(forIndex.get(IndexedComment.class)).thenReturn(Optional.of(new IndexLog(IndexedComment.VERSION)));
+      when(repositoryManager.getAll()).thenReturn(ImmutableList.of(repository));
+      Instant watermark = Instant.ofEpochMilli(42);
+      when(watermarkStore.get(repository, IndexedComment.class)).thenReturn(Optional.of(watermark));
+
+      PullRequest pullRequest = createPullRequest();
+      Comment comment = Comment.createComment("1", "first one", "trillian", new Location());
+      when(pullRequestService.getAll(repository.getNamespace(), repository.getName())).thenReturn(ImmutableList.of(pullRequest));
+      when(commentService.getPage(repository.getNamespace(), repository.getName(), pullRequest.getId(), watermark, null, 0))
+        .thenReturn(new CommentPage(ImmutableList.of(comment), null));
 
       reindexAll.update(index);
+      runEnqueuedTask();
 
       verify(index, never()).delete();
+      verify(commentService, never()).getAll(anyString(), anyString(), anyString());
+      verifyCommentStored(index, pullRequest, comment);
+      verify(watermarkStore).set(eq(repository), eq(IndexedComment.class), any(Instant.class));
+    }
+
+    @Test
+    void shouldNotUpdateRepositoriesAfterCleanShutdown() {
+      when(watermarkStore.removeCleanShutdownMark(IndexedComment.class)).thenReturn(true);
+      when(forIndex.get(IndexedComment.class)).thenReturn(Optional.of(new IndexLog(IndexedComment.VERSION)));
+
+      reindexAll.update(index);
+
+      verify(repositoryManager, never()).getAll();
+      verify(forType, never()).update(any(SerializableIndexTask.class));
+    }
+
+    @Test
+    void shouldRebuildRepositoriesAfterCleanShutdownIfVersionDiffers() {
+      when(watermarkStore.removeCleanShutdownMark(IndexedComment.class)).thenReturn(true);
+      when(reindexSearchEngine.forType(IndexedComment.class)).thenReturn(forType);
+      when(pullRequestService.supportsPullRequests(repository)).thenReturn(true);
+      when(forIndex.get(IndexedComment.class)).thenReturn(Optional.of(new IndexLog(42)));
+      when(repositoryManager.getAll()).thenReturn(ImmutableList.of(repository));
+
+      reindexAll.update(index);
+      runEnqueuedTask();
+
+      verify(index.delete()).by(Repository.class, repository);
     }
 
     @Test
@@ -175,25 +247,27 @@ class CommentIndexerTest {
 
       reindexAll.update(index);
 
-      verify(index.delete()).all();
-      verify(index, never()).store(
-        any(Id.class),
-        anyString(),
-        any(IndexedComment.class)
-      );
+      verify(index, never()).delete();
+      verify(forType, never()).update(any(SerializableIndexTask.class));
     }
 
     @Test
-    void shouldReindexAllIfLogStoreIsEmpty() {
+    void shouldRebuildRepositoriesIfLogStoreIsEmpty() {
+      when(reindexSearchEngine.forType(IndexedComment.class)).thenReturn(forType);
+      when(pullRequestService.supportsPullRequests(repository)).thenReturn(true);
       when(forIndex.get(IndexedComment.class)).thenReturn(Optional.empty());
+      when(repositoryManager.getAll()).thenReturn(ImmutableList.of(repository));
 
       reindexAll.update(index);
+      runEnqueuedTask();
 
-      verify(index.delete()).all();
+      verify(index.delete()).by(Repository.class, repository);
+      verify(index.delete(), never()).all();
     }
 
     @Test
-    void shouldReindexAllIfLogStoreVersionDiffers() {
+    void shouldRebuildRepositoriesIfLogStoreVersionDiffers() {
+      when(reindexSearchEngine.forType(IndexedComment.class)).thenReturn(forType);
       when(pullRequestService.supportsPullRequests(repository)).thenReturn(true);
       when(forIndex.get(IndexedComment.class)).thenReturn(Optional.of(new IndexLog(42)));
 
@@ -204,17 +278,130 @@ class CommentIndexerTest {
       when(commentService.getAll(repository.getNamespace(), repository.getName(), pullRequest.getId())).thenReturn(ImmutableList.of(comment));
 
       reindexAll.update(index);
+      runEnqueuedTask();
 
-      verify(index.delete()).all();
-      verify(index).store(
-        eq(Id.of(IndexedComment.class, comment.getId()).and(PullRequest.class, pullRequest.getId()).and(Repository.class, repository.getId())),
-        eq("repository:readPullRequest:" + pullRequest.getId()),
-        argThat(indexedComment -> {
-          assertThat(indexedComment.getId()).isEqualTo(comment.getId());
-          assertThat(indexedComment.getComment()).isEqualTo(comment.getComment());
-          return true;
-        })
-      );
+      verify(index.delete()).by(Repository.class, repository);
+      verify(index.delete(), never()).all();
+      verifyCommentStored(index, pullRequest, comment);
+      verify(watermarkStore).set(eq(repository), eq(IndexedComment.class), any(Instant.class));
+      verify(watermarkStore, never()).get(any(), any());
+    }
+
+    @Test
+    void shouldEnqueueOneTaskPerRepository() {
+      Repository otherRepository = new Repository("2", "git", "hitchhiker", "heart-of-gold");
+      Repository svnRepository = new Repository("3", "svn", "hitchhiker", "old");
+      when(reindexSearchEngine.forType(IndexedComment.class)).thenReturn(forType);
+      when(pullRequestService.supportsPullRequests(repository)).thenReturn(true);
+      when(pullRequestService.supportsPullRequests(otherRepository)).thenReturn(true);
+      when(pullRequestService.supportsPullRequests(svnRepository)).thenReturn(false);
+      when(forIndex.get(IndexedComment.class)).thenReturn(Optional.empty());
+      when(repositoryManager.getAll()).thenReturn(ImmutableList.of(repository, svnRepository, otherRepository));
+
+      reindexAll.update(index);
+
+      verify(forType, times(2)).update(any(UpdateRepositoryTask.class));
+      verify(commentService, never()).getAll(anyString(), anyString(), anyString());
+    }
+
+    private void runEnqueuedTask() {
+      ArgumentCaptor<SerializableIndexTask> taskCaptor = ArgumentCaptor.forClass(SerializableIndexTask.class);
+      verify(forType).update(taskCaptor.capture());
+      UpdateRepositoryTask repositoryTask = (UpdateRepositoryTask) taskCaptor.getValue();
+      repositoryTask.setPullRequestService(pullRequestService);
+      repositoryTask.setCommentService(commentService);
+      repositoryTask.setWatermarkStore(watermarkStore);
+      repositoryTask.update(index);
+    }
+  }
+
+  @Nested
+  class UpdateRepositoryTaskTests {
+
+    @Mock
+    private PullRequestService pullRequestService;
+    @Mock
+    private CommentService commentService;
+    @Mock
+    private IndexWatermarkStore watermarkStore;
+
+    @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+    private Index<IndexedComment> index;
+
+    @Test
+    void shouldRebuildRepositoryWithoutWatermark() {
+      when(pullRequestService.supportsPullRequests(repository)).thenReturn(true);
+      when(watermarkStore.get(repository, IndexedComment.class)).thenReturn(Optional.empty());
+      PullRequest pullRequest = createPullRequest();
+      when(pullRequestService.getAll(repository.getNamespace(), repository.getName())).thenReturn(ImmutableList.of(pullRequest));
+      Comment comment = Comment.createComment("1", "first one", "trillian", new Location());
+      when(commentService.getAll(repository.getNamespace(), repository.getName(), pullRequest.getId())).thenReturn(ImmutableList.of(comment));
+
+      createTask(false).update(index);
+
+      verify(index.delete()).by(Repository.class, repository);
+      verifyCommentStored(index, pullRequest, comment);
+      verify(watermarkStore).set(eq(repository), eq(IndexedComment.class), any(Instant.class));
+    }
+
+    @Test
+    void shouldKeepRepliesOnRebuild() {
+      when(pullRequestService.supportsPullRequests(repository)).thenReturn(true);
+      PullRequest pullRequest = createPullRequest();
+      when(pullRequestService.getAll(repository.getNamespace(), repository.getName())).thenReturn(ImmutableList.of(pullRequest));
+      Comment comment = Comment.createComment("1", "first one", "trillian", new Location());
+      Reply reply = Reply.createReply("2", "first reply", "trillian");
+      comment.addReply(reply);
+      when(commentService.getAll(repository.getNamespace(), repository.getName(), pullRequest.getId())).thenReturn(ImmutableList.of(comment));
+
+      createTask(true).update(index);
+
+      verify(index.delete()).by(Repository.class, repository);
+      verifyCommentStored(index, pullRequest, comment);
+      verifyReplyStored(index, pullRequest, reply);
+    }
+
+    @Test
+    void shouldStoreRepliesOfChangedComments() {
+      Instant watermark = Instant.ofEpochMilli(42);
+      when(watermarkStore.get(repository, IndexedComment.class)).thenReturn(Optional.of(watermark));
+      PullRequest pullRequest = createPullRequest();
+      when(pullRequestService.getAll(repository.getNamespace(), repository.getName())).thenReturn(ImmutableList.of(pullRequest));
+      Comment comment = Comment.createComment("1", "first one", "trillian", new Location());
+      Reply reply = Reply.createReply("2", "first reply", "trillian");
+      comment.addReply(reply);
+      when(commentService.getPage(repository.getNamespace(), repository.getName(), pullRequest.getId(), watermark, null, 0))
+        .thenReturn(new CommentPage(ImmutableList.of(comment), null));
+
+      createTask(false).update(index);
+
+      verify(index, never()).delete();
+      verifyCommentStored(index, pullRequest, comment);
+      verifyReplyStored(index, pullRequest, reply);
+    }
+
+    @Test
+    void shouldNotStoreUnchangedComments() {
+      Instant watermark = Instant.ofEpochMilli(42);
+      when(watermarkStore.get(repository, IndexedComment.class)).thenReturn(Optional.of(watermark));
+      PullRequest pullRequest = createPullRequest();
+      when(pullRequestService.getAll(repository.getNamespace(), repository.getName())).thenReturn(ImmutableList.of(pullRequest));
+      when(commentService.getPage(repository.getNamespace(), repository.getName(), pullRequest.getId(), watermark, null, 0))
+        .thenReturn(new CommentPage(ImmutableList.of(), null));
+
+      createTask(false).update(index);
+
+      verify(index, never()).delete();
+      verify(index, never()).store(any(Id.class), anyString(), any(IndexedComment.class));
+      verify(watermarkStore).set(eq(repository), eq(IndexedComment.class), any(Instant.class));
+    }
+
+    private UpdateRepositoryTask createTask(boolean rebuild) {
+      UpdateRepositoryTask task = new UpdateRepositoryTask(repository, rebuild, 1, 1);
+      task.setPullRequestService(pullRequestService);
+      task.setCommentService(commentService);
+      task.setWatermarkStore(watermarkStore);
+      return task;
     }
   }
 
@@ -225,6 +412,8 @@ class CommentIndexerTest {
     private PullRequestService pullRequestService;
     @Mock
     private CommentService commentService;
+    @Mock
+    private IndexWatermarkStore watermarkStore;
 
     @Mock(answer = Answers.RETURNS_DEEP_STUBS)
     private Index<IndexedComment> index;
@@ -234,6 +423,7 @@ class CommentIndexerTest {
       IndexRepositoryTask indexRepositoryTask = new IndexRepositoryTask(repository);
       indexRepositoryTask.setCommentService(commentService);
       indexRepositoryTask.setPullRequestService(pullRequestService);
+      indexRepositoryTask.setWatermarkStore(watermarkStore);
 
       when(pullRequestService.supportsPullRequests(repository)).thenReturn(true);
 
@@ -244,15 +434,8 @@ class CommentIndexerTest {
 
       indexRepositoryTask.update(index);
 
-      verify(index).store(
-        eq(Id.of(IndexedComment.class, comment.getId()).and(PullRequest.class, pullRequest.getId()).and(Repository.class, repository.getId())),
-        eq("repository:readPullRequest:" + pullRequest.getId()),
-        argThat(indexedComment -> {
-          assertThat(indexedComment.getId()).isEqualTo(comment.getId());
-          assertThat(indexedComment.getComment()).isEqualTo(comment.getComment());
-          return true;
-        })
-      );
+      verifyCommentStored(index, pullRequest, comment);
+      verify(watermarkStore).set(eq(repository), eq(IndexedComment.class), any(Instant.class));
     }
   }
 
@@ -263,6 +446,8 @@ class CommentIndexerTest {
     private PullRequestService pullRequestService;
     @Mock
     private CommentService commentService;
+    @Mock
+    private IndexWatermarkStore watermarkStore;
 
     @Mock(answer = Answers.RETURNS_DEEP_STUBS)
     private Index<IndexedComment> index;
@@ -272,6 +457,7 @@ class CommentIndexerTest {
       ReindexRepositoryTask indexRepositoryTask = new ReindexRepositoryTask(repository);
       indexRepositoryTask.setCommentService(commentService);
       indexRepositoryTask.setPullRequestService(pullRequestService);
+      indexRepositoryTask.setWatermarkStore(watermarkStore);
 
       when(pullRequestService.supportsPullRequests(repository)).thenReturn(true);
 
@@ -283,16 +469,76 @@ class CommentIndexerTest {
       indexRepositoryTask.update(index);
 
       verify(index.delete()).by(Repository.class, repository);
-      verify(index).store(
-        eq(Id.of(IndexedComment.class, comment.getId()).and(PullRequest.class, pullRequest.getId()).and(Repository.class, repository.getId())),
-        eq("repository:readPullRequest:" + pullRequest.getId()),
-        argThat(indexedComment -> {
-          assertThat(indexedComment.getId()).isEqualTo(comment.getId());
-          assertThat(indexedComment.getComment()).isEqualTo(comment.getComment());
-          return true;
-        })
-      );
+      verifyCommentStored(index, pullRequest, comment);
+      verify(watermarkStore).set(eq(repository), eq(IndexedComment.class), any(Instant.class));
+    }
+  }
+
+  @Nested
+  class ReindexPullRequestTaskTests {
+
+    @Mock
+    private PullRequestService pullRequestService;
+    @Mock
+    private CommentService commentService;
+
+    @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+    private Index<IndexedComment> index;
+
+    private ReindexPullRequestTask task;
+
+    @BeforeEach
+    void createTask() {
+      task = new ReindexPullRequestTask(repository, "1");
+      task.setPullRequestService(pullRequestService);
+      task.setCommentService(commentService);
     }
+
+    @Test
+    void shouldReplaceCommentsAndRepliesOfPullRequest() {
+      PullRequest pullRequest = createPullRequest();
+      when(pullRequestService.get(repository, "1")).thenReturn(pullRequest);
+      Comment comment = Comment.createComment("1", "first one", "trillian", new Location());
+      Reply reply = Reply.createReply("2", "first reply", "trillian");
+      comment.addReply(reply);
+      when(commentService.getAll(repository.getNamespace(), repository.getName(), "1")).thenReturn(ImmutableList.of(comment));
+
+      task.update(index);
+
+      verify(index.delete().by(PullRequest.class, "1")).and(Repository.class, repository);
+      verifyCommentStored(index, pullRequest, comment);
+      verifyReplyStored(index, pullRequest, reply);
+    }
+
+    @Test
+    void shouldOnlyDeleteCommentsOfMissingPullRequest() {
+      when(pullRequestService.get(repository, "1")).thenThrow(new NotFoundException("x", "y"));
+
+      task.update(index);
+
+      verify(index.delete().by(PullRequest.class, "1")).and(Repository.class, repository);
+      verify(index, never()).store(any(), any(), any());
+    }
+  }
+
+  private void verifyCommentStored(Index<IndexedComment> index, PullRequest pullRequest, Comment comment) {
+    verify(index).store(
+      eq(Id.of(IndexedComment.class, comment.getId()).and(PullRequest.class, pullRequest.getId()).and(Repository.class, repository.getId())),
+      eq("repository:readPullRequest:" + pullRequest.getId()),
+      argThat(indexedComment -> {
+        assertThat(indexedComment.getId()).isEqualTo(comment.getId());
+        assertThat(indexedComment.getComment()).isEqualTo(comment.getComment());
+        return true;
+      })
+    );
+  }
+
+  private void verifyReplyStored(Index<IndexedComment> index, PullRequest pullRequest, Reply reply) {
+    verify(index).store(
+      eq(Id.of(IndexedComment.class, reply.getId()).and(PullRequest.class, pullRequest.getId()).and(Repository.class, repository.getId())),
+      anyString(),
+      argThat(indexedComment -> indexedComment.getComment().equals(reply.getComment()))
+    );
   }
 
   private PullRequest createPullRequest() {
@@ -17,6 +17,7 @@
 package com.cloudogu.scm.review.comment.service;
 
 import com.cloudogu.scm.review.pullrequest.service.PullRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.apache.shiro.subject.Subject;
 import org.apache.shiro.util.ThreadContext;
 import org.junit.jupiter.api.Assertions;
@@ -27,6 +28,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Answers;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import sonia.scm.NotFoundException;
 import sonia.scm.repository.Repository;
@@ -71,6 +73,8 @@ class CommentInitializerTest {
   RepositoryService repositoryService;
   @Mock(answer = Answers.RETURNS_SELF)
   DiffResultCommandBuilder diffResultCommandBuilder;
+  @Spy
+  DiffResultCache diffResultCache = new DiffResultCache(new SimpleMeterRegistry(), 0);
 
   @InjectMocks
   CommentInitializer initializer;
@@ -108,6 +112,8 @@ class CommentInitializerTest {
   @Nested
   class withAddedLinesOnly {
 
+    private Hunk hunk;
+
     @BeforeEach
     void initRepositoryService() {
       when(repositoryServiceFactory.create(REPOSITORY.getId())).thenReturn(repositoryService);
@@ -117,7 +123,7 @@ class CommentInitializerTest {
     @BeforeEach
     void mockDiffResult() throws IOException {
       when(repositoryService.getDiffResultCommand()).thenReturn(diffResultCommandBuilder);
-      Hunk hunk = new MockedHunk.Builder()
+      hunk = new MockedHunk.Builder()
         .addDiffLine(new MockedDiffLine.Builder().newLineNumber(2).get())
         .addDiffLine(new MockedDiffLine.Builder().newLineNumber(3).get())
         .addDiffLine(new MockedDiffLine.Builder().newLineNumber(4).get())
@@ -197,7 +203,7 @@ class CommentInitializerTest {
     @Test
     void shouldCallDiffResultWithSourceAndTarget() throws IOException {
       Comment comment = new Comment();
-      comment.setLocation(new Location("newPath", "irrelevant", null, 2));
+      comment.setLocation(new Location("newPath", hunk.getRawHeader(), null, 2));
 
       initializer.initialize(comment, PULL_REQUEST, REPOSITORY.getId());
 
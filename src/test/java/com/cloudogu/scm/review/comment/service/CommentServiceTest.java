@@ -17,6 +17,7 @@
 package com.cloudogu.scm.review.comment.service;
 
 import com.cloudogu.scm.review.RepositoryResolver;
+import com.cloudogu.scm.review.StoreLocks;
 import com.cloudogu.scm.review.comment.api.MentionMapper;
 import com.cloudogu.scm.review.pullrequest.service.PullRequest;
 import com.cloudogu.scm.review.pullrequest.service.PullRequestEmergencyMergedEvent;
@@ -28,10 +29,15 @@ import com.cloudogu.scm.review.pullrequest.service.PullRequestService;
 import com.cloudogu.scm.review.pullrequest.service.PullRequestStatus;
 import com.cloudogu.scm.review.pullrequest.service.PullRequestStatusChangedEvent;
 import com.google.common.collect.ImmutableSet;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.shiro.SecurityUtils;
 import org.apache.shiro.authz.UnauthorizedException;
+import org.apache.shiro.subject.Subject;
+import org.apache.shiro.util.ThreadContext;
 import org.github.sdorra.jse.ShiroExtension;
 import org.github.sdorra.jse.SubjectAware;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
@@ -49,11 +55,19 @@ import sonia.scm.store.QueryableStoreExtension;
 
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static com.cloudogu.scm.review.comment.service.Comment.createComment;
+import static com.cloudogu.scm.review.comment.service.CommentTransition.MAKE_COMMENT;
 import static com.cloudogu.scm.review.comment.service.CommentTransition.MAKE_TASK;
 import static com.cloudogu.scm.review.comment.service.CommentTransition.SET_DONE;
 import static com.cloudogu.scm.review.comment.service.CommentType.TASK_DONE;
@@ -67,13 +81,17 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith({MockitoExtension.class, ShiroExtension.class, QueryableStoreExtension.class})
-@QueryableStoreExtension.QueryableTypes(Comment.class)
+@QueryableStoreExtension.QueryableTypes({Comment.class, Reply.class})
 @SubjectAware("trillian")
 class CommentServiceTest {
 
@@ -89,6 +107,7 @@ class CommentServiceTest {
 
   {
     EXISTING_COMMENT.addReply(EXISTING_REPLY);
+    EXISTING_REPLY.setParentId(COMMENT_ID);
     // nanoseconds are not supported by the json mapper
     EXISTING_COMMENT.setDate(Instant.now().truncatedTo(ChronoUnit.MILLIS));
     EXISTING_REPLY.setDate(Instant.now().truncatedTo(ChronoUnit.MILLIS));
@@ -115,6 +134,9 @@ class CommentServiceTest {
   @Mock
   private MentionMapper mentionMapper;
 
+  @Mock
+  private CommentSummaryStore summaryStore;
+
   private CommentStoreBuilder storeBuilder;
 
   @Captor
@@ -127,19 +149,22 @@ class CommentServiceTest {
   private int lastCommentKeyId = 1;
 
   @BeforeEach
-  void init(CommentStoreFactory storeFactory) {
-    storeBuilder = new CommentStoreBuilder(storeFactory, keyGenerator);
+  void init(CommentStoreFactory storeFactory, ReplyStoreFactory replyStoreFactory) {
+    storeBuilder = new CommentStoreBuilder(storeFactory, replyStoreFactory, keyGenerator, new StoreLocks(new SimpleMeterRegistry(), 16));
     lenient().doAnswer(invocationOnMock -> Integer.toString(++lastCommentKeyId))
       .when(keyGenerator).createKey();
 
     lenient().doNothing().when(eventBus).post(eventCaptor.capture());
 
     lenient().when(repositoryResolver.resolve(REPOSITORY.getNamespaceAndName())).thenReturn(REPOSITORY);
-    commentService = new CommentService(repositoryResolver, hunkVerifyer, pullRequestService, storeBuilder, keyGenerator, eventBus, commentInitializer, mentionMapper);
+    commentService = new CommentService(repositoryResolver, hunkVerifyer, pullRequestService, storeBuilder, keyGenerator, eventBus, commentInitializer, mentionMapper, summaryStore);
 
+    Comment storedComment = EXISTING_COMMENT.clone();
+    storedComment.setReplies(new ArrayList<>());
     try (QueryableMutableStore<Comment> store = storeFactory.getMutable(REPOSITORY.getId(), PULL_REQUEST_ID)) {
-      store.put("1", EXISTING_COMMENT);
+      store.put("1", storedComment);
     }
+    putReplyInStore(replyStoreFactory, EXISTING_REPLY);
 
     lenient().doAnswer(invocation -> {
       BasicComment comment = invocation.getArgument(0);
@@ -230,6 +255,103 @@ class CommentServiceTest {
     );
   }
 
+  @Nested
+  class ForBatch {
+
+    @Mock
+    private PullRequestDiff diff;
+
+    private PullRequest pullRequest;
+
+    @BeforeEach
+    void mockDiff() {
+      pullRequest = new PullRequest();
+      lenient().when(pullRequestService.get(REPOSITORY, PULL_REQUEST_ID)).thenReturn(pullRequest);
+      lenient().when(hunkVerifyer.openDiff(pullRequest, REPOSITORY)).thenReturn(diff);
+      lenient().doAnswer(invocation -> {
+        BasicComment comment = invocation.getArgument(0);
+        comment.setDate(NOW);
+        comment.setAuthor(author);
+        return null;
+      }).when(commentInitializer).initialize(any(), any(PullRequestDiff.class));
+    }
+
+    @Test
+    @SubjectAware(permissions = "repository:read,readPullRequest,commentPullRequest:repo_ID")
+    void shouldAddAllComments(CommentStoreFactory storeFactory) {
+      Comment first = createComment(null, "first", author, new Location("README.md", null, null, 1));
+      Comment second = createComment(null, "second", author, new Location("README.md", null, null, 2));
+
+      List<String> ids = commentService.addAll(NAMESPACE, NAME, PULL_REQUEST_ID, List.of(first, second));
+
+      assertThat(ids).hasSize(2);
+      assertThat(readCommentFromStore(storeFactory, ids.get(0)).getComment()).isEqualTo("first");
+      assertThat(readCommentFromStore(storeFactory, ids.get(1)).getComment()).isEqualTo("second");
+      assertThat(readCommentFromStore(storeFactory, ids.get(1)).getDate()).isEqualTo(NOW);
+    }
+
+    @Test
+    @SubjectAware(permissions = "repository:read,readPullRequest,commentPullRequest:repo_ID")
+    void shouldUseSameDiffForAllComments() {
+      Comment first = createComment(null, "first", author, new Location("README.md", null, null, 1));
+      Comment second = createComment(null, "second", author, new Location("README.md", null, null, 2));
+
+      commentService.addAll(NAMESPACE, NAME, PULL_REQUEST_ID, List.of(first, second));
+
+      verify(hunkVerifyer).openDiff(pullRequest, REPOSITORY);
+      verify(hunkVerifyer).verifyLocation(first, pullRequest, REPOSITORY, diff);
+      verify(hunkVerifyer).verifyLocation(second, pullRequest, REPOSITORY, diff);
+      verify(commentInitializer).initialize(first, diff);
+      verify(commentInitializer).initialize(second, diff);
+      verify(diff).close();
+    }
+
+    @Test
+    @SubjectAware(permissions = "repository:read,readPullRequest,commentPullRequest:repo_ID")
+    void shouldPostOneEventForAllComments() {
+      Comment first = createComment(null, "first", author, null);
+      Comment second = createComment(null, "second", author, null);
+
+      commentService.addAll(NAMESPACE, NAME, PULL_REQUEST_ID, List.of(first, second));
+
+      ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+      verify(eventBus).post(captor.capture());
+      assertThat(captor.getValue())
+        .isInstanceOfSatisfying(CommentsAddedEvent.class, event -> assertThat(event.getComments()).containsExactly(first, second));
+    }
+
+    @Test
+    @SubjectAware(permissions = "repository:read,readPullRequest,commentPullRequest:repo_ID")
+    void shouldNotStoreAnyCommentIfOneLocationIsInvalid(CommentStoreFactory storeFactory) {
+      Comment first = createComment(null, "first", author, new Location("README.md", null, null, 1));
+      Comment second = createComment(null, "second", author, new Location("missing", null, null, 2));
+      doThrow(new LocationForCommentNotFoundException(REPOSITORY.getNamespaceAndName(), PULL_REQUEST_ID, "missing"))
+        .when(hunkVerifyer).verifyLocation(second, pullRequest, REPOSITORY, diff);
+
+      List<Comment> comments = List.of(first, second);
+      assertThrows(
+        LocationForCommentNotFoundException.class,
+        () -> commentService.addAll(NAMESPACE, NAME, PULL_REQUEST_ID, comments)
+      );
+
+      try (QueryableMutableStore<Comment> store = storeFactory.getMutable(REPOSITORY.getId(), PULL_REQUEST_ID)) {
+        assertThat(store.getAll()).containsOnlyKeys("1");
+      }
+      verify(eventBus, never()).post(any());
+    }
+
+    @Test
+    @SubjectAware(permissions = "repository:read:*")
+    void shouldFailIfUserHasNoPermissionToCreateComments() {
+      List<Comment> comments = List.of(createComment(null, "first", author, null));
+
+      assertThrows(
+        UnauthorizedException.class,
+        () -> commentService.addAll(NAMESPACE, NAME, PULL_REQUEST_ID, comments)
+      );
+    }
+  }
+
   @Test
   @SubjectAware(permissions = "repository:read,readPullRequest,commentPullRequest:repo_ID")
   void shouldAddReplyToParentComment(CommentStoreFactory storeFactory) {
@@ -243,6 +365,21 @@ class CommentServiceTest {
     assertThat(storedComment.getReplies().get(1).getId()).isNotEqualTo("new reply");
   }
 
+  @Test
+  @SubjectAware(permissions = "repository:read,readPullRequest,commentPullRequest:repo_ID")
+  void shouldStoreReplyOnItsOwn(CommentStoreFactory storeFactory, ReplyStoreFactory replyStoreFactory) {
+    Reply reply = createReply("new reply", "1. comment", author);
+
+    String replyId = commentService.reply(NAMESPACE, NAME, PULL_REQUEST_ID, "1", reply);
+
+    try (QueryableMutableStore<Comment> store = storeFactory.getMutable(REPOSITORY.getId(), PULL_REQUEST_ID)) {
+      assertThat(store.get("1").getReplies()).isEmpty();
+    }
+    try (QueryableMutableStore<Reply> store = replyStoreFactory.getMutable(REPOSITORY.getId(), PULL_REQUEST_ID)) {
+      assertThat(store.get(replyId).getParentId()).isEqualTo("1");
+    }
+  }
+
   @Test
   @SubjectAware(permissions = "repository:read,readPullRequest,commentPullRequest:repo_ID")
   void shouldExtractMentionsOnCreateReply(CommentStoreFactory storeFactory) {
@@ -368,6 +505,39 @@ class CommentServiceTest {
     assertThat(eventCaptor.getValue().getEventType()).isEqualTo(HandlerEventType.MODIFY);
   }
 
+  @Test
+  @SubjectAware(permissions = "*")
+  void shouldReportOnlyOneTransitionForConcurrentlyFinishedTask(CommentStoreFactory storeFactory) throws Exception {
+    EXISTING_COMMENT.setType(CommentType.TASK_TODO);
+    putCommentInStore(storeFactory, "1", EXISTING_COMMENT);
+    Subject subject = SecurityUtils.getSubject();
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<?>> futures = new ArrayList<>();
+    try {
+      for (int i = 0; i < 8; ++i) {
+        futures.add(executor.submit(() -> {
+          ThreadContext.bind(subject);
+          start.await();
+          commentService.transform(NAMESPACE, NAME, PULL_REQUEST_ID, EXISTING_COMMENT.getId(), SET_DONE);
+          return null;
+        }));
+      }
+      start.countDown();
+      for (Future<?> future : futures) {
+        future.get(30, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertThat(eventCaptor.getAllValues())
+      .hasSize(8)
+      .filteredOn(event -> ((Comment) event.getOldItem()).getType() == TASK_TODO)
+      .hasSize(1);
+  }
+
   @Test
   @SubjectAware(permissions = "*")
   void shouldKeepAuthorAndDateWhenModifyingRootComment(CommentStoreFactory storeFactory) {
@@ -477,9 +647,9 @@ class CommentServiceTest {
 
   @Test
   @SubjectAware(permissions = "*")
-  void shouldNotDeleteIfReplyIsSystemReply(CommentStoreFactory storeFactory) {
+  void shouldNotDeleteIfReplyIsSystemReply(ReplyStoreFactory replyStoreFactory) {
     EXISTING_REPLY.setSystemReply(true);
-    putCommentInStore(storeFactory, "1", EXISTING_COMMENT);
+    putReplyInStore(replyStoreFactory, EXISTING_REPLY);
 
     assertThrows(
       ScmConstraintViolationException.class,
@@ -647,6 +817,44 @@ class CommentServiceTest {
     assertThat(commentTransitions).isEmpty();
   }
 
+  @Test
+  @SubjectAware(permissions = "repository:read,readPullRequest,commentPullRequest:repo_ID")
+  void shouldGiveTransitionsForAllCommentsForAuthorizedUser() {
+    Comment task = createComment("2", "task", author, null);
+    task.setType(TASK_TODO);
+
+    Map<String, Collection<CommentTransition>> transitions = commentService.possibleTransitions(NAMESPACE, NAME, List.of(EXISTING_COMMENT, task));
+
+    assertThat(transitions).hasSize(2);
+    assertThat(transitions.get("1")).containsExactly(MAKE_TASK);
+    assertThat(transitions.get("2")).containsExactly(SET_DONE, MAKE_COMMENT);
+  }
+
+  @Test
+  @SubjectAware(permissions = "repository:read:*")
+  void shouldGiveNoTransitionsForAllCommentsForUnauthorizedUser() {
+    Map<String, Collection<CommentTransition>> transitions = commentService.possibleTransitions(NAMESPACE, NAME, List.of(EXISTING_COMMENT));
+
+    assertThat(transitions.get("1")).isEmpty();
+  }
+
+  @Test
+  @SubjectAware(permissions = "repository:read,readPullRequest,commentPullRequest:repo_ID")
+  void shouldReadCommentStoreOnlyOnceForListingCommentsWithTransitions(CommentStoreFactory storeFactory) {
+    for (int i = 2; i <= 500; i++) {
+      putCommentInStore(storeFactory, String.valueOf(i), createComment(String.valueOf(i), i + ". comment", author, null));
+    }
+    CommentStoreBuilder countingStoreBuilder = spy(storeBuilder);
+    commentService = new CommentService(repositoryResolver, hunkVerifyer, pullRequestService, countingStoreBuilder, keyGenerator, eventBus, commentInitializer, mentionMapper, summaryStore);
+
+    List<Comment> comments = commentService.getAll(NAMESPACE, NAME, PULL_REQUEST_ID);
+    Map<String, Collection<CommentTransition>> transitions = commentService.possibleTransitions(NAMESPACE, NAME, comments);
+
+    assertThat(comments).hasSize(500);
+    assertThat(transitions).hasSize(500);
+    verify(countingStoreBuilder, times(1)).create(REPOSITORY);
+  }
+
   @Test
   @SubjectAware(permissions = "repository:read:*")
   void shouldMarkCommentAsOutdated(CommentStoreFactory storeFactory) {
@@ -693,6 +901,20 @@ class CommentServiceTest {
     assertThat(storedComment.isOutdated()).isTrue();
   }
 
+  @Test
+  @SubjectAware(permissions = "*")
+  void shouldMarkAllGivenCommentsAsOutdated(CommentStoreFactory storeFactory) {
+    Comment task = EXISTING_COMMENT.clone();
+    task.setId("2");
+    task.setType(TASK_TODO);
+    putCommentInStore(storeFactory, "2", task);
+
+    commentService.markAsOutdated(REPOSITORY, PULL_REQUEST_ID, List.of("1", "2", "unknown"));
+
+    assertThat(readCommentFromStore(storeFactory, "1").isOutdated()).isTrue();
+    assertThat(readCommentFromStore(storeFactory, "2").isOutdated()).isFalse();
+  }
+
   @Test
   @SubjectAware(permissions = "*")
   void shouldAddCommentOnMergeEvent(CommentStoreFactory storeFactory) {
@@ -828,8 +1050,13 @@ class CommentServiceTest {
   }
   
   private Comment readCommentFromStore(CommentStoreFactory storeFactory, String commentId) {
-    try (QueryableMutableStore<Comment> store = storeFactory.getMutable(REPOSITORY.getId(), PULL_REQUEST_ID)) {
-      return store.get(commentId);
+    // read with the comment store, so that the replies are attached
+    return storeBuilder.create(REPOSITORY).getPullRequestCommentById(PULL_REQUEST_ID, commentId).orElse(null);
+  }
+
+  private void putReplyInStore(ReplyStoreFactory replyStoreFactory, Reply reply) {
+    try (QueryableMutableStore<Reply> store = replyStoreFactory.getMutable(REPOSITORY.getId(), PULL_REQUEST_ID)) {
+      store.put(reply.getId(), reply);
     }
   }
 
@@ -17,8 +17,10 @@
 package com.cloudogu.scm.review.comment.service;
 
 import com.cloudogu.scm.review.TestData;
+import com.cloudogu.scm.review.StoreLocks;
 import com.cloudogu.scm.review.pullrequest.service.PullRequest;
 import com.cloudogu.scm.review.pullrequest.service.PullRequestStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -35,6 +37,7 @@ import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 import static com.cloudogu.scm.review.comment.service.ContextLine.copy;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -44,7 +47,7 @@ import static org.mockito.Mockito.when;
 
 @ExtendWith({MockitoExtension.class, QueryableStoreExtension.class})
 @MockitoSettings(strictness = Strictness.LENIENT)
-@QueryableStoreExtension.QueryableTypes({PullRequest.class, Comment.class})
+@QueryableStoreExtension.QueryableTypes({PullRequest.class, Comment.class, Reply.class})
 class CommentStoreTest {
 
   private int nextId = 1;
@@ -56,7 +59,13 @@ class CommentStoreTest {
   void init(QueryableStoreFactory storeFactory) {
     PullRequestStore prStore = mock(PullRequestStore.class);
     when(prStore.get(any())).thenReturn(TestData.createPullRequest());
-    store = new CommentStore(pullRequestId -> storeFactory.getMutable(Comment.class, "hog", pullRequestId), keyGenerator);
+    store = new CommentStore(
+      pullRequestId -> storeFactory.getMutable(Comment.class, "hog", pullRequestId),
+      pullRequestId -> storeFactory.getMutable(Reply.class, "hog", pullRequestId),
+      keyGenerator,
+      new StoreLocks(new SimpleMeterRegistry(), 16),
+      "hog"
+    );
   }
 
   @Test
@@ -97,6 +106,205 @@ class CommentStoreTest {
     }
   }
 
+  @Test
+  void shouldAddAllComments(CommentStoreFactory storeFactory) {
+    String pullRequestId = "1";
+    Comment first = createComment(null, "first", "author", new Location());
+    Comment second = createComment(null, "second", "author", new Location());
+
+    List<String> ids = store.addAll(pullRequestId, List.of(first, second));
+
+    assertThat(ids).containsExactly("1", "2");
+    assertThat(first.getId()).isEqualTo("1");
+    assertThat(second.getId()).isEqualTo("2");
+    try (QueryableStore<Comment> store = storeFactory.get("hog", pullRequestId)) {
+      assertThat(store.query().findAll())
+        .extracting("comment")
+        .containsExactlyInAnyOrder("first", "second");
+    }
+  }
+
+  @Test
+  void shouldUpdateAllGivenComments(CommentStoreFactory storeFactory) {
+    String pullRequestId = "1";
+    store.addAll(pullRequestId, List.of(
+      createComment(null, "first", "author", new Location()),
+      createComment(null, "second", "author", new Location()),
+      createComment(null, "third", "author", new Location())
+    ));
+
+    int changed = store.updateAll(pullRequestId, List.of("1", "2", "unknown"), comment -> {
+      if (comment.getComment().equals("first")) {
+        comment.setOutdated(true);
+        return true;
+      }
+      return false;
+    });
+
+    assertThat(changed).isEqualTo(1);
+    try (QueryableStore<Comment> store = storeFactory.get("hog", pullRequestId)) {
+      assertThat(store.query().findAll())
+        .filteredOn(Comment::isOutdated)
+        .extracting("comment")
+        .containsExactly("first");
+    }
+  }
+
+  @Test
+  void shouldReadCommentsPageByPage() {
+    String pullRequestId = "1";
+    Instant date = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+    Comment first = createComment(null, "first", "author", new Location());
+    first.setDate(date.minusSeconds(10));
+    store.add(pullRequestId, first);
+    List<Comment> batch = List.of(
+      createComment(null, "batch 1", "author", new Location()),
+      createComment(null, "batch 2", "author", new Location()),
+      createComment(null, "batch 3", "author", new Location()),
+      createComment(null, "batch 4", "author", new Location())
+    );
+    batch.forEach(comment -> comment.setDate(date));
+    store.addAll(pullRequestId, batch);
+
+    CommentPage firstPage = store.getPage(pullRequestId, null, null, 2);
+    CommentPage secondPage = store.getPage(pullRequestId, null, firstPage.next(), 2);
+    CommentPage thirdPage = store.getPage(pullRequestId, null, secondPage.next(), 2);
+
+    assertThat(firstPage.comments()).hasSize(2);
+    assertThat(firstPage.comments().get(0).getComment()).isEqualTo("first");
+    assertThat(firstPage.next()).isEqualTo(new CommentCursor(date, 1));
+    assertThat(secondPage.comments()).hasSize(2);
+    assertThat(secondPage.next()).isEqualTo(new CommentCursor(date, 3));
+    assertThat(thirdPage.comments()).hasSize(1);
+    assertThat(thirdPage.next()).isNull();
+    assertThat(Stream.of(firstPage, secondPage, thirdPage).flatMap(page -> page.comments().stream()))
+      .extracting("comment")
+      .containsExactlyInAnyOrder("first", "batch 1", "batch 2", "batch 3", "batch 4");
+  }
+
+  @Test
+  void shouldReadOnlyCommentsModifiedSinceGivenTime(CommentStoreFactory storeFactory) {
+    String pullRequestId = "1";
+    Instant since = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+    Comment unchanged = createComment("1", "unchanged", "author", new Location());
+    unchanged.setLastModified(since.minusSeconds(60));
+    Comment changed = createComment("2", "changed", "author", new Location());
+    changed.setLastModified(since.plusSeconds(1));
+    Comment legacy = createComment("3", "without modification date", "author", new Location());
+    try (QueryableMutableStore<Comment> store = storeFactory.getMutable("hog", pullRequestId)) {
+      store.put("1", unchanged);
+      store.put("2", changed);
+      store.put("3", legacy);
+    }
+
+    CommentPage page = store.getPage(pullRequestId, since, null, Integer.MAX_VALUE);
+
+    assertThat(page.comments())
+      .extracting("id")
+      .containsExactly("2");
+    assertThat(page.next()).isNull();
+  }
+
+  @Test
+  void shouldSetLastModifiedOnUpdate() {
+    String pullRequestId = "1";
+    Comment comment = createComment("1", "comment", "author", new Location());
+    store.add(pullRequestId, comment);
+    comment.setLastModified(Instant.EPOCH);
+
+    store.update(pullRequestId, comment);
+
+    assertThat(store.getAll(pullRequestId).get(0).getLastModified()).isAfter(Instant.EPOCH);
+  }
+
+  @Test
+  void shouldStoreRepliesOnTheirOwn(CommentStoreFactory commentStoreFactory, ReplyStoreFactory replyStoreFactory) {
+    String pullRequestId = "1";
+    Comment comment = createComment(null, "comment", "author", new Location());
+    String commentId = store.add(pullRequestId, comment);
+
+    String firstReplyId = store.addReply(pullRequestId, commentId, createReply("first reply"));
+    String secondReplyId = store.addReply(pullRequestId, commentId, createReply("second reply"));
+
+    try (QueryableStore<Comment> rawStore = commentStoreFactory.get("hog", pullRequestId)) {
+      assertThat(rawStore.query().findAll().get(0).getReplies()).isEmpty();
+    }
+    try (QueryableStore<Reply> rawStore = replyStoreFactory.get("hog", pullRequestId)) {
+      assertThat(rawStore.query(ReplyQueryFields.PARENTID.eq(commentId)).findAll())
+        .extracting("id")
+        .containsExactlyInAnyOrder(firstReplyId, secondReplyId);
+    }
+    assertThat(store.getAll(pullRequestId).get(0).getReplies())
+      .extracting("comment")
+      .containsExactlyInAnyOrder("first reply", "second reply");
+  }
+
+  @Test
+  void shouldGetReplyById() {
+    String pullRequestId = "1";
+    String commentId = store.add(pullRequestId, createComment(null, "comment", "author", new Location()));
+    String replyId = store.addReply(pullRequestId, commentId, createReply("reply"));
+
+    assertThat(store.getReply(pullRequestId, replyId))
+      .get()
+      .extracting("comment", "parentId")
+      .containsExactly("reply", commentId);
+    assertThat(store.getReply(pullRequestId, "no such reply")).isEmpty();
+  }
+
+  @Test
+  void shouldAttachRepliesToSingleComment() {
+    String pullRequestId = "1";
+    String commentId = store.add(pullRequestId, createComment(null, "comment", "author", new Location()));
+    String otherCommentId = store.add(pullRequestId, createComment(null, "other comment", "author", new Location()));
+    store.addReply(pullRequestId, commentId, createReply("reply"));
+    store.addReply(pullRequestId, otherCommentId, createReply("other reply"));
+
+    assertThat(store.getPullRequestCommentById(pullRequestId, commentId).orElseThrow().getReplies())
+      .extracting("comment")
+      .containsExactly("reply");
+  }
+
+  @Test
+  void shouldUpdateAndDeleteReply() {
+    String pullRequestId = "1";
+    String commentId = store.add(pullRequestId, createComment(null, "comment", "author", new Location()));
+    String replyId = store.addReply(pullRequestId, commentId, createReply("reply"));
+    store.addReply(pullRequestId, commentId, createReply("other reply"));
+
+    Reply reply = store.getReply(pullRequestId, replyId).orElseThrow();
+    reply.setComment("changed reply");
+    store.updateReply(pullRequestId, reply);
+
+    assertThat(store.getAll(pullRequestId).get(0).getReplies())
+      .extracting("comment")
+      .containsExactlyInAnyOrder("changed reply", "other reply");
+
+    store.deleteReply(pullRequestId, reply);
+
+    assertThat(store.getAll(pullRequestId).get(0).getReplies())
+      .extracting("comment")
+      .containsExactly("other reply");
+  }
+
+  @Test
+  void shouldFindCommentWithNewReplyInIncrementalPage(CommentStoreFactory storeFactory) {
+    String pullRequestId = "1";
+    Comment comment = createComment("1", "comment", "author", new Location());
+    comment.setLastModified(Instant.EPOCH);
+    try (QueryableMutableStore<Comment> rawStore = storeFactory.getMutable("hog", pullRequestId)) {
+      rawStore.put("1", comment);
+    }
+
+    store.addReply(pullRequestId, "1", createReply("reply"));
+
+    CommentPage page = store.getPage(pullRequestId, Instant.EPOCH.plusSeconds(1), null, Integer.MAX_VALUE);
+    assertThat(page.comments()).hasSize(1);
+    assertThat(page.comments().get(0).getReplies())
+      .extracting("comment")
+      .containsExactly("reply");
+  }
+
   @Test
   void shouldDeleteAnExistingComment() {
     String pullRequestId = "id";
@@ -200,6 +408,12 @@ class CommentStoreTest {
     assertThat(storedComment).usingRecursiveComparison().isEqualTo(comment);
   }
 
+  Reply createReply(String text) {
+    Reply reply = Reply.createNewReply(text);
+    reply.setDate(Instant.now().truncatedTo(ChronoUnit.SECONDS));
+    return reply;
+  }
+
   Comment createComment(String id, String text, String author, Location location) {
     Comment comment = Comment.createComment(id, text, author, location);
     comment.setDate(Instant.now().truncatedTo(ChronoUnit.SECONDS)); // we have to truncate this because the date is serialized to xml and the xml adapter does not support nanoseconds
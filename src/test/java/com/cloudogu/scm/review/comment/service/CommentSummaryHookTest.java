@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.review.comment.service;
+
+import com.cloudogu.scm.review.StoreLocks;
+import com.cloudogu.scm.review.comment.service.CommentSummaryStore.PullRequestReference;
+import com.cloudogu.scm.review.pullrequest.service.PullRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryTestData;
+import sonia.scm.store.QueryableStoreExtension;
+
+import java.time.Instant;
+import java.util.List;
+
+import static com.cloudogu.scm.review.TestData.createPullRequest;
+import static org.assertj.core.api.Assertions.assertThat;
+import static sonia.scm.HandlerEventType.CREATE;
+import static sonia.scm.HandlerEventType.DELETE;
+import static sonia.scm.HandlerEventType.MODIFY;
+
+@ExtendWith(QueryableStoreExtension.class)
+@QueryableStoreExtension.QueryableTypes(CommentSummary.class)
+class CommentSummaryHookTest {
+
+  private final Repository repository = RepositoryTestData.createHeartOfGold();
+  private final PullRequest pullRequest = createPullRequest("42");
+
+  private CommentSummaryStore summaryStore;
+  private CommentSummaryHook hook;
+
+  @BeforeEach
+  void init(CommentSummaryStoreFactory storeFactory) {
+    repository.setId("hog");
+    summaryStore = new CommentSummaryStore(storeFactory, new StoreLocks(new SimpleMeterRegistry(), 16));
+    hook = new CommentSummaryHook(summaryStore);
+  }
+
+  @Test
+  void shouldReturnEmptySummaryWithoutComments() {
+    CommentSummary summary = summaryStore.get("hog", "42");
+
+    assertThat(summary.getOpenTasks()).isZero();
+    assertThat(summary.getDoneTasks()).isZero();
+    assertThat(summary.getComments()).isZero();
+    assertThat(summary.getLastCommentDate()).isNull();
+  }
+
+  @Test
+  void shouldCountCreatedComments() {
+    Comment task = comment("1", CommentType.TASK_TODO, 1000);
+    Comment comment = comment("2", CommentType.COMMENT, 2000);
+
+    hook.handleCommentEvent(new CommentEvent(repository, pullRequest, task, null, CREATE));
+    hook.handleCommentEvent(new CommentEvent(repository, pullRequest, comment, null, CREATE));
+
+    CommentSummary summary = summaryStore.get("hog", "42");
+    assertThat(summary.getOpenTasks()).isEqualTo(1);
+    assertThat(summary.getComments()).isEqualTo(2);
+    assertThat(summary.getLastCommentDate()).isEqualTo(Instant.ofEpochMilli(2000));
+  }
+
+  @Test
+  void shouldNotCountSystemComments() {
+    Comment systemComment = Comment.createSystemComment("merged");
+
+    hook.handleCommentEvent(new CommentEvent(repository, pullRequest, systemComment, null, CREATE));
+
+    CommentSummary summary = summaryStore.get("hog", "42");
+    assertThat(summary.getComments()).isZero();
+    assertThat(summary.getLastCommentDate()).isNull();
+  }
+
+  @Test
+  void shouldCountCommentsAddedAtOnce() {
+    hook.handleCommentsAddedEvent(new CommentsAddedEvent(repository, pullRequest, List.of(
+      comment("1", CommentType.TASK_TODO, 1000),
+      comment("2", CommentType.TASK_TODO, 1000)
+    )));
+
+    assertThat(summaryStore.get("hog", "42").getOpenTasks()).isEqualTo(2);
+  }
+
+  @Test
+  void shouldMoveTaskOnTypeChange() {
+    Comment task = comment("1", CommentType.TASK_TODO, 1000);
+    hook.handleCommentEvent(new CommentEvent(repository, pullRequest, task, null, CREATE));
+    Comment doneTask = task.clone();
+    doneTask.setType(CommentType.TASK_DONE);
+
+    hook.handleCommentEvent(new CommentEvent(repository, pullRequest, doneTask, task, MODIFY));
+
+    CommentSummary summary = summaryStore.get("hog", "42");
+    assertThat(summary.getOpenTasks()).isZero();
+    assertThat(summary.getDoneTasks()).isEqualTo(1);
+    assertThat(summary.getComments()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldDecreaseCountersOnDelete() {
+    Comment task = comment("1", CommentType.TASK_TODO, 1000);
+    hook.handleCommentEvent(new CommentEvent(repository, pullRequest, task, null, CREATE));
+
+    hook.handleCommentEvent(new CommentEvent(repository, pullRequest, null, task, DELETE));
+
+    CommentSummary summary = summaryStore.get("hog", "42");
+    assertThat(summary.getOpenTasks()).isZero();
+    assertThat(summary.getComments()).isZero();
+  }
+
+  @Test
+  void shouldCountReplies() {
+    Comment comment = comment("1", CommentType.COMMENT, 1000);
+    Reply reply = Reply.createReply("2", "Me too", "trillian");
+    reply.setDate(Instant.ofEpochMilli(3000));
+
+    hook.handleCommentEvent(new CommentEvent(repository, pullRequest, comment, null, CREATE));
+    hook.handleReplyEvent(new ReplyEvent(repository, pullRequest, reply, null, comment, CREATE));
+
+    CommentSummary summary = summaryStore.get("hog", "42");
+    assertThat(summary.getComments()).isEqualTo(2);
+    assertThat(summary.getLastCommentDate()).isEqualTo(Instant.ofEpochMilli(3000));
+
+    hook.handleReplyEvent(new ReplyEvent(repository, pullRequest, null, reply, comment, DELETE));
+
+    assertThat(summaryStore.get("hog", "42").getComments()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldFindPullRequestsWithOpenTasks() {
+    PullRequest otherPullRequest = createPullRequest("43");
+    hook.handleCommentEvent(new CommentEvent(repository, pullRequest, comment("1", CommentType.TASK_TODO, 1000), null, CREATE));
+    hook.handleCommentEvent(new CommentEvent(repository, otherPullRequest, comment("2", CommentType.TASK_DONE, 1000), null, CREATE));
+
+    assertThat(summaryStore.getPullRequestsWithOpenTasks())
+      .containsExactly(new PullRequestReference("hog", "42"));
+  }
+
+  private Comment comment(String id, CommentType type, long date) {
+    Comment comment = Comment.createComment(id, "Don't panic", "dent", new Location());
+    comment.setType(type);
+    comment.setDate(Instant.ofEpochMilli(date));
+    return comment;
+  }
+}
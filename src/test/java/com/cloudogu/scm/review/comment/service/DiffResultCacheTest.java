@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.review.comment.service;
+
+import com.cloudogu.scm.review.pullrequest.service.PullRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import sonia.scm.HandlerEventType;
+import sonia.scm.repository.Branch;
+import sonia.scm.repository.Branches;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryEvent;
+import sonia.scm.repository.api.BranchesCommandBuilder;
+import sonia.scm.repository.api.Command;
+import sonia.scm.repository.api.DiffFile;
+import sonia.scm.repository.api.DiffResult;
+import sonia.scm.repository.api.DiffResultCommandBuilder;
+import sonia.scm.repository.api.Hunk;
+import sonia.scm.repository.api.RepositoryService;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class DiffResultCacheTest {
+
+  private static final Repository REPOSITORY = new Repository("1", "git", "space", "X");
+  private static final PullRequest PULL_REQUEST = new PullRequest("42", "feature", "main");
+
+  @Mock
+  private RepositoryService repositoryService;
+  @Mock
+  private BranchesCommandBuilder branchesCommand;
+  @Mock(answer = Answers.RETURNS_SELF)
+  private DiffResultCommandBuilder diffResultCommand;
+
+  private DiffResultCache cache;
+
+  @BeforeEach
+  void initRepositoryService() throws IOException {
+    cache = new DiffResultCache(new SimpleMeterRegistry(), 1024 * 1024);
+    when(repositoryService.getRepository()).thenReturn(REPOSITORY);
+    when(repositoryService.isSupported(Command.BRANCHES)).thenReturn(true);
+    when(repositoryService.getBranchesCommand()).thenReturn(branchesCommand);
+    when(repositoryService.getDiffResultCommand()).thenReturn(diffResultCommand);
+    when(diffResultCommand.getDiffResult()).thenAnswer(invocation -> createDiffResult());
+    mockBranches("abc", "def");
+  }
+
+  @Test
+  void shouldComputeDiffForResolvedRevisionsOnlyOnce() throws IOException {
+    cache.get(repositoryService, PULL_REQUEST);
+    cache.get(repositoryService, PULL_REQUEST);
+
+    verify(diffResultCommand).setRevision("abc");
+    verify(diffResultCommand).setAncestorChangeset("def");
+    verify(diffResultCommand).getDiffResult();
+    assertThat(cache.getMetrics().getHitCount()).isEqualTo(1);
+    assertThat(cache.getMetrics().getMissCount()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldComputeNewDiffIfBranchHasChanged() throws IOException {
+    cache.get(repositoryService, PULL_REQUEST);
+    mockBranches("xyz", "def");
+    cache.get(repositoryService, PULL_REQUEST);
+
+    verify(diffResultCommand).setRevision("xyz");
+    verify(diffResultCommand, times(2)).getDiffResult();
+  }
+
+  @Test
+  void shouldKeepDiffAfterRepositoryServiceIsClosed() throws IOException {
+    DiffResult diffResult = cache.get(repositoryService, PULL_REQUEST);
+
+    DiffFile diffFile = diffResult.iterator().next();
+    assertThat(diffFile.getNewPath()).isEqualTo("README.md");
+    Hunk hunk = diffFile.iterator().next();
+    assertThat(hunk.getRawHeader()).isEqualTo(createDiffResult().iterator().next().iterator().next().getRawHeader());
+    assertThat(hunk.iterator().next().getNewLineNumber()).hasValue(1);
+
+    DiffFile cachedFile = cache.get(repositoryService, PULL_REQUEST).iterator().next();
+    assertThat(cachedFile.iterator().next().iterator().next().getNewLineNumber()).hasValue(1);
+  }
+
+  @Test
+  void shouldNotCacheDiffIfBranchesCannotBeResolved() throws IOException {
+    when(branchesCommand.getBranches()).thenReturn(new Branches(List.of(Branch.normalBranch("main", "def"))));
+
+    cache.get(repositoryService, PULL_REQUEST);
+    cache.get(repositoryService, PULL_REQUEST);
+
+    verify(diffResultCommand, times(2)).setRevision("feature");
+    assertThat(cache.getMetrics().getMissCount()).isZero();
+  }
+
+  @Test
+  void shouldNotResolveBranchesIfDisabled() throws IOException {
+    cache = new DiffResultCache(new SimpleMeterRegistry(), 0);
+
+    cache.get(repositoryService, PULL_REQUEST);
+
+    verify(repositoryService, never()).getBranchesCommand();
+    verify(diffResultCommand).setRevision("feature");
+    verify(diffResultCommand).setAncestorChangeset("main");
+  }
+
+  @Test
+  void shouldRemoveDiffsOfDeletedRepository() throws IOException {
+    cache.get(repositoryService, PULL_REQUEST);
+
+    cache.onRepositoryDeleted(new RepositoryEvent(HandlerEventType.DELETE, REPOSITORY));
+    cache.get(repositoryService, PULL_REQUEST);
+
+    verify(diffResultCommand, times(2)).getDiffResult();
+  }
+
+  private void mockBranches(String sourceRevision, String targetRevision) throws IOException {
+    when(branchesCommand.getBranches()).thenReturn(new Branches(List.of(
+      Branch.normalBranch("feature", sourceRevision),
+      Branch.normalBranch("main", targetRevision)
+    )));
+  }
+
+  private static DiffResult createDiffResult() {
+    return new MockedDiffResult.Builder()
+      .diffFile(
+        new MockedDiffFile.Builder()
+          .newPath("README.md")
+          .addHunk(
+            new MockedHunk.Builder()
+              .addDiffLine(new MockedDiffLine.Builder().oldLineNumber(1).newLineNumber(1).content("Don't panic").get())
+              .get()
+          )
+          .get()
+      )
+      .get();
+  }
+}
@@ -17,12 +17,14 @@
 package com.cloudogu.scm.review.comment.service;
 
 import com.cloudogu.scm.review.pullrequest.service.PullRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import sonia.scm.repository.Repository;
 import sonia.scm.repository.api.DiffFile;
@@ -58,6 +60,8 @@ class LocationVerifierTest {
 
   @Mock
   private RepositoryServiceFactory repositoryServiceFactory;
+  @Spy
+  private DiffResultCache diffResultCache = new DiffResultCache(new SimpleMeterRegistry(), 0);
   @InjectMocks
   private LocationVerifier locationVerifier;
 
@@ -85,7 +89,7 @@ class LocationVerifierTest {
       lenient().when(diffFile.getOldPath()).thenReturn("README");
       Hunk hunk1 = mock(Hunk.class);
       Hunk hunk2 = mock(Hunk.class);
-      lenient().when(diffFile.iterator()).thenReturn(List.of(hunk1, hunk2).iterator());
+      lenient().when(diffFile.iterator()).thenAnswer(invocation -> List.of(hunk1, hunk2).iterator());
       lenient().when(hunk1.getRawHeader()).thenReturn("@@ -1,5 +1,3 @@");
       lenient().when(hunk1.getNewStart()).thenReturn(1);
       lenient().when(hunk1.getNewLineCount()).thenReturn(3);
@@ -111,7 +115,7 @@ class LocationVerifierTest {
       lenient().when(deletedFile.getNewPath()).thenReturn("/dev/null");
       lenient().when(deletedFile.getOldPath()).thenReturn("deleted");
       Hunk deletedHunk = mock(Hunk.class);
-      lenient().when(deletedFile.iterator()).thenReturn(List.of(deletedHunk).iterator());
+      lenient().when(deletedFile.iterator()).thenAnswer(invocation -> List.of(deletedHunk).iterator());
       lenient().when(deletedHunk.getRawHeader()).thenReturn("@@ -1,2 +0,0 @@");
       lenient().when(deletedHunk.getNewStart()).thenReturn(0);
       lenient().when(deletedHunk.getNewLineCount()).thenReturn(0);
@@ -122,7 +126,7 @@ class LocationVerifierTest {
           new MockDiffLine(1, null),
           (DiffLine) new MockDiffLine(2, null)
         ).iterator());
-      when(diffResult.iterator()).thenReturn(List.of(diffFile, deletedFile).iterator());
+      when(diffResult.iterator()).thenAnswer(invocation -> List.of(diffFile, deletedFile).iterator());
     }
 
     @Test
@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.review.comment.service;
+
+import com.cloudogu.scm.review.pullrequest.service.PullRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.repository.api.DiffFile;
+import sonia.scm.repository.api.DiffResult;
+import sonia.scm.repository.api.DiffResultCommandBuilder;
+import sonia.scm.repository.api.Hunk;
+import sonia.scm.repository.api.RepositoryService;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Answers.RETURNS_SELF;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class PullRequestDiffTest {
+
+  private static final PullRequest PULL_REQUEST = new PullRequest("42", "feature", "main");
+
+  private final DiffResultCache diffResultCache = new DiffResultCache(new SimpleMeterRegistry(), 0);
+
+  @Mock
+  private RepositoryService repositoryService;
+
+  @Test
+  void shouldNotOpenRepositoryServiceIfDiffIsNotUsed() {
+    AtomicInteger openedServices = new AtomicInteger();
+
+    new PullRequestDiff(() -> {
+      openedServices.incrementAndGet();
+      return repositoryService;
+    }, PULL_REQUEST, diffResultCache).close();
+
+    assertThat(openedServices).hasValue(0);
+  }
+
+  @Test
+  void shouldComputeDiffOnlyOnce() throws IOException {
+    DiffResultCommandBuilder diffResultCommand = mock(DiffResultCommandBuilder.class, RETURNS_SELF);
+    when(repositoryService.getDiffResultCommand()).thenReturn(diffResultCommand);
+    DiffResult diffResult = mock(DiffResult.class);
+    when(diffResultCommand.getDiffResult()).thenReturn(diffResult);
+
+    try (PullRequestDiff diff = new PullRequestDiff(() -> repositoryService, PULL_REQUEST, diffResultCache)) {
+      assertThat(diff.getDiffResult()).isSameAs(diffResult);
+      assertThat(diff.getDiffResult()).isSameAs(diffResult);
+    }
+
+    verify(diffResultCommand).setRevision("feature");
+    verify(diffResultCommand).setAncestorChangeset("main");
+    verify(diffResultCommand).getDiffResult();
+    verify(repositoryService).close();
+  }
+
+  @Test
+  void shouldComputeDiffForCommentedFileOnly() throws IOException {
+    DiffResultCommandBuilder diffResultCommand = mockLargeDiff();
+
+    try (PullRequestDiff diff = new PullRequestDiff(() -> repositoryService, PULL_REQUEST, diffResultCache)) {
+      DiffResult diffResult = diff.getDiffResult(new Location("src/file-42.txt"));
+
+      assertThat(diffResult).extracting(DiffFile::getNewPath).containsExactly("src/file-42.txt");
+      assertThat(diff.getDiffResult(new Location("src/file-42.txt"))).isSameAs(diffResult);
+    }
+
+    verify(diffResultCommand).setPath("src/file-42.txt");
+    verify(diffResultCommand).getDiffResult();
+  }
+
+  @Test
+  void shouldUseCompleteDiffIfCommentedLineIsNotPartOfFileDiff() throws IOException {
+    DiffResultCommandBuilder diffResultCommand = mock(DiffResultCommandBuilder.class, RETURNS_SELF);
+    when(repositoryService.getDiffResultCommand()).thenReturn(diffResultCommand);
+    Hunk addedHunk = mockHunk("@@ -0,0 +1,20 @@", 0, 0, 1, 20);
+    DiffResult fileDiffResult = new MockedDiffResult.Builder()
+      .diffFile(new MockedDiffFile.Builder().oldPath("/dev/null").newPath("README.md").addHunk(addedHunk).get())
+      .get();
+    Hunk renamedHunk = mockHunk("@@ -10,5 +10,6 @@", 10, 5, 10, 6);
+    DiffResult completeDiffResult = new MockedDiffResult.Builder()
+      .diffFile(new MockedDiffFile.Builder().oldPath("README").newPath("README.md").addHunk(renamedHunk).get())
+      .get();
+    when(diffResultCommand.getDiffResult()).thenReturn(fileDiffResult, completeDiffResult);
+
+    try (PullRequestDiff diff = new PullRequestDiff(() -> repositoryService, PULL_REQUEST, diffResultCache)) {
+      assertThat(diff.getDiffResult(new Location("README.md", "@@ -10,5 +10,6 @@", null, 12))).isSameAs(completeDiffResult);
+      assertThat(diff.getDiffResult(new Location("other.txt"))).isSameAs(completeDiffResult);
+    }
+
+    verify(diffResultCommand, times(2)).getDiffResult();
+  }
+
+  @Test
+  void shouldUseFileDiffForCommentOnAddedFile() throws IOException {
+    DiffResultCommandBuilder diffResultCommand = mock(DiffResultCommandBuilder.class, RETURNS_SELF);
+    when(repositoryService.getDiffResultCommand()).thenReturn(diffResultCommand);
+    DiffFile addedFile = mock(DiffFile.class);
+    when(addedFile.getNewPath()).thenReturn("vendor/generated.js");
+    Hunk addedHunk = mockHunk("@@ -0,0 +1,20 @@", 0, 0, 1, 20);
+    when(addedFile.iterator()).thenAnswer(invocation -> List.of(addedHunk).iterator());
+    DiffResult fileDiffResult = new MockedDiffResult.Builder().diffFile(addedFile).get();
+    when(diffResultCommand.getDiffResult()).thenReturn(fileDiffResult);
+
+    try (PullRequestDiff diff = new PullRequestDiff(() -> repositoryService, PULL_REQUEST, diffResultCache)) {
+      assertThat(diff.getDiffResult(new Location("vendor/generated.js", "@@ -0,0 +1,20 @@", null, 7))).isSameAs(fileDiffResult);
+      assertThat(diff.getDiffResult(new Location("vendor/generated.js", null, null, 20))).isSameAs(fileDiffResult);
+    }
+
+    verify(diffResultCommand).setPath("vendor/generated.js");
+    verify(diffResultCommand).getDiffResult();
+  }
+
+  /**
+   * A pull request with 5.000 changed files: commenting on one of them must not compute the diff of all files.
+   */
+  @Test
+  void shouldNotComputeCompleteDiffOfLargePullRequest() throws IOException {
+    DiffResultCommandBuilder diffResultCommand = mockLargeDiff();
+
+    try (PullRequestDiff diff = new PullRequestDiff(() -> repositoryService, PULL_REQUEST, diffResultCache)) {
+      for (int i = 0; i < 100; ++i) {
+        assertThat(diff.getDiffResult(new Location("src/file-" + i + ".txt"))).hasSize(1);
+      }
+    }
+
+    verify(diffResultCommand, times(100)).setPath(anyString());
+    verify(diffResultCommand, times(100)).getDiffResult();
+  }
+
+  private DiffResultCommandBuilder mockLargeDiff() throws IOException {
+    DiffResultCommandBuilder diffResultCommand = mock(DiffResultCommandBuilder.class, RETURNS_SELF);
+    when(repositoryService.getDiffResultCommand()).thenReturn(diffResultCommand);
+    AtomicReference<String> path = new AtomicReference<>();
+    when(diffResultCommand.setPath(anyString())).thenAnswer(invocation -> {
+      path.set(invocation.getArgument(0));
+      return diffResultCommand;
+    });
+    when(diffResultCommand.getDiffResult()).thenAnswer(invocation -> {
+      MockedDiffResult.Builder builder = new MockedDiffResult.Builder();
+      for (int i = 0; i < 5000; ++i) {
+        String file = "src/file-" + i + ".txt";
+        if (path.get() == null || path.get().equals(file)) {
+          builder.diffFile(new MockedDiffFile.Builder().oldPath(file).newPath(file).get());
+        }
+      }
+      path.set(null);
+      return builder.get();
+    });
+    return diffResultCommand;
+  }
+
+  private Hunk mockHunk(String header, int oldStart, int oldLineCount, int newStart, int newLineCount) {
+    Hunk hunk = mock(Hunk.class);
+    lenient().when(hunk.getRawHeader()).thenReturn(header);
+    lenient().when(hunk.getOldStart()).thenReturn(oldStart);
+    lenient().when(hunk.getOldLineCount()).thenReturn(oldLineCount);
+    lenient().when(hunk.getNewStart()).thenReturn(newStart);
+    lenient().when(hunk.getNewLineCount()).thenReturn(newLineCount);
+    return hunk;
+  }
+}
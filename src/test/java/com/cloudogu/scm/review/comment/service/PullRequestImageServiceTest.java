@@ -51,6 +51,7 @@ import java.util.Set;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.when;
 
@@ -96,10 +97,13 @@ class PullRequestImageServiceTest {
     featureComment = TestData.createComment();
     featureComment.addReply(firstFeatureReply);
     featureComment.addReply(secondFeatureReply);
+    firstFeatureReply.setParentId(featureComment.getId());
+    secondFeatureReply.setParentId(featureComment.getId());
 
     hotfixComment = TestData.createComment();
     hotfixComment.setId("2");
     hotfixComment.addReply(thirdHotfixReply);
+    thirdHotfixReply.setParentId(hotfixComment.getId());
 
     blobStoreFactory = new InMemoryBlobStoreFactory();
     imageService = new PullRequestImageService(blobStoreFactory, repositoryResolver, commentStoreBuilder, 8_000_000);
@@ -109,6 +113,10 @@ class PullRequestImageServiceTest {
     lenient().when(featureCommentStore.getAll(featurePullRequest.getId())).thenReturn(List.of(featureComment, hotfixComment));
     lenient().when(featureCommentStore.getPullRequestCommentById(featurePullRequest.getId(), featureComment.getId())).thenReturn(Optional.of(featureComment));
     lenient().when(featureCommentStore.getPullRequestCommentById(featurePullRequest.getId(), hotfixComment.getId())).thenReturn(Optional.of(hotfixComment));
+    lenient().when(featureCommentStore.getReply(eq(featurePullRequest.getId()), any())).thenReturn(Optional.empty());
+    List.of(firstFeatureReply, secondFeatureReply, thirdHotfixReply).forEach(
+      reply -> lenient().when(featureCommentStore.getReply(featurePullRequest.getId(), reply.getId())).thenReturn(Optional.of(reply))
+    );
   }
 
   private InputStream openImage(Path path) throws IOException {
@@ -236,15 +244,11 @@ class PullRequestImageServiceTest {
     @Test
     @SubjectAware(permissions = "repository:commentPullRequest:*")
     void shouldThrowErrorBecauseCommentWasNotFound() {
-      when(
-        featureCommentStore.getPullRequestCommentById(featurePullRequest.getId(), featureComment.getId())
-      ).thenReturn(Optional.empty());
-
       assertThatThrownBy(() -> {
         imageService.createReplyImage(
           new NamespaceAndName(repository.getNamespace(), repository.getName()),
           featurePullRequest.getId(),
-          featureComment.getId(),
+          "unknownCommentId",
           firstFeatureReply.getId(),
           imageAHash,
           "image/png",
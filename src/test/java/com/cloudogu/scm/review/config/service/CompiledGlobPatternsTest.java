@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.review.config.service;
+
+import org.junit.jupiter.api.Test;
+import sonia.scm.util.GlobUtil;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompiledGlobPatternsTest {
+
+  private static final List<String> PATHS = List.of(
+    "README.md",
+    "README",
+    "pom.xml",
+    "src/main/java/Main.java",
+    "src/test/java/MainTest.java",
+    "docs/index.md",
+    "docs",
+    "doc",
+    "main/something.txt",
+    "a.b/c",
+    "axb/c",
+    ""
+  );
+
+  @Test
+  void shouldMatchExactPatterns() {
+    CompiledGlobPatterns patterns = new CompiledGlobPatterns(List.of("README.md", "pom.xml"));
+
+    assertThat(patterns.matches("README.md")).isTrue();
+    assertThat(patterns.matches("pom.xml")).isTrue();
+    assertThat(patterns.matches("README")).isFalse();
+    assertThat(patterns.matches("src/pom.xml")).isFalse();
+  }
+
+  @Test
+  void shouldMatchPrefixPatterns() {
+    CompiledGlobPatterns patterns = new CompiledGlobPatterns(List.of("docs/*", "src/main*"));
+
+    assertThat(patterns.matches("docs/index.md")).isTrue();
+    assertThat(patterns.matches("docs/")).isTrue();
+    assertThat(patterns.matches("docs")).isFalse();
+    assertThat(patterns.matches("src/main/java/Main.java")).isTrue();
+    assertThat(patterns.matches("src/test/java/MainTest.java")).isFalse();
+  }
+
+  @Test
+  void shouldMatchOtherPatterns() {
+    CompiledGlobPatterns patterns = new CompiledGlobPatterns(List.of("*/main/*", "doc?"));
+
+    assertThat(patterns.matches("src/main/java/Main.java")).isTrue();
+    assertThat(patterns.matches("main/something.txt")).isFalse();
+    assertThat(patterns.matches("docs")).isTrue();
+    assertThat(patterns.matches("doc")).isFalse();
+  }
+
+  @Test
+  void shouldNotMatchAnythingWithoutPatterns() {
+    CompiledGlobPatterns patterns = new CompiledGlobPatterns(List.of());
+
+    assertThat(patterns.matches("README.md")).isFalse();
+    assertThat(patterns.matches("")).isFalse();
+  }
+
+  @Test
+  void shouldMatchLikeGlobUtil() {
+    List<String> globs = List.of("*", "README.md", "docs/*", "doc*", "*/main/*", "doc?", "*.md", "a.b/*", "src/*/java/*");
+
+    for (String glob : globs) {
+      CompiledGlobPatterns patterns = new CompiledGlobPatterns(List.of(glob));
+      for (String path : PATHS) {
+        assertThat(patterns.matches(path))
+          .as("glob %s with path %s", glob, path)
+          .isEqualTo(GlobUtil.matches(glob, path));
+      }
+    }
+
+    CompiledGlobPatterns combined = new CompiledGlobPatterns(globs.subList(1, globs.size()));
+    for (String path : PATHS) {
+      assertThat(combined.matches(path))
+        .as("all globs with path %s", path)
+        .isEqualTo(globs.subList(1, globs.size()).stream().anyMatch(glob -> GlobUtil.matches(glob, path)));
+    }
+  }
+}
@@ -18,6 +18,7 @@ package com.cloudogu.scm.review.config.service;
 
 import com.cloudogu.scm.review.RepositoryResolver;
 import com.cloudogu.scm.review.config.service.ConfigService.BranchProtectionMatcher;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.apache.shiro.subject.Subject;
 import org.apache.shiro.util.ThreadContext;
 import org.junit.jupiter.api.AfterEach;
@@ -28,6 +29,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Answers;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.cache.MapCacheManager;
 import sonia.scm.group.GroupCollector;
 import sonia.scm.repository.Repository;
 import sonia.scm.repository.RepositoryTestData;
@@ -43,6 +45,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -81,7 +84,7 @@ class ConfigServiceTest {
       .withType(GlobalPullRequestConfig.class)
       .withName("pullRequestConfig")
       .build()).thenReturn(globalStore);
-    service = new ConfigService(storeFactory, groupCollector, repositoryResolver);
+    service = new ConfigService(storeFactory, groupCollector, repositoryResolver, new PullRequestConfigCache(new MapCacheManager(), new SimpleMeterRegistry(), true));
   }
 
   @BeforeEach
@@ -376,6 +379,48 @@ class ConfigServiceTest {
     return globalConfig;
   }
 
+  @Test
+  void shouldEvaluateConfigOnlyOnce() {
+    mockRepoConfig(true, true);
+
+    BasePullRequestConfig first = service.evaluateConfig(REPOSITORY);
+    BasePullRequestConfig second = service.evaluateConfig(REPOSITORY);
+
+    assertThat(second).isSameAs(first);
+    verify(repositoryStore, times(1)).getOptional();
+  }
+
+  @Test
+  void shouldEvaluateConfigAgainAfterRepositoryConfigHasBeenChanged() {
+    service.evaluateConfig(REPOSITORY);
+
+    RepositoryPullRequestConfig config = mockRepoConfig(true, true);
+    service.setRepositoryPullRequestConfig(REPOSITORY, config);
+
+    assertThat(service.evaluateConfig(REPOSITORY)).isSameAs(config);
+  }
+
+  @Test
+  void shouldEvaluateConfigAgainAfterNamespaceConfigHasBeenChanged() {
+    service.evaluateConfig(REPOSITORY);
+
+    NamespacePullRequestConfig config = mockNamespaceConfig(true, false);
+    service.setNamespacePullRequestConfig(REPOSITORY.getNamespace(), config);
+
+    assertThat(service.evaluateConfig(REPOSITORY)).isSameAs(config);
+  }
+
+  @Test
+  void shouldEvaluateConfigAgainAfterGlobalConfigHasBeenChanged() {
+    mockRepoConfig(true, true);
+    service.evaluateConfig(REPOSITORY);
+
+    GlobalPullRequestConfig config = mockGlobalConfig(true, true);
+    service.setGlobalPullRequestConfig(config);
+
+    assertThat(service.evaluateConfig(REPOSITORY)).isSameAs(config);
+  }
+
   private NamespacePullRequestConfig mockNamespaceConfig(boolean overwrite, boolean disableRepositoryConfig) {
     NamespacePullRequestConfig config = new NamespacePullRequestConfig();
     config.setOverwriteParentConfig(overwrite);
@@ -448,5 +493,29 @@ class ConfigServiceTest {
       assertThat(matcher.matches("master", "README.md")).isFalse();
       assertThat(matcher.matches("release/1.0.0", "README.md")).isTrue();
     }
+
+    @Test
+    void shouldCombinePathsOfAllMatchingBranchPatterns() {
+      BranchProtectionMatcher matcher = new BranchProtectionMatcher(asList(
+        new BasePullRequestConfig.BranchProtection("release/*", "docs/*"),
+        new BasePullRequestConfig.BranchProtection("release/1.*", "pom.xml"),
+        new BasePullRequestConfig.BranchProtection("master", "src/*")
+      ));
+
+      assertThat(matcher.matches("release/1.0.0", "docs/index.md")).isTrue();
+      assertThat(matcher.matches("release/1.0.0", "pom.xml")).isTrue();
+      assertThat(matcher.matches("release/1.0.0", "src/main/java")).isFalse();
+      assertThat(matcher.matches("release/2.0.0", "pom.xml")).isFalse();
+      assertThat(matcher.matches("master", "src/main/java")).isTrue();
+    }
+
+    @Test
+    void shouldDetectProtectedBranches() {
+      BranchProtectionMatcher matcher = new BranchProtectionMatcher(
+        singletonList(new BasePullRequestConfig.BranchProtection("release/*", "*")));
+
+      assertThat(matcher.isBranchProtected("release/1.0.0")).isTrue();
+      assertThat(matcher.isBranchProtected("master")).isFalse();
+    }
   }
 }
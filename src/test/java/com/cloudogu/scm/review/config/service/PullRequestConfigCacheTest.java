@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.review.config.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import sonia.scm.HandlerEventType;
+import sonia.scm.cache.MapCacheManager;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryEvent;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PullRequestConfigCacheTest {
+
+  private final Repository repository = new Repository("1", "git", "space", "X");
+  private final Repository otherRepository = new Repository("2", "git", "other", "Y");
+
+  private final AtomicInteger loadCount = new AtomicInteger();
+
+  @Test
+  void shouldLoadConfigOnlyOnce() {
+    PullRequestConfigCache cache = createCache(true);
+
+    cache.get(repository, this::load);
+    cache.get(repository, this::load);
+
+    assertThat(loadCount).hasValue(1);
+    assertThat(cache.getMetrics().getHitCount()).isEqualTo(1);
+    assertThat(cache.getMetrics().getMissCount()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldLoadAgainAfterRepositoryHasBeenModified() {
+    PullRequestConfigCache cache = createCache(true);
+
+    cache.get(repository, this::load);
+    cache.onRepositoryEvent(new RepositoryEvent(HandlerEventType.MODIFY, repository));
+    cache.get(repository, this::load);
+
+    assertThat(loadCount).hasValue(2);
+  }
+
+  @Test
+  void shouldLoadAgainAfterRepositoryHasBeenDeleted() {
+    PullRequestConfigCache cache = createCache(true);
+
+    cache.get(repository, this::load);
+    cache.onRepositoryEvent(new RepositoryEvent(HandlerEventType.DELETE, repository));
+    cache.get(repository, this::load);
+
+    assertThat(loadCount).hasValue(2);
+  }
+
+  @Test
+  void shouldInvalidateOnlyRepositoriesOfNamespace() {
+    PullRequestConfigCache cache = createCache(true);
+
+    cache.get(repository, this::load);
+    cache.get(otherRepository, this::load);
+    cache.invalidateNamespace("space");
+    cache.get(repository, this::load);
+    cache.get(otherRepository, this::load);
+
+    assertThat(loadCount).hasValue(3);
+  }
+
+  @Test
+  void shouldInvalidateAllRepositories() {
+    PullRequestConfigCache cache = createCache(true);
+
+    cache.get(repository, this::load);
+    cache.get(otherRepository, this::load);
+    cache.invalidateAll();
+    cache.get(repository, this::load);
+    cache.get(otherRepository, this::load);
+
+    assertThat(loadCount).hasValue(4);
+  }
+
+  @Test
+  void shouldNotCacheConfigLoadedDuringInvalidation() {
+    PullRequestConfigCache cache = createCache(true);
+
+    cache.get(repository, () -> {
+      BasePullRequestConfig outdated = load();
+      cache.invalidate(repository);
+      return outdated;
+    });
+    cache.get(repository, this::load);
+
+    assertThat(loadCount).hasValue(2);
+  }
+
+  @Test
+  void shouldAlwaysLoadIfDisabled() {
+    PullRequestConfigCache cache = createCache(false);
+
+    cache.get(repository, this::load);
+    cache.get(repository, this::load);
+
+    assertThat(loadCount).hasValue(2);
+  }
+
+  private PullRequestConfigCache createCache(boolean enabled) {
+    return new PullRequestConfigCache(new MapCacheManager(), new SimpleMeterRegistry(), enabled);
+  }
+
+  private BasePullRequestConfig load() {
+    loadCount.incrementAndGet();
+    return new GlobalPullRequestConfig();
+  }
+}
@@ -19,6 +19,7 @@ package com.cloudogu.scm.review.emailnotification;
 import com.cloudogu.scm.review.TestData;
 import com.cloudogu.scm.review.comment.service.Comment;
 import com.cloudogu.scm.review.comment.service.CommentEvent;
+import com.cloudogu.scm.review.comment.service.CommentsAddedEvent;
 import com.cloudogu.scm.review.comment.service.MentionEvent;
 import com.cloudogu.scm.review.comment.service.Reply;
 import com.cloudogu.scm.review.comment.service.ReplyEvent;
@@ -51,6 +52,7 @@ import sonia.scm.repository.Repository;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
@@ -164,6 +166,31 @@ class EmailNotificationHookTest {
     reset(service);
   }
 
+  @Test
+  void shouldSendOneEmailForAddedComments() throws Exception {
+    Comment secondComment = TestData.createComment();
+    CommentsAddedEvent event = new CommentsAddedEvent(
+      repository, pullRequest, List.of(comment, Comment.createSystemComment("1"), secondComment)
+    );
+
+    emailNotificationHook.handleCommentsAddedEvents(event);
+
+    ArgumentCaptor<MailTextResolver> resolverCaptor = ArgumentCaptor.forClass(MailTextResolver.class);
+    verify(service).sendEmail(eq(of(subscribedButNotReviewer, subscribedAndReviewer)), resolverCaptor.capture());
+    assertThat(resolverCaptor.getValue()).isInstanceOf(CommentsAddedMailTextResolver.class);
+  }
+
+  @Test
+  void shouldSendCommentEmailForSingleAddedComment() throws Exception {
+    CommentsAddedEvent event = new CommentsAddedEvent(
+      repository, pullRequest, List.of(comment, Comment.createSystemComment("1"))
+    );
+
+    emailNotificationHook.handleCommentsAddedEvents(event);
+
+    verify(service).sendEmail(eq(of(subscribedButNotReviewer, subscribedAndReviewer)), isA(CommentEventMailTextResolver.class));
+  }
+
   @TestFactory
   Stream<DynamicTest> sendingPREmailTestFactory() {
     ArrayList<PullRequestEvent> events = Lists.newArrayList(
@@ -20,6 +20,7 @@ import com.cloudogu.scm.review.TestData;
 import com.cloudogu.scm.review.comment.service.Comment;
 import com.cloudogu.scm.review.comment.service.CommentEvent;
 import com.cloudogu.scm.review.comment.service.CommentTransition;
+import com.cloudogu.scm.review.comment.service.CommentsAddedEvent;
 import com.cloudogu.scm.review.comment.service.ExecutedTransition;
 import com.cloudogu.scm.review.emailnotification.PullRequestStatusChangedMailTextResolver.PullRequestStatusType;
 import com.cloudogu.scm.review.pullrequest.service.PullRequest;
@@ -46,6 +47,7 @@ import sonia.scm.template.TemplateType;
 
 import java.io.Reader;
 import java.net.URL;
+import java.util.List;
 import java.util.Locale;
 import java.util.Set;
 
@@ -152,6 +154,19 @@ class MailTextResolverTest {
     assertEmail(renderer, "added");
   }
 
+  @Test
+  void shouldRenderOneEmailForAddedComments() {
+    CommentsAddedEvent event = new CommentsAddedEvent(repository, pullRequest, List.of(comment, oldComment));
+
+    CommentsAddedMailTextResolver renderer = new CommentsAddedMailTextResolver(event, event.getComments());
+    when(subject.getPrincipals().getPrimaryPrincipal()).thenReturn("dent");
+
+    assertEmail(renderer, "Comments added");
+    assertThat(renderer.getContentTemplateModel("http://localhost"))
+      .containsEntry("comments", List.of(comment, oldComment))
+      .containsEntry("count", 2);
+  }
+
   @Test
   void shouldRenderEmailOnCommentTransition() {
     Comment taskComment = oldComment.clone();
@@ -19,6 +19,7 @@ package com.cloudogu.scm.review.guard;
 import com.cloudogu.scm.editor.ChangeGuard.Changes;
 import com.cloudogu.scm.editor.ChangeObstacle;
 import com.cloudogu.scm.review.config.service.ConfigService;
+import com.cloudogu.scm.review.config.service.ConfigService.BranchProtectionMatcher;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
@@ -43,13 +44,16 @@ class MergeOnlyChangeGuardTest {
   RepositoryManager repositoryManager;
   @Mock
   ConfigService configService;
+  @Mock
+  BranchProtectionMatcher matcher;
   @InjectMocks
   MergeOnlyChangeGuard changeGuard;
 
   @Test
   void shouldProtectProtectedBranchesAndPath() {
     when(repositoryManager.get(REPOSITORY.getNamespaceAndName())).thenReturn(REPOSITORY);
-    when(configService.isBranchPathProtected(REPOSITORY, "master", "src/main")).thenReturn(true);
+    when(configService.getBranchProtectionMatcher(REPOSITORY)).thenReturn(matcher);
+    when(matcher.matches("master", "src/main")).thenReturn(true);
     Changes changes = mock(Changes.class);
     when(changes.getFilesToCreate()).thenReturn(List.of("src/main"));
     Collection<ChangeObstacle> obstacles = changeGuard.getObstacles(REPOSITORY.getNamespaceAndName(), "master", changes);
@@ -60,7 +64,8 @@ class MergeOnlyChangeGuardTest {
   @Test
   void shouldNotCareForUnprotectedBranchesAndPath() {
     when(repositoryManager.get(REPOSITORY.getNamespaceAndName())).thenReturn(REPOSITORY);
-    when(configService.isBranchPathProtected(REPOSITORY, "develop", "src/main")).thenReturn(false);
+    when(configService.getBranchProtectionMatcher(REPOSITORY)).thenReturn(matcher);
+    when(matcher.matches("develop", "src/main")).thenReturn(false);
     Changes changes = mock(Changes.class);
     when(changes.getFilesToCreate()).thenReturn(List.of("src/main"));
     Collection<ChangeObstacle> obstacles = changeGuard.getObstacles(REPOSITORY.getNamespaceAndName(), "develop", changes);
@@ -17,14 +17,16 @@
 package com.cloudogu.scm.review.mcp;
 
 import com.cloudogu.mcp.ToolResult;
-import com.cloudogu.scm.review.comment.service.Comment;
-import com.cloudogu.scm.review.comment.service.CommentStoreFactory;
-import com.cloudogu.scm.review.comment.service.CommentType;
+import com.cloudogu.scm.review.StoreLocks;
+import com.cloudogu.scm.review.comment.service.CommentSummary;
+import com.cloudogu.scm.review.comment.service.CommentSummaryStore;
+import com.cloudogu.scm.review.comment.service.CommentSummaryStoreFactory;
 import com.cloudogu.scm.review.pullrequest.service.MergeObstacle;
 import com.cloudogu.scm.review.pullrequest.service.MergeService;
 import com.cloudogu.scm.review.pullrequest.service.PullRequest;
 import com.cloudogu.scm.review.pullrequest.service.PullRequestStatus;
 import com.cloudogu.scm.review.pullrequest.service.PullRequestStoreFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.assertj.core.api.InstanceOfAssertFactories;
 import org.github.sdorra.jse.ShiroExtension;
 import org.github.sdorra.jse.SubjectAware;
@@ -50,7 +52,7 @@ import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.when;
 
 @ExtendWith({QueryableStoreExtension.class, MockitoExtension.class, ShiroExtension.class})
-@QueryableStoreExtension.QueryableTypes({PullRequest.class, Comment.class})
+@QueryableStoreExtension.QueryableTypes({PullRequest.class, CommentSummary.class})
 @SubjectAware(value = "trillian")
 class ListPullRequestToolTest {
 
@@ -72,12 +74,13 @@ class ListPullRequestToolTest {
   private PullRequest pullRequest3;
 
   @BeforeEach
-  void setUpTool(PullRequestStoreFactory pullRequestStoreFactory, CommentStoreFactory commentStoreFactory) {
-    tool = new ListPullRequestTool(pullRequestStoreFactory, commentStoreFactory, repositoryManager, pullRequestMapper, mergeService);
+  void setUpTool(PullRequestStoreFactory pullRequestStoreFactory, CommentSummaryStoreFactory commentSummaryStoreFactory) {
+    CommentSummaryStore commentSummaryStore = new CommentSummaryStore(commentSummaryStoreFactory, new StoreLocks(new SimpleMeterRegistry(), 16));
+    tool = new ListPullRequestTool(pullRequestStoreFactory, commentSummaryStore, repositoryManager, pullRequestMapper, mergeService);
   }
 
   @BeforeEach
-  void prepareData(PullRequestStoreFactory pullRequestStoreFactory, CommentStoreFactory commentStoreFactory) {
+  void prepareData(PullRequestStoreFactory pullRequestStoreFactory, CommentSummaryStoreFactory commentSummaryStoreFactory) {
     repository1 = new Repository("42", "git", "hitchhiker", "hog");
     mockRepository(repository1);
     repository2 = new Repository("23", "git", "hacker", "secret");
@@ -93,10 +96,8 @@ class ListPullRequestToolTest {
     pullRequest1.setCreationDate(Instant.parse("1978-01-01T00:00:00Z"));
     pullRequest1.setLastModified(Instant.parse("2020-01-01T00:00:00Z"));
     mockPullRequest(pullRequestStoreFactory, repository1, pullRequest1);
-    try (QueryableMutableStore<Comment> commentStore = commentStoreFactory.getMutable(repository1.getId(), pullRequest1.getId())) {
-      Comment comment = Comment.createComment("42", "Hijack Heart of Gold", "trillian", null);
-      comment.setType(CommentType.TASK_DONE);
-      commentStore.put(comment);
+    try (QueryableMutableStore<CommentSummary> summaryStore = commentSummaryStoreFactory.getMutable(repository1.getId())) {
+      summaryStore.put(pullRequest1.getId(), new CommentSummary(0, 1, 1, null));
     }
 
     pullRequest2 = new PullRequest("2", "develop", "main");
@@ -107,10 +108,8 @@ class ListPullRequestToolTest {
     pullRequest2.setCreationDate(Instant.parse("2001-01-01T00:00:00Z"));
     pullRequest2.setLastModified(Instant.parse("2001-01-01T00:00:00Z"));
     mockPullRequest(pullRequestStoreFactory, repository1, pullRequest2);
-    try (QueryableMutableStore<Comment> commentStore = commentStoreFactory.getMutable(repository1.getId(), pullRequest2.getId())) {
-      Comment comment = Comment.createComment("42", "Destroy Earth", "trillian", null);
-      comment.setType(CommentType.TASK_TODO);
-      commentStore.put(comment);
+    try (QueryableMutableStore<CommentSummary> summaryStore = commentSummaryStoreFactory.getMutable(repository1.getId())) {
+      summaryStore.put(pullRequest2.getId(), new CommentSummary(1, 0, 1, null));
     }
 
     pullRequest3 = new PullRequest("1", "feature/neo", "main");
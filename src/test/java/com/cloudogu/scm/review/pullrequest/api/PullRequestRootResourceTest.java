@@ -19,7 +19,7 @@ package com.cloudogu.scm.review.pullrequest.api;
 import com.cloudogu.scm.review.BranchResolver;
 import com.cloudogu.scm.review.PullRequestMediaType;
 import com.cloudogu.scm.review.comment.service.CommentService;
-import com.cloudogu.scm.review.comment.service.CommentType;
+import com.cloudogu.scm.review.comment.service.CommentSummary;
 import com.cloudogu.scm.review.config.service.BasePullRequestConfig;
 import com.cloudogu.scm.review.config.service.ConfigService;
 import com.cloudogu.scm.review.config.service.RepositoryPullRequestConfig;
@@ -31,7 +31,6 @@ import com.cloudogu.scm.review.pullrequest.service.PullRequestChangeService;
 import com.cloudogu.scm.review.pullrequest.service.PullRequestCreator;
 import com.cloudogu.scm.review.pullrequest.service.PullRequestService;
 import com.cloudogu.scm.review.pullrequest.service.PullRequestStatus;
-import com.cloudogu.scm.review.pullrequest.service.ReviewMark;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.sdorra.shiro.ShiroRule;
@@ -80,7 +79,6 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.Set;
 
 import static com.cloudogu.scm.review.TestData.createPullRequest;
 import static com.cloudogu.scm.review.pullrequest.service.PullRequestRejectedEvent.RejectionCause.REJECTED_BY_USER;
@@ -172,6 +170,7 @@ public class PullRequestRootResourceTest {
     lenient().when(repositoryServiceFactory.create(any(Repository.class))).thenReturn(repositoryService);
     lenient().when(userDisplayManager.get("reviewer")).thenReturn(Optional.of(DisplayUser.from(new User("reviewer", "reviewer", ""))));
     lenient().when(configService.evaluateConfig(repository)).thenReturn(new BasePullRequestConfig());
+    lenient().when(commentService.getSummary(any(Repository.class), anyString())).thenReturn(new CommentSummary());
     when(pullRequestService.getRepository(REPOSITORY_NAMESPACE, REPOSITORY_NAME))
       .thenReturn(repository);
     doAnswer(invocationOnMock -> Integer.toString(nextPullRequestId++))
@@ -341,8 +340,7 @@ public class PullRequestRootResourceTest {
   @SubjectAware(username = "rr")
   public void shouldGetPullRequest() throws URISyntaxException, UnsupportedEncodingException {
     PullRequest pullRequest = createPullRequest();
-    when(commentService.getCount(REPOSITORY_NAMESPACE, REPOSITORY_NAME, pullRequest.getId(), CommentType.TASK_TODO)).thenReturn(1);
-    when(commentService.getCount(REPOSITORY_NAMESPACE, REPOSITORY_NAME, pullRequest.getId(), CommentType.TASK_DONE)).thenReturn(2);
+    when(commentService.getSummary(repository, pullRequest.getId())).thenReturn(new CommentSummary(1, 2, 3, null));
     when(pullRequestService.get(REPOSITORY_NAMESPACE, REPOSITORY_NAME, "123")).thenReturn(pullRequest);
 
     MockHttpRequest request = MockHttpRequest.get("/" + PullRequestRootResource.PULL_REQUESTS_PATH_V2 + "/" + REPOSITORY_NAMESPACE + "/" + REPOSITORY_NAME + "/123");
@@ -399,6 +397,20 @@ public class PullRequestRootResourceTest {
     assertThat(response.getContentAsString()).contains("\"id\":\"" + id_2 + "\"");
   }
 
+  @Test
+  @SubjectAware(username = "rr")
+  public void shouldNotReadReviewMarksForListOfPullRequests() throws URISyntaxException {
+    List<PullRequest> pullRequests = Lists.newArrayList(createPullRequest("id_1"), createPullRequest("id_2"));
+    when(pullRequestService.getAll(eq(REPOSITORY_NAMESPACE), eq(REPOSITORY_NAME), any())).thenReturn(pullRequests);
+    when(pullRequestService.count(eq(REPOSITORY_NAMESPACE), eq(REPOSITORY_NAME), any())).thenReturn(2);
+
+    MockHttpRequest request = MockHttpRequest.get("/" + PullRequestRootResource.PULL_REQUESTS_PATH_V2 + "/" + REPOSITORY_NAMESPACE + "/" + REPOSITORY_NAME);
+    dispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(200);
+    verify(pullRequestService, never()).getFilesMarkedAsReviewed(any(), any(), any());
+  }
+
   @Test
   @SubjectAware(username = "dent")
   public void shouldGetCreateLinkOnEmptyPullRequests() throws URISyntaxException {
@@ -603,6 +615,45 @@ public class PullRequestRootResourceTest {
     );
   }
 
+  @Test
+  @SubjectAware(username = "slarti")
+  public void shouldUpdatePullRequestWithExpectedVersion() throws URISyntaxException {
+    PullRequest existingPullRequest = new PullRequest();
+    existingPullRequest.setAuthor("somebody");
+    existingPullRequest.setStatus(PullRequestStatus.OPEN);
+    mockSinglePullRequest("1", existingPullRequest);
+
+    MockHttpRequest request = MockHttpRequest
+      .put("/" + PullRequestRootResource.PULL_REQUESTS_PATH_V2 + "/ns/repo/1")
+      .header("If-Match", "\"42\"")
+      .content("{\"title\": \"new Title\", \"description\": \"new description\", \"status\": \"OPEN\"}".getBytes())
+      .contentType(PullRequestMediaType.PULL_REQUEST);
+    dispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(HttpServletResponse.SC_NO_CONTENT);
+    verify(pullRequestService).update(eq(repository), eq("1"), any(PullRequest.class), eq(42L));
+    verify(pullRequestService, never()).update(any(), any(), any());
+  }
+
+  @Test
+  @SubjectAware(username = "slarti")
+  public void shouldFailUpdatingWithUnknownVersion() throws URISyntaxException {
+    PullRequest existingPullRequest = new PullRequest();
+    existingPullRequest.setAuthor("somebody");
+    existingPullRequest.setStatus(PullRequestStatus.OPEN);
+    mockSinglePullRequest("1", existingPullRequest);
+
+    MockHttpRequest request = MockHttpRequest
+      .put("/" + PullRequestRootResource.PULL_REQUESTS_PATH_V2 + "/ns/repo/1")
+      .header("If-Match", "\"not-a-version\"")
+      .content("{\"title\": \"new Title\", \"description\": \"new description\", \"status\": \"OPEN\"}".getBytes())
+      .contentType(PullRequestMediaType.PULL_REQUEST);
+    dispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(HttpServletResponse.SC_CONFLICT);
+    verify(pullRequestService, never()).update(any(), any(), any());
+  }
+
   @Test
   @SubjectAware(username = "slarti")
   public void shouldFailOnUpdatingNonExistingPullRequest() throws URISyntaxException, IOException {
@@ -674,6 +725,21 @@ public class PullRequestRootResourceTest {
     assertThat(jsonNode.path("_links").get("subscription")).isNotNull();
   }
 
+  @Test
+  public void shouldReturnVersionAsEntityTag() throws URISyntaxException {
+    PullRequest pullRequest = createPullRequest();
+    pullRequest.setVersion(42);
+    mockSinglePullRequest("1", pullRequest);
+
+    mockLoggedInUser(new User("user1", "User 1", "email@d.de"));
+
+    MockHttpRequest request = MockHttpRequest
+      .get("/" + PullRequestRootResource.PULL_REQUESTS_PATH_V2 + "/ns/repo/1");
+    dispatcher.invoke(request, response);
+    assertThat(response.getStatus()).isEqualTo(200);
+    assertThat(response.getOutputHeaders().getFirst("ETag")).hasToString("\"42\"");
+  }
+
   @Test
   @SubjectAware(username = "slarti")
   public void shouldGetTheApproveButNoSubscriptionLinkWithoutMail() throws URISyntaxException, IOException {
@@ -876,10 +942,8 @@ public class PullRequestRootResourceTest {
 
     PullRequest pullRequest = createPullRequest();
     pullRequest.setAuthor("slarti");
-    pullRequest.setReviewMarks(Set.of(
-      new ReviewMark("/some/file", "dent"),
-      new ReviewMark("/some/other/file", "trillian")
-    ));
+    when(pullRequestService.getFilesMarkedAsReviewed(eq(repository), eq(pullRequest.getId()), argThat(user -> "dent".equals(user.getId()))))
+      .thenReturn(List.of("/some/file"));
 
     mockSinglePullRequest("1", pullRequest);
 
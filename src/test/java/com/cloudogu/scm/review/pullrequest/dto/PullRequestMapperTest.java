@@ -19,6 +19,7 @@ package com.cloudogu.scm.review.pullrequest.dto;
 import com.cloudogu.scm.review.BranchResolver;
 import com.cloudogu.scm.review.TestData;
 import com.cloudogu.scm.review.comment.service.CommentService;
+import com.cloudogu.scm.review.comment.service.CommentSummary;
 import com.cloudogu.scm.review.config.service.BasePullRequestConfig;
 import com.cloudogu.scm.review.config.service.ConfigService;
 import com.cloudogu.scm.review.pullrequest.service.PullRequest;
@@ -88,6 +89,7 @@ class PullRequestMapperTest {
   @BeforeEach
   void initSubject() {
     ThreadContext.bind(subject);
+    lenient().when(commentService.getSummary(any(Repository.class), anyString())).thenReturn(new CommentSummary());
   }
 
   @AfterEach
@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.review.pullrequest.landingpage;
+
+import com.cloudogu.scm.review.comment.service.Comment;
+import com.cloudogu.scm.review.comment.service.CommentEvent;
+import com.cloudogu.scm.review.comment.service.CommentType;
+import com.cloudogu.scm.review.comment.service.CommentsAddedEvent;
+import com.cloudogu.scm.review.pullrequest.service.PullRequest;
+import com.cloudogu.scm.review.pullrequest.service.PullRequestApprovalEvent;
+import com.cloudogu.scm.review.pullrequest.service.PullRequestEvent;
+import com.cloudogu.scm.review.pullrequest.service.PullRequestReviewMarkEvent;
+import com.cloudogu.scm.review.pullrequest.service.ReviewMark;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sonia.scm.HandlerEventType;
+import sonia.scm.cache.MapCacheManager;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryEvent;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.cloudogu.scm.review.pullrequest.service.PullRequestApprovalEvent.ApprovalCause.APPROVED;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LandingPageCacheTest {
+
+  private final Repository repository = new Repository("1", "git", "space", "X");
+
+  private final AtomicInteger loadCount = new AtomicInteger();
+
+  private PullRequest pullRequest;
+
+  @BeforeEach
+  void initPullRequest() {
+    pullRequest = new PullRequest("1", "feature", "main");
+    pullRequest.setAuthor("dent");
+    pullRequest.setReviewer(Map.of("trillian", false));
+  }
+
+  @Test
+  void shouldLoadOnlyOncePerUserAndProvider() {
+    LandingPageCache cache = createCache(true);
+
+    cache.get("dent", MyPullRequests.class, this::load);
+    cache.get("dent", MyPullRequests.class, this::load);
+    cache.get("dent", MyOpenTasks.class, this::load);
+    cache.get("trillian", MyPullRequests.class, this::load);
+
+    assertThat(loadCount).hasValue(3);
+    assertThat(cache.getMetrics().getHitCount()).isEqualTo(1);
+    assertThat(cache.getMetrics().getMissCount()).isEqualTo(3);
+  }
+
+  @Test
+  void shouldInvalidateAuthorAndReviewersOnPullRequestEvent() {
+    LandingPageCache cache = createCache(true);
+    loadForAll(cache);
+
+    cache.onPullRequestEvent(new PullRequestEvent(repository, pullRequest, null, HandlerEventType.CREATE));
+    loadForAll(cache);
+
+    assertThat(loadCount).hasValue(5);
+  }
+
+  @Test
+  void shouldInvalidateRemovedReviewers() {
+    LandingPageCache cache = createCache(true);
+    loadForAll(cache);
+
+    PullRequest changedPullRequest = pullRequest.toBuilder().reviewer(Map.of("zaphod", false)).build();
+    cache.onPullRequestEvent(new PullRequestEvent(repository, changedPullRequest, pullRequest, HandlerEventType.MODIFY));
+    loadForAll(cache);
+
+    assertThat(loadCount).hasValue(6);
+  }
+
+  @Test
+  void shouldInvalidateAuthorAndReviewersOnApproval() {
+    LandingPageCache cache = createCache(true);
+    loadForAll(cache);
+
+    cache.onApproval(new PullRequestApprovalEvent(repository, pullRequest, APPROVED));
+    loadForAll(cache);
+
+    assertThat(loadCount).hasValue(5);
+  }
+
+  @Test
+  void shouldInvalidateOnlyUserOfReviewMark() {
+    LandingPageCache cache = createCache(true);
+    loadForAll(cache);
+
+    ReviewMark mark = new ReviewMark("README.md", "trillian");
+    cache.onReviewMark(new PullRequestReviewMarkEvent(repository, pullRequest, mark, PullRequestReviewMarkEvent.EventType.ADDED));
+    loadForAll(cache);
+
+    assertThat(loadCount).hasValue(4);
+  }
+
+  @Test
+  void shouldInvalidateOnTaskTransition() {
+    LandingPageCache cache = createCache(true);
+    loadForAll(cache);
+
+    Comment task = createComment(CommentType.TASK_TODO);
+    Comment doneTask = createComment(CommentType.TASK_DONE);
+    cache.onComment(new CommentEvent(repository, pullRequest, doneTask, task, HandlerEventType.MODIFY));
+    loadForAll(cache);
+
+    assertThat(loadCount).hasValue(5);
+  }
+
+  @Test
+  void shouldInvalidateOnNewTask() {
+    LandingPageCache cache = createCache(true);
+    loadForAll(cache);
+
+    cache.onComment(new CommentEvent(repository, pullRequest, createComment(CommentType.TASK_TODO), null, HandlerEventType.CREATE));
+    loadForAll(cache);
+
+    assertThat(loadCount).hasValue(5);
+  }
+
+  @Test
+  void shouldInvalidateOnTasksAddedAtOnce() {
+    LandingPageCache cache = createCache(true);
+    loadForAll(cache);
+
+    cache.onCommentsAdded(new CommentsAddedEvent(repository, pullRequest, List.of(createComment(CommentType.COMMENT), createComment(CommentType.TASK_TODO))));
+    loadForAll(cache);
+
+    assertThat(loadCount).hasValue(5);
+  }
+
+  @Test
+  void shouldNotInvalidateOnSimpleCommentsAddedAtOnce() {
+    LandingPageCache cache = createCache(true);
+    loadForAll(cache);
+
+    cache.onCommentsAdded(new CommentsAddedEvent(repository, pullRequest, List.of(createComment(CommentType.COMMENT))));
+    loadForAll(cache);
+
+    assertThat(loadCount).hasValue(3);
+  }
+
+  @Test
+  void shouldNotInvalidateOnSimpleComments() {
+    LandingPageCache cache = createCache(true);
+    loadForAll(cache);
+
+    cache.onComment(new CommentEvent(repository, pullRequest, createComment(CommentType.COMMENT), null, HandlerEventType.CREATE));
+    cache.onComment(new CommentEvent(repository, pullRequest, createComment(CommentType.TASK_TODO), createComment(CommentType.TASK_TODO), HandlerEventType.MODIFY));
+    loadForAll(cache);
+
+    assertThat(loadCount).hasValue(3);
+  }
+
+  @Test
+  void shouldInvalidateAllOnModifiedRepository() {
+    LandingPageCache cache = createCache(true);
+    loadForAll(cache);
+
+    cache.onRepositoryEvent(new RepositoryEvent(HandlerEventType.MODIFY, repository));
+    loadForAll(cache);
+
+    assertThat(loadCount).hasValue(6);
+  }
+
+  @Test
+  void shouldAlwaysLoadIfDisabled() {
+    LandingPageCache cache = createCache(false);
+
+    cache.get("dent", MyPullRequests.class, this::load);
+    cache.get("dent", MyPullRequests.class, this::load);
+
+    assertThat(loadCount).hasValue(2);
+  }
+
+  private void loadForAll(LandingPageCache cache) {
+    cache.get("dent", MyPullRequests.class, this::load);
+    cache.get("trillian", MyOpenReviews.class, this::load);
+    cache.get("zaphod", MyOpenReviews.class, this::load);
+  }
+
+  private static Comment createComment(CommentType type) {
+    Comment comment = Comment.createComment("1", "42", "dent", null);
+    comment.setType(type);
+    return comment;
+  }
+
+  private List<String> load() {
+    loadCount.incrementAndGet();
+    return List.of("some result");
+  }
+}
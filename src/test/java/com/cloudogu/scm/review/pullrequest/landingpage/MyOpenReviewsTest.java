@@ -17,46 +17,48 @@
 package com.cloudogu.scm.review.pullrequest.landingpage;
 
 import com.cloudogu.scm.landingpage.mytasks.MyTask;
-import com.cloudogu.scm.review.comment.service.Comment;
-import com.cloudogu.scm.review.comment.service.CommentType;
 import com.cloudogu.scm.review.pullrequest.dto.PullRequestDto;
 import com.cloudogu.scm.review.pullrequest.dto.PullRequestMapper;
 import com.cloudogu.scm.review.pullrequest.service.PullRequest;
 import com.cloudogu.scm.review.pullrequest.service.PullRequestStatus;
+import com.cloudogu.scm.review.pullrequest.service.PullRequestStoreFactory;
 import com.google.common.collect.ImmutableMap;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.apache.shiro.subject.Subject;
 import org.apache.shiro.util.ThreadContext;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.cache.MapCacheManager;
 import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryManager;
+import sonia.scm.store.QueryableMutableStore;
+import sonia.scm.store.QueryableStoreExtension;
 
+import static com.cloudogu.scm.review.pullrequest.service.PullRequestStatus.MERGED;
 import static com.cloudogu.scm.review.pullrequest.service.PullRequestStatus.OPEN;
-import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Mockito.doAnswer;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
-@ExtendWith(MockitoExtension.class)
+@ExtendWith({MockitoExtension.class, QueryableStoreExtension.class})
+@QueryableStoreExtension.QueryableTypes({PullRequest.class})
 class MyOpenReviewsTest {
 
   static final Repository PR_REPOSITORY = new Repository("1", "git", "space", "X");
 
-  static final PullRequest OPEN_PR_WITH_USER_AS_REVIEWER_NOT_REVIEWED = createPullRequest("open_dent_not_reviewed", OPEN, "trillian", false);
-  static final PullRequest OPEN_PR_WITH_USER_AS_REVIEWER_REVIEWED = createPullRequest("open_dent_reviewed", OPEN, "trillian", true);
-  static final PullRequest OPEN_PR_WITHOUT_USER_AS_REVIEWER = createPullRequest("open_dent", OPEN, "ziltoid", false);
-
-  @Mock
-  OpenPullRequestProvider pullRequestProvider;
   @Mock
   PullRequestMapper mapper;
+  @Mock
+  RepositoryManager repositoryManager;
 
-  @InjectMocks
   MyOpenReviews myOpenReviews;
 
   @Mock
@@ -75,23 +77,71 @@ class MyOpenReviewsTest {
 
   @BeforeEach
   void mockMapper() {
-    when(mapper.map(any(), any())).thenAnswer(invocationOnMock -> {
+    lenient().when(mapper.map(any(), any())).thenAnswer(invocationOnMock -> {
       PullRequestDto dto = new PullRequestDto();
       dto.setId(invocationOnMock.getArgument(0, PullRequest.class).getId());
       return dto;
     });
   }
 
+  @BeforeEach
+  void setUpMyOpenReviews(PullRequestStoreFactory storeFactory) {
+    myOpenReviews = new MyOpenReviews(mapper, storeFactory, repositoryManager, new LandingPageCache(new MapCacheManager(), new SimpleMeterRegistry(), false));
+  }
+
+  @Test
+  void shouldFindMyOpenReviews(PullRequestStoreFactory storeFactory) {
+    try (QueryableMutableStore<PullRequest> store = storeFactory.getMutable("1")) {
+      store.put("open_trillian_not_reviewed", createPullRequest("open_trillian_not_reviewed", OPEN, "trillian", false));
+      store.put("open_trillian_reviewed", createPullRequest("open_trillian_reviewed", OPEN, "trillian", true));
+      store.put("open_ziltoid", createPullRequest("open_ziltoid", OPEN, "ziltoid", false));
+      store.put("merged_trillian_not_reviewed", createPullRequest("merged_trillian_not_reviewed", MERGED, "trillian", false));
+    }
+    when(subject.isPermitted("repository:readPullRequest:1")).thenReturn(true);
+    when(repositoryManager.get("1")).thenReturn(PR_REPOSITORY);
+
+    Iterable<MyTask> data = myOpenReviews.getTasks();
+
+    assertThat(data).extracting("pullRequest").extracting("id").containsExactly("open_trillian_not_reviewed");
+  }
+
+  @Test
+  void shouldResolveEachRepositoryOnlyOnce(PullRequestStoreFactory storeFactory) {
+    try (QueryableMutableStore<PullRequest> store = storeFactory.getMutable("1")) {
+      store.put("first", createPullRequest("first", OPEN, "trillian", false));
+      store.put("second", createPullRequest("second", OPEN, "trillian", false));
+    }
+    when(subject.isPermitted("repository:readPullRequest:1")).thenReturn(true);
+    when(repositoryManager.get("1")).thenReturn(PR_REPOSITORY);
+
+    Iterable<MyTask> data = myOpenReviews.getTasks();
+
+    assertThat(data).extracting("pullRequest").extracting("id").containsExactlyInAnyOrder("first", "second");
+    verify(repositoryManager).get("1");
+  }
+
+  @Test
+  void shouldIgnoreReviewsInRepositoriesWithoutPermission(PullRequestStoreFactory storeFactory) {
+    try (QueryableMutableStore<PullRequest> store = storeFactory.getMutable("2")) {
+      store.put("open_trillian_not_reviewed", createPullRequest("open_trillian_not_reviewed", OPEN, "trillian", false));
+    }
+
+    Iterable<MyTask> data = myOpenReviews.getTasks();
+
+    assertThat(data).isEmpty();
+    verify(repositoryManager, never()).get(anyString());
+  }
+
   @Test
-  void shouldFindMyPullRequests() {
-    doAnswer(invocationOnMock -> {
-        invocationOnMock.getArgument(0, OpenPullRequestProvider.RepositoryAndPullRequestConsumer.class)
-          .accept(PR_REPOSITORY, asList(OPEN_PR_WITH_USER_AS_REVIEWER_NOT_REVIEWED, OPEN_PR_WITH_USER_AS_REVIEWER_REVIEWED, OPEN_PR_WITHOUT_USER_AS_REVIEWER).stream());
-        return null;
-      }
-    ).when(pullRequestProvider).findOpenPullRequests(any());
+  void shouldIgnoreReviewsInDeletedRepositories(PullRequestStoreFactory storeFactory) {
+    try (QueryableMutableStore<PullRequest> store = storeFactory.getMutable("3")) {
+      store.put("open_trillian_not_reviewed", createPullRequest("open_trillian_not_reviewed", OPEN, "trillian", false));
+    }
+    when(subject.isPermitted("repository:readPullRequest:3")).thenReturn(true);
+
     Iterable<MyTask> data = myOpenReviews.getTasks();
-    assertThat(data).extracting("pullRequest").extracting("id").containsExactly("open_dent_not_reviewed");
+
+    assertThat(data).isEmpty();
   }
 
   private static PullRequest createPullRequest(String id, PullRequestStatus status, String reviewer, boolean reviewStatus) {
@@ -105,10 +155,4 @@ class MyOpenReviewsTest {
     existingPullRequest.setReviewer(ImmutableMap.of("someone", false, reviewer, reviewStatus));
     return existingPullRequest;
   }
-
-  private static Comment createComment(CommentType type) {
-    Comment comment = new Comment();
-    comment.setType(type);
-    return comment;
-  }
 }
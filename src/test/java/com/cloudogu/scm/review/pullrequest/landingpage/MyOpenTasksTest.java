@@ -17,14 +17,16 @@
 package com.cloudogu.scm.review.pullrequest.landingpage;
 
 import com.cloudogu.scm.landingpage.mytasks.MyTask;
-import com.cloudogu.scm.review.comment.service.Comment;
-import com.cloudogu.scm.review.comment.service.CommentStoreFactory;
-import com.cloudogu.scm.review.comment.service.CommentType;
+import com.cloudogu.scm.review.StoreLocks;
+import com.cloudogu.scm.review.comment.service.CommentSummary;
+import com.cloudogu.scm.review.comment.service.CommentSummaryStore;
+import com.cloudogu.scm.review.comment.service.CommentSummaryStoreFactory;
 import com.cloudogu.scm.review.pullrequest.dto.PullRequestDto;
 import com.cloudogu.scm.review.pullrequest.dto.PullRequestMapper;
 import com.cloudogu.scm.review.pullrequest.service.PullRequest;
 import com.cloudogu.scm.review.pullrequest.service.PullRequestStatus;
 import com.cloudogu.scm.review.pullrequest.service.PullRequestStoreFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.apache.shiro.subject.Subject;
 import org.apache.shiro.util.ThreadContext;
 import org.junit.jupiter.api.AfterEach;
@@ -33,21 +35,19 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.cache.MapCacheManager;
 import sonia.scm.repository.Repository;
 import sonia.scm.repository.RepositoryManager;
 import sonia.scm.store.QueryableMutableStore;
 import sonia.scm.store.QueryableStoreExtension;
 
-import static com.cloudogu.scm.review.comment.service.CommentType.COMMENT;
-import static com.cloudogu.scm.review.comment.service.CommentType.TASK_DONE;
-import static com.cloudogu.scm.review.comment.service.CommentType.TASK_TODO;
 import static com.cloudogu.scm.review.pullrequest.service.PullRequestStatus.OPEN;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.when;
 
 @ExtendWith({MockitoExtension.class, QueryableStoreExtension.class})
-@QueryableStoreExtension.QueryableTypes({PullRequest.class, Comment.class})
+@QueryableStoreExtension.QueryableTypes({PullRequest.class, CommentSummary.class})
 class MyOpenTasksTest {
 
   static final Repository PR_REPOSITORY = new Repository("1", "git", "space", "X");
@@ -55,9 +55,8 @@ class MyOpenTasksTest {
   static final PullRequest OPEN_PR_FOR_USER_WITHOUT_TASK = createPullRequest("open_dent", OPEN, "dent");
   static final PullRequest OPEN_PR_FOR_USER_WITH_TASK = createPullRequest("open_dent_tasks", OPEN, "dent");
   static final PullRequest OPEN_PR_FOR_OTHER = createPullRequest("open_tricia", OPEN, "tricia");
+  static final PullRequest OPEN_PR_FOR_USER_WITHOUT_SUMMARY = createPullRequest("open_dent_new", OPEN, "dent");
 
-  @Mock
-  OpenPullRequestProvider pullRequestProvider;
   @Mock
   PullRequestMapper mapper;
   @Mock
@@ -89,28 +88,27 @@ class MyOpenTasksTest {
   }
 
   @BeforeEach
-  void mockData(PullRequestStoreFactory pullRequestStoreFactory, CommentStoreFactory commentStoreFactory) {
+  void mockData(PullRequestStoreFactory pullRequestStoreFactory, CommentSummaryStoreFactory commentSummaryStoreFactory) {
     try (QueryableMutableStore<PullRequest> prStore = pullRequestStoreFactory.getMutable(PR_REPOSITORY.getId())) {
       prStore.put(OPEN_PR_FOR_USER_WITH_TASK.getId(), OPEN_PR_FOR_USER_WITH_TASK);
       prStore.put(OPEN_PR_FOR_USER_WITHOUT_TASK.getId(), OPEN_PR_FOR_USER_WITHOUT_TASK);
       prStore.put(OPEN_PR_FOR_OTHER.getId(), OPEN_PR_FOR_OTHER);
+      prStore.put(OPEN_PR_FOR_USER_WITHOUT_SUMMARY.getId(), OPEN_PR_FOR_USER_WITHOUT_SUMMARY);
     }
 
-    try (QueryableMutableStore<Comment> storeWithOpenTask = commentStoreFactory.getMutable(PR_REPOSITORY.getId(), "open_dent_tasks")) {
-      storeWithOpenTask.put(createComment(COMMENT));
-      storeWithOpenTask.put(createComment(TASK_TODO));
-    }
-    try (QueryableMutableStore<Comment> storeWithClosedTask = commentStoreFactory.getMutable(PR_REPOSITORY.getId(), "open_dent")) {
-      storeWithClosedTask.put(createComment(COMMENT));
-      storeWithClosedTask.put(createComment(TASK_DONE));
+    try (QueryableMutableStore<CommentSummary> summaryStore = commentSummaryStoreFactory.getMutable(PR_REPOSITORY.getId())) {
+      summaryStore.put("open_dent_tasks", new CommentSummary(1, 0, 2, null));
+      summaryStore.put("open_dent", new CommentSummary(0, 1, 2, null));
+      summaryStore.put("open_tricia", new CommentSummary(1, 0, 1, null));
     }
 
     when(repositoryManager.get(PR_REPOSITORY.getId())).thenReturn(PR_REPOSITORY);
   }
 
   @BeforeEach
-  void initTasks(PullRequestStoreFactory pullRequestStoreFactory, CommentStoreFactory commentStoreFactory) {
-    myOpenTasks = new MyOpenTasks(mapper, pullRequestStoreFactory, commentStoreFactory, repositoryManager);
+  void initTasks(PullRequestStoreFactory pullRequestStoreFactory, CommentSummaryStoreFactory commentSummaryStoreFactory) {
+    CommentSummaryStore commentSummaryStore = new CommentSummaryStore(commentSummaryStoreFactory, new StoreLocks(new SimpleMeterRegistry(), 16));
+    myOpenTasks = new MyOpenTasks(mapper, pullRequestStoreFactory, commentSummaryStore, repositoryManager, new LandingPageCache(new MapCacheManager(), new SimpleMeterRegistry(), false));
   }
 
   @Test
@@ -129,10 +127,4 @@ class MyOpenTasksTest {
     existingPullRequest.setAuthor(author);
     return existingPullRequest;
   }
-
-  private static Comment createComment(CommentType type) {
-    Comment comment = new Comment();
-    comment.setType(type);
-    return comment;
-  }
 }
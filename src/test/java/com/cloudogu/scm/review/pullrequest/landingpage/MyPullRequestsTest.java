@@ -22,6 +22,7 @@ import com.cloudogu.scm.review.pullrequest.dto.PullRequestMapper;
 import com.cloudogu.scm.review.pullrequest.service.PullRequest;
 import com.cloudogu.scm.review.pullrequest.service.PullRequestStatus;
 import com.cloudogu.scm.review.pullrequest.service.PullRequestStoreFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.apache.shiro.subject.Subject;
 import org.apache.shiro.util.ThreadContext;
 import org.junit.jupiter.api.AfterEach;
@@ -30,6 +31,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.cache.MapCacheManager;
 import sonia.scm.repository.Repository;
 import sonia.scm.repository.RepositoryManager;
 import sonia.scm.store.QueryableMutableStore;
@@ -78,7 +80,7 @@ class MyPullRequestsTest {
 
   @BeforeEach
   void setUpMyPullRequests(PullRequestStoreFactory storeFactory) {
-    myPullRequests = new MyPullRequests(mapper, storeFactory, repositoryManager);
+    myPullRequests = new MyPullRequests(mapper, storeFactory, repositoryManager, new LandingPageCache(new MapCacheManager(), new SimpleMeterRegistry(), false));
   }
 
   @Test
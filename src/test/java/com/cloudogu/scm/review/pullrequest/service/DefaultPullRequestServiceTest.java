@@ -19,6 +19,7 @@ package com.cloudogu.scm.review.pullrequest.service;
 import com.cloudogu.scm.review.BranchResolver;
 import com.cloudogu.scm.review.RepositoryResolver;
 import com.cloudogu.scm.review.StatusChangeNotAllowedException;
+import com.cloudogu.scm.review.StoreLocks;
 import com.cloudogu.scm.review.pullrequest.api.PullRequestSelector;
 import com.cloudogu.scm.review.pullrequest.api.PullRequestSortSelector;
 import com.cloudogu.scm.review.pullrequest.api.RequestParameters;
@@ -26,6 +27,7 @@ import com.cloudogu.scm.review.pullrequest.dto.PullRequestCheckResultDto.PullReq
 import com.cloudogu.scm.review.workflow.AllReviewerApprovedRule;
 import com.github.sdorra.shiro.ShiroRule;
 import com.google.common.collect.ImmutableList;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.apache.shiro.authz.UnauthorizedException;
 import org.apache.shiro.subject.PrincipalCollection;
 import org.apache.shiro.subject.Subject;
@@ -42,8 +44,10 @@ import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
+import sonia.scm.ConcurrentModificationException;
 import sonia.scm.HandlerEventType;
 import sonia.scm.NotFoundException;
+import sonia.scm.cache.MapCacheManager;
 import sonia.scm.event.ScmEventBus;
 import sonia.scm.repository.Branch;
 import sonia.scm.repository.Changeset;
@@ -60,9 +64,16 @@ import sonia.scm.user.User;
 import java.io.IOException;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
@@ -84,6 +95,7 @@ import static org.assertj.core.api.Assertions.entry;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.lenient;
@@ -92,7 +104,7 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith({MockitoExtension.class, QueryableStoreExtension.class})
-@QueryableStoreExtension.QueryableTypes(PullRequest.class)
+@QueryableStoreExtension.QueryableTypes({PullRequest.class, IdSequence.class, ReviewMark.class})
 class DefaultPullRequestServiceTest {
 
   @Rule
@@ -124,14 +136,20 @@ class DefaultPullRequestServiceTest {
   }
 
   @BeforeEach
-  void initService(PullRequestStoreFactory storeFactory) {
-    storeBuilder = new PullRequestStoreBuilder(storeFactory);
+  void initService(PullRequestStoreFactory storeFactory, IdSequenceStoreFactory idSequenceStoreFactory, ReviewMarkStoreFactory reviewMarkStoreFactory) {
+    storeBuilder = new PullRequestStoreBuilder(
+      storeFactory,
+      new IdSequenceService(idSequenceStoreFactory, new StoreLocks(new SimpleMeterRegistry(), 16)),
+      new PullRequestCache(new MapCacheManager(), new SimpleMeterRegistry(), true),
+      new StoreLocks(new SimpleMeterRegistry(), 16)
+    );
     service = new DefaultPullRequestService(
       repositoryResolver,
       branchResolver,
       storeBuilder,
       eventBus,
-      repositoryService
+      repositoryService,
+      new ReviewMarkStore(reviewMarkStoreFactory)
     );
   }
 
@@ -362,6 +380,32 @@ class DefaultPullRequestServiceTest {
       assertThat(pr.getCreationDate()).isEqualTo(oldPullRequest.getCreationDate());
     }
 
+    @Test
+    void shouldIncrementVersionOnUpdate(PullRequestStoreFactory storeFactory) {
+      PullRequest pullRequest = createPullRequest("changed", null, null);
+
+      service.update(REPOSITORY, "changed", pullRequest, 0);
+
+      PullRequest pr = readPullRequestFromStore(storeFactory, "changed");
+      assertThat(pr.getVersion()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldRejectUpdateWithOutdatedVersion(PullRequestStoreFactory storeFactory) {
+      PullRequest pullRequest = createPullRequest("changed", null, null);
+      pullRequest.setTitle("new title");
+      service.update(REPOSITORY, "changed", createPullRequest("changed", null, null));
+
+      assertThrows(
+        ConcurrentModificationException.class,
+        () -> service.update(REPOSITORY, "changed", pullRequest, 0)
+      );
+
+      PullRequest pr = readPullRequestFromStore(storeFactory, "changed");
+      assertThat(pr.getTitle()).isNotEqualTo("new title");
+      assertThat(eventCaptor.getAllValues()).hasSize(1);
+    }
+
     @Test
     void shouldNotChangeApprovalOfExistingReviewers(PullRequestStoreFactory storeFactory) {
       PullRequest pullRequest = createPullRequest("changed", null, null);
@@ -645,6 +689,27 @@ class DefaultPullRequestServiceTest {
       assertPullRequestsAreEqual(pullRequestStatusChangedEvent.getPullRequest(), pr);
     }
 
+    @Test
+    void shouldReopenPullRequestModifiedConcurrently(PullRequestStoreFactory storeFactory) throws IOException {
+      Subject subject = mock(Subject.class, RETURNS_DEEP_STUBS);
+      shiroRule.setSubject(subject);
+
+      pullRequest.setStatus(REJECTED);
+      storePullRequest(storeFactory, "id", pullRequest);
+      mockChangesets(new Changeset());
+      doAnswer(invocation -> {
+        service.subscribe(REPOSITORY, "id", new User("dent"));
+        return null;
+      }).when(branchResolver).resolve(REPOSITORY, pullRequest.getTarget());
+
+      service.reopen(REPOSITORY, pullRequest.getId());
+
+      PullRequest pr = readPullRequestFromStore(storeFactory);
+      assertThat(pr.getStatus()).isEqualTo(OPEN);
+      assertThat(pr.getSubscriber()).contains("dent");
+      assertThat(eventCaptor.getAllValues().get(1)).isInstanceOf(PullRequestReopenedEvent.class);
+    }
+
     @Test
     void shouldNotReopenMergedPullRequest(PullRequestStoreFactory storeFactory) throws IOException {
       Subject subject = mock(Subject.class, RETURNS_DEEP_STUBS);
@@ -803,50 +868,70 @@ class DefaultPullRequestServiceTest {
 
     @Test
     void shouldMarkAsReviewed(PullRequestStoreFactory storeFactory) {
+      PullRequest before = readPullRequestFromStore(storeFactory);
+
       service.markAsReviewed(REPOSITORY, pullRequest.getId(), "some/file", new User("user"));
 
-      PullRequest pr = readPullRequestFromStore(storeFactory);
-      assertThat(pr.getReviewMarks())
+      assertThat(service.getReviewMarks(REPOSITORY, pullRequest.getId()))
         .contains(new ReviewMark("some/file", "user"));
+      assertThat(readPullRequestFromStore(storeFactory).getVersion()).isEqualTo(before.getVersion());
     }
 
     @Test
-    void shouldMarkAsNotReviewed(PullRequestStoreFactory storeFactory) {
-      pullRequest.setReviewMarks(of(new ReviewMark("some/file", "user")));
+    void shouldMarkAsNotReviewed() {
+      service.markAsReviewed(REPOSITORY, pullRequest.getId(), "some/file", new User("user"));
 
       service.markAsNotReviewed(REPOSITORY, pullRequest.getId(), "some/file", new User("user"));
 
-      PullRequest pr = readPullRequestFromStore(storeFactory);
-      assertThat(pr.getReviewMarks()).isEmpty();
+      assertThat(service.getReviewMarks(REPOSITORY, pullRequest.getId())).isEmpty();
     }
 
     @Test
-    void shouldRemoveReviewMarks(PullRequestStoreFactory storeFactory) {
-      pullRequest.setReviewMarks(of(
-        new ReviewMark("some/path", "dent"),
-        new ReviewMark("some/other/path", "dent")
-      ));
-      storePullRequest(storeFactory, "id", pullRequest);
+    void shouldGetFilesMarkedAsReviewedByUser() {
+      service.markAsReviewed(REPOSITORY, pullRequest.getId(), "some/file", new User("dent"));
+      service.markAsReviewed(REPOSITORY, pullRequest.getId(), "some/other/file", new User("dent"));
+      service.markAsReviewed(REPOSITORY, pullRequest.getId(), "some/file", new User("trillian"));
+
+      assertThat(service.getFilesMarkedAsReviewed(REPOSITORY, pullRequest.getId(), new User("dent")))
+        .containsExactlyInAnyOrder("some/file", "some/other/file");
+    }
+
+    @Test
+    void shouldRemoveReviewMarks() {
+      service.markAsReviewed(REPOSITORY, pullRequest.getId(), "some/path", new User("dent"));
+      service.markAsReviewed(REPOSITORY, pullRequest.getId(), "some/other/path", new User("dent"));
 
       service.removeReviewMarks(REPOSITORY, pullRequest.getId(), of(new ReviewMark("some/path", "dent")));
 
-      PullRequest pr = readPullRequestFromStore(storeFactory);
-      assertThat(pr.getReviewMarks())
-        .contains(new ReviewMark("some/other/path", "dent"));
+      assertThat(service.getReviewMarks(REPOSITORY, pullRequest.getId()))
+        .containsExactly(new ReviewMark("some/other/path", "dent"));
     }
 
     @Test
-    void shouldDoNothingWhenReviewMarksToBeRemovedAreEmpty(PullRequestStoreFactory storeFactory) {
-      pullRequest.setReviewMarks(of(
-        new ReviewMark("some/path", "dent"),
-        new ReviewMark("some/other/path", "dent")
-      ));
-      storePullRequest(storeFactory, "id", pullRequest);
+    void shouldRemoveReviewMarksForFilesOfAllUsers() {
+      service.markAsReviewed(REPOSITORY, pullRequest.getId(), "some/path", new User("dent"));
+      service.markAsReviewed(REPOSITORY, pullRequest.getId(), "some/path", new User("trillian"));
+      service.markAsReviewed(REPOSITORY, pullRequest.getId(), "some/other/path", new User("dent"));
+      int eventsBefore = eventCaptor.getAllValues().size();
+
+      service.removeReviewMarksForFiles(REPOSITORY, pullRequest.getId(), List.of("some/path", "unmarked/path"));
+
+      assertThat(service.getReviewMarks(REPOSITORY, pullRequest.getId()))
+        .containsExactly(new ReviewMark("some/other/path", "dent"));
+      List<Object> events = eventCaptor.getAllValues();
+      assertThat(events.subList(eventsBefore, events.size()))
+        .hasSize(2)
+        .allMatch(event -> ((PullRequestReviewMarkEvent) event).getType() == PullRequestReviewMarkEvent.EventType.REMOVED);
+    }
+
+    @Test
+    void shouldDoNothingWhenReviewMarksToBeRemovedAreEmpty() {
+      service.markAsReviewed(REPOSITORY, pullRequest.getId(), "some/path", new User("dent"));
+      service.markAsReviewed(REPOSITORY, pullRequest.getId(), "some/other/path", new User("dent"));
 
       service.removeReviewMarks(REPOSITORY, pullRequest.getId(), of());
 
-      PullRequest pr = readPullRequestFromStore(storeFactory);
-      assertThat(pr.getReviewMarks()).hasSize(2);
+      assertThat(service.getReviewMarks(REPOSITORY, pullRequest.getId())).hasSize(2);
     }
 
     @Test
@@ -980,6 +1065,141 @@ class DefaultPullRequestServiceTest {
       .containsExactly("1");
   }
 
+  @Nested
+  class ForInProgressByBranches {
+
+    @BeforeEach
+    void storePullRequests(PullRequestStoreFactory storeFactory) {
+      storePullRequest(storeFactory, createPullRequest("1", "feature/1", "develop", OPEN));
+      storePullRequest(storeFactory, createPullRequest("2", "feature/2", "develop", DRAFT));
+      storePullRequest(storeFactory, createPullRequest("3", "feature/1", "develop", MERGED));
+      storePullRequest(storeFactory, createPullRequest("4", "develop", "main", OPEN));
+      storePullRequest(storeFactory, createPullRequest("5", "feature/3", "main", REJECTED));
+    }
+
+    @Test
+    void shouldFindPullRequestsInProgressBySource() {
+      List<PullRequest> pullRequests = service.getInProgressBySource(REPOSITORY, List.of("feature/1", "feature/2"));
+
+      assertThat(pullRequests)
+        .extracting("id")
+        .containsExactlyInAnyOrder("1", "2");
+    }
+
+    @Test
+    void shouldFindPullRequestsInProgressByTarget() {
+      List<PullRequest> pullRequests = service.getInProgressByTarget(REPOSITORY, List.of("main"));
+
+      assertThat(pullRequests)
+        .extracting("id")
+        .containsExactly("4");
+    }
+
+    @Test
+    void shouldFindPullRequestsInProgressBySourceOrTarget() {
+      List<PullRequest> pullRequests = service.getInProgressByBranches(REPOSITORY, List.of("develop"));
+
+      assertThat(pullRequests)
+        .extracting("id")
+        .containsExactlyInAnyOrder("1", "2", "4");
+    }
+
+    @Test
+    void shouldReturnEmptyListWithoutBranches() {
+      assertThat(service.getInProgressByBranches(REPOSITORY, List.of())).isEmpty();
+    }
+
+    @Test
+    void shouldFindPullRequestInProgressForSourceAndTarget() {
+      Optional<PullRequest> pullRequest = service.getInProgress(REPOSITORY, "feature/1", "develop");
+
+      assertThat(pullRequest)
+        .get()
+        .extracting("id")
+        .isEqualTo("1");
+    }
+
+    @Test
+    void shouldNotFindClosedPullRequestForSourceAndTarget() {
+      assertThat(service.getInProgress(REPOSITORY, "feature/3", "main")).isEmpty();
+    }
+
+    @Test
+    void shouldFindPullRequestsInProgressForMultipleBranchPairs() {
+      BranchPair feature1 = new BranchPair("feature/1", "develop");
+      BranchPair feature2 = new BranchPair("feature/2", "main");
+      BranchPair feature3 = new BranchPair("feature/3", "main");
+      BranchPair develop = new BranchPair("develop", "main");
+
+      Map<BranchPair, PullRequest> pullRequests = service.getInProgress(REPOSITORY, List.of(feature1, feature2, feature3, develop));
+
+      assertThat(pullRequests).containsOnlyKeys(feature1, develop);
+      assertThat(pullRequests.get(feature1).getId()).isEqualTo("1");
+      assertThat(pullRequests.get(develop).getId()).isEqualTo("4");
+    }
+
+    private PullRequest createPullRequest(String id, String source, String target, PullRequestStatus status) {
+      PullRequest pullRequest = DefaultPullRequestServiceTest.this.createPullRequest(id, null, null);
+      pullRequest.setSource(source);
+      pullRequest.setTarget(target);
+      pullRequest.setStatus(status);
+      return pullRequest;
+    }
+  }
+
+  @Test
+  void shouldFindPullRequestsModifiedSinceGivenInstant(PullRequestStoreFactory storeFactory) {
+    storePullRequest(storeFactory, "old", createPullRequest("old", Instant.ofEpochSecond(0), Instant.ofEpochSecond(100)));
+    storePullRequest(storeFactory, "new", createPullRequest("new", Instant.ofEpochSecond(0), Instant.ofEpochSecond(300)));
+
+    List<PullRequest> pullRequests = service.getModifiedSince(REPOSITORY, Instant.ofEpochSecond(200));
+
+    assertThat(pullRequests).extracting(PullRequest::getId).containsExactly("new");
+  }
+
+  @Nested
+  class ForConcurrentModifications {
+
+    private static final int USERS = 20;
+
+    @BeforeEach
+    void addPullRequest(PullRequestStoreFactory storeFactory) {
+      storePullRequest(storeFactory, "id", createPullRequest("id", null, null));
+      lenient().when(repositoryResolver.resolve(REPOSITORY.getNamespaceAndName())).thenReturn(REPOSITORY);
+    }
+
+    @Test
+    void shouldNotLoseParallelUpdates(PullRequestStoreFactory storeFactory) throws Exception {
+      ExecutorService executor = Executors.newFixedThreadPool(8);
+      CountDownLatch start = new CountDownLatch(1);
+      List<Future<?>> futures = new ArrayList<>();
+      try {
+        for (int i = 0; i < USERS; ++i) {
+          User user = new User("user" + i);
+          futures.add(executor.submit(() -> {
+            ThreadContext.bind(subject);
+            start.await();
+            service.approve(REPOSITORY.getNamespaceAndName(), "id", user);
+            service.subscribe(REPOSITORY, "id", user);
+            service.markAsReviewed(REPOSITORY, "id", "some/file", user);
+            return null;
+          }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+          future.get(30, TimeUnit.SECONDS);
+        }
+      } finally {
+        executor.shutdownNow();
+      }
+
+      PullRequest pullRequest = readPullRequestFromStore(storeFactory);
+      assertThat(pullRequest.getReviewer()).hasSize(USERS).containsValue(true).doesNotContainValue(false);
+      assertThat(pullRequest.getSubscriber()).hasSize(USERS);
+      assertThat(service.getReviewMarks(REPOSITORY, "id")).hasSize(USERS);
+    }
+  }
+
   private PullRequest createPullRequest(String id, Instant creationDate, Instant lastModified) {
     PullRequest pullRequest = new PullRequest();
     pullRequest.setId(id);
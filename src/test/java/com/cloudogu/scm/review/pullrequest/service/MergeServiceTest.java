@@ -456,7 +456,7 @@ class MergeServiceTest {
     when(repositoryService.getBranchCommand()).thenReturn(branchCommand);
 
 
-    when(pullRequestService.getAll(REPOSITORY.getNamespace(), REPOSITORY.getName())).thenReturn(ImmutableList.of(pullRequest, pullRequest2));
+    when(pullRequestService.getInProgressByBranches(REPOSITORY, List.of("commit"))).thenReturn(ImmutableList.of(pullRequest, pullRequest2));
 
     MergeCommitDto mergeCommit = createMergeCommit(true);
     service.merge(REPOSITORY.getNamespaceAndName(), pullRequest.getId(), mergeCommit, MergeStrategy.MERGE_COMMIT, false);
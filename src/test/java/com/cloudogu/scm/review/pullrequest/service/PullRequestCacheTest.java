@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.review.pullrequest.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import sonia.scm.HandlerEventType;
+import sonia.scm.cache.MapCacheManager;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryEvent;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.cloudogu.scm.review.TestData.createPullRequest;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PullRequestCacheTest {
+
+  private final Repository repository = new Repository("1", "git", "space", "X");
+
+  private final AtomicInteger loadCount = new AtomicInteger();
+
+  @Test
+  void shouldLoadPullRequestOnlyOnce() {
+    PullRequestCache cache = createCache(true);
+
+    cache.get(repository.getId(), "1", this::load);
+    cache.get(repository.getId(), "1", this::load);
+
+    assertThat(loadCount).hasValue(1);
+    assertThat(cache.getMetrics().getHitCount()).isEqualTo(1);
+    assertThat(cache.getMetrics().getMissCount()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldReturnCopies() {
+    PullRequestCache cache = createCache(true);
+
+    PullRequest first = cache.get(repository.getId(), "1", this::load);
+    first.setTitle("changed");
+    first.addLabel("changed");
+
+    PullRequest second = cache.get(repository.getId(), "1", this::load);
+    assertThat(second.getTitle()).isNotEqualTo("changed");
+    assertThat(second.getLabels()).doesNotContain("changed");
+  }
+
+  @Test
+  void shouldLoadAgainAfterInvalidation() {
+    PullRequestCache cache = createCache(true);
+
+    cache.get(repository.getId(), "1", this::load);
+    cache.invalidate(repository.getId(), "1");
+    cache.get(repository.getId(), "1", this::load);
+
+    assertThat(loadCount).hasValue(2);
+  }
+
+  @Test
+  void shouldLoadAgainAfterRepositoryHasBeenDeleted() {
+    PullRequestCache cache = createCache(true);
+
+    cache.get(repository.getId(), "1", this::load);
+    cache.onRepositoryDeleted(new RepositoryEvent(HandlerEventType.DELETE, repository));
+    cache.get(repository.getId(), "1", this::load);
+
+    assertThat(loadCount).hasValue(2);
+  }
+
+  @Test
+  void shouldNotCacheMissingPullRequests() {
+    PullRequestCache cache = createCache(true);
+
+    PullRequest pullRequest = cache.get(repository.getId(), "1", Optional::empty);
+
+    assertThat(pullRequest).isNull();
+    assertThat(cache.get(repository.getId(), "1", this::load)).isNotNull();
+  }
+
+  @Test
+  void shouldAlwaysLoadIfDisabled() {
+    PullRequestCache cache = createCache(false);
+
+    cache.get(repository.getId(), "1", this::load);
+    cache.get(repository.getId(), "1", this::load);
+
+    assertThat(loadCount).hasValue(2);
+  }
+
+  private PullRequestCache createCache(boolean enabled) {
+    return new PullRequestCache(new MapCacheManager(), new SimpleMeterRegistry(), enabled);
+  }
+
+  private Optional<PullRequest> load() {
+    loadCount.incrementAndGet();
+    return Optional.of(createPullRequest("1"));
+  }
+}
@@ -17,12 +17,15 @@
 package com.cloudogu.scm.review.pullrequest.service;
 
 import com.cloudogu.scm.review.RepositoryResolver;
+import com.cloudogu.scm.review.StoreLocks;
 import com.cloudogu.scm.review.TestData;
 import com.cloudogu.scm.review.comment.service.Comment;
 import com.cloudogu.scm.review.comment.service.CommentEvent;
 import com.cloudogu.scm.review.comment.service.CommentType;
+import com.cloudogu.scm.review.comment.service.CommentsAddedEvent;
 import com.cloudogu.scm.review.comment.service.Reply;
 import com.cloudogu.scm.review.comment.service.ReplyEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.apache.shiro.subject.PrincipalCollection;
 import org.apache.shiro.subject.Subject;
 import org.apache.shiro.util.ThreadContext;
@@ -55,12 +58,13 @@ import java.util.Map;
 import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 @ExtendWith({MockitoExtension.class, ShiroExtension.class, QueryableStoreExtension.class})
-@QueryableStoreExtension.QueryableTypes(PullRequestChange.class)
+@QueryableStoreExtension.QueryableTypes({PullRequestChange.class, IdSequence.class})
 class PullRequestChangeServiceTest {
 
   private final Repository repository = RepositoryTestData.create42Puzzle();
@@ -85,9 +89,15 @@ class PullRequestChangeServiceTest {
   private final User trainerRed = new User("Trainer Red", "Trainer Red Display", "trainer@red.com");
 
   @BeforeEach
-  void setUp(PullRequestChangeStoreFactory prChangeStoreFactory) {
+  void setUp(PullRequestChangeStoreFactory prChangeStoreFactory, IdSequenceStoreFactory idSequenceStoreFactory) {
     ThreadContext.bind(subject);
-    changeService = new PullRequestChangeService(repositoryResolver, prChangeStoreFactory, clock, pullRequestService);
+    changeService = new PullRequestChangeService(
+      repositoryResolver,
+      prChangeStoreFactory,
+      clock,
+      pullRequestService,
+      new IdSequenceService(idSequenceStoreFactory, new StoreLocks(new SimpleMeterRegistry(), 16))
+    );
 
     lenient().when(repositoryResolver.resolve(namespaceAndName)).thenReturn(repository);
 
@@ -638,6 +648,25 @@ class PullRequestChangeServiceTest {
         );
     }
 
+    @Test
+    void shouldTrackAllAddedComments() {
+      PullRequest pr = TestData.createPullRequest();
+      Comment task = TestData.createComment();
+      task.setType(CommentType.TASK_TODO);
+      Comment comment = TestData.createComment();
+      comment.setComment("another comment");
+      Comment systemComment = Comment.createSystemComment("merged");
+
+      changeService.onCommentsAdded(new CommentsAddedEvent(repository, pr, List.of(task, comment, systemComment)));
+
+      assertThat(changeService.getAllChangesOfPullRequest(namespaceAndName, pr.getId()))
+        .extracting("property", "currentValue")
+        .containsExactly(
+          tuple("TASK", task.getComment()),
+          tuple("COMMENT", "another comment")
+        );
+    }
+
     @Test
     void shouldTrackDeletedTaskChange() {
       PullRequest pr = TestData.createPullRequest();
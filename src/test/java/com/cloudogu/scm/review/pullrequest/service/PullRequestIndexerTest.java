@@ -16,17 +16,22 @@
 
 package com.cloudogu.scm.review.pullrequest.service;
 
+import com.cloudogu.scm.review.IndexUpdateCoalescer;
+import com.cloudogu.scm.review.IndexWatermarkStore;
 import com.google.common.collect.ImmutableList;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import jakarta.servlet.ServletContextEvent;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Answers;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import sonia.scm.HandlerEventType;
+import sonia.scm.NotFoundException;
 import sonia.scm.repository.Repository;
 import sonia.scm.repository.RepositoryImportEvent;
 import sonia.scm.repository.RepositoryManager;
@@ -37,10 +42,12 @@ import sonia.scm.search.IndexLogStore;
 import sonia.scm.search.SearchEngine;
 import sonia.scm.search.SerializableIndexTask;
 
+import java.time.Instant;
 import java.util.Optional;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -58,13 +65,15 @@ class PullRequestIndexerTest {
   private SearchEngine searchEngine;
   @Mock
   private SearchEngine.ForType<PullRequest> forType;
+  @Mock
+  private IndexWatermarkStore watermarkStore;
 
-  @InjectMocks
   private PullRequestIndexer indexer;
 
   @BeforeEach
   void mockSearchEngine() {
     lenient().when(searchEngine.forType(PullRequest.class)).thenReturn(forType);
+    indexer = new PullRequestIndexer(searchEngine, new IndexUpdateCoalescer(searchEngine, new SimpleMeterRegistry()), watermarkStore);
   }
 
   @Test
@@ -120,6 +129,13 @@ class PullRequestIndexerTest {
     verify(forType).update(PullRequestIndexer.ReindexAll.class);
   }
 
+  @Test
+  void shouldMarkCleanShutdown() {
+    indexer.contextDestroyed(mock(ServletContextEvent.class));
+
+    verify(watermarkStore).markCleanShutdown(PullRequest.class);
+  }
+
   @Test
   void shouldCreateIndexAfterSuccessfulImport() {
     indexer.handleEvent(new RepositoryImportEvent(repository, false));
@@ -144,6 +160,10 @@ class PullRequestIndexerTest {
     private IndexLogStore indexLogStore;
     @Mock
     private IndexLogStore.ForIndex forIndex;
+    @Mock
+    private SearchEngine reindexSearchEngine;
+    @Mock
+    private IndexWatermarkStore watermarkStore;
 
     @Mock(answer = Answers.RETURNS_DEEP_STUBS)
     private Index<PullRequest> index;
@@ -157,46 +177,83 @@ class PullRequestIndexerTest {
     }
 
     @Test
-    void shouldNotReindexAllIfVersionHasNotChanged() {
-      when(forIndex.get(PullRequest.class)).thenReturn(Optional.of(new IndexLog(1)));
+    void shouldOnlyUpdateChangedPullRequestsIfVersionHasNotChanged() {
+      when(reindexSearchEngine.forType(PullRequest.class)).thenReturn(forType);
+      when(service.supportsPullRequests(repository)).thenReturn(true);
+      when(forIndex.get(PullRequest.class)).thenReturn(Optional.of(new IndexLog(PullRequest.VERSION)));
+      when(repositoryManager.getAll()).thenReturn(ImmutableList.of(repository));
+      Instant watermark = Instant.ofEpochMilli(42);
+      when(watermarkStore.get(repository, PullRequest.class)).thenReturn(Optional.of(watermark));
+      PullRequest pullRequest = createPullRequest();
+      when(service.getModifiedSince(repository, watermark)).thenReturn(ImmutableList.of(pullRequest));
 
       reindexAll.update(index);
+      runEnqueuedTask();
 
       verify(index, never()).delete();
+      verify(index).store(
+        Id.of(PullRequest.class, pullRequest.getId()).and(Repository.class, repository.getId()),
+        "repository:readPullRequest:" + pullRequest.getId(),
+        pullRequest
+      );
+      verify(watermarkStore).set(eq(repository), eq(PullRequest.class), any(Instant.class));
+    }
+
+    @Test
+    void shouldNotUpdateRepositoriesAfterCleanShutdown() {
+      when(watermarkStore.removeCleanShutdownMark(PullRequest.class)).thenReturn(true);
+      when(forIndex.get(PullRequest.class)).thenReturn(Optional.of(new IndexLog(PullRequest.VERSION)));
+
+      reindexAll.update(index);
+
+      verify(repositoryManager, never()).getAll();
+      verify(forType, never()).update(any(SerializableIndexTask.class));
+    }
+
+    @Test
+    void shouldRebuildRepositoriesAfterCleanShutdownIfVersionDiffers() {
+      when(watermarkStore.removeCleanShutdownMark(PullRequest.class)).thenReturn(true);
+      when(reindexSearchEngine.forType(PullRequest.class)).thenReturn(forType);
+      when(service.supportsPullRequests(repository)).thenReturn(true);
+      when(forIndex.get(PullRequest.class)).thenReturn(Optional.of(new IndexLog(42)));
+      when(repositoryManager.getAll()).thenReturn(ImmutableList.of(repository));
+
+      reindexAll.update(index);
+      runEnqueuedTask();
+
+      verify(index.delete()).by(Repository.class, repository);
     }
 
     @Test
     void shouldNotReindexRepositoryIfDoesNotSupportPullRequests() {
-      Index.Deleter deleter = mock(Index.Deleter.class);
       when(service.supportsPullRequests(repository)).thenReturn(false);
       when(forIndex.get(PullRequest.class)).thenReturn(Optional.of(new IndexLog(42)));
-      when(index.delete()).thenReturn(deleter);
 
       when(repositoryManager.getAll()).thenReturn(ImmutableList.of(repository));
 
       reindexAll.update(index);
 
-      verify(deleter, times(1)).all();
-      verify(index, never()).store(
-        any(Id.class),
-        anyString(),
-        any(PullRequest.class)
-      );
+      verify(index, never()).delete();
+      verify(forType, never()).update(any(SerializableIndexTask.class));
     }
 
     @Test
-    void shouldReindexAllIfLogStoreIsEmpty() {
-      Index.Deleter deleter = mock(Index.Deleter.class);
+    void shouldRebuildRepositoriesIfLogStoreIsEmpty() {
+      when(reindexSearchEngine.forType(PullRequest.class)).thenReturn(forType);
+      when(service.supportsPullRequests(repository)).thenReturn(true);
       when(forIndex.get(PullRequest.class)).thenReturn(Optional.empty());
-      when(index.delete()).thenReturn(deleter);
+      when(repositoryManager.getAll()).thenReturn(ImmutableList.of(repository));
 
       reindexAll.update(index);
+      runEnqueuedTask();
 
-      verify(deleter, times(1)).all();
+      verify(index.delete()).by(Repository.class, repository);
+      verify(index.delete(), never()).all();
     }
 
     @Test
-    void shouldReindexAllIfLogStoreVersionDiffers() {
+    void shouldRebuildRepositoriesIfLogStoreVersionDiffers() {
+      when(reindexSearchEngine.forType(PullRequest.class)).thenReturn(forType);
       when(service.supportsPullRequests(repository)).thenReturn(true);
       when(forIndex.get(PullRequest.class)).thenReturn(Optional.of(new IndexLog(42)));
 
@@ -205,13 +262,93 @@ class PullRequestIndexerTest {
       when(service.getAll(repository.getNamespace(), repository.getName())).thenReturn(ImmutableList.of(pullRequest));
 
       reindexAll.update(index);
+      runEnqueuedTask();
+
+      verify(index.delete()).by(Repository.class, repository);
+      verify(index.delete(), never()).all();
+      verify(index).store(
+        Id.of(PullRequest.class, pullRequest.getId()).and(Repository.class, repository.getId()),
+        "repository:readPullRequest:" + pullRequest.getId(),
+        pullRequest
+      );
+      verify(watermarkStore).set(eq(repository), eq(PullRequest.class), any(Instant.class));
+      verify(watermarkStore, never()).get(any(), any());
+    }
+
+    @Test
+    void shouldEnqueueOneTaskPerRepository() {
+      Repository otherRepository = new Repository("2", "git", "hitchhiker", "heart-of-gold");
+      Repository svnRepository = new Repository("3", "svn", "hitchhiker", "old");
+      when(reindexSearchEngine.forType(PullRequest.class)).thenReturn(forType);
+      when(service.supportsPullRequests(repository)).thenReturn(true);
+      when(service.supportsPullRequests(otherRepository)).thenReturn(true);
+      when(service.supportsPullRequests(svnRepository)).thenReturn(false);
+      when(forIndex.get(PullRequest.class)).thenReturn(Optional.empty());
+      when(repositoryManager.getAll()).thenReturn(ImmutableList.of(repository, svnRepository, otherRepository));
+
+      reindexAll.update(index);
+
+      verify(forType, times(2)).update(any(PullRequestIndexer.UpdateRepositoryTask.class));
+      verify(service, never()).getAll(anyString(), anyString());
+    }
+
+    private void runEnqueuedTask() {
+      ArgumentCaptor<SerializableIndexTask> taskCaptor = ArgumentCaptor.forClass(SerializableIndexTask.class);
+      verify(forType).update(taskCaptor.capture());
+      PullRequestIndexer.UpdateRepositoryTask repositoryTask = (PullRequestIndexer.UpdateRepositoryTask) taskCaptor.getValue();
+      repositoryTask.setPullRequestService(service);
+      repositoryTask.setWatermarkStore(watermarkStore);
+      repositoryTask.update(index);
+    }
+  }
 
-      verify(index.delete()).all();
+  @Nested
+  class UpdateRepositoryTaskTests {
+
+    @Mock
+    private PullRequestService service;
+    @Mock
+    private IndexWatermarkStore watermarkStore;
+
+    @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+    private Index<PullRequest> index;
+
+    @Test
+    void shouldRebuildRepositoryWithoutWatermark() {
+      when(service.supportsPullRequests(repository)).thenReturn(true);
+      when(watermarkStore.get(repository, PullRequest.class)).thenReturn(Optional.empty());
+      PullRequest pullRequest = createPullRequest();
+      when(service.getAll(repository.getNamespace(), repository.getName())).thenReturn(ImmutableList.of(pullRequest));
+
+      createTask(false).update(index);
+
+      verify(index.delete()).by(Repository.class, repository);
       verify(index).store(
         Id.of(PullRequest.class, pullRequest.getId()).and(Repository.class, repository.getId()),
         "repository:readPullRequest:" + pullRequest.getId(),
         pullRequest
       );
+      verify(watermarkStore).set(eq(repository), eq(PullRequest.class), any(Instant.class));
+    }
+
+    @Test
+    void shouldNotStoreAnythingWithoutChanges() {
+      Instant watermark = Instant.ofEpochMilli(42);
+      when(watermarkStore.get(repository, PullRequest.class)).thenReturn(Optional.of(watermark));
+
+      createTask(false).update(index);
+
+      verify(index, never()).delete();
+      verify(index, never()).store(any(Id.class), anyString(), any(PullRequest.class));
+      verify(service, never()).getAll(anyString(), anyString());
+      verify(watermarkStore).set(eq(repository), eq(PullRequest.class), any(Instant.class));
+    }
+
+    private PullRequestIndexer.UpdateRepositoryTask createTask(boolean rebuild) {
+      PullRequestIndexer.UpdateRepositoryTask task = new PullRequestIndexer.UpdateRepositoryTask(repository, rebuild, 1, 1);
+      task.setPullRequestService(service);
+      task.setWatermarkStore(watermarkStore);
+      return task;
     }
   }
 
@@ -220,6 +357,8 @@ class PullRequestIndexerTest {
 
     @Mock
     private PullRequestService service;
+    @Mock
+    private IndexWatermarkStore watermarkStore;
 
     @Mock(answer = Answers.RETURNS_DEEP_STUBS)
     private Index<PullRequest> index;
@@ -233,6 +372,7 @@ class PullRequestIndexerTest {
 
       PullRequestIndexer.IndexRepositoryTask indexRepositoryTask = new PullRequestIndexer.IndexRepositoryTask(repository);
       indexRepositoryTask.setPullRequestService(service);
+      indexRepositoryTask.setWatermarkStore(watermarkStore);
 
       indexRepositoryTask.update(index);
 
@@ -241,6 +381,7 @@ class PullRequestIndexerTest {
         "repository:readPullRequest:" + pullRequest.getId(),
         pullRequest
       );
+      verify(watermarkStore).set(eq(repository), eq(PullRequest.class), any(Instant.class));
     }
   }
 
@@ -249,6 +390,8 @@ class PullRequestIndexerTest {
 
     @Mock
     private PullRequestService service;
+    @Mock
+    private IndexWatermarkStore watermarkStore;
 
     @Mock(answer = Answers.RETURNS_DEEP_STUBS)
     private Index<PullRequest> index;
@@ -262,6 +405,7 @@ class PullRequestIndexerTest {
 
       PullRequestIndexer.ReindexRepositoryTask reindexRepositoryTask = new PullRequestIndexer.ReindexRepositoryTask(repository);
       reindexRepositoryTask.setPullRequestService(service);
+      reindexRepositoryTask.setWatermarkStore(watermarkStore);
 
       reindexRepositoryTask.update(index);
 
@@ -271,6 +415,48 @@ class PullRequestIndexerTest {
         "repository:readPullRequest:" + pullRequest.getId(),
         pullRequest
       );
+      verify(watermarkStore).set(eq(repository), eq(PullRequest.class), any(Instant.class));
+    }
+  }
+
+  @Nested
+  class ReindexPullRequestTaskTests {
+
+    @Mock
+    private PullRequestService service;
+
+    @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+    private Index<PullRequest> index;
+
+    private PullRequestIndexer.ReindexPullRequestTask task;
+
+    @BeforeEach
+    void createTask() {
+      task = new PullRequestIndexer.ReindexPullRequestTask(repository, "1");
+      task.setPullRequestService(service);
+    }
+
+    @Test
+    void shouldStorePullRequest() {
+      PullRequest pullRequest = createPullRequest();
+      when(service.get(repository, "1")).thenReturn(pullRequest);
+
+      task.update(index);
+
+      verify(index).store(
+        Id.of(PullRequest.class, pullRequest.getId()).and(Repository.class, repository.getId()),
+        "repository:readPullRequest:" + pullRequest.getId(),
+        pullRequest
+      );
+    }
+
+    @Test
+    void shouldDeleteMissingPullRequest() {
+      when(service.get(repository, "1")).thenThrow(new NotFoundException("x", "y"));
+
+      task.update(index);
+
+      verify(index.delete()).byId(Id.of(PullRequest.class, "1").and(Repository.class, repository.getId()));
     }
   }
 
@@ -16,13 +16,17 @@
 
 package com.cloudogu.scm.review.pullrequest.service;
 
+import com.cloudogu.scm.review.StoreLocks;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.ConcurrentModificationException;
 import sonia.scm.NotFoundException;
+import sonia.scm.cache.MapCacheManager;
 import sonia.scm.repository.Repository;
 import sonia.scm.store.QueryableMutableStore;
 import sonia.scm.store.QueryableStoreExtension;
@@ -34,18 +38,22 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.AssertionsForClassTypes.fail;
 
 @ExtendWith({MockitoExtension.class, QueryableStoreExtension.class})
-@QueryableStoreExtension.QueryableTypes(PullRequest.class)
+@QueryableStoreExtension.QueryableTypes({PullRequest.class, IdSequence.class})
 class PullRequestStoreTest {
 
   private Repository repository = new Repository("1", "git", "space", "X");
 
   private PullRequestStore store;
   private QueryableMutableStore<PullRequest> dataStore;
+  private IdSequenceService idSequenceService;
+  private PullRequestCache cache;
 
   @BeforeEach
-  void init(PullRequestStoreFactory dataStoreFactory) {
+  void init(PullRequestStoreFactory dataStoreFactory, IdSequenceStoreFactory idSequenceStoreFactory) {
     dataStore = dataStoreFactory.getMutable(repository.getId());
-    store = new PullRequestStore(dataStore, repository);
+    idSequenceService = new IdSequenceService(idSequenceStoreFactory, new StoreLocks(new SimpleMeterRegistry(), 16));
+    cache = new PullRequestCache(new MapCacheManager(), new SimpleMeterRegistry(), true);
+    store = new PullRequestStore(dataStore, idSequenceService, cache, new StoreLocks(new SimpleMeterRegistry(), 16), repository);
   }
 
   @AfterEach
@@ -71,12 +79,40 @@ class PullRequestStoreTest {
     assertThat(store.add(createPullRequest())).isEqualTo("4");
   }
 
+  @Test
+  void shouldNotReuseIdOfRemovedLatestPullRequest() {
+    store.add(createPullRequest());
+    store.add(createPullRequest());
+
+    dataStore.remove("2");
+
+    assertThat(store.add(createPullRequest())).isEqualTo("3");
+  }
+
+  @Test
+  void shouldSeedSequenceFromExistingPullRequests() {
+    dataStore.put("41", createPullRequest());
+    dataStore.put("42", createPullRequest());
+
+    assertThat(store.add(createPullRequest())).isEqualTo("43");
+  }
+
+  @Test
+  void shouldNotQueryExistingPullRequestsOnceSequenceIsSeeded(IdSequenceStoreFactory idSequenceStoreFactory) {
+    try (QueryableMutableStore<IdSequence> sequenceStore = idSequenceStoreFactory.getMutable(repository.getId())) {
+      sequenceStore.put(IdSequenceService.PULL_REQUEST_SEQUENCE, new IdSequence(100_000));
+    }
+
+    assertThat(store.add(createPullRequest())).isEqualTo("100001");
+    assertThat(store.add(createPullRequest())).isEqualTo("100002");
+  }
+
   @SuppressWarnings("squid:S2925") // suppress warnings regarding Thread.sleep. Found no other way to test this.
   @Test
   void shouldCreateUniqueIdsWhenAccessedInParallel() throws InterruptedException {
     Semaphore semaphore = new Semaphore(2);
     semaphore.acquire(2);
-    store = new PullRequestStore(dataStore, repository) {
+    store = new PullRequestStore(dataStore, idSequenceService, cache, new StoreLocks(new SimpleMeterRegistry(), 16), repository) {
       @Override
       String createId() {
         String id = super.createId();
@@ -130,6 +166,61 @@ class PullRequestStoreTest {
       .containsExactlyInAnyOrder(pullRequest1, pullRequest2);
   }
 
+  @Test
+  void shouldReadUpdatedPullRequestAfterCachedRead() {
+    String id = store.add(createPullRequest());
+    PullRequest pullRequest = store.get(id);
+
+    pullRequest.setTitle("changed");
+    assertThat(store.get(id).getTitle()).isNotEqualTo("changed");
+
+    store.update(pullRequest);
+    assertThat(store.get(id).getTitle()).isEqualTo("changed");
+  }
+
+  @Test
+  void shouldIncrementVersionOnUpdate() {
+    String id = store.add(createPullRequest());
+    PullRequest pullRequest = store.get(id);
+
+    store.update(pullRequest);
+
+    assertThat(pullRequest.getVersion()).isEqualTo(1);
+    assertThat(store.get(id).getVersion()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldRejectUpdateOfOutdatedPullRequest() {
+    String id = store.add(createPullRequest());
+    PullRequest first = store.get(id);
+    PullRequest second = store.get(id);
+
+    first.setTitle("first");
+    store.update(first);
+    second.setTitle("second");
+
+    Assertions.assertThrows(ConcurrentModificationException.class, () -> store.update(second));
+    assertThat(store.get(id).getTitle()).isEqualTo("first");
+  }
+
+  @Test
+  void shouldModifyCurrentStateOfPullRequest() {
+    String id = store.add(createPullRequest());
+    PullRequest outdated = store.get(id);
+    store.modify(id, pr -> pr.setTitle("changed"));
+
+    PullRequest modified = store.modify(id, pr -> pr.addSubscriber("dent"));
+
+    assertThat(modified.getTitle()).isEqualTo("changed");
+    assertThat(modified.getVersion()).isEqualTo(outdated.getVersion() + 2);
+    assertThat(store.get(id).getSubscriber()).contains("dent");
+  }
+
+  @Test
+  void shouldThrowNotFoundExceptionOnModify() {
+    Assertions.assertThrows(NotFoundException.class, () -> store.modify("iDontExist", pr -> pr.setTitle("changed")));
+  }
+
   @Test
   void shouldThrowNotFoundException() {
     Assertions.assertThrows(NotFoundException.class, () -> store.get("iDontExist"));
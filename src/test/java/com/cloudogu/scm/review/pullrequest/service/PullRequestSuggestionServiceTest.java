@@ -17,7 +17,9 @@
 package com.cloudogu.scm.review.pullrequest.service;
 
 import com.cloudogu.scm.review.BranchResolver;
+import com.cloudogu.scm.review.PushContextFactory;
 import com.cloudogu.scm.review.TestData;
+import com.cloudogu.scm.review.config.service.ConfigService;
 import org.github.sdorra.jse.ShiroExtension;
 import org.github.sdorra.jse.SubjectAware;
 import org.junit.jupiter.api.BeforeEach;
@@ -69,9 +71,12 @@ class PullRequestSuggestionServiceTest {
   @Mock
   private BranchResolver branchResolver;
 
+  @Mock
+  private ConfigService configService;
+
   @BeforeEach
   void setup() {
-    suggestionService = new PullRequestSuggestionService(pullRequestService, branchResolver, clock);
+    suggestionService = new PullRequestSuggestionService(new PushContextFactory(pullRequestService, branchResolver, configService), clock);
   }
 
   @Nested
@@ -271,7 +276,7 @@ class PullRequestSuggestionServiceTest {
     void shouldNotAddPushEntryBecausePushedBranchAlreadyHasOpenPullRequest() {
       PullRequest openPullRequest = new PullRequest("1", "feature", "develop");
       openPullRequest.setStatus(PullRequestStatus.OPEN);
-      when(pullRequestService.getAll(repository.getNamespace(), repository.getName())).thenReturn(
+      when(pullRequestService.getInProgressBySource(repository, List.of("feature"))).thenReturn(
         List.of(openPullRequest)
       );
 
@@ -284,7 +289,7 @@ class PullRequestSuggestionServiceTest {
     void shouldNotAddPushEntryBecausePushedBranchAlreadyHasDraftPullRequest() {
       PullRequest draftPullRequest = new PullRequest("1", "feature", "develop");
       draftPullRequest.setStatus(PullRequestStatus.DRAFT);
-      when(pullRequestService.getAll(repository.getNamespace(), repository.getName())).thenReturn(
+      when(pullRequestService.getInProgressBySource(repository, List.of("feature"))).thenReturn(
         List.of(draftPullRequest)
       );
 
@@ -19,6 +19,7 @@ package com.cloudogu.scm.review.pullrequest.service;
 import com.cloudogu.scm.review.comment.service.Comment;
 import com.cloudogu.scm.review.comment.service.CommentEvent;
 import com.cloudogu.scm.review.comment.service.CommentService;
+import com.cloudogu.scm.review.comment.service.CommentsAddedEvent;
 import com.cloudogu.scm.review.comment.service.Location;
 import com.cloudogu.scm.review.comment.service.Reply;
 import com.cloudogu.scm.review.comment.service.ReplyEvent;
@@ -30,11 +31,10 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import sonia.scm.HandlerEventType;
 import sonia.scm.repository.Repository;
 
-import static com.google.common.collect.ImmutableSet.of;
-import static java.util.Collections.emptyList;
+import java.util.List;
+
 import static java.util.Collections.singletonList;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Mockito.atMost;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -48,6 +48,7 @@ class RemoveReviewMarksOnChangedCommentsHookTest {
 
   {
     pullRequest.setId("123");
+    comment.setId("42");
   }
 
   @Mock
@@ -63,7 +64,7 @@ class RemoveReviewMarksOnChangedCommentsHookTest {
 
     hook.handleCommentEvents(event);
 
-    verify(pullRequestService, never()).removeReviewMarks(any(), any(), any());
+    verify(pullRequestService, never()).removeReviewMarksForFiles(any(), any(), any());
   }
 
   @Test
@@ -72,66 +73,75 @@ class RemoveReviewMarksOnChangedCommentsHookTest {
 
     hook.handleCommentEvents(event);
 
-    verify(pullRequestService, never()).removeReviewMarks(any(), any(), any());
+    verify(pullRequestService, never()).removeReviewMarksForFiles(any(), any(), any());
   }
 
   @Test
   void shouldRemoveMarksOnNewCommentWithSameLocation() {
     comment.setLocation(new Location("some/file"));
-    pullRequest.setReviewMarks(of(new ReviewMark("some/file", "dent")));
     CommentEvent event = new CommentEvent(repository, pullRequest, comment, null, HandlerEventType.CREATE);
 
     hook.handleCommentEvents(event);
 
-    verify(pullRequestService).removeReviewMarks(repository, pullRequest.getId(), singletonList(new ReviewMark("some/file", "dent")));
+    verify(pullRequestService).removeReviewMarksForFiles(repository, pullRequest.getId(), List.of("some/file"));
   }
 
   @Test
-  void shouldNotRemoveMarksOnNewCommentWithDifferentLocation() {
+  void shouldOnlyRemoveMarksForLocationOfComment() {
     comment.setLocation(new Location("some/other/file"));
-    pullRequest.setReviewMarks(of(new ReviewMark("some/file", "dent")));
     CommentEvent event = new CommentEvent(repository, pullRequest, comment, null, HandlerEventType.CREATE);
 
     hook.handleCommentEvents(event);
 
-    verify(pullRequestService, atMost(1)).removeReviewMarks(repository, pullRequest.getId(), emptyList());
+    verify(pullRequestService).removeReviewMarksForFiles(repository, pullRequest.getId(), List.of("some/other/file"));
+  }
+
+  @Test
+  void shouldRemoveMarksForAllLocationsOfAddedCommentsAtOnce() {
+    comment.setLocation(new Location("some/file"));
+    Comment otherComment = new Comment();
+    otherComment.setLocation(new Location("some/other/file"));
+    Comment sameFileComment = new Comment();
+    sameFileComment.setLocation(new Location("some/file"));
+    CommentsAddedEvent event = new CommentsAddedEvent(repository, pullRequest, List.of(comment, otherComment, sameFileComment, new Comment()));
+
+    hook.handleCommentsAddedEvents(event);
+
+    verify(pullRequestService).removeReviewMarksForFiles(repository, pullRequest.getId(), List.of("some/file", "some/other/file"));
   }
 
   @Test
   void shouldRemoveMarksOnNewReplyOnCommentWithSameLocation() {
     Reply reply = Reply.createReply("321", "reply", "trillian");
+    reply.setParentId("42");
 
     comment.setLocation(new Location("some/file"));
     comment.setReplies(singletonList(reply));
 
-    pullRequest.setReviewMarks(of(new ReviewMark("some/file", "dent")));
-
-    when(commentService.getAll(repository.getNamespace(), repository.getName(), pullRequest.getId()))
-      .thenReturn(singletonList(comment));
+    when(commentService.get(repository, pullRequest.getId(), "42")).thenReturn(comment);
 
     ReplyEvent event = new ReplyEvent(repository, pullRequest, reply, null, comment, HandlerEventType.CREATE);
 
     hook.handleReplyEvents(event);
 
-    verify(pullRequestService).removeReviewMarks(repository, pullRequest.getId(), singletonList(new ReviewMark("some/file", "dent")));
+    verify(pullRequestService).removeReviewMarksForFiles(repository, pullRequest.getId(), List.of("some/file"));
+    verify(commentService, never()).getAll(any(), any(), any());
   }
 
   @Test
   void shouldIgnoreReplyOnCommentWithoutLocation() {
     Reply reply = Reply.createReply("321", "reply", "trillian");
+    reply.setParentId("42");
 
     comment.setReplies(singletonList(reply));
 
-    pullRequest.setReviewMarks(of(new ReviewMark("some/file", "dent")));
-
-    when(commentService.getAll(repository.getNamespace(), repository.getName(), pullRequest.getId()))
-      .thenReturn(singletonList(comment));
+    when(commentService.get(repository, pullRequest.getId(), "42")).thenReturn(comment);
 
     ReplyEvent event = new ReplyEvent(repository, pullRequest, reply, null, comment, HandlerEventType.CREATE);
 
     hook.handleReplyEvents(event);
 
-    verify(pullRequestService, never()).removeReviewMarks(any(), any(), any());
+    verify(pullRequestService, never()).removeReviewMarksForFiles(any(), any(), any());
   }
 
   @Test
@@ -142,6 +152,6 @@ class RemoveReviewMarksOnChangedCommentsHookTest {
 
     hook.handleReplyEvents(event);
 
-    verify(pullRequestService, never()).removeReviewMarks(any(), any(), any());
+    verify(pullRequestService, never()).removeReviewMarksForFiles(any(), any(), any());
   }
 }
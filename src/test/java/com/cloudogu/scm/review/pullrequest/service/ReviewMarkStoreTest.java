@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.review.pullrequest.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryTestData;
+import sonia.scm.store.QueryableStoreExtension;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith({MockitoExtension.class, QueryableStoreExtension.class})
+@QueryableStoreExtension.QueryableTypes({ReviewMark.class})
+class ReviewMarkStoreTest {
+
+  private final Repository repository = RepositoryTestData.createHeartOfGold();
+
+  private ReviewMarkStore store;
+
+  @BeforeEach
+  void initStore(ReviewMarkStoreFactory storeFactory) {
+    store = new ReviewMarkStore(storeFactory);
+  }
+
+  @Test
+  void shouldNotStoreMarkTwice() {
+    store.add(repository, "1", new ReviewMark("some/file", "dent"));
+    store.add(repository, "1", new ReviewMark("some/file", "dent"));
+
+    assertThat(store.getAll(repository, "1")).containsExactly(new ReviewMark("some/file", "dent"));
+  }
+
+  @Test
+  void shouldKeepMarksOfPullRequestsApart() {
+    store.add(repository, "1", new ReviewMark("some/file", "dent"));
+    store.add(repository, "2", new ReviewMark("other/file", "dent"));
+
+    assertThat(store.getAll(repository, "1")).containsExactly(new ReviewMark("some/file", "dent"));
+  }
+
+  @Test
+  void shouldGetFilesOfSingleUser() {
+    store.add(repository, "1", new ReviewMark("some/file", "dent"));
+    store.add(repository, "1", new ReviewMark("other/file", "trillian"));
+
+    assertThat(store.getFiles(repository, "1", "dent")).containsExactly("some/file");
+  }
+
+  @Test
+  void shouldRemoveMarks() {
+    store.add(repository, "1", new ReviewMark("some/file", "dent"));
+    store.add(repository, "1", new ReviewMark("other/file", "dent"));
+
+    store.remove(repository, "1", List.of(new ReviewMark("some/file", "dent"), new ReviewMark("unknown/file", "dent")));
+
+    assertThat(store.getAll(repository, "1")).containsExactly(new ReviewMark("other/file", "dent"));
+  }
+
+  @Test
+  void shouldRemoveMarksOfAllUsersForFiles() {
+    store.add(repository, "1", new ReviewMark("some/file", "dent"));
+    store.add(repository, "1", new ReviewMark("some/file", "trillian"));
+    store.add(repository, "1", new ReviewMark("other/file", "dent"));
+
+    List<ReviewMark> removedMarks = store.removeForFiles(repository, "1", List.of("some/file"));
+
+    assertThat(removedMarks).containsExactlyInAnyOrder(new ReviewMark("some/file", "dent"), new ReviewMark("some/file", "trillian"));
+    assertThat(store.getAll(repository, "1")).containsExactly(new ReviewMark("other/file", "dent"));
+  }
+}
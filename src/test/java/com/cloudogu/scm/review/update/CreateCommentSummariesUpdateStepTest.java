@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.review.update;
+
+import com.cloudogu.scm.review.comment.service.Comment;
+import com.cloudogu.scm.review.comment.service.CommentStoreFactory;
+import com.cloudogu.scm.review.comment.service.CommentSummary;
+import com.cloudogu.scm.review.comment.service.CommentSummaryStoreFactory;
+import com.cloudogu.scm.review.comment.service.CommentType;
+import com.cloudogu.scm.review.comment.service.Reply;
+import com.cloudogu.scm.review.comment.service.ReplyStoreFactory;
+import com.cloudogu.scm.review.pullrequest.service.PullRequest;
+import com.cloudogu.scm.review.pullrequest.service.PullRequestStoreFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import sonia.scm.migration.RepositoryUpdateContext;
+import sonia.scm.store.QueryableMutableStore;
+import sonia.scm.store.QueryableStoreExtension;
+import sonia.scm.store.QueryableStoreFactory;
+
+import java.time.Instant;
+
+import static com.cloudogu.scm.review.TestData.createPullRequest;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(QueryableStoreExtension.class)
+@QueryableStoreExtension.QueryableTypes({PullRequest.class, Comment.class, Reply.class, CommentSummary.class})
+class CreateCommentSummariesUpdateStepTest {
+
+  private final String repositoryId = "Hoenn";
+
+  private CreateCommentSummariesUpdateStep updateStep;
+
+  @BeforeEach
+  void init(QueryableStoreFactory queryableStoreFactory, PullRequestStoreFactory pullRequestStoreFactory) {
+    updateStep = new CreateCommentSummariesUpdateStep(queryableStoreFactory);
+    try (QueryableMutableStore<PullRequest> store = pullRequestStoreFactory.getMutable(repositoryId)) {
+      store.put("1", createPullRequest("1"));
+      store.put("2", createPullRequest("2"));
+    }
+  }
+
+  @Test
+  void shouldCountCommentsTasksAndReplies(CommentStoreFactory commentStoreFactory,
+                                          ReplyStoreFactory replyStoreFactory,
+                                          CommentSummaryStoreFactory summaryStoreFactory) {
+    Comment task = Comment.createComment("c1", "Catch them all", "birch", null);
+    task.setType(CommentType.TASK_TODO);
+    task.setDate(Instant.ofEpochMilli(1000));
+    Comment doneTask = Comment.createComment("c2", "Get the first badge", "birch", null);
+    doneTask.setType(CommentType.TASK_DONE);
+    doneTask.setDate(Instant.ofEpochMilli(2000));
+    doneTask.addReply(reply("r1", 3000));
+    try (QueryableMutableStore<Comment> store = commentStoreFactory.getMutable(repositoryId, "1")) {
+      store.put("c1", task);
+      store.put("c2", doneTask);
+    }
+    Reply reply = reply("r2", 4000);
+    reply.setParentId("c1");
+    try (QueryableMutableStore<Reply> store = replyStoreFactory.getMutable(repositoryId, "1")) {
+      store.put("r2", reply);
+    }
+
+    updateStep.doUpdate(new RepositoryUpdateContext(repositoryId));
+
+    try (QueryableMutableStore<CommentSummary> store = summaryStoreFactory.getMutable(repositoryId)) {
+      CommentSummary summary = store.get("1");
+      assertThat(summary.getOpenTasks()).isEqualTo(1);
+      assertThat(summary.getDoneTasks()).isEqualTo(1);
+      assertThat(summary.getComments()).isEqualTo(4);
+      assertThat(summary.getLastCommentDate()).isEqualTo(Instant.ofEpochMilli(4000));
+
+      CommentSummary emptySummary = store.get("2");
+      assertThat(emptySummary.getOpenTasks()).isZero();
+      assertThat(emptySummary.getComments()).isZero();
+      assertThat(emptySummary.getLastCommentDate()).isNull();
+    }
+  }
+
+  private Reply reply(String id, long date) {
+    Reply reply = Reply.createReply(id, "Sure", "may");
+    reply.setDate(Instant.ofEpochMilli(date));
+    return reply;
+  }
+}
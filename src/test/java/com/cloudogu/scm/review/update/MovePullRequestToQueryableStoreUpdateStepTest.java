@@ -66,8 +66,8 @@ class MovePullRequestToQueryableStoreUpdateStepTest {
 
     Map<String, PullRequest> pullRequests = getAll(storeFactory);
     assertThat(pullRequests).hasSize(2);
-    assertThat(pullRequests.get("1")).usingRecursiveComparison().isEqualTo(first);
-    assertThat(pullRequests.get("2")).usingRecursiveComparison().isEqualTo(second);
+    assertThat(pullRequests.get("1")).usingRecursiveComparison().ignoringFields("version").isEqualTo(first);
+    assertThat(pullRequests.get("2")).usingRecursiveComparison().ignoringFields("version").isEqualTo(second);
   }
 
   @Test
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.review.update;
+
+import com.cloudogu.scm.review.comment.service.Comment;
+import com.cloudogu.scm.review.comment.service.CommentStoreFactory;
+import com.cloudogu.scm.review.comment.service.Reply;
+import com.cloudogu.scm.review.comment.service.ReplyQueryFields;
+import com.cloudogu.scm.review.comment.service.ReplyStoreFactory;
+import com.cloudogu.scm.review.pullrequest.service.PullRequest;
+import com.cloudogu.scm.review.pullrequest.service.PullRequestStoreFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import sonia.scm.migration.RepositoryUpdateContext;
+import sonia.scm.store.QueryableMutableStore;
+import sonia.scm.store.QueryableStore;
+import sonia.scm.store.QueryableStoreExtension;
+import sonia.scm.store.QueryableStoreFactory;
+
+import static com.cloudogu.scm.review.TestData.createPullRequest;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(QueryableStoreExtension.class)
+@QueryableStoreExtension.QueryableTypes({PullRequest.class, Comment.class, Reply.class})
+class MoveRepliesToQueryableStoreUpdateStepTest {
+
+  private final String repositoryId = "Johto";
+
+  private MoveRepliesToQueryableStoreUpdateStep updateStep;
+
+  @BeforeEach
+  void init(QueryableStoreFactory queryableStoreFactory, PullRequestStoreFactory pullRequestStoreFactory) {
+    updateStep = new MoveRepliesToQueryableStoreUpdateStep(queryableStoreFactory);
+    try (QueryableMutableStore<PullRequest> store = pullRequestStoreFactory.getMutable(repositoryId)) {
+      store.put("1", createPullRequest("1"));
+    }
+  }
+
+  @Test
+  void shouldMoveRepliesToOwnStore(CommentStoreFactory commentStoreFactory, ReplyStoreFactory replyStoreFactory) {
+    Comment comment = Comment.createComment("c1", "Which one do you choose?", "oak", null);
+    comment.addReply(Reply.createReply("r1", "Bulbasaur", "red"));
+    comment.addReply(Reply.createReply("r2", "Squirtle", "blue"));
+    Comment otherComment = Comment.createComment("c2", "Without replies", "oak", null);
+    try (QueryableMutableStore<Comment> store = commentStoreFactory.getMutable(repositoryId, "1")) {
+      store.put("c1", comment);
+      store.put("c2", otherComment);
+    }
+
+    updateStep.doUpdate(new RepositoryUpdateContext(repositoryId));
+
+    try (QueryableStore<Reply> store = replyStoreFactory.get(repositoryId, "1")) {
+      assertThat(store.query(ReplyQueryFields.PARENTID.eq("c1")).findAll())
+        .extracting("id")
+        .containsExactlyInAnyOrder("r1", "r2");
+      assertThat(store.query(ReplyQueryFields.PARENTID.eq("c2")).findAll()).isEmpty();
+    }
+    try (QueryableMutableStore<Comment> store = commentStoreFactory.getMutable(repositoryId, "1")) {
+      assertThat(store.get("c1").getReplies()).isEmpty();
+      assertThat(store.get("c1").getComment()).isEqualTo("Which one do you choose?");
+      assertThat(store.get("c2").getComment()).isEqualTo("Without replies");
+    }
+  }
+
+  @Test
+  void shouldIgnorePullRequestsWithoutComments(ReplyStoreFactory replyStoreFactory) {
+    updateStep.doUpdate(new RepositoryUpdateContext(repositoryId));
+
+    try (QueryableStore<Reply> store = replyStoreFactory.get(repositoryId, "1")) {
+      assertThat(store.query().findAll()).isEmpty();
+    }
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.review.update;
+
+import com.cloudogu.scm.review.pullrequest.service.PullRequest;
+import com.cloudogu.scm.review.pullrequest.service.PullRequestStoreFactory;
+import com.cloudogu.scm.review.pullrequest.service.ReviewMark;
+import com.cloudogu.scm.review.pullrequest.service.ReviewMarkStoreFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.migration.RepositoryUpdateContext;
+import sonia.scm.store.QueryableMutableStore;
+import sonia.scm.store.QueryableStore;
+import sonia.scm.store.QueryableStoreExtension;
+import sonia.scm.store.QueryableStoreFactory;
+
+import java.util.Set;
+
+import static com.cloudogu.scm.review.TestData.createPullRequest;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith({MockitoExtension.class, QueryableStoreExtension.class})
+@QueryableStoreExtension.QueryableTypes({PullRequest.class, ReviewMark.class})
+class MoveReviewMarksToQueryableStoreUpdateStepTest {
+
+  private final String repositoryId = "Johto";
+
+  private MoveReviewMarksToQueryableStoreUpdateStep updateStep;
+
+  @BeforeEach
+  void init(QueryableStoreFactory queryableStoreFactory) {
+    updateStep = new MoveReviewMarksToQueryableStoreUpdateStep(queryableStoreFactory);
+  }
+
+  @Test
+  void shouldMoveReviewMarksToOwnStore(PullRequestStoreFactory pullRequestStoreFactory, ReviewMarkStoreFactory reviewMarkStoreFactory) {
+    PullRequest pullRequest = createPullRequest("1");
+    pullRequest.setReviewMarks(Set.of(
+      new ReviewMark("some/file", "dent"),
+      new ReviewMark("some/file", "trillian")
+    ));
+    try (QueryableMutableStore<PullRequest> store = pullRequestStoreFactory.getMutable(repositoryId)) {
+      store.put("1", pullRequest);
+    }
+
+    updateStep.doUpdate(new RepositoryUpdateContext(repositoryId));
+
+    try (QueryableStore<ReviewMark> store = reviewMarkStoreFactory.get(repositoryId, "1")) {
+      assertThat(store.query().findAll())
+        .containsExactlyInAnyOrder(new ReviewMark("some/file", "dent"), new ReviewMark("some/file", "trillian"));
+    }
+    try (QueryableMutableStore<PullRequest> store = pullRequestStoreFactory.getMutable(repositoryId)) {
+      assertThat(store.get("1").getReviewMarks()).isEmpty();
+    }
+  }
+
+  @Test
+  void shouldIgnorePullRequestsWithoutReviewMarks(PullRequestStoreFactory pullRequestStoreFactory, ReviewMarkStoreFactory reviewMarkStoreFactory) {
+    PullRequest pullRequest = createPullRequest("1");
+    try (QueryableMutableStore<PullRequest> store = pullRequestStoreFactory.getMutable(repositoryId)) {
+      store.put("1", pullRequest);
+    }
+
+    updateStep.doUpdate(new RepositoryUpdateContext(repositoryId));
+
+    try (QueryableStore<ReviewMark> store = reviewMarkStoreFactory.get(repositoryId, "1")) {
+      assertThat(store.query().findAll()).isEmpty();
+    }
+  }
+}
@@ -17,9 +17,8 @@
 package com.cloudogu.scm.review.workflow;
 
 import com.cloudogu.scm.review.TestData;
-import com.cloudogu.scm.review.comment.service.Comment;
 import com.cloudogu.scm.review.comment.service.CommentService;
-import com.cloudogu.scm.review.comment.service.CommentType;
+import com.cloudogu.scm.review.comment.service.CommentSummary;
 import com.cloudogu.scm.review.pullrequest.service.PullRequest;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -29,10 +28,6 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import sonia.scm.repository.Repository;
 import sonia.scm.repository.RepositoryTestData;
 
-import java.util.Arrays;
-import java.util.List;
-import java.util.stream.Collectors;
-
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.when;
 
@@ -50,14 +45,14 @@ class AllTasksDoneRuleTest {
 
   @Test
   void shouldReturnSuccess() {
-    setUpCommentService(CommentType.COMMENT, CommentType.TASK_DONE);
+    setUpCommentSummary(0, 1);
     Result result = rule.validate(new Context(repository, pullRequest, null));
     assertThat(result.isFailed()).isFalse();
   }
 
   @Test
   void shouldReturnFailed() {
-    setUpCommentService(CommentType.COMMENT, CommentType.TASK_TODO, CommentType.TASK_DONE);
+    setUpCommentSummary(1, 1);
     Result result = rule.validate(new Context(repository, pullRequest, null));
     assertThat(result.isFailed()).isTrue();
     assertThat(result.getContext()).isInstanceOf(AllTasksDoneRule.ResultContext.class);
@@ -65,14 +60,9 @@ class AllTasksDoneRuleTest {
     assertThat(errorContext.getCount()).isEqualTo(1);
   }
 
-  private void setUpCommentService(CommentType... types) {
-    List<Comment> comments = Arrays.stream(types).map(type -> {
-      Comment c = Comment.createSystemComment("test");
-      c.setType(type);
-      return c;
-    }).collect(Collectors.toList());
-    when(commentService.getAll(repository.getNamespace(), repository.getName(), pullRequest.getId()))
-      .thenReturn(comments);
+  private void setUpCommentSummary(int openTasks, int doneTasks) {
+    when(commentService.getSummary(repository, pullRequest.getId()))
+      .thenReturn(new CommentSummary(openTasks, doneTasks, openTasks + doneTasks + 1, null));
   }
 
 }